@@ -21,12 +21,20 @@ package com.tc.async.api;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.stats.Stats;
 import com.tc.text.PrettyPrintable;
+import com.tc.util.concurrent.QueueFactory;
 
 import java.util.List;
 
 
 public interface StageManager extends PrettyPrintable {
   public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize);
+
+/**
+ * As above but with the queues behind the stage created by the given factory, rather than the manager's default.  For
+ * example, a RingBufferQueueFactory gives the stage lock-free queues.
+ */
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize, QueueFactory<?> queueFactory);
+
 /**
  * Start all the stages created on this stage manager.
  * @param context 
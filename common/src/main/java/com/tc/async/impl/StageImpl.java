@@ -74,7 +74,11 @@ public class StageImpl<EC> implements Stage<EC> {
     this.name = name;
     this.handler = handler;
     this.threads = new WorkerThread[queueCount];
-    this.stageQueue = new StageQueueImpl<EC>(queueCount, queueFactory, loggerProvider, name, queueSize);
+    boolean workStealing = queueCount > 1 && TCPropertiesImpl.getProperties().getBoolean("seda." + name + ".workstealing", false);
+    if (workStealing) {
+      logger.info("Work stealing is enabled for stage " + name);
+    }
+    this.stageQueue = new StageQueueImpl<EC>(queueCount, queueFactory, loggerProvider, name, queueSize, workStealing);
     this.group = group;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
     if (this.sleepMs > 0) {
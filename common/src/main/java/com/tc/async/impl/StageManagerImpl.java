@@ -32,6 +32,8 @@ import com.tc.stats.Stats;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferQueue;
+import com.tc.util.concurrent.RingBufferQueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 
 import java.util.Arrays;
@@ -103,15 +105,27 @@ public class StageManagerImpl implements StageManager {
   }
 
   @Override
-  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize) {
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize) {
+    // A stage can be switched over to ring buffer queues by naming a wait strategy for it (spin, yield or park).
+    String waitStrategy = TCPropertiesImpl.getProperties().getProperty("seda." + name + ".ringbuffer.waitStrategy", true);
+    QueueFactory<?> factory = this.queueFactory;
+    if (null != waitStrategy) {
+      factory = new RingBufferQueueFactory<Object>(RingBufferQueue.WaitStrategy.valueOf(waitStrategy.trim().toUpperCase()));
+      loggerProvider.getLogger(getClass()).info("Using ring buffer queues with " + waitStrategy + " waiting for stage " + name);
+    }
+    return createStage(name, verification, handler, queueCount, maxSize, factory);
+  }
+
+  @Override
+  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, QueueFactory<?> stageQueueFactory) {
     if (started) {
       throw new IllegalStateException("A new stage cannot be created, because StageManager is already started.");
     }
 
     int capacity = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
-    // Note that the queue factory is used by all the stages under this manager so it can't be type-safe.
+    // Note that queue factories are shared between stages with different context types so they can't be type-safe.
     @SuppressWarnings("unchecked")
-    QueueFactory<ContextWrapper<EC>> queueFactory = (QueueFactory<ContextWrapper<EC>>) this.queueFactory;
+    QueueFactory<ContextWrapper<EC>> queueFactory = (QueueFactory<ContextWrapper<EC>>) stageQueueFactory;
     Stage<EC> s = new StageImpl<EC>(loggerProvider, name, handler, queueCount, group, queueFactory, capacity);
     addStage(name, s);
     this.classVerifications.put(name,  verification);
@@ -31,8 +31,10 @@ import com.tc.logging.TCLoggerProvider;
 import com.tc.stats.Stats;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -44,7 +46,10 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
   private final String            stageName;
   private final TCLogger          logger;
-  private final SourceQueueImpl<ContextWrapper<EC>>[] sourceQueues;
+  private final SourceQueueImpl<EC>[] sourceQueues;
+  // Only used in work stealing mode:  unkeyed contexts wait here for whichever worker is free to take them.
+  private final SourceQueueImpl<EC> sharedQueue;
+  private final AtomicInteger idleWorkers = new AtomicInteger();
   private volatile boolean closed = false;
   /**
    * The Constructor.
@@ -60,31 +65,50 @@ public class StageQueueImpl<EC> implements Sink<EC> {
    * @param stageName : The stage name
    * @param queueSize : Max queue Size allowed
    */
-  @SuppressWarnings("unchecked")
   public StageQueueImpl(int queueCount, QueueFactory<ContextWrapper<EC>> queueFactory,
                         TCLoggerProvider loggerProvider, String stageName, int queueSize) {
+    this(queueCount, queueFactory, loggerProvider, stageName, queueSize, false);
+  }
+
+  /**
+   * @param workStealing : If true, and there is more than one queue, contexts without a scheduling key are placed on a
+   *        queue shared by all the workers, which each take from it whenever their own queue is empty, instead of being
+   *        assigned to the shortest worker queue.  Keyed contexts are unaffected.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public StageQueueImpl(int queueCount, QueueFactory<ContextWrapper<EC>> queueFactory,
+                        TCLoggerProvider loggerProvider, String stageName, int queueSize, boolean workStealing) {
     Assert.eval(queueCount > 0);
     this.logger = loggerProvider.getLogger(Sink.class.getName() + ": " + stageName);
     this.stageName = stageName;
     this.sourceQueues = new SourceQueueImpl[queueCount];
-    createWorkerQueues(queueCount, queueFactory, queueSize, stageName);
+    StageQueueStatsCollector statsCollector = new NullStageQueueStatsCollector(stageName);
+    if (workStealing && queueCount > 1) {
+      this.sharedQueue = createSourceQueue(queueFactory.createInstance(queueSize), String.valueOf(queueCount), statsCollector, null);
+    } else {
+      this.sharedQueue = null;
+    }
+    createWorkerQueues(queueCount, queueFactory, queueSize, statsCollector);
   }
 
-  private void createWorkerQueues(int queueCount, QueueFactory<ContextWrapper<EC>> queueFactory, int queueSize, String stage) {
-    StageQueueStatsCollector statsCollector = new NullStageQueueStatsCollector(stage);
-    BlockingQueue<ContextWrapper<EC>> q = null;
-
+  private void createWorkerQueues(int queueCount, QueueFactory<ContextWrapper<EC>> queueFactory, int queueSize, StageQueueStatsCollector statsCollector) {
     if (queueSize != Integer.MAX_VALUE) {
       queueSize = (int) Math.ceil(((double) queueSize) / queueCount);
     }
     Assert.eval(queueSize > 0);
 
     for (int i = 0; i < queueCount; i++) {
-      q = queueFactory.createInstance(queueSize);
-      this.sourceQueues[i] = new SourceQueueImpl<ContextWrapper<EC>>(q, String.valueOf(queueCount), statsCollector);
+      this.sourceQueues[i] = createSourceQueue(queueFactory.createInstance(queueSize), String.valueOf(queueCount), statsCollector, this.sharedQueue);
     }
   }
 
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private SourceQueueImpl<EC> createSourceQueue(BlockingQueue<ContextWrapper<EC>> q, String sourceName, StageQueueStatsCollector statsCollector, SourceQueueImpl<EC> shared) {
+    // Ring buffers hold plain contexts, rather than wrappers, so that enqueuing doesn't allocate.
+    boolean unwrapped = q instanceof RingBufferQueue;
+    return new SourceQueueImpl<EC>((BlockingQueue) q, sourceName, statsCollector, unwrapped, shared, this.idleWorkers);
+  }
+
   public Source<ContextWrapper<EC>> getSource(int index) {
     return (index < 0 || index >= this.sourceQueues.length) ? null : this.sourceQueues[index];
   }
@@ -106,11 +130,10 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     }
 
     boolean interrupted = Thread.interrupted();
-    ContextWrapper<EC> wrapper = new HandledContext<EC>(context);
     try {
       while (true) {
         try {
-          this.sourceQueues[0].put(wrapper);
+          this.sourceQueues[0].putContext(context);
           break;
         } catch (InterruptedException e) {
           this.logger.debug("StageQueue Add: " + e);
@@ -138,12 +161,29 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
     boolean interrupted = Thread.interrupted();
     MultiThreadedEventContext cxt = (MultiThreadedEventContext)context;
-    int index = getSourceQueueFor(cxt);
-    ContextWrapper<EC> wrapper = (cxt.flush()) ? new FlushingHandledContext(context, index) : new HandledContext<EC>(context);
+    SourceQueueImpl<EC> target;
+    ContextWrapper<EC> flushing = null;
+    if (null != this.sharedQueue && (null == cxt.getSchedulingKey() || cxt.flush())) {
+      // A flush goes through the shared queue first so that everything queued there before it is taken ahead of it.
+      target = this.sharedQueue;
+      if (cxt.flush()) {
+        flushing = new FlushingHandledContext(context, getSourceQueueFor(cxt), true);
+      }
+    } else {
+      int index = getSourceQueueFor(cxt);
+      target = this.sourceQueues[index];
+      if (cxt.flush()) {
+        flushing = new FlushingHandledContext(context, index, false);
+      }
+    }
     try {
       while (true) {
         try {
-          this.sourceQueues[index].put(wrapper);
+          if (null != flushing) {
+            target.put(flushing);
+          } else {
+            target.putContext(context);
+          }
           break;
         } catch (InterruptedException e) {
           this.logger.debug("StageQueue Add: " + e);
@@ -155,6 +195,9 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         Thread.currentThread().interrupt();
       }
     }
+    if (target == this.sharedQueue) {
+      wakeIdleWorker();
+    }
   }
 
   @Override
@@ -164,11 +207,13 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     }
     ContextWrapper<EC> wrapper = new DirectExecuteContext<EC>(specialized);
     boolean interrupted = Thread.interrupted();
-    int index = getSourceQueueFor(specialized);
+    SourceQueueImpl<EC> target = (null != this.sharedQueue && null == specialized.getSchedulingKey())
+        ? this.sharedQueue
+        : this.sourceQueues[getSourceQueueFor(specialized)];
     try {
       while (true) {
         try {
-          this.sourceQueues[index].put(wrapper);
+          target.put(wrapper);
           break;
         } catch (InterruptedException e) {
           this.logger.debug("StageQueue Add: " + e);
@@ -180,6 +225,23 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         Thread.currentThread().interrupt();
       }
     }
+    if (target == this.sharedQueue) {
+      wakeIdleWorker();
+    }
+  }
+
+  /**
+   * Called after adding to the shared queue:  if any worker has gone idle, hand it a wake-up so that the new context
+   * doesn't sit there until a busy worker gets around to it.  Under load, nobody is idle and this is just a read.
+   */
+  private void wakeIdleWorker() {
+    if (this.idleWorkers.get() > 0) {
+      for (SourceQueueImpl<EC> impl : this.sourceQueues) {
+        if (impl.wake()) {
+          break;
+        }
+      }
+    }
   }
   
   private volatile int fcheck = 0;
@@ -194,7 +256,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         if (++pointer >= this.sourceQueues.length) {
           pointer = 0;
         }
-        SourceQueueImpl<ContextWrapper<EC>> impl = this.sourceQueues[pointer];
+        SourceQueueImpl<EC> impl = this.sourceQueues[pointer];
         if (impl.isEmpty()) {
           return pointer;
         } else {
@@ -224,8 +286,8 @@ public class StageQueueImpl<EC> implements Sink<EC> {
   // Used for testing
   @Override
   public int size() {
-    int totalQueueSize = 0;
-    for (SourceQueueImpl<ContextWrapper<EC>> sourceQueue : this.sourceQueues) {
+    int totalQueueSize = (null != this.sharedQueue) ? this.sharedQueue.size() : 0;
+    for (SourceQueueImpl<EC> sourceQueue : this.sourceQueues) {
       totalQueueSize += sourceQueue.size();
     }
     return totalQueueSize;
@@ -238,8 +300,8 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
   @Override
   public void clear() {
-    int clearCount = 0;
-    for (SourceQueueImpl<ContextWrapper<EC>> sourceQueue : this.sourceQueues) {
+    int clearCount = (null != this.sharedQueue) ? this.sharedQueue.clear() : 0;
+    for (SourceQueueImpl<EC> sourceQueue : this.sourceQueues) {
       clearCount += sourceQueue.clear();
     }
     this.logger.info("Cleared " + clearCount);
@@ -253,13 +315,16 @@ public class StageQueueImpl<EC> implements Sink<EC> {
   @Override
   public void enableStatsCollection(boolean enable) {
     StageQueueStatsCollector collector = null;
-    for (SourceQueueImpl<ContextWrapper<EC>> src : this.sourceQueues) {
+    for (SourceQueueImpl<EC> src : this.sourceQueues) {
       String name = this.stageName + "[" + src.getSourceName() + "]";
       if (collector == null || !collector.getName().equals(name)) {
         collector = (enable) ? new StageQueueStatsCollectorImpl(name) : new NullStageQueueStatsCollector(name);
       }
       src.setStatsCollector(collector);
     }
+    if (null != this.sharedQueue) {
+      this.sharedQueue.setStatsCollector(collector);
+    }
   }
 
   @Override
@@ -274,7 +339,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         public String getDetails() {
           StringBuilder build = new StringBuilder();
           StageQueueStatsCollector stats = null;
-          for (SourceQueueImpl<ContextWrapper<EC>> impl : sourceQueues) {
+          for (SourceQueueImpl<EC> impl : sourceQueues) {
             StageQueueStatsCollector current = impl.getStatsCollector();
             if (stats != current) {
               if (stats != null) build.append('\n');
@@ -310,16 +375,30 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     this.sourceQueues[0].getStatsCollector().reset();
   }
 
-  private static final class SourceQueueImpl<W> implements Source<W> {
+  private static final class SourceQueueImpl<EC> implements Source<ContextWrapper<EC>> {
+    // Handed to an idle worker's own queue to make it look at the shared queue.  Never returned from poll().
+    private static final Object WAKE = new Object();
 
-    private final BlockingQueue<W> queue;
+    private final BlockingQueue<Object> queue;
     private final String                      sourceName;
     private volatile StageQueueStatsCollector statsCollector;
-
-    public SourceQueueImpl(BlockingQueue<W> queue, String sourceName, StageQueueStatsCollector statsCollector) {
+    // If true, plain contexts are queued as-is and only wrapped, on the worker thread, once they are removed.
+    private final boolean unwrapped;
+    // In work stealing mode, the queue which this worker takes from whenever its own is empty (null, otherwise).
+    private final SourceQueueImpl<EC> shared;
+    private final AtomicInteger idleWorkers;
+    private final AtomicBoolean idle = new AtomicBoolean();
+    // The number of WAKE markers sitting in our queue, so that size() need not search for them.
+    private final AtomicInteger pendingWakes = new AtomicInteger();
+
+    public SourceQueueImpl(BlockingQueue<Object> queue, String sourceName, StageQueueStatsCollector statsCollector, boolean unwrapped,
+                           SourceQueueImpl<EC> shared, AtomicInteger idleWorkers) {
       this.queue = queue;
       this.sourceName = sourceName;
       this.statsCollector = statsCollector;
+      this.unwrapped = unwrapped;
+      this.shared = shared;
+      this.idleWorkers = idleWorkers;
     }
 
     public StageQueueStatsCollector getStatsCollector() {
@@ -345,25 +424,104 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
     @Override
     public boolean isEmpty() {
-      return this.queue.isEmpty();
+      if (null == this.shared) {
+        return this.queue.isEmpty();
+      }
+      Object head = this.queue.peek();
+      return (null == head || (WAKE == head && 1 == this.queue.size())) && this.shared.isEmpty();
     }
 
     @Override
-    public W poll(long timeout) throws InterruptedException {
-      W rv = this.queue.poll(timeout, TimeUnit.MILLISECONDS);
-      if (rv != null) {
-        this.statsCollector.contextRemoved();
+    public ContextWrapper<EC> poll(long timeout) throws InterruptedException {
+      if (null == this.shared) {
+        return unwrap(this.queue.poll(timeout, TimeUnit.MILLISECONDS));
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      while (true) {
+        // Our own queue always comes first since it holds the contexts which only we can run.
+        ContextWrapper<EC> rv = unwrap(this.queue.poll());
+        if (null == rv) {
+          rv = this.shared.unwrap(this.shared.queue.poll());
+        }
+        if (null != rv) {
+          return rv;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        // Advertise that we are idle before the last look at the shared queue:  anyone adding to it after that look
+        // will then see us and send a wake-up.
+        this.idle.set(true);
+        this.idleWorkers.incrementAndGet();
+        try {
+          rv = this.shared.unwrap(this.shared.queue.poll());
+          if (null == rv) {
+            rv = unwrap(this.queue.poll(remaining, TimeUnit.NANOSECONDS));
+          }
+        } finally {
+          if (this.idle.compareAndSet(true, false)) {
+            this.idleWorkers.decrementAndGet();
+          }
+        }
+        if (null != rv) {
+          return rv;
+        }
       }
-      return rv;
     }
 
-    public void put(W context) throws InterruptedException {
-      this.queue.put(context);
+    /**
+     * Wakes this worker if it is idle.
+     * 
+     * @return true if it was idle
+     */
+    boolean wake() {
+      if (this.idle.compareAndSet(true, false)) {
+        this.idleWorkers.decrementAndGet();
+        // If this doesn't fit then the worker has plenty to do, anyway.
+        this.pendingWakes.incrementAndGet();
+        if (!this.queue.offer(WAKE)) {
+          this.pendingWakes.decrementAndGet();
+        }
+        return true;
+      }
+      return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ContextWrapper<EC> unwrap(Object rv) {
+      if (rv == null) {
+        return null;
+      }
+      if (rv == WAKE) {
+        this.pendingWakes.decrementAndGet();
+        return null;
+      }
+      this.statsCollector.contextRemoved();
+      if (this.unwrapped && !(rv instanceof ContextWrapper)) {
+        return new HandledContext<EC>((EC) rv);
+      }
+      return (ContextWrapper<EC>) rv;
+    }
+
+    public void put(ContextWrapper<EC> wrapper) throws InterruptedException {
+      this.queue.put(wrapper);
       this.statsCollector.contextAdded();
     }
 
+    public void putContext(EC context) throws InterruptedException {
+      // A context which is itself a wrapper must still be wrapped so that poll() can tell the two apart.
+      if (this.unwrapped && !(context instanceof ContextWrapper)) {
+        this.queue.put(context);
+        this.statsCollector.contextAdded();
+      } else {
+        put(new HandledContext<EC>(context));
+      }
+    }
+
     public int size() {
-      return this.queue.size();
+      // The marker count can briefly run ahead of, or behind, the queue itself while a wake-up is in flight.
+      return Math.max(0, this.queue.size() - this.pendingWakes.get());
     }
 
     @Override
@@ -515,9 +673,11 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     private final EC context;
     private final int offset;
     private int executionCount = 0;
-    public FlushingHandledContext(EC context, int offset) {
+    public FlushingHandledContext(EC context, int offset, boolean fromShared) {
       this.context = context;
       this.offset = offset;
+//  coming off the shared queue doesn't count as a pass through one of the worker queues
+      this.executionCount = (fromShared) ? -1 : 0;
     }
     
     @Override
@@ -38,4 +38,9 @@ public class TCByteBufferFactoryConfigImpl implements TCByteBufferFactoryConfig
     return (TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT, 3000));
   }
 
+  @Override
+  public boolean isLeakDetectionEnabled() {
+    return TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.TC_BYTEBUFFER_LEAK_DETECTION_ENABLED, false);
+  }
+
 }
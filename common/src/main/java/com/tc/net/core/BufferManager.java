@@ -41,4 +41,21 @@ public interface BufferManager {
   int forwardFromReadBuffer(GatheringByteChannel gbc) throws IOException;
 
   int forwardToWriteBuffer(ScatteringByteChannel sbc) throws IOException;
+
+  /**
+   * @return true if {@link #gatheringWrite(ByteBuffer[], int, int)} can write to the channel without passing the data
+   *         through the send buffer
+   */
+  default boolean supportsGatheringWrites() {
+    return false;
+  }
+
+  /**
+   * Write a sequence of buffers straight to the channel in one call. Only valid if {@link #supportsGatheringWrites()}.
+   *
+   * @return the number of bytes written, possibly zero if the channel can't take more data right now
+   */
+  default long gatheringWrite(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    throw new UnsupportedOperationException();
+  }
 }
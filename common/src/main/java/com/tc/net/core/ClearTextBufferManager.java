@@ -96,6 +96,23 @@ class ClearTextBufferManager implements BufferManager {
     return read;
   }
 
+  @Override
+  public boolean supportsGatheringWrites() {
+    return true;
+  }
+
+  @Override
+  public long gatheringWrite(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    // anything already staged in the send buffer has to reach the wire first
+    if (sendBuffer.position() > 0) {
+      sendFromBuffer();
+      if (sendBuffer.position() > 0) { return 0; }
+    }
+    long written = this.channel.write(srcs, offset, length);
+    if (written == -1) { throw new EOFException(); }
+    return written;
+  }
+
   private static int forwardBuffer(ByteBuffer source, ByteBuffer dest) {
     int size = Math.min(dest.remaining(), source.remaining());
     if (size > 0) {
@@ -51,8 +51,11 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -77,6 +80,10 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   private final List<TCListener>               listeners     = new ArrayList<TCListener>();
   private String                               listenerString;
 
+  // traffic over the last rebalance interval, maintained by the TCWorkerCommManager
+  private volatile long                        bytesPerSecond;
+  private volatile long                        messagesPerSecond;
+
   private static enum COMM_THREAD_MODE {
     NIO_READER, NIO_WRITER
   }
@@ -175,6 +182,33 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     }
   }
 
+  List<TCConnectionImpl> getManagedConnections() {
+    synchronized (managedConnectionsMap) {
+      List<TCConnectionImpl> connections = new ArrayList<TCConnectionImpl>(managedConnectionsMap.size());
+      for (TCConnection connection : managedConnectionsMap.keySet()) {
+        connections.add((TCConnectionImpl) connection);
+      }
+      return connections;
+    }
+  }
+
+  long getBytesPerSecond() {
+    return this.bytesPerSecond;
+  }
+
+  long getMessagesPerSecond() {
+    return this.messagesPerSecond;
+  }
+
+  void setLoad(long bytesRate, long messagesRate) {
+    this.bytesPerSecond = bytesRate;
+    this.messagesPerSecond = messagesRate;
+  }
+
+  String getName() {
+    return this.commThreadName;
+  }
+
   protected CommThread getReaderComm() {
     return this.readerComm;
   }
@@ -203,6 +237,13 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       }
     }
 
+    // the connection was migrated to another WorkerComm since the caller looked it up
+    final CoreNIOServices owner = connection.getCommWorker();
+    if (owner != this) {
+      owner.addWeight(connection, addWeightBy, channel);
+      return;
+    }
+
     // MainComm Thread
     if (workerCommMgr == null) { return; }
 
@@ -213,6 +254,56 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     workerComm.requestReadWriteInterest(connection, channel);
   }
 
+  /**
+   * Move a connection, with its weight, from this worker comm to another one. The connection changes owner on this
+   * worker's writer thread and only registers with the target's selectors once it has been cancelled from both of
+   * ours, so it is never read or written by two comm threads at once.
+   *
+   * @return false if the connection is no longer managed by this worker comm
+   */
+  boolean migrateConnection(final TCConnectionImpl connection, final CoreNIOServices target) {
+    Assert.eval(target != this);
+    if (stopRequested.isSet() || target.stopRequested.isSet() || !connection.isMigratable()) { return false; }
+
+    final SocketChannel channel = connection.getChannel();
+    final boolean[] moved = new boolean[1];
+    writerComm.unregister(channel, new Runnable() {
+      @Override
+      public void run() {
+        moved[0] = handOver(connection, target);
+      }
+    });
+    if (!moved[0]) {
+      // nothing changed hands, put back the write interest we just cancelled
+      if (connection.hasWriteInterest()) {
+        writerComm.requestWriteInterest(connection, channel);
+      }
+      return false;
+    }
+
+    readerComm.unregister(channel);
+    target.readerComm.adopt(connection, channel, SelectionKey.OP_READ);
+    if (connection.hasWriteInterest()) {
+      target.writerComm.adopt(connection, channel, SelectionKey.OP_WRITE);
+    }
+    return true;
+  }
+
+  private boolean handOver(TCConnectionImpl connection, CoreNIOServices target) {
+    synchronized (managedConnectionsMap) {
+      final Integer weight = managedConnectionsMap.get(connection);
+      if (weight == null || connection.isClosed()) { return false; }
+      synchronized (target.managedConnectionsMap) {
+        managedConnectionsMap.remove(connection);
+        this.clientWeights -= weight;
+        target.addConnection(connection, weight);
+        connection.removeListener(this);
+        connection.setCommWorker(target);
+      }
+      return true;
+    }
+  }
+
   private void addConnection(TCConnectionImpl connection, int initialWeight) {
     synchronized (managedConnectionsMap) {
       Assert.eval(!managedConnectionsMap.containsKey(connection));
@@ -225,11 +316,18 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   @Override
   public void closeEvent(TCConnectionEvent event) {
     synchronized (managedConnectionsMap) {
-      Assert.eval(managedConnectionsMap.containsKey(event.getSource()));
-      int closedCientWeight = managedConnectionsMap.get(event.getSource());
-      this.clientWeights -= closedCientWeight;
-      managedConnectionsMap.remove(event.getSource());
-      event.getSource().removeListener(this);
+      Integer closedCientWeight = managedConnectionsMap.remove(event.getSource());
+      if (closedCientWeight != null) {
+        this.clientWeights -= closedCientWeight;
+        event.getSource().removeListener(this);
+        return;
+      }
+    }
+
+    // the close raced with a migration of the connection to another WorkerComm, which may also have been told
+    final CoreNIOServices owner = ((TCConnectionImpl) event.getSource()).getCommWorker();
+    if (owner != this) {
+      owner.closeEvent(event);
     }
   }
 
@@ -285,6 +383,9 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   protected class CommThread extends Thread {
     private final Selector                      selector;
     private final LinkedBlockingQueue<Runnable> selectorTasks;
+    // write interest requested from other threads, applied after each select without a task per request
+    private final Queue<InterestRequest>        writeRequests = new ConcurrentLinkedQueue<InterestRequest>();
+    private final AtomicBoolean                 wakeupPending = new AtomicBoolean();
     private final String                        name;
     private final AtomicLong                    bytesRead    = new AtomicLong(0);
     private final AtomicLong                    bytesWritten = new AtomicLong(0);
@@ -378,19 +479,45 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
           }
         }
       } finally {
-        this.selector.wakeup();
+        wakeup();
         Util.selfInterruptIfNeeded(isInterrupted);
       }
     }
 
+    private void queueWriteRequest(InterestRequest request) {
+      this.writeRequests.offer(request);
+      wakeup();
+    }
+
+    /**
+     * Wake the selector at most once per select; the select loop clears the flag before it drains its queues, so
+     * anything queued after that point wakes it again.
+     */
+    private void wakeup() {
+      if (this.wakeupPending.compareAndSet(false, true)) {
+        this.selector.wakeup();
+      }
+    }
+
     void unregister(final SelectableChannel channel) {
+      unregister(channel, null);
+    }
+
+    /**
+     * Cancel the channel's key with this selector and then run the callback, both on this thread. Returns once the
+     * callback has run.
+     */
+    void unregister(final SelectableChannel channel, final Runnable callback) {
       if (Thread.currentThread() != this) {
         final CountDownLatch latch = new CountDownLatch(1);
         this.addSelectorTask(new Runnable() {
           @Override
           public void run() {
-            CommThread.this.unregister(channel);
-            latch.countDown();
+            try {
+              CommThread.this.unregister(channel, callback);
+            } finally {
+              latch.countDown();
+            }
           }
         });
         try {
@@ -405,9 +532,41 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
           key.cancel();
           key.attach(null);
         }
+        if (callback != null) {
+          callback.run();
+        }
       }
     }
 
+    /**
+     * Register interest for a connection migrating in. A key left over from an earlier stay on this selector may not
+     * have been flushed by a select yet, and a channel can't register again until it is.
+     */
+    void adopt(final TCConnectionImpl conn, final SocketChannel channel, final int interestOps) {
+      if (Thread.currentThread() != this) {
+        addSelectorTask(new Runnable() {
+          @Override
+          public void run() {
+            CommThread.this.adopt(conn, channel, interestOps);
+          }
+        });
+        return;
+      }
+
+      SelectionKey stale = channel.keyFor(this.selector);
+      if (stale != null && !stale.isValid()) {
+        try {
+          this.selector.selectNow();
+        } catch (IOException ioe) {
+          logger.warn("Exception flushing cancelled keys: " + ioe);
+        } finally {
+          // selectNow() swallows any wakeup made since the last select, make sure the next select doesn't block
+          this.selector.wakeup();
+        }
+      }
+      handleRequest(InterestRequest.createAddInterestRequest(channel, conn, interestOps, this));
+    }
+
     void stopListener(final ServerSocketChannel ssc, final Runnable callback) {
       if (Thread.currentThread() != this) {
         Runnable task = new Runnable() {
@@ -580,6 +739,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
           logger.warn("Cencelled Key " + cke);
           continue;
         }
+        this.wakeupPending.set(false);
 
         if (isStopRequested()) {
           if (logger.isDebugEnabled()) {
@@ -614,6 +774,14 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
         }
         Util.selfInterruptIfNeeded(isInterrupted);
 
+        for (InterestRequest request; (request = this.writeRequests.poll()) != null;) {
+          try {
+            modifyInterest(request);
+          } catch (Exception e) {
+            logger.error("error processing write interest request", e);
+          }
+        }
+
         final Set<SelectionKey> selectedKeys = localSelector.selectedKeys();
         if ((0 == numKeys) && (0 == selectedKeys.size())) {
           continue;
@@ -745,6 +913,10 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       } else {
         final CommThread commTh = req.getCommNIOServiceThread();
         Assert.assertNotNull(commTh);
+        if (req.add && req.interestOps == SelectionKey.OP_WRITE) {
+          commTh.queueWriteRequest(req);
+          return;
+        }
         commTh.addSelectorTask(new Runnable() {
           @Override
           public void run() {
@@ -761,6 +933,16 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     private void modifyInterest(InterestRequest request) {
       Assert.eval(Thread.currentThread() == this);
 
+      if (request.attachment instanceof TCConnectionImpl) {
+        // requests made just before the connection migrated still arrive here, pass them on to the new owner
+        final CoreNIOServices owner = ((TCConnectionImpl) request.attachment).getCommWorker();
+        if (owner != CoreNIOServices.this) {
+          final CommThread ownerComm = isReader() ? owner.readerComm : owner.writerComm;
+          ownerComm.handleRequest(request.redirectTo(ownerComm));
+          return;
+        }
+      }
+
       Selector localSelector = null;
       localSelector = selector;
 
@@ -770,12 +952,22 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
         SelectionKey key = request.channel.keyFor(localSelector);
         if (key != null) {
           if (!key.isValid()) {
-            logger.warn("Skipping modifyInterest - " + Constants.interestOpsToString(request.interestOps) + " on "
-                        + request.attachment);
+            if (request.channel.isOpen() && request.attachment instanceof TCConnectionImpl) {
+              // left behind by a migration; adopt() registers the connection again once the key is flushed
+              if (logger.isDebugEnabled()) {
+                logger.debug("Skipping modifyInterest - " + Constants.interestOpsToString(request.interestOps) + " on "
+                             + request.attachment);
+              }
+            } else {
+              logger.warn("Skipping modifyInterest - " + Constants.interestOpsToString(request.interestOps) + " on "
+                          + request.attachment);
+            }
             return;
           }
           existingOps = key.interestOps();
         } else {
+          // a channel that is not registered here (e.g. just migrated away) has no interest to remove
+          if (request.remove) { return; }
           existingOps = 0;
         }
 
@@ -873,6 +1065,10 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       return commNIOServiceThread;
     }
 
+    InterestRequest redirectTo(CommThread nioServiceThread) {
+      return new InterestRequest(channel, attachment, interestOps, set, add, remove, nioServiceThread);
+    }
+
     @Override
     public String toString() {
       StringBuffer buf = new StringBuffer();
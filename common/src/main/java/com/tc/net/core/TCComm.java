@@ -34,4 +34,14 @@ public interface TCComm {
 
   public boolean isStopped();
 
+  /**
+   * @return the number of connections moved between worker comm threads to even out their traffic
+   */
+  public long getConnectionsRebalanced();
+
+  /**
+   * @return a line for each worker comm thread with its weight, connections and recent traffic
+   */
+  public String[] getWorkerCommLoad();
+
 }
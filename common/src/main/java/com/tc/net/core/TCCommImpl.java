@@ -57,6 +57,18 @@ class TCCommImpl implements TCComm {
     return null;
   }
 
+  @Override
+  public long getConnectionsRebalanced() {
+    if (workerCommMgr != null) { return workerCommMgr.getConnectionsRebalanced(); }
+    return 0;
+  }
+
+  @Override
+  public String[] getWorkerCommLoad() {
+    if (workerCommMgr != null) { return workerCommMgr.getWorkerCommLoad(); }
+    return new String[0];
+  }
+
   @Override
   public boolean isStarted() {
     return started;
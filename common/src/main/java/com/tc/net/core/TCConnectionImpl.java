@@ -53,14 +53,17 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
@@ -84,7 +87,12 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
   private final BufferManagerFactory            bufferManagerFactory;
   private final AtomicBoolean                   transportEstablished        = new AtomicBoolean(false);
-  private final LinkedList<TCNetworkMessage>    writeMessages               = new LinkedList<TCNetworkMessage>();
+  // many senders, one comm thread draining; writeInterest is owned by whoever moved it from false to true
+  private final Queue<TCNetworkMessage>         writeMessages               = new ConcurrentLinkedQueue<TCNetworkMessage>();
+  private final AtomicBoolean                   writeInterest               = new AtomicBoolean(false);
+  private final LongAdder                       writeQueueDepth             = new LongAdder();
+  private final LongAdder                       enqueueCount                = new LongAdder();
+  private final LongAdder                       enqueueNanos                = new LongAdder();
   private final TCConnectionManagerImpl         parent;
   private final TCConnectionEventCaller         eventCaller                 = new TCConnectionEventCaller(logger);
   private final AtomicLong                      lastDataWriteTime           = new AtomicLong(System.currentTimeMillis());
@@ -116,6 +124,14 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
                                                                                 .getProperties()
                                                                                 .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
                                                                                             true);
+  private static final boolean                  GATHERING_WRITES            = TCPropertiesImpl
+                                                                                .getProperties()
+                                                                                .getBoolean(TCPropertiesConsts.TC_MESSAGE_GATHERING_WRITES_ENABLED,
+                                                                                            false);
+  private static final int                      GATHERING_WRITE_MAX_BUFFERS = TCPropertiesImpl
+                                                                                .getProperties()
+                                                                                .getInt(TCPropertiesConsts.TC_MESSAGE_GATHERING_WRITES_MAXBUFFERS,
+                                                                                        256);
   private final Object                          readerLock                  = new Object();
   private final Object                          writerLock                  = new Object();
 
@@ -125,6 +141,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
   // having this variable at instance level helps reducing memory pressure at VM;
   private final ArrayList<TCNetworkMessage>     messagesToBatch             = new ArrayList<TCNetworkMessage>();
+  private final ArrayList<TCNetworkMessage>     messagesToWrite             = new ArrayList<TCNetworkMessage>();
+  // only touched by the writer, under writerLock
+  private ByteBuffer[]                          gatherBuffers;
+  private boolean                               gatheringWrites             = GATHERING_WRITES;
+  private int                                   gatheringWriteMaxBuffers    = GATHERING_WRITE_MAX_BUFFERS;
 
   // for creating unconnected client connections
   TCConnectionImpl(TCConnectionEventListener listener, TCProtocolAdaptor adaptor,
@@ -168,6 +189,34 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     this.commWorker = worker;
   }
 
+  CoreNIOServices getCommWorker() {
+    return this.commWorker;
+  }
+
+  SocketChannel getChannel() {
+    return this.channel;
+  }
+
+  /**
+   * A connection can move to another comm thread while it is open and not detached to a pipe socket, whose write
+   * interest is tracked separately.
+   */
+  boolean isMigratable() {
+    return !isClosed() && this.pipeSocket == null;
+  }
+
+  boolean hasWriteInterest() {
+    return this.writeInterest.get();
+  }
+
+  long getTotalBytes() {
+    return this.totalRead.get() + this.totalWrite.get();
+  }
+
+  long getMessagesSent() {
+    return this.enqueueCount.sum();
+  }
+
   private void closeImpl(Runnable callback) {
     Assert.assertTrue(this.closed.isSet());
     this.transportEstablished.set(false);
@@ -178,9 +227,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
         callback.run();
       }
     } finally {
-      synchronized (this.writeMessages) {
-        this.writeMessages.clear();
-      }
+      this.writeMessages.clear();
+      this.writeQueueDepth.reset();
     }
     try {
       if (pipeSocket != null) {
@@ -330,6 +378,18 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doWriteInternal() throws IOException {
+    if (useGatheringWrites()) {
+      int written;
+      try {
+        written = doGatheringWrite();
+      } catch (IOException ioe) {
+        closeWriteOnException(ioe);
+        return 0;
+      }
+      this.totalWrite.addAndGet(written);
+      return written;
+    }
+
     int written;
     try {
       written = doWriteToBuffer();
@@ -379,13 +439,109 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     }
   }
 
+  // for testing, before anything is written
+  void setGatheringWrites(boolean enabled, int maxBuffers) {
+    synchronized (writerLock) {
+      Assert.assertNull(this.gatherBuffers);
+      this.gatheringWrites = enabled;
+      this.gatheringWriteMaxBuffers = maxBuffers;
+    }
+  }
+
+  private boolean useGatheringWrites() {
+    return gatheringWrites && pipeSocket == null && bufferManager.supportsGatheringWrites();
+  }
+
+  /**
+   * Hands the buffers of as many queued messages as fit into one gathering write straight to the socket, instead of
+   * copying them into the buffer manager's send buffer one at a time.
+   */
+  private int doGatheringWrite() throws IOException {
+    final boolean debug = logger.isDebugEnabled();
+    if (this.writeContexts.isEmpty()) {
+      buildWriteContextsFromMessages();
+    }
+    if (this.gatherBuffers == null) {
+      this.gatherBuffers = new ByteBuffer[this.gatheringWriteMaxBuffers];
+    }
+
+    int totalBytesWritten = 0;
+    while (!this.writeContexts.isEmpty()) {
+      int count = 0;
+      long requested = 0;
+      for (int i = 0, n = this.writeContexts.size(); i < n && count < this.gatherBuffers.length; i++) {
+        WriteContext context = this.writeContexts.get(i);
+        int first = count;
+        count = context.gather(this.gatherBuffers, count);
+        for (int j = first; j < count; j++) {
+          requested += this.gatherBuffers[j].remaining();
+        }
+      }
+
+      final long written;
+      try {
+        written = this.bufferManager.gatheringWrite(this.gatherBuffers, 0, count);
+      } finally {
+        Arrays.fill(this.gatherBuffers, 0, count, null);
+      }
+      totalBytesWritten += written;
+
+      while (!this.writeContexts.isEmpty()) {
+        WriteContext context = this.writeContexts.get(0);
+        context.skipWritten();
+        if (!context.done()) {
+          break;
+        }
+        context.writeComplete();
+        this.writeContexts.remove(0);
+      }
+
+      if (written < requested) {
+        // the socket buffer is full, wait for the next write interest
+        break;
+      }
+    }
+
+    if (debug) {
+      logger.debug("Wrote " + totalBytesWritten + " bytes on connection " + this.channel.toString());
+    }
+
+    if (this.closed.isSet()) { return totalBytesWritten; }
+
+    if (this.writeContexts.isEmpty()) {
+      releaseWriteInterestIfIdle();
+    }
+    return totalBytesWritten;
+  }
+
+  private WriteContext newWriteContext(TCNetworkMessage message) {
+    // packing up only pays off when the data is copied into the send buffer anyway
+    return new WriteContext(message, MESSSAGE_PACKUP && !useGatheringWrites());
+  }
+
+  /**
+   * Give up write interest once everything queued has been written. A sender that queues a message after the flag is
+   * cleared takes the interest again itself, one that queued before is picked up by the re-check.
+   */
+  private void releaseWriteInterestIfIdle() {
+    if (!this.writeMessages.isEmpty()) { return; }
+    this.writeInterest.set(false);
+    if (this.writeMessages.isEmpty()) {
+      this.commWorker.removeWriteInterest(this, this.channel);
+    } else {
+      // raced with a sender; keep the interest whether or not the sender saw the flag clear
+      this.writeInterest.compareAndSet(false, true);
+    }
+  }
+
   private void buildWriteContextsFromMessages() {
-    TCNetworkMessage messagesToWrite[];
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return; }
-      messagesToWrite = this.writeMessages.toArray(new TCNetworkMessage[this.writeMessages.size()]);
-      this.writeMessages.clear();
+    if (this.closed.isSet()) { return; }
+    final ArrayList<TCNetworkMessage> messagesToWrite = this.messagesToWrite;
+    TCNetworkMessage queued;
+    while ((queued = this.writeMessages.poll()) != null) {
+      messagesToWrite.add(queued);
     }
+    this.writeQueueDepth.add(-messagesToWrite.size());
 
     int batchSize = 0;
     int batchMsgCount = 0;
@@ -396,20 +552,20 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       // we don't want to group already constructed Transport Handshake WireProtocolMessages
       if (msg instanceof WireProtocolMessage) {
         final TCNetworkMessage ms = finalizeWireProtocolMessage((WireProtocolMessage) msg, 1);
-        this.writeContexts.add(new WriteContext(ms));
+        this.writeContexts.add(newWriteContext(ms));
         continue;
       }
 
       // GenericNetwork messages are used for testing
       if (WireProtocolHeader.PROTOCOL_UNKNOWN == WireProtocolHeader.getProtocolForMessageClass(msg)) {
-        this.writeContexts.add(new WriteContext(msg));
+        this.writeContexts.add(newWriteContext(msg));
         continue;
       }
 
       if (MSG_GROUPING_ENABLED) {
         if (!canBatch(msg, batchSize, batchMsgCount)) {
           if (batchMsgCount > 0) {
-            this.writeContexts.add(new WriteContext(buildWireProtocolMessageGroup(this.messagesToBatch)));
+            this.writeContexts.add(newWriteContext(buildWireProtocolMessageGroup(this.messagesToBatch)));
             batchSize = 0;
             batchMsgCount = 0;
             this.messagesToBatch.clear();
@@ -421,17 +577,17 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
         batchMsgCount++;
         this.messagesToBatch.add(msg);
       } else {
-        this.writeContexts.add(new WriteContext(buildWireProtocolMessage(msg)));
+        this.writeContexts.add(newWriteContext(buildWireProtocolMessage(msg)));
       }
       msg = null;
     }
 
     if (MSG_GROUPING_ENABLED && batchMsgCount > 0) {
       final TCNetworkMessage ms = buildWireProtocolMessageGroup(this.messagesToBatch);
-      this.writeContexts.add(new WriteContext(ms));
+      this.writeContexts.add(newWriteContext(ms));
     }
 
-    messagesToWrite = null;
+    messagesToWrite.clear();
     this.messagesToBatch.clear();
   }
 
@@ -533,12 +689,10 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       }
     }
 
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return totalBytesWritten; }
+    if (this.closed.isSet()) { return totalBytesWritten; }
 
-      if (this.writeMessages.isEmpty() && this.writeContexts.isEmpty()) {
-        this.commWorker.removeWriteInterest(this, this.channel);
-      }
+    if (this.writeContexts.isEmpty()) {
+      releaseWriteInterestIfIdle();
     }
     return totalBytesWritten;
   }
@@ -559,18 +713,15 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     }
 
     // TODO: outgoing queue should not be unbounded size!
-    final boolean newData;
-    final int msgCount;
-
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return; }
-      this.writeMessages.addLast(message);
-      msgCount = this.writeMessages.size();
-      newData = (msgCount == 1);
-    }
+    if (this.closed.isSet()) { return; }
+
+    final long start = System.nanoTime();
+    this.writeMessages.offer(message);
+    this.writeQueueDepth.increment();
+    final boolean newData = !this.writeInterest.get() && this.writeInterest.compareAndSet(false, true);
 
     if (debug) {
-      logger.debug("Connection (" + this.channel.toString() + ") has " + msgCount + " messages queued");
+      logger.debug("Connection (" + this.channel.toString() + ") has " + this.writeQueueDepth.sum() + " messages queued");
     }
 
     if (newData) {
@@ -591,6 +742,19 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       // to write.
       this.commWorker.requestWriteInterest(this, this.channel);
     }
+    this.enqueueNanos.add(System.nanoTime() - start);
+    this.enqueueCount.increment();
+  }
+
+  @Override
+  public long getWriteQueueDepth() {
+    return this.writeQueueDepth.sum();
+  }
+
+  @Override
+  public long getAverageEnqueueNanos() {
+    final long count = this.enqueueCount.sum();
+    return count == 0 ? 0 : this.enqueueNanos.sum() / count;
   }
 
   @Override
@@ -688,6 +852,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
     buf.append(" [").append(this.totalRead.get()).append(" read, ").append(this.totalWrite.get()).append(" write]");
 
+    buf.append(" queued=").append(getWriteQueueDepth());
+
     return buf.toString();
   }
 
@@ -943,12 +1109,14 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     private final TCNetworkMessage message;
     private int                    index = 0;
     private final TCByteBuffer[]   entireMessageData;
+    private final boolean          packedUp;
 
-    WriteContext(TCNetworkMessage message) {
+    WriteContext(TCNetworkMessage message, boolean packUp) {
       // either WireProtocolMessage or WireProtocolMessageGroup
       this.message = message;
+      this.packedUp = packUp;
 
-      if (MESSSAGE_PACKUP) {
+      if (packUp) {
         this.entireMessageData = getPackedUpMessage(message.getEntireMessageData());
       } else {
         this.entireMessageData = getClonedMessage(message.getEntireMessageData());
@@ -964,8 +1132,29 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       return true;
     }
 
+    /**
+     * Add the unwritten buffers of this message to <code>dest</code> starting at <code>offset</code>, as far as there is
+     * room.
+     *
+     * @return the offset after the last buffer added
+     */
+    int gather(ByteBuffer[] dest, int offset) {
+      for (int i = index, n = entireMessageData.length; i < n && offset < dest.length; i++) {
+        if (entireMessageData[i].hasRemaining()) {
+          dest[offset++] = entireMessageData[i].getNioBuffer();
+        }
+      }
+      return offset;
+    }
+
+    void skipWritten() {
+      while (index < entireMessageData.length && !entireMessageData[index].hasRemaining()) {
+        incrementIndexAndCleanOld();
+      }
+    }
+
     void incrementIndexAndCleanOld() {
-      if (MESSSAGE_PACKUP) {
+      if (packedUp) {
         // we created these new messages. lets recycle it.
         entireMessageData[index].recycle();
       }
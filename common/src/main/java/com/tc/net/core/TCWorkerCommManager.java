@@ -22,13 +22,22 @@ import com.tc.logging.LossyTCLogger;
 import com.tc.logging.LossyTCLogger.LossyTCLoggerType;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.SetOnceFlag;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The whole intention of this class is to manage the workerThreads for each Listener
@@ -49,9 +58,43 @@ public class TCWorkerCommManager {
 
   private final AtomicInteger     nextWorkerCommId   = new AtomicInteger();
 
+  private final String            name;
+  private final long              rebalanceIntervalMillis;
+  private final int               rebalanceThresholdPercent;
+  private final long              rebalanceMinBytesPerSecond;
+  private final AtomicLong        connectionsRebalanced = new AtomicLong();
+  private Timer                   rebalanceTimer;
+
+  // only touched by the rebalance timer: bytes and messages seen on each connection at the last sample
+  private Map<TCConnectionImpl, long[]> lastSamples    = new HashMap<TCConnectionImpl, long[]>();
+  private long                    lastSampleNanos;
+
   TCWorkerCommManager(String name, int workerCommCount, SocketParams socketParams) {
+    this(name, workerCommCount, socketParams, TCPropertiesImpl.getProperties());
+  }
+
+  private TCWorkerCommManager(String name, int workerCommCount, SocketParams socketParams, TCProperties props) {
+    this(name, workerCommCount, socketParams,
+         props.getBoolean(TCPropertiesConsts.NET_CORE_REBALANCE_ENABLED, false)
+             ? props.getLong(TCPropertiesConsts.NET_CORE_REBALANCE_INTERVAL_MILLIS, 5000) : 0,
+         props.getInt(TCPropertiesConsts.NET_CORE_REBALANCE_THRESHOLD_PERCENT, 50),
+         props.getLong(TCPropertiesConsts.NET_CORE_REBALANCE_MIN_BYTES_PER_SECOND, 1024 * 1024));
+  }
+
+  /**
+   * @param rebalanceIntervalMillis how often connections are sampled and possibly moved, or 0 to never move them
+   * @param rebalanceThresholdPercent how much busier than the least busy worker comm the busiest has to be before a
+   *        connection is moved
+   * @param rebalanceMinBytesPerSecond traffic below which the busiest worker comm is left alone
+   */
+  TCWorkerCommManager(String name, int workerCommCount, SocketParams socketParams, long rebalanceIntervalMillis,
+                      int rebalanceThresholdPercent, long rebalanceMinBytesPerSecond) {
     if (workerCommCount <= 0) { throw new IllegalArgumentException("invalid worker count: " + workerCommCount); }
     logger.info("Creating " + workerCommCount + " worker comm threads for " + name);
+    this.name = name;
+    this.rebalanceIntervalMillis = rebalanceIntervalMillis;
+    this.rebalanceThresholdPercent = rebalanceThresholdPercent;
+    this.rebalanceMinBytesPerSecond = rebalanceMinBytesPerSecond;
     this.totalWorkerComm = workerCommCount;
     this.workerCommThreads = new CoreNIOServices[workerCommCount];
     for (int i = 0; i < this.workerCommThreads.length; i++) {
@@ -100,6 +143,19 @@ public class TCWorkerCommManager {
       for (CoreNIOServices workerCommThread : this.workerCommThreads) {
         workerCommThread.start();
       }
+      if (this.rebalanceIntervalMillis > 0 && this.totalWorkerComm > 1) {
+        this.rebalanceTimer = new Timer(this.name + " worker comm rebalancer", true);
+        this.rebalanceTimer.schedule(new TimerTask() {
+          @Override
+          public void run() {
+            try {
+              rebalance();
+            } catch (Throwable t) {
+              logger.error("Error rebalancing worker comm threads", t);
+            }
+          }
+        }, this.rebalanceIntervalMillis, this.rebalanceIntervalMillis);
+      }
     } else {
       throw new IllegalStateException("already started");
     }
@@ -109,6 +165,9 @@ public class TCWorkerCommManager {
     if (!this.started.isSet()) { return; }
 
     if (this.stopped.attemptSet()) {
+      if (this.rebalanceTimer != null) {
+        this.rebalanceTimer.cancel();
+      }
       for (int i = 0; i < this.totalWorkerComm; i++) {
         this.workerCommThreads[i].requestStop();
       }
@@ -131,4 +190,117 @@ public class TCWorkerCommManager {
     return this.workerCommThreads[workerCommId].getTotalBytesWritten();
   }
 
+  long getConnectionsRebalanced() {
+    return this.connectionsRebalanced.get();
+  }
+
+  String[] getWorkerCommLoad() {
+    String[] load = new String[this.totalWorkerComm];
+    for (int i = 0; i < this.totalWorkerComm; i++) {
+      CoreNIOServices workerComm = this.workerCommThreads[i];
+      load[i] = workerComm.getName() + ": weight " + workerComm.getWeight() + ", "
+                + workerComm.getManagedConnections().size() + " connections, " + workerComm.getBytesPerSecond()
+                + " bytes/s, " + workerComm.getMessagesPerSecond() + " messages sent/s";
+    }
+    return load;
+  }
+
+  /**
+   * Sample the traffic of every connection since the last call, and move at most one connection from the busiest
+   * worker comm to the least busy one if they are too far apart.
+   */
+  synchronized void rebalance() {
+    final long now = System.nanoTime();
+    final long elapsedNanos = now - this.lastSampleNanos;
+    final boolean firstSample = this.lastSampleNanos == 0;
+    this.lastSampleNanos = now;
+
+    final Map<TCConnectionImpl, long[]> samples = new HashMap<TCConnectionImpl, long[]>();
+    final List<List<TCConnectionImpl>> connections = new ArrayList<List<TCConnectionImpl>>(this.totalWorkerComm);
+    final long[][] rates = new long[this.totalWorkerComm][];
+    for (int i = 0; i < this.totalWorkerComm; i++) {
+      List<TCConnectionImpl> managed = this.workerCommThreads[i].getManagedConnections();
+      connections.add(managed);
+      rates[i] = new long[managed.size()];
+      long bytesRate = 0;
+      long messagesRate = 0;
+      for (int j = 0; j < managed.size(); j++) {
+        TCConnectionImpl connection = managed.get(j);
+        long[] sample = new long[] { connection.getTotalBytes(), connection.getMessagesSent() };
+        samples.put(connection, sample);
+        long[] last = this.lastSamples.get(connection);
+        if (!firstSample && last != null) {
+          rates[i][j] = perSecond(sample[0] - last[0], elapsedNanos);
+          messagesRate += perSecond(sample[1] - last[1], elapsedNanos);
+        }
+        bytesRate += rates[i][j];
+      }
+      this.workerCommThreads[i].setLoad(bytesRate, messagesRate);
+    }
+    this.lastSamples = samples;
+
+    final int[] migration = pickMigration(rates, this.rebalanceThresholdPercent, this.rebalanceMinBytesPerSecond);
+    if (migration == null) { return; }
+
+    final CoreNIOServices from = this.workerCommThreads[migration[0]];
+    final CoreNIOServices to = this.workerCommThreads[migration[1]];
+    final TCConnectionImpl connection = connections.get(migration[0]).get(migration[2]);
+    if (from.migrateConnection(connection, to)) {
+      this.connectionsRebalanced.incrementAndGet();
+      logger.info("Moved " + connection + " (" + rates[migration[0]][migration[2]] + " bytes/s) from " + from
+                  + " (" + from.getBytesPerSecond() + " bytes/s) to " + to + " (" + to.getBytesPerSecond()
+                  + " bytes/s)");
+    }
+  }
+
+  private static long perSecond(long delta, long elapsedNanos) {
+    return elapsedNanos <= 0 ? 0 : (delta * TimeUnit.SECONDS.toNanos(1)) / elapsedNanos;
+  }
+
+  /**
+   * Choose which connection to move given the recent byte rate of every connection on every worker comm.
+   *
+   * @return {busiest worker comm, least busy worker comm, connection index on the busiest} or null if nothing should
+   *         move. The connection chosen is the one that leaves the two worker comms closest to even, and one that
+   *         would make the least busy worker comm the busier of the two is never moved.
+   */
+  static int[] pickMigration(long[][] rates, int thresholdPercent, long minBytesPerSecond) {
+    int busiest = -1;
+    int idlest = -1;
+    long maxLoad = Long.MIN_VALUE;
+    long minLoad = Long.MAX_VALUE;
+    for (int i = 0; i < rates.length; i++) {
+      long load = 0;
+      for (long rate : rates[i]) {
+        load += rate;
+      }
+      if (load > maxLoad) {
+        maxLoad = load;
+        busiest = i;
+      }
+      if (load < minLoad) {
+        minLoad = load;
+        idlest = i;
+      }
+    }
+
+    if (busiest == idlest || maxLoad < minBytesPerSecond) { return null; }
+    if (maxLoad * 100 <= minLoad * (100 + thresholdPercent)) { return null; }
+
+    final long gap = maxLoad - minLoad;
+    int candidate = -1;
+    long bestDistance = Long.MAX_VALUE;
+    for (int j = 0; j < rates[busiest].length; j++) {
+      long rate = rates[busiest][j];
+      if (rate > 0 && rate < gap) {
+        long distance = Math.abs(gap - 2 * rate);
+        if (distance < bestDistance) {
+          bestDistance = distance;
+          candidate = j;
+        }
+      }
+    }
+    return candidate < 0 ? null : new int[] { busiest, idlest, candidate };
+  }
+
 }
@@ -189,6 +189,24 @@ public interface TCPropertiesConsts {
   public static final String L2_FRS_COMPACTOR_SIZEBASED_AMOUNT                              = L2_FRS_PREFIX
                                                                                               + ".compactor.sizeBased.amount";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section : L2 Platform Persistence Properties
+   * Description : This section contains configuration for the flat file platform persistence on the L2
+   * appendlog.enabled                  : Use an append-only log of changes, instead of rewriting the whole file on
+   *                                      every change
+   * appendlog.segment.size             : Size, in bytes, at which a log segment is rolled
+   * appendlog.compaction.threshold     : Bytes appended to the log before it is compacted into a new snapshot
+   * groupcommit.batch.size             : Maximum number of messages whose persistence is coalesced into one commit
+   * groupcommit.window.millis          : Maximum time a message waits for its commit while more messages keep arriving
+   * </code>
+   ********************************************************************************************************************/
+  public static final String L2_PLATFORM_PERSISTENCE_APPENDLOG_ENABLED                      = "l2.platform.persistence.appendlog.enabled";
+  public static final String L2_PLATFORM_PERSISTENCE_APPENDLOG_SEGMENT_SIZE                 = "l2.platform.persistence.appendlog.segment.size";
+  public static final String L2_PLATFORM_PERSISTENCE_APPENDLOG_COMPACTION_THRESHOLD         = "l2.platform.persistence.appendlog.compaction.threshold";
+  public static final String L2_PLATFORM_PERSISTENCE_GROUPCOMMIT_BATCH_SIZE                 = "l2.platform.persistence.groupcommit.batch.size";
+  public static final String L2_PLATFORM_PERSISTENCE_GROUPCOMMIT_WINDOW_MILLIS              = "l2.platform.persistence.groupcommit.window.millis";
+
   /*********************************************************************************************************************
    * <code>
    * Section : L2 Seda stage properties
@@ -202,6 +220,8 @@ public interface TCPropertiesConsts {
    *                                      seda stage
    * stage.sink.capacity                : Capacity of seda stage queue, Integer.MAX_VALUE if not set
    *                                      (experimental, do not change)
+   * seda.<stage>.workstealing          : Contexts without a scheduling key go to a queue shared by all the stage's
+   *                                      threads, which take from it whenever their own queue is empty
    * </code>
    ********************************************************************************************************************/
   public static final String L2_SEDA_APPLY_STAGE_THREADS                                    = "l2.seda.apply.stage.threads";
@@ -213,6 +233,7 @@ public interface TCPropertiesConsts {
   public static final String L2_LOCAL_CACHE_TXN_COMPLETE_THREADS                            = "l2.seda.local.cache.transaction.complete.threads";
   public static final String L2_LOCAL_CACHE_TXN_COMPLETE_SINK_CAPACITY                      = "l2.seda.local.cache.transaction.complete.sink.capacity";
   public static final String L2_LOCAL_CACHE_INVALIDATIONS_SINK_CAPACITY                     = "l2.seda.local.cache.invalidations.sink.capacity";
+  public static final String SEDA_REQUEST_PROCESSOR_STAGE_WORKSTEALING                      = "seda.request_processor_stage.workstealing";
 
   /*********************************************************************************************************************
    * <code>
@@ -251,6 +272,18 @@ public interface TCPropertiesConsts {
    * tcgroupcomm.reconnect.enabled        - Enable L2-L2 reconnect
    * send.timeout.millis                  - Number of milliseconds to retry sending a message
    * dirtydb.backup.enabled               - Creates BackUp of DirtyDB only If it is set to true.
+   * replication.batch.maxMessages        - Max replicated messages packed into one message to a passive, 1 disables batching
+   * replication.batch.maxBytes           - Estimated size in bytes at which a replication batch is sent
+   * replication.batch.linger.millis      - Max time a replicated message waits in a batch while more keep arriving
+   * replication.ack.maxMessages          - Max replicated messages a passive receives before acknowledging them all at once
+   * replication.ack.delay.millis         - Max time a passive delays an acknowledgement while more messages keep arriving
+   * replication.nonblocking              - Requests waiting for their replication to be acknowledged are set aside, instead
+   *                                        of holding a request processor thread
+   * replication.speculative              - Invokes are executed while their replication is in flight and only the response
+   *                                        to the client waits for the passives
+   * passive.sync.window                  - Max sync payload messages in flight to a syncing passive
+   *                                        and max concurrency keys synced to it at once
+   * passive.sync.parallelism             - Max entities synced to a passive at the same time
    * </code>
    ********************************************************************************************************************/
   public static final String L2_NHA_TCGROUPCOMM_HANDSHAKE_TIMEOUT                           = "l2.nha.tcgroupcomm.handshake.timeout";
@@ -267,6 +300,15 @@ public interface TCPropertiesConsts {
   public static final String L2_NHA_DIRTYDB_ROLLING                                         = "l2.nha.dirtydb.rolling";
   public static final String L2_NHA_AUTORESTART                                             = "l2.nha.autoRestart";
   public static final String L2_NHA_DIRTYDB_BACKUP_ENABLED                                  = "l2.nha.dirtydb.backup.enabled";
+  public static final String L2_NHA_REPLICATION_BATCH_MAX_MESSAGES                          = "l2.nha.replication.batch.maxMessages";
+  public static final String L2_NHA_REPLICATION_BATCH_MAX_BYTES                             = "l2.nha.replication.batch.maxBytes";
+  public static final String L2_NHA_REPLICATION_BATCH_LINGER_MILLIS                         = "l2.nha.replication.batch.linger.millis";
+  public static final String L2_NHA_REPLICATION_ACK_MAX_MESSAGES                            = "l2.nha.replication.ack.maxMessages";
+  public static final String L2_NHA_REPLICATION_ACK_DELAY_MILLIS                            = "l2.nha.replication.ack.delay.millis";
+  public static final String L2_NHA_REPLICATION_NONBLOCKING                                 = "l2.nha.replication.nonblocking";
+  public static final String L2_NHA_REPLICATION_SPECULATIVE                                 = "l2.nha.replication.speculative";
+  public static final String L2_NHA_PASSIVE_SYNC_WINDOW                                     = "l2.nha.passive.sync.window";
+  public static final String L2_NHA_PASSIVE_SYNC_PARALLELISM                                = "l2.nha.passive.sync.parallelism";
 
   /*********************************************************************************************************************
    * <code>
@@ -347,6 +389,22 @@ public interface TCPropertiesConsts {
   public static final String L1_TRANSACTIONMANAGER_STRINGS_COMPRESS_MINSIZE                 = "l1.transactionmanager.strings.compress.minSize";
   public static final String L1_TRANSACTIONMANAGER_TIMEOUTFORACK_ONEXIT                     = "l1.transactionmanager.timeoutForAckOnExit";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section : L1 Entity Manager Properties
+   * Description : This section contains the defaults for how the L1 sends entity requests to the L2
+   *    batch.maxMessages          - The max number of queued requests which are packed into a single
+   *                                 message to the L2.  1 disables batching
+   *    batch.maxBytes             - A batch is sent once the request payloads packed into it reach
+   *                                 this many bytes
+   *    batch.linger.millis        - How long the sender waits for more requests, once the queue runs
+   *                                 dry, before sending a partial batch.  0 sends immediately
+   * </code>
+   ********************************************************************************************************************/
+  public static final String L1_ENTITYMANAGER_BATCH_MAX_MESSAGES                            = "l1.entitymanager.batch.maxMessages";
+  public static final String L1_ENTITYMANAGER_BATCH_MAX_BYTES                               = "l1.entitymanager.batch.maxBytes";
+  public static final String L1_ENTITYMANAGER_BATCH_LINGER_MILLIS                           = "l1.entitymanager.batch.linger.millis";
+
   public static final String TC_TRANSPORT_HANDSHAKE_TIMEOUT                                 = "tc.transport.handshake.timeout";
   public static final String TC_CONFIG_SOURCEGET_TIMEOUT                                    = "tc.config.getFromSource.timeout";
   public static final String TC_CONFIG_TOTAL_TIMEOUT                                        = "tc.config.total.timeout";
@@ -459,6 +517,9 @@ public interface TCPropertiesConsts {
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * bytebuffer.leakdetection.enabled     : Log pooled tc byte buffers that are never recycled (debugging only)
+   * messages.gatheringwrites.enabled     : Write queued messages straight to the socket with gathering writes
+   * messages.gatheringwrites.maxbuffers  : Max number of buffers handed to a single gathering write
    * </code>
    ********************************************************************************************************************/
   public static final String TC_STAGE_MONITOR_ENABLED                                       = "tc.stage.monitor.enabled";
@@ -466,9 +527,12 @@ public interface TCPropertiesConsts {
   public static final String TC_BYTEBUFFER_POOLING_ENABLED                                  = "tc.bytebuffer.pooling.enabled";
   public static final String TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT                             = "tc.bytebuffer.common.pool.maxcount";
   public static final String TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT                        = "tc.bytebuffer.threadlocal.pool.maxcount";
+  public static final String TC_BYTEBUFFER_LEAK_DETECTION_ENABLED                           = "tc.bytebuffer.leakdetection.enabled";
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_GATHERING_WRITES_ENABLED                            = "tc.messages.gatheringwrites.enabled";
+  public static final String TC_MESSAGE_GATHERING_WRITES_MAXBUFFERS                         = "tc.messages.gatheringwrites.maxbuffers";
 
   /*********************************************************************************************************************
    * <code>
@@ -579,11 +643,19 @@ public interface TCPropertiesConsts {
    * Description       : This section contains the defaults for the client lock manager for the L1
    * striped.count     : striping count for l1 lock manager
    * timeout.interval  : time after which an unused lock will be a candidate for lock GC
+   * entity.stripes    : number of threads taking entity fetch and maintenance mode locks in parallel
+   * batch.enabled     : send lock, unlock, try lock and query requests to the server in batches
+   * batch.maxSize     : number of requests after which a batch is sent straight away
+   * batch.lingerMillis: time a request waits for others to join its batch
    * </code>
    ********************************************************************************************************************/
   public static final String L1_LOCKMANAGER_STRIPED_COUNT                                   = "l1.lockmanager.striped.count";
   public static final String L1_LOCKMANAGER_TIMEOUT_INTERVAL                                = "l1.lockmanager.timeout.interval";
   public static final String L1_LOCKMANAGER_PINNING_ENABLED                                 = "l1.lockmanager.pinning.enabled";
+  public static final String L1_LOCKMANAGER_ENTITY_STRIPES                                  = "l1.lockmanager.entity.stripes";
+  public static final String L1_LOCKMANAGER_BATCH_ENABLED                                   = "l1.lockmanager.batch.enabled";
+  public static final String L1_LOCKMANAGER_BATCH_MAXSIZE                                   = "l1.lockmanager.batch.maxSize";
+  public static final String L1_LOCKMANAGER_BATCH_LINGERMILLIS                              = "l1.lockmanager.batch.lingerMillis";
 
   /*********************************************************************************************************************
    * <code>
@@ -603,21 +675,35 @@ public interface TCPropertiesConsts {
    * enabled            : Enable/disable greedy locks grant from L2
    * leaseTimeInMillis  : Time for which greedy locks are given to L1 if more than one of them
    *                      are contending for them
+   * batch.enabled      : Send lock awards and refusals to each client in batches
+   * batch.maxSize      : Number of responses after which a batch is sent straight away, otherwise
+   *                      batches are sent as soon as no more responses are queued
    * </code>
    ********************************************************************************************************************/
   public static final String L2_LOCKMANAGER_GREEDY_LOCKS_ENABLED                            = "l2.lockmanager.greedy.locks.enabled";
   public static final String L2_LOCKMANAGER_GREEDY_LEASE_ENABLED                            = "l2.lockmanager.greedy.lease.enabled";
   public static final String L2_LOCKMANAGER_GREEDY_LEASE_LEASETIME_INMILLS                  = "l2.lockmanager.greedy.lease.leaseTimeInMillis";
+  public static final String L2_LOCKMANAGER_BATCH_ENABLED                                   = "l2.lockmanager.batch.enabled";
+  public static final String L2_LOCKMANAGER_BATCH_MAXSIZE                                   = "l2.lockmanager.batch.maxSize";
 
   /*********************************************************************************************************************
    * <code>
    * Section : TCP Settings
-   * tcpnodelay : Enable/disable tcp packet batching
-   * keepalive  : Enable/disable tcp probe for running/broken connections
+   * tcpnodelay                   : Enable/disable tcp packet batching
+   * keepalive                    : Enable/disable tcp probe for running/broken connections
+   * rebalance.enabled            : Enable/disable moving busy connections between worker comm threads
+   * rebalance.intervalMillis     : How often worker comm thread traffic is sampled for rebalancing
+   * rebalance.thresholdPercent   : How much busier than the least busy worker comm thread the busiest has to be
+   *                                before a connection is moved
+   * rebalance.minBytesPerSecond  : Traffic below which the busiest worker comm thread is left alone
    * </code>
    ********************************************************************************************************************/
   public static final String NET_CORE_KEEPALIVE                                             = "net.core.keepalive";
   public static final String NET_CORE_TCP_NO_DELAY                                          = "net.core.tcpnodelay";
+  public static final String NET_CORE_REBALANCE_ENABLED                                     = "net.core.rebalance.enabled";
+  public static final String NET_CORE_REBALANCE_INTERVAL_MILLIS                             = "net.core.rebalance.intervalMillis";
+  public static final String NET_CORE_REBALANCE_THRESHOLD_PERCENT                           = "net.core.rebalance.thresholdPercent";
+  public static final String NET_CORE_REBALANCE_MIN_BYTES_PER_SECOND                        = "net.core.rebalance.minBytesPerSecond";
 
   /*********************************************************************************************************************
    * <code>
@@ -32,6 +32,7 @@ public class NamedThreadFactory implements ThreadFactory {
 
     private static AtomicInteger threadNumber = new AtomicInteger(1);
     private final String namePrefix;
+    private final boolean daemon;
 
     /**
      * Constructor accepting the prefix of the threads that will be created by this {@link ThreadFactory}
@@ -40,7 +41,21 @@ public class NamedThreadFactory implements ThreadFactory {
      *            Prefix for names of threads
      */
     public NamedThreadFactory(String namePrefix) {
+        this(namePrefix, false);
+    }
+
+    /**
+     * Constructor accepting the prefix of the threads that will be created by this {@link ThreadFactory} and whether
+     * they are daemon threads
+     * 
+     * @param namePrefix
+     *            Prefix for names of threads
+     * @param daemon
+     *            true if the threads should not keep the VM alive
+     */
+    public NamedThreadFactory(String namePrefix, boolean daemon) {
         this.namePrefix = namePrefix;
+        this.daemon = daemon;
     }
 
     /**
@@ -48,7 +63,9 @@ public class NamedThreadFactory implements ThreadFactory {
      */
     @Override
     public Thread newThread(Runnable runnable) {
-        return new Thread(runnable, namePrefix + " thread-" + threadNumber.getAndIncrement());
+        Thread thread = new Thread(runnable, namePrefix + " thread-" + threadNumber.getAndIncrement());
+        thread.setDaemon(daemon);
+        return thread;
     }
 
 }
@@ -0,0 +1,313 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * A bounded, lock-free ring buffer intended for many producers and a single consumer, such as the queue behind one SEDA
+ * worker thread.
+ * <p>
+ * Each slot carries a sequence number which tells producers and consumers whether it is free or holds a published
+ * element, so claiming a slot is a single CAS on either end and neither side ever takes a lock.  Any thread may offer or
+ * do a non-blocking poll (so clearing the queue from another thread is safe) but only one thread may be blocked in
+ * {@link #take()} or {@link #poll(long, TimeUnit)} at a time.
+ * <p>
+ * How a blocked consumer waits is determined by the {@link WaitStrategy}.  The capacity is rounded up to a power of two.
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  public enum WaitStrategy {
+    /**
+     * Busy-spin:  the lowest latency but burns a CPU for as long as the consumer waits, so only appropriate when a core
+     * can be dedicated to the stage.
+     */
+    SPIN,
+    /**
+     * Yield the CPU between checks:  close to SPIN latency while letting other runnable threads make progress.
+     */
+    YIELD,
+    /**
+     * Park the consumer until a producer unparks it:  costs a wake-up per idle-to-busy transition but uses no CPU when idle.
+     */
+    PARK
+  }
+
+  // A producer waiting for space isn't signalled so, when parking, it re-checks at this interval.
+  private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final WaitStrategy waitStrategy;
+  private volatile Thread waitingConsumer;
+
+  public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = (capacity <= 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    if (this.capacity <= 0) {
+      throw new IllegalArgumentException("capacity too large: " + capacity);
+    }
+    this.mask = this.capacity - 1;
+    this.elements = new AtomicReferenceArray<E>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      this.sequences.set(i, i);
+    }
+    this.waitStrategy = waitStrategy;
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    if (null == e) {
+      throw new NullPointerException();
+    }
+    long position = this.tail.get();
+    while (true) {
+      int index = (int) position & this.mask;
+      long difference = this.sequences.get(index) - position;
+      if (0 == difference) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.elements.lazySet(index, e);
+          // A full volatile write so that the check of waitingConsumer, below, can't be reordered before the publish.
+          this.sequences.set(index, position + 1);
+          signalConsumer();
+          return true;
+        }
+        position = this.tail.get();
+      } else if (difference < 0) {
+        // The slot still holds an element from the previous lap:  we are full.
+        return false;
+      } else {
+        position = this.tail.get();
+      }
+    }
+  }
+
+  @Override
+  public E poll() {
+    long position = this.head.get();
+    while (true) {
+      int index = (int) position & this.mask;
+      long difference = this.sequences.get(index) - (position + 1);
+      if (0 == difference) {
+        if (this.head.compareAndSet(position, position + 1)) {
+          E e = this.elements.get(index);
+          this.elements.lazySet(index, null);
+          // Hand the slot back to producers for the next lap.
+          this.sequences.lazySet(index, position + this.capacity);
+          return e;
+        }
+        position = this.head.get();
+      } else if (difference < 0) {
+        // Nothing has been published in this slot, yet:  we are empty.
+        return null;
+      } else {
+        position = this.head.get();
+      }
+    }
+  }
+
+  @Override
+  public E peek() {
+    long position = this.head.get();
+    int index = (int) position & this.mask;
+    return (this.sequences.get(index) == position + 1) ? this.elements.get(index) : null;
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      awaitSpace();
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (deadline - System.nanoTime() <= 0) {
+        return false;
+      }
+      awaitSpace();
+    }
+    return true;
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e = poll();
+    while (null == e) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      awaitElement(Long.MAX_VALUE);
+      e = poll();
+    }
+    return e;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = poll();
+    if (null == e) {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (null == e) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        awaitElement(remaining);
+        e = poll();
+      }
+    }
+    return e;
+  }
+
+  @Override
+  public int size() {
+    // Read head first so that a concurrent poll can only make us over-estimate, which we then clamp.
+    long currentHead = this.head.get();
+    long size = this.tail.get() - currentHead;
+    return (int) Math.max(0, Math.min(size, this.capacity));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return null == peek();
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return this.capacity - size();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int drained = 0;
+    while (drained < maxElements) {
+      E e = poll();
+      if (null == e) {
+        break;
+      }
+      c.add(e);
+      drained += 1;
+    }
+    return drained;
+  }
+
+  /**
+   * Returns a weakly-consistent snapshot of the published elements.  Removal through the iterator is not supported.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    List<E> snapshot = new ArrayList<E>();
+    long end = this.tail.get();
+    for (long position = this.head.get(); position < end; position++) {
+      int index = (int) position & this.mask;
+      E e = this.elements.get(index);
+      if ((this.sequences.get(index) == position + 1) && (null != e)) {
+        snapshot.add(e);
+      }
+    }
+    return Collections.unmodifiableList(snapshot).iterator();
+  }
+
+  private void signalConsumer() {
+    if (WaitStrategy.PARK == this.waitStrategy) {
+      Thread waiting = this.waitingConsumer;
+      if (null != waiting) {
+        LockSupport.unpark(waiting);
+      }
+    }
+  }
+
+  private void awaitElement(long nanos) {
+    switch (this.waitStrategy) {
+      case SPIN:
+        break;
+      case YIELD:
+        Thread.yield();
+        break;
+      case PARK:
+        this.waitingConsumer = Thread.currentThread();
+        // Re-check after advertising ourselves, since a producer which published before it could see us won't unpark us.
+        if (isEmpty()) {
+          LockSupport.parkNanos(this, nanos);
+        }
+        this.waitingConsumer = null;
+        break;
+      default:
+        throw new AssertionError(this.waitStrategy);
+    }
+  }
+
+  private void awaitSpace() {
+    // A producer waiting on a full queue is being pushed back, anyway, so it never busy-spins:  that would only steal
+    // cycles from the consumer it is waiting on.
+    switch (this.waitStrategy) {
+      case SPIN:
+      case YIELD:
+        Thread.yield();
+        break;
+      case PARK:
+        LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        break;
+      default:
+        throw new AssertionError(this.waitStrategy);
+    }
+  }
+}
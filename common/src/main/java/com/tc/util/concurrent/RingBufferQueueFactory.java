@@ -0,0 +1,46 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * Creates {@link RingBufferQueue}s in place of linked queues.  Since a ring buffer is allocated up-front, requests for an
+ * unbounded queue are given {@link #UNBOUNDED_CAPACITY} slots, instead.
+ */
+public class RingBufferQueueFactory<E> extends QueueFactory<E> {
+  public static final int UNBOUNDED_CAPACITY = 1 << 16;
+
+  private final RingBufferQueue.WaitStrategy waitStrategy;
+
+  public RingBufferQueueFactory(RingBufferQueue.WaitStrategy waitStrategy) {
+    this.waitStrategy = waitStrategy;
+  }
+
+  @Override
+  public BlockingQueue<E> createInstance() {
+    return new RingBufferQueue<E>(UNBOUNDED_CAPACITY, this.waitStrategy);
+  }
+
+  @Override
+  public BlockingQueue<E> createInstance(int capacity) {
+    return new RingBufferQueue<E>((Integer.MAX_VALUE == capacity) ? UNBOUNDED_CAPACITY : capacity, this.waitStrategy);
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hashed timing wheel for large numbers of timeouts that are mostly cancelled before they expire, such as lock waits,
+ * try locks and greedy lock leases.
+ * <p>
+ * Scheduling and cancelling are O(1) and only queue the timeout for the wheel thread. Each tick, the wheel thread files
+ * new timeouts into the bucket for their deadline, unlinks cancelled ones and expires the whole bucket that is due.
+ * Timeouts further away than one turn of the wheel wait out the remaining turns in their bucket. Expiry is accurate to
+ * one tick.
+ * <p>
+ * Tasks run on the wheel thread unless an executor is given, so they should not block. The thread is a daemon and is
+ * started by the first schedule.
+ */
+public class TimingWheel {
+  private static final TCLogger    logger             = TCLogging.getLogger(TimingWheel.class);
+
+  private static final int         INIT               = 0;
+  private static final int         STARTED            = 1;
+  private static final int         STOPPED            = 2;
+
+  // keeps deadlines far away from overflowing System.nanoTime() arithmetic
+  private static final long        MAX_DELAY_NANOS    = Long.MAX_VALUE / 4;
+  // new timeouts filed per tick, so that a burst of schedules does not hold up expiry
+  private static final int         MAX_FILED_PER_TICK = 100000;
+
+  private final String             name;
+  private final long               tickNanos;
+  private final Bucket[]           buckets;
+  private final int                mask;
+  private final Executor           executor;
+  private final Queue<WheelTimeout> newTimeouts       = new ConcurrentLinkedQueue<WheelTimeout>();
+  private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+  private final AtomicInteger      state              = new AtomicInteger(INIT);
+  private final AtomicLong         scheduled          = new AtomicLong();
+  private final AtomicLong         fired              = new AtomicLong();
+  private final AtomicLong         cancelled          = new AtomicLong();
+  private final Thread             worker;
+
+  public TimingWheel(String name) {
+    this(name, 10, TimeUnit.MILLISECONDS, 512);
+  }
+
+  public TimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    this(name, tickDuration, unit, ticksPerWheel, null);
+  }
+
+  /**
+   * @param executor runs expired tasks, or null to run them on the wheel thread
+   */
+  public TimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, Executor executor) {
+    if (tickDuration <= 0) { throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration); }
+    if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) { throw new IllegalArgumentException(
+                                                                                              "ticksPerWheel out of range: "
+                                                                                                  + ticksPerWheel); }
+    int size = Integer.highestOneBit(ticksPerWheel);
+    if (size < ticksPerWheel) {
+      size <<= 1;
+    }
+    this.name = name;
+    this.tickNanos = unit.toNanos(tickDuration);
+    this.buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.executor = executor;
+    this.worker = new Thread(new Worker(), name);
+    this.worker.setDaemon(true);
+  }
+
+  /**
+   * Runs the task once the delay has passed, unless the returned timeout is cancelled first.
+   *
+   * @throws IllegalArgumentException if the delay is negative or the deadline does not fit in a long, as with
+   *         {@link java.util.Timer}
+   * @throws IllegalStateException if the wheel has been stopped
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (delay < 0) { throw new IllegalArgumentException("Negative delay."); }
+    if (unit.toMillis(delay) > Long.MAX_VALUE - System.currentTimeMillis()) { throw new IllegalArgumentException(
+                                                                                                               "Illegal execution time."); }
+    start();
+    long deadline = System.nanoTime() + Math.min(unit.toNanos(delay), MAX_DELAY_NANOS);
+    WheelTimeout timeout = new WheelTimeout(task, deadline);
+    scheduled.incrementAndGet();
+    newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Stops the wheel thread. Timeouts that have not expired yet never will.
+   */
+  public void stop() {
+    if (state.getAndSet(STOPPED) == STARTED && Thread.currentThread() != worker) {
+      worker.interrupt();
+    }
+  }
+
+  public long getScheduledCount() {
+    return scheduled.get();
+  }
+
+  public long getFiredCount() {
+    return fired.get();
+  }
+
+  public long getCancelledCount() {
+    return cancelled.get();
+  }
+
+  public long getPendingCount() {
+    return scheduled.get() - fired.get() - cancelled.get();
+  }
+
+  @Override
+  public String toString() {
+    return "TimingWheel[" + name + ", scheduled=" + getScheduledCount() + ", fired=" + getFiredCount() + ", cancelled="
+           + getCancelledCount() + "]";
+  }
+
+  private void start() {
+    switch (state.get()) {
+      case INIT:
+        if (state.compareAndSet(INIT, STARTED)) {
+          worker.start();
+        }
+        break;
+      case STARTED:
+        break;
+      case STOPPED:
+        throw new IllegalStateException(name + " has been stopped");
+      default:
+        throw new AssertionError(state.get());
+    }
+  }
+
+  private void expire(WheelTimeout timeout) {
+    if (!timeout.compareAndSetState(WheelTimeout.PENDING, WheelTimeout.EXPIRED)) { return; }
+    fired.incrementAndGet();
+    if (executor != null) {
+      try {
+        executor.execute(timeout.task);
+      } catch (RuntimeException e) {
+        logger.error("Error handing over expired timeout " + timeout.task + " in " + name, e);
+      }
+      return;
+    }
+    try {
+      timeout.task.run();
+    } catch (Throwable t) {
+      logger.error("Error running expired timeout " + timeout.task + " in " + name, t);
+    }
+  }
+
+  public interface Timeout {
+    /**
+     * @return true if the task will now never run, false if it already ran or was cancelled before
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isExpired();
+  }
+
+  private final class WheelTimeout implements Timeout {
+    private static final int PENDING   = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED   = 2;
+
+    private final Runnable      task;
+    private final long          deadline;
+    private final AtomicInteger timeoutState = new AtomicInteger(PENDING);
+
+    // only touched by the wheel thread
+    private long                remainingRounds;
+    private Bucket              bucket;
+    private WheelTimeout        next;
+    private WheelTimeout        prev;
+
+    WheelTimeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    boolean compareAndSetState(int expected, int update) {
+      return timeoutState.compareAndSet(expected, update);
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!compareAndSetState(PENDING, CANCELLED)) { return false; }
+      cancelled.incrementAndGet();
+      cancelledTimeouts.add(this);
+      return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return timeoutState.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return timeoutState.get() == EXPIRED;
+    }
+
+    @Override
+    public String toString() {
+      return "Timeout[" + task + ", state=" + timeoutState.get() + "]";
+    }
+  }
+
+  /**
+   * Doubly linked so that a cancelled timeout is unlinked without walking its bucket. Only used by the wheel thread.
+   */
+  private final class Bucket {
+    private WheelTimeout head;
+    private WheelTimeout tail;
+
+    void add(WheelTimeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    WheelTimeout remove(WheelTimeout timeout) {
+      WheelTimeout next = timeout.next;
+      if (timeout.prev != null) {
+        timeout.prev.next = next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+      return next;
+    }
+
+    void expireTimeouts() {
+      WheelTimeout timeout = head;
+      while (timeout != null) {
+        if (timeout.remainingRounds <= 0) {
+          WheelTimeout next = remove(timeout);
+          expire(timeout);
+          timeout = next;
+        } else {
+          timeout.remainingRounds--;
+          timeout = timeout.next;
+        }
+      }
+    }
+  }
+
+  private final class Worker implements Runnable {
+    private long startTime;
+    private long tick;
+
+    @Override
+    public void run() {
+      startTime = System.nanoTime();
+      while (state.get() == STARTED) {
+        if (!waitForNextTick()) {
+          break;
+        }
+        removeCancelled();
+        fileNewTimeouts();
+        buckets[(int) (tick & mask)].expireTimeouts();
+        tick++;
+      }
+    }
+
+    /**
+     * Bucket tick is due once (tick + 1) * tickNanos has passed, so everything filed into it has reached its deadline.
+     */
+    private boolean waitForNextTick() {
+      long deadline = startTime + tickNanos * (tick + 1);
+      while (true) {
+        long sleepNanos = deadline - System.nanoTime();
+        if (sleepNanos <= 0) { return true; }
+        try {
+          Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepNanos + 999999));
+        } catch (InterruptedException e) {
+          if (state.get() == STOPPED) { return false; }
+        }
+      }
+    }
+
+    private void removeCancelled() {
+      for (WheelTimeout timeout; (timeout = cancelledTimeouts.poll()) != null;) {
+        if (timeout.bucket != null) {
+          timeout.bucket.remove(timeout);
+        }
+      }
+    }
+
+    private void fileNewTimeouts() {
+      for (int i = 0; i < MAX_FILED_PER_TICK; i++) {
+        WheelTimeout timeout = newTimeouts.poll();
+        if (timeout == null) {
+          break;
+        }
+        if (timeout.isCancelled()) {
+          continue;
+        }
+        long dueTick = Math.max(0, timeout.deadline - startTime) / tickNanos;
+        timeout.remainingRounds = (dueTick - tick) / buckets.length;
+        buckets[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.EventHandler;
+import com.tc.async.api.Source;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.logging.TCLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferQueue;
+import com.tc.util.concurrent.RingBufferQueueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Pushes contexts from a growing number of producer threads through a single worker's stage queue, once on the
+ * default linked queues and once on ring buffer queues with each wait strategy.  The worker takes them off the queue
+ * and runs them through a handler, just as a stage thread would.
+ * Not part of the unit tests, run it by hand.
+ */
+public class StageQueueBenchmark {
+
+  private static final int CONTEXTS   = 1000000;
+  private static final int QUEUE_SIZE = 1024;
+  private static final int ROUNDS     = 3;
+
+  public static void main(String[] args) throws Exception {
+    for (int producers : new int[] { 1, 4, 8 }) {
+      StringBuilder line = new StringBuilder("Contexts from " + producers + " producers: linked ");
+      line.append(best(new QueueFactory<ContextWrapper<Object>>(), producers)).append("/s");
+      for (RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy.values()) {
+        line.append(", ring buffer (").append(strategy.name().toLowerCase()).append(") ");
+        line.append(best(new RingBufferQueueFactory<ContextWrapper<Object>>(strategy), producers)).append("/s");
+      }
+      System.out.println(line);
+    }
+  }
+
+  private static long best(QueueFactory<ContextWrapper<Object>> factory, int producers) throws Exception {
+    // warm up before timing
+    run(factory, producers);
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      best = Math.min(best, run(factory, producers));
+    }
+    return perSecond(CONTEXTS, best);
+  }
+
+  private static long run(QueueFactory<ContextWrapper<Object>> factory, int producers) throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    final StageQueueImpl<Object> queue = new StageQueueImpl<Object>(1, factory, logger, "benchmark", QUEUE_SIZE);
+    final int perProducer = CONTEXTS / producers;
+    final Object context = new Object();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < producers; i++) {
+      Thread producer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int j = 0; j < perProducer; j++) {
+            queue.addSingleThreaded(context);
+          }
+        }
+      };
+      producer.start();
+      threads.add(producer);
+    }
+
+    final int[] handled = new int[1];
+    EventHandler<Object> handler = new AbstractEventHandler<Object>() {
+      @Override
+      public void handleEvent(Object event) {
+        handled[0] += 1;
+      }
+    };
+    Source<ContextWrapper<Object>> source = queue.getSource(0);
+    int total = perProducer * producers;
+    long begin = System.nanoTime();
+    start.countDown();
+    while (handled[0] < total) {
+      ContextWrapper<Object> next = source.poll(100);
+      if (null != next) {
+        next.runWithHandler(handler);
+      }
+    }
+    long nanos = System.nanoTime() - begin;
+    for (Thread producer : threads) {
+      producer.join();
+    }
+    return nanos;
+  }
+
+  private static long perSecond(int count, long nanos) {
+    return (count * 1000000000L) / Math.max(1, nanos);
+  }
+}
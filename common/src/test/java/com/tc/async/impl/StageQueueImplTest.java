@@ -18,10 +18,15 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.EventHandler;
 import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.SpecializedEventContext;
 import com.tc.logging.DefaultLoggerProvider;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferQueue;
+import com.tc.util.concurrent.RingBufferQueueFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
@@ -133,4 +138,148 @@ public class StageQueueImplTest {
 //  tests specific implementation.  test expectation
     assertEquals(cxts.get(rand % cxts.size()).poll(), context1);
   }
+
+  /**
+   * Ring buffer queues hold the contexts without wrappers:  make sure they still come out of the source, in order, ready
+   * to run, along with the specialized contexts which do need a wrapper.
+   */
+  @Test
+  public void testRingBufferQueues() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    StageQueueImpl<Object> instance = new StageQueueImpl<Object>(1, new RingBufferQueueFactory<ContextWrapper<Object>>(RingBufferQueue.WaitStrategy.PARK), logger, "ring", 16);
+    final List<Object> handled = new ArrayList<Object>();
+    EventHandler<Object> handler = new AbstractEventHandler<Object>() {
+      @Override
+      public void handleEvent(Object context) {
+        handled.add(context);
+      }
+    };
+    Object first = new Object();
+    Object second = new Object();
+    SpecializedEventContext specialized = mock(SpecializedEventContext.class);
+    instance.addSingleThreaded(first);
+    instance.addSpecialized(specialized);
+    instance.addSingleThreaded(second);
+    assertEquals(3, instance.size());
+    
+    for (int i = 0; i < 3; i++) {
+      instance.getSource(0).poll(0).runWithHandler(handler);
+    }
+    assertNull(instance.getSource(0).poll(0));
+    verify(specialized).execute();
+    assertEquals(2, handled.size());
+    assertSame(first, handled.get(0));
+    assertSame(second, handled.get(1));
+  }
+
+  /**
+   * In work stealing mode, unkeyed contexts can be taken by any worker while keyed ones still only go to their own.
+   */
+  @Test
+  public void testWorkStealing() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    StageQueueImpl<Object> instance = new StageQueueImpl<Object>(4, new QueueFactory<ContextWrapper<Object>>(), logger, "stealing", 16, true);
+    final List<Object> handled = new ArrayList<Object>();
+    EventHandler<Object> handler = new AbstractEventHandler<Object>() {
+      @Override
+      public void handleEvent(Object context) {
+        handled.add(context);
+      }
+    };
+    MultiThreadedEventContext unkeyed = mock(MultiThreadedEventContext.class);
+    when(unkeyed.getSchedulingKey()).thenReturn(null);
+    for (int x = 0; x < 8; x++) {
+      instance.addMultiThreaded(unkeyed);
+    }
+    assertEquals(8, instance.size());
+//  any one worker can take all of them
+    for (int x = 0; x < 8; x++) {
+      instance.getSource(3).poll(0).runWithHandler(handler);
+    }
+    assertEquals(8, handled.size());
+    assertEquals(0, instance.size());
+
+    MultiThreadedEventContext keyed = mock(MultiThreadedEventContext.class);
+    when(keyed.getSchedulingKey()).thenReturn(1);
+    instance.addMultiThreaded(keyed);
+    assertNull(instance.getSource(0).poll(0));
+    assertNull(instance.getSource(3).poll(0));
+    instance.getSource(1).poll(0).runWithHandler(handler);
+    assertSame(keyed, handled.get(8));
+  }
+
+  /**
+   * A flush must still wait for every unkeyed context added before it, even though those are on the shared queue.
+   */
+  @Test
+  public void testWorkStealingFlush() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    StageQueueImpl<Object> instance = new StageQueueImpl<Object>(4, new QueueFactory<ContextWrapper<Object>>(), logger, "stealing", 16, true);
+    final List<Object> handled = new ArrayList<Object>();
+    EventHandler<Object> handler = new AbstractEventHandler<Object>() {
+      @Override
+      public void handleEvent(Object context) {
+        handled.add(context);
+      }
+    };
+    MultiThreadedEventContext unkeyed = mock(MultiThreadedEventContext.class);
+    when(unkeyed.getSchedulingKey()).thenReturn(null);
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(2);
+    when(flush.flush()).thenReturn(true);
+    instance.addMultiThreaded(unkeyed);
+    instance.addMultiThreaded(flush);
+//  walk the workers round-robin, as if each were running, until the flush has been through every one of them
+    int polls = 0;
+    while (!handled.contains(flush)) {
+      ContextWrapper<Object> next = instance.getSource(polls % 4).poll(0);
+      if (null != next) {
+        next.runWithHandler(handler);
+      }
+      polls += 1;
+      assertTrue(polls < 100);
+    }
+    assertEquals(2, handled.size());
+    assertSame(unkeyed, handled.get(0));
+    assertSame(flush, handled.get(1));
+    assertEquals(0, instance.size());
+  }
+
+  /**
+   * A worker blocked on its own, empty, queue must be woken to take an unkeyed context rather than waiting out its poll.
+   */
+  @Test
+  public void testWorkStealingWakesIdleWorker() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    final StageQueueImpl<Object> instance = new StageQueueImpl<Object>(2, new QueueFactory<ContextWrapper<Object>>(), logger, "stealing", 16, true);
+    final List<ContextWrapper<Object>> taken = new ArrayList<ContextWrapper<Object>>();
+    Thread worker = new Thread() {
+      @Override
+      public void run() {
+        try {
+          ContextWrapper<Object> next = instance.getSource(1).poll(30000);
+          synchronized (taken) {
+            taken.add(next);
+          }
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    worker.start();
+    while (worker.getState() != Thread.State.TIMED_WAITING) {
+      Thread.yield();
+    }
+    MultiThreadedEventContext unkeyed = mock(MultiThreadedEventContext.class);
+    when(unkeyed.getSchedulingKey()).thenReturn(null);
+    long start = System.currentTimeMillis();
+    instance.addMultiThreaded(unkeyed);
+    worker.join(20000);
+    assertTrue(System.currentTimeMillis() - start < 20000);
+    synchronized (taken) {
+      assertEquals(1, taken.size());
+      assertNotNull(taken.get(0));
+    }
+    assertEquals(0, instance.size());
+  }
 }
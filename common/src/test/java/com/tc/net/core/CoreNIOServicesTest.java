@@ -0,0 +1,225 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.core;
+
+import com.tc.test.TCTestCase;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write interest requested from other threads is queued for the writer comm thread, which only wakes its selector
+ * once per select.  These make sure that no request is left sitting in the queue while the selector sleeps.
+ */
+public class CoreNIOServicesTest extends TCTestCase {
+  private static final int THREADS                = 8;
+  private static final int CONNECTIONS_PER_THREAD = 8;
+
+  private CoreNIOServices           services;
+  private ServerSocketChannel       server;
+  private final List<SocketChannel> channels = new ArrayList<SocketChannel>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    services = new CoreNIOServices("test", null, new SocketParams());
+    services.start();
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    services.requestStop();
+    for (SocketChannel channel : channels) {
+      channel.close();
+    }
+    server.close();
+    super.tearDown();
+  }
+
+  public void testWriteInterestFromManyThreads() throws Exception {
+    final OneByteWriter[][] writers = new OneByteWriter[THREADS][CONNECTIONS_PER_THREAD];
+    for (OneByteWriter[] perThread : writers) {
+      for (int i = 0; i < perThread.length; i++) {
+        perThread[i] = new OneByteWriter(connect());
+      }
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> requesters = new ArrayList<Thread>();
+    for (final OneByteWriter[] perThread : writers) {
+      Thread requester = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (OneByteWriter writer : perThread) {
+            services.requestWriteInterest(writer, writer.channel);
+          }
+        }
+      };
+      requester.start();
+      requesters.add(requester);
+    }
+    start.countDown();
+    for (Thread requester : requesters) {
+      requester.join();
+    }
+
+    for (OneByteWriter[] perThread : writers) {
+      for (OneByteWriter writer : perThread) {
+        assertTrue(writer.written.await(10, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  /**
+   * Requests made while the writer is busy, after its select has returned, must wake the next select:  one made from a
+   * selector task and one from another thread while a connection is being written.
+   */
+  public void testRequestsDuringSelectCycleAreNotLost() throws Exception {
+    final OneByteWriter fromTask = new OneByteWriter(connect());
+    final OneByteWriter fromWrite = new OneByteWriter(connect());
+    OneByteWriter first = new OneByteWriter(connect()) {
+      @Override
+      public int doWrite() throws IOException {
+        requestFromAnotherThread(fromWrite);
+        return super.doWrite();
+      }
+    };
+
+    services.getWriterComm().addSelectorTask(new Runnable() {
+      @Override
+      public void run() {
+        requestFromAnotherThread(fromTask);
+      }
+    });
+    assertTrue(fromTask.written.await(10, TimeUnit.SECONDS));
+
+    services.requestWriteInterest(first, first.channel);
+    assertTrue(first.written.await(10, TimeUnit.SECONDS));
+    assertTrue(fromWrite.written.await(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * adopt() flushes a stale key with selectNow(), which also swallows any selector wakeup made in the same cycle.  A
+   * request arriving after that must still wake the writer.
+   */
+  public void testRequestAfterAdoptIsNotMissed() throws Exception {
+    final CoreNIOServices.CommThread writerComm = services.getWriterComm();
+    final OneByteWriter adopted = new OneByteWriter(connect());
+    services.requestWriteInterest(adopted, adopted.channel);
+    assertTrue(adopted.written.await(10, TimeUnit.SECONDS));
+
+    final CountDownLatch adoptedAgain = new CountDownLatch(1);
+    writerComm.addSelectorTask(new Runnable() {
+      @Override
+      public void run() {
+        // leave a cancelled key behind, as a connection migrating out and back in does
+        writerComm.unregister(adopted.channel);
+        // a wakeup from another thread, made before adopt() gets to its selectNow()
+        Thread other = new Thread() {
+          @Override
+          public void run() {
+            writerComm.addSelectorTask(new Runnable() {
+              @Override
+              public void run() {
+                //
+              }
+            });
+          }
+        };
+        other.start();
+        joinUninterruptibly(other);
+        writerComm.adopt(null, adopted.channel, SelectionKey.OP_READ);
+        adoptedAgain.countDown();
+      }
+    });
+    assertTrue(adoptedAgain.await(10, TimeUnit.SECONDS));
+    // give the writer a moment to get back into select, else this request would be picked up in the same cycle
+    Thread.sleep(200);
+
+    OneByteWriter later = new OneByteWriter(connect());
+    services.requestWriteInterest(later, later.channel);
+    assertTrue(later.written.await(10, TimeUnit.SECONDS));
+  }
+
+  private void requestFromAnotherThread(final OneByteWriter writer) {
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        services.requestWriteInterest(writer, writer.channel);
+      }
+    };
+    other.start();
+    joinUninterruptibly(other);
+  }
+
+  private static void joinUninterruptibly(Thread thread) {
+    while (true) {
+      try {
+        thread.join();
+        return;
+      } catch (InterruptedException e) {
+        // keep waiting
+      }
+    }
+  }
+
+  private SocketChannel connect() throws IOException {
+    SocketChannel client = SocketChannel.open(server.getLocalAddress());
+    client.configureBlocking(false);
+    channels.add(client);
+    channels.add(server.accept());
+    return client;
+  }
+
+  /**
+   * Writes a single byte and then drops its write interest, so that an idle writer selector really does block.
+   */
+  private class OneByteWriter implements TCChannelWriter {
+    final SocketChannel  channel;
+    final CountDownLatch written = new CountDownLatch(1);
+
+    OneByteWriter(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int doWrite() throws IOException {
+      int n = channel.write(ByteBuffer.wrap(new byte[] { 1 }));
+      services.removeWriteInterest(null, channel);
+      written.countDown();
+      return n;
+    }
+  }
+}
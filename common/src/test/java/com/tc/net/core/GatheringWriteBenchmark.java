@@ -0,0 +1,197 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.core;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pushes the same set of multi-buffer messages over a loopback socket, once the way the comms writer did it before
+ * gathering writes (pack up into 4K direct buffers, copy through the send buffer) and once with gathering writes.
+ * Not part of the unit tests, run it by hand.
+ */
+public class GatheringWriteBenchmark {
+
+  private static final int MESSAGES           = 2000;
+  private static final int BUFFERS_PER_MESSAGE = 8;
+  private static final int ROUNDS             = 5;
+  private static final int MAX_BUFFERS        = 256;
+
+  private ServerSocketChannel server;
+  private SocketChannel       client;
+  private SocketChannel       accepted;
+  private ExecutorService     drainer;
+
+  public static void main(String[] args) throws Exception {
+    GatheringWriteBenchmark benchmark = new GatheringWriteBenchmark();
+    benchmark.open();
+    try {
+      benchmark.run();
+    } finally {
+      benchmark.close();
+    }
+  }
+
+  private void open() throws Exception {
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    client = SocketChannel.open(server.getLocalAddress());
+    accepted = server.accept();
+    drainer = Executors.newSingleThreadExecutor();
+  }
+
+  private void close() throws Exception {
+    drainer.shutdownNow();
+    client.close();
+    accepted.close();
+    server.close();
+  }
+
+  private void run() throws Exception {
+    TCByteBuffer[][] messages = createMessages(new Random(0));
+    long bytesPerRound = 0;
+    for (TCByteBuffer[] message : messages) {
+      for (TCByteBuffer buf : message) {
+        bytesPerRound += buf.limit();
+      }
+    }
+
+    // warm up both paths before timing them
+    drained(bytesPerRound, () -> copyingWrite(messages));
+    drained(bytesPerRound, () -> gatheringWrite(messages));
+
+    long copying = 0;
+    long gathering = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      drained(bytesPerRound, () -> copyingWrite(messages));
+      copying += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      drained(bytesPerRound, () -> gatheringWrite(messages));
+      gathering += System.nanoTime() - start;
+    }
+
+    System.out.println("Wrote " + (bytesPerRound * ROUNDS) + " bytes per mode over loopback: pack up and copy "
+                       + throughput(bytesPerRound * ROUNDS, copying) + " MB/s, gathering "
+                       + throughput(bytesPerRound * ROUNDS, gathering) + " MB/s");
+  }
+
+  private interface Writer {
+    void write() throws IOException;
+  }
+
+  private void drained(long expected, Writer writer) throws Exception {
+    Future<Long> read = drainer.submit(() -> {
+      ByteBuffer sink = ByteBuffer.allocateDirect(64 * 1024);
+      long total = 0;
+      while (total < expected) {
+        sink.clear();
+        int n = accepted.read(sink);
+        if (n < 0) {
+          break;
+        }
+        total += n;
+      }
+      return total;
+    });
+    writer.write();
+    long total = read.get();
+    if (total != expected) { throw new IllegalStateException("read " + total + " of " + expected + " bytes"); }
+  }
+
+  private void copyingWrite(TCByteBuffer[][] messages) throws IOException {
+    ClearTextBufferManager manager = new ClearTextBufferManager(client);
+    for (TCByteBuffer[] message : messages) {
+      TCByteBuffer[] packed = TCConnectionImpl.WriteContext.getPackedUpMessage(rewound(message));
+      for (TCByteBuffer buf : packed) {
+        ByteBuffer nio = buf.getNioBuffer();
+        while (nio.hasRemaining()) {
+          manager.forwardToWriteBuffer(nio);
+          manager.sendFromBuffer();
+        }
+        buf.recycle();
+      }
+    }
+    while (manager.sendFromBuffer() > 0) {
+      // flush
+    }
+  }
+
+  private void gatheringWrite(TCByteBuffer[][] messages) throws IOException {
+    ClearTextBufferManager manager = new ClearTextBufferManager(client);
+    ByteBuffer[] gather = new ByteBuffer[MAX_BUFFERS];
+    int count = 0;
+    for (TCByteBuffer[] message : messages) {
+      for (TCByteBuffer buf : rewound(message)) {
+        gather[count++] = buf.getNioBuffer();
+        if (count == gather.length) {
+          writeFully(manager, gather, count);
+          count = 0;
+        }
+      }
+    }
+    writeFully(manager, gather, count);
+  }
+
+  private static void writeFully(ClearTextBufferManager manager, ByteBuffer[] gather, int count) throws IOException {
+    int offset = 0;
+    while (offset < count) {
+      manager.gatheringWrite(gather, offset, count - offset);
+      while (offset < count && !gather[offset].hasRemaining()) {
+        offset++;
+      }
+    }
+  }
+
+  private static TCByteBuffer[] rewound(TCByteBuffer[] message) {
+    TCByteBuffer[] rv = new TCByteBuffer[message.length];
+    for (int i = 0; i < message.length; i++) {
+      rv[i] = message[i].duplicate().rewind();
+    }
+    return rv;
+  }
+
+  private static TCByteBuffer[][] createMessages(Random random) {
+    TCByteBuffer[][] messages = new TCByteBuffer[MESSAGES][BUFFERS_PER_MESSAGE];
+    for (TCByteBuffer[] message : messages) {
+      for (int i = 0; i < message.length; i++) {
+        byte[] data = new byte[32 + random.nextInt(2048)];
+        random.nextBytes(data);
+        message[i] = TCByteBufferFactory.wrap(data);
+      }
+    }
+    return messages;
+  }
+
+  private static long throughput(long bytes, long nanos) {
+    return (bytes * 1000L) / Math.max(1, nanos);
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.core;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.core.security.TCSecurityManager;
+import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.TCProtocolAdaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the gathering write path of {@link TCConnectionImpl} against a buffer manager which takes only as much as it
+ * is told to on each write.
+ */
+public class GatheringWriteTest extends TestCase {
+
+  private TCConnectionManagerImpl parent;
+  private SocketChannel           channel;
+  private ThrottledBufferManager  bufferManager;
+  private RecordingCommWorker     commWorker;
+  private TCConnectionImpl        connection;
+  private final List<String>      sent = new ArrayList<String>();
+
+  @Override
+  protected void setUp() throws Exception {
+    parent = new TCConnectionManagerImpl();
+    channel = SocketChannel.open();
+    bufferManager = new ThrottledBufferManager();
+    TCSecurityManager securityManager = mock(TCSecurityManager.class);
+    when(securityManager.getBufferManagerFactory()).thenReturn((ch, client) -> bufferManager);
+    commWorker = new RecordingCommWorker();
+    connection = new TCConnectionImpl(null, mock(TCProtocolAdaptor.class), channel, parent, commWorker,
+                                      new SocketParams(), securityManager);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    commWorker.requestStop();
+    channel.close();
+    parent.shutdown();
+  }
+
+  public void testPartialWrites() throws Exception {
+    connection.setGatheringWrites(true, 256);
+    byte[] first = message("first", 3, 150);
+    byte[] second = message("second", 2, 150);
+
+    // the socket takes 100 bytes at a time, so each message is only sent once its last piece is written
+    bufferManager.budget = 100;
+    int total = first.length + second.length;
+    int written = 0;
+    for (int i = 0; written < total; i++) {
+      assertTrue("no progress after " + written + " bytes", i < 10);
+      int n = connection.doWrite();
+      assertTrue(n <= 100);
+      written += n;
+      assertEquals(expectedSent(written, first.length, total), sent);
+      assertEquals(written == total, commWorker.writeInterestRemoved > 0);
+    }
+    assertEquals(total, written);
+    assertTrue(Arrays.equals(concat(first, second), bufferManager.written.toByteArray()));
+  }
+
+  public void testFullSocketKeepsWriteInterest() throws Exception {
+    connection.setGatheringWrites(true, 256);
+    byte[] only = message("only", 4, 64);
+
+    bufferManager.budget = 0;
+    assertEquals(0, connection.doWrite());
+    assertTrue(sent.isEmpty());
+    assertEquals(0, commWorker.writeInterestRemoved);
+
+    bufferManager.budget = Integer.MAX_VALUE;
+    assertEquals(only.length, connection.doWrite());
+    assertEquals(Arrays.asList("only"), sent);
+    assertEquals(1, commWorker.writeInterestRemoved);
+    assertTrue(Arrays.equals(only, bufferManager.written.toByteArray()));
+  }
+
+  public void testGatherExceedingMaxBuffers() throws Exception {
+    connection.setGatheringWrites(true, 4);
+    byte[] large = message("large", 10, 32);
+    byte[] small = message("small", 3, 32);
+
+    bufferManager.budget = Integer.MAX_VALUE;
+    assertEquals(large.length + small.length, connection.doWrite());
+    // one write call can't take every buffer, so the writer keeps going with the rest
+    assertTrue(bufferManager.calls > 1);
+    assertTrue(bufferManager.mostBuffersPerCall <= 4);
+    assertEquals(Arrays.asList("large", "small"), sent);
+    assertTrue(Arrays.equals(concat(large, small), bufferManager.written.toByteArray()));
+  }
+
+  private List<String> expectedSent(int written, int firstLength, int total) {
+    List<String> expected = new ArrayList<String>();
+    if (written >= firstLength) {
+      expected.add("first");
+    }
+    if (written >= total) {
+      expected.add("second");
+    }
+    return expected;
+  }
+
+  /**
+   * Queues a message of the given number of buffers on the connection.
+   *
+   * @return the bytes the message should put on the wire
+   */
+  private byte[] message(String name, int buffers, int bufferSize) {
+    TCByteBuffer[] data = new TCByteBuffer[buffers];
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < buffers; i++) {
+      byte[] piece = new byte[bufferSize];
+      Arrays.fill(piece, (byte) (name.hashCode() + i));
+      bytes.write(piece, 0, piece.length);
+      data[i] = TCByteBufferFactory.wrap(piece);
+    }
+    TCNetworkMessage message = mock(TCNetworkMessage.class);
+    when(message.getEntireMessageData()).thenReturn(data);
+    doAnswer(invocation -> sent.add(name)).when(message).wasSent();
+    connection.putMessage(message);
+    return bytes.toByteArray();
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] both = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, both, first.length, second.length);
+    return both;
+  }
+
+  private static class ThrottledBufferManager implements BufferManager {
+    private final ByteArrayOutputStream written            = new ByteArrayOutputStream();
+    private int                         budget;
+    private int                         calls;
+    private int                         mostBuffersPerCall;
+
+    @Override
+    public boolean supportsGatheringWrites() {
+      return true;
+    }
+
+    @Override
+    public long gatheringWrite(ByteBuffer[] srcs, int offset, int length) {
+      calls++;
+      mostBuffersPerCall = Math.max(mostBuffersPerCall, length);
+      long total = 0;
+      for (int i = offset; i < offset + length && total < budget; i++) {
+        int n = (int) Math.min(srcs[i].remaining(), budget - total);
+        byte[] piece = new byte[n];
+        srcs[i].get(piece);
+        written.write(piece, 0, n);
+        total += n;
+      }
+      return total;
+    }
+
+    @Override
+    public int forwardFromReadBuffer(ByteBuffer dest) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int forwardToWriteBuffer(ByteBuffer src) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int sendFromBuffer() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int recvToBuffer() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      //
+    }
+
+    @Override
+    public int forwardFromReadBuffer(GatheringByteChannel gbc) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int forwardToWriteBuffer(ScatteringByteChannel sbc) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class RecordingCommWorker extends CoreNIOServices {
+    private int writeInterestRemoved;
+
+    RecordingCommWorker() {
+      super("GatheringWriteTest", null, new SocketParams());
+    }
+
+    @Override
+    void requestWriteInterest(TCChannelWriter writer, GatheringByteChannel ch) {
+      // the test does the writing itself
+    }
+
+    @Override
+    void removeWriteInterest(TCConnectionImpl conn, SelectableChannel ch) {
+      writeInterestRemoved++;
+    }
+  }
+}
@@ -158,6 +158,65 @@ public class TCWorkerCommManagerTest extends TCTestCase {
     listener.stop(5000);
   }
 
+  public void testMigrateConnection() throws Exception {
+    // comms manager with 2 worker comms
+    CommunicationsManager commsMgr = new CommunicationsManagerImpl("Server-TestCommsMgr", new NullMessageMonitor(),
+                                                                   getNetworkStackHarnessFactory(false),
+                                                                   new NullConnectionPolicy(), 2);
+    NetworkListener listener = commsMgr.createListener(new NullSessionManager(), new TCSocketAddress(0), true,
+                                                       new DefaultConnectionIdFactory());
+    listener.start(Collections.<ConnectionID>emptySet());
+    int port = listener.getBindPort();
+
+    ClientMessageChannel client1 = createClientMsgCh(port, false);
+    ClientMessageChannel client2 = createClientMsgCh(port, false);
+    client1.open();
+    client2.open();
+    waitForConnected(client1, client2);
+
+    waitForWeight(commsMgr, 0, 1);
+    waitForWeight(commsMgr, 1, 1);
+
+    TCCommImpl comm = (TCCommImpl) commsMgr.getConnectionManager().getTcComm();
+    CoreNIOServices worker0 = comm.getWorkerComm(0);
+    CoreNIOServices worker1 = comm.getWorkerComm(1);
+    TCConnectionImpl moving = worker0.getManagedConnections().get(0);
+
+    Assert.assertTrue(worker0.migrateConnection(moving, worker1));
+    Assert.assertEquals(0, comm.getWeightForWorkerComm(0));
+    Assert.assertEquals(2, comm.getWeightForWorkerComm(1));
+    Assert.assertSame(worker1, moving.getCommWorker());
+    // already gone from worker0
+    Assert.assertFalse(worker0.migrateConnection(moving, worker1));
+
+    // the closes are only seen if worker1 now reads the moved connection
+    client1.close();
+    client2.close();
+    waitForWeight(commsMgr, 1, 0);
+    Assert.assertEquals(0, comm.getWeightForWorkerComm(0));
+
+    listener.stop(5000);
+  }
+
+  public void testPickMigration() {
+    // even enough, or too little traffic to bother
+    Assert.assertNull(TCWorkerCommManager.pickMigration(new long[][] { { 100, 100 }, { 150 } }, 50, 10));
+    Assert.assertNull(TCWorkerCommManager.pickMigration(new long[][] { { 100, 100 }, {} }, 50, 1000));
+    // a single hot connection would only swap which worker comm is busy
+    Assert.assertNull(TCWorkerCommManager.pickMigration(new long[][] { { 1000 }, { 10 } }, 50, 10));
+
+    // moving the 500 leaves the busiest and idlest at 500 each, better than moving the 100 or the 400
+    int[] migration = TCWorkerCommManager.pickMigration(new long[][] { { 100, 400, 500 }, {}, { 50 } }, 50, 10);
+    Assert.assertEquals(0, migration[0]);
+    Assert.assertEquals(1, migration[1]);
+    Assert.assertEquals(2, migration[2]);
+
+    migration = TCWorkerCommManager.pickMigration(new long[][] { { 20 }, { 100, 400, 0 } }, 50, 10);
+    Assert.assertEquals(1, migration[0]);
+    Assert.assertEquals(0, migration[1]);
+    Assert.assertEquals(0, migration[2]);
+  }
+
   public void testWorkerCommDistributionAfterClose() throws Exception {
     // comms manager with 3 worker comms
     CommunicationsManager commsMgr = new CommunicationsManagerImpl("Server-TestCommsMgr", new NullMessageMonitor(),
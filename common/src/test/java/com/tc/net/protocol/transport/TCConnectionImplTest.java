@@ -162,6 +162,48 @@ public class TCConnectionImplTest extends TestCase {
     System.out.println("XXX SuccesS. Took " + (endTime - startTime) / 1000 + " seconds");
   }
 
+  public void testConcurrentSenders() throws Exception {
+    final TCConnection clientConn = connMgr.createConnection(new WireProtocolAdaptorImpl(new ClientWPMGSink()));
+    clientConn.connect(new TCSocketAddress(server.getBindPort()), 3000);
+
+    final int senderCount = 8;
+    final int messagesPerSender = 200;
+    final CyclicBarrier startBarrier = new CyclicBarrier(senderCount);
+    Thread[] senders = new Thread[senderCount];
+    for (int i = 0; i < senderCount; i++) {
+      senders[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startBarrier.await();
+          } catch (Exception e) {
+            throw new AssertionError(e);
+          }
+          for (int j = 0; j < messagesPerSender; j++) {
+            TCNetworkMessage message = getMessages(r.nextInt(15 + 1));
+            sentMessagesTotalLength.addAndGet(message.getTotalLength());
+            clientConn.putMessage(message);
+          }
+        }
+      }, "Sender-" + i);
+      senders[i].start();
+    }
+    for (Thread sender : senders) {
+      sender.join();
+    }
+
+    long deadline = System.currentTimeMillis() + 60000;
+    synchronized (rcvdMessages2TotalLength) {
+      while (rcvdMessages2TotalLength.get() != sentMessagesTotalLength.get()
+             && System.currentTimeMillis() < deadline) {
+        rcvdMessages2TotalLength.wait(1000);
+      }
+    }
+    assertEquals(sentMessagesTotalLength.get(), rcvdMessages2TotalLength.get());
+    assertEquals(0, clientConn.getWriteQueueDepth());
+    assertTrue(clientConn.getAverageEnqueueNanos() > 0);
+  }
+
   SequenceGenerator seq = new SequenceGenerator(1);
 
   private TCNetworkMessage getMessages(int bufCunt) {
@@ -0,0 +1,147 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+
+public class RingBufferQueueTest extends TestCase {
+
+  public void testCapacityRoundsUpToPowerOfTwo() {
+    assertEquals(2, new RingBufferQueue<Object>(1, RingBufferQueue.WaitStrategy.PARK).getCapacity());
+    assertEquals(4, new RingBufferQueue<Object>(3, RingBufferQueue.WaitStrategy.PARK).getCapacity());
+    assertEquals(16, new RingBufferQueue<Object>(16, RingBufferQueue.WaitStrategy.PARK).getCapacity());
+  }
+
+  public void testFifoAndBounds() throws Exception {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(4, RingBufferQueue.WaitStrategy.PARK);
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+    // Go around the ring a few times to make sure that slots are handed back correctly.
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(queue.offer(i));
+      }
+      assertFalse(queue.offer(4));
+      assertEquals(4, queue.size());
+      assertEquals(0, queue.remainingCapacity());
+      assertFalse(queue.offer(4, 10, TimeUnit.MILLISECONDS));
+      assertEquals(Integer.valueOf(0), queue.peek());
+      for (int i = 0; i < 4; i++) {
+        assertEquals(Integer.valueOf(i), queue.poll());
+      }
+      assertTrue(queue.isEmpty());
+    }
+  }
+
+  public void testPollTimesOut() throws Exception {
+    for (RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy.values()) {
+      RingBufferQueue<Object> queue = new RingBufferQueue<Object>(4, strategy);
+      long start = System.nanoTime();
+      assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+  }
+
+  public void testDrainTo() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(8, RingBufferQueue.WaitStrategy.YIELD);
+    for (int i = 0; i < 5; i++) {
+      queue.offer(i);
+    }
+    List<Integer> drained = new ArrayList<Integer>();
+    assertEquals(3, queue.drainTo(drained, 3));
+    assertEquals(2, queue.drainTo(drained));
+    assertEquals(5, drained.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Integer.valueOf(i), drained.get(i));
+    }
+  }
+
+  public void testParkedConsumerIsWoken() throws Exception {
+    final RingBufferQueue<Object> queue = new RingBufferQueue<Object>(4, RingBufferQueue.WaitStrategy.PARK);
+    final Object element = new Object();
+    final Object[] taken = new Object[1];
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          taken[0] = queue.take();
+        } catch (InterruptedException e) {
+          // Not expected.
+        }
+      }
+    };
+    consumer.start();
+    while (consumer.getState() != Thread.State.TIMED_WAITING && consumer.getState() != Thread.State.WAITING) {
+      ThreadUtil.reallySleep(10);
+    }
+    queue.put(element);
+    consumer.join();
+    assertSame(element, taken[0]);
+  }
+
+  public void testManyProducersOneConsumer() throws Exception {
+    for (RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy.values()) {
+      runProducers(new RingBufferQueue<long[]>(16, strategy));
+    }
+  }
+
+  private void runProducers(final RingBufferQueue<long[]> queue) throws Exception {
+    final int producerCount = 4;
+    final int perProducer = 5000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<Thread>();
+    for (int p = 0; p < producerCount; p++) {
+      final int producer = p;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < perProducer; i++) {
+              queue.put(new long[] { producer, i });
+            }
+          } catch (InterruptedException e) {
+            // Not expected.
+          }
+        }
+      };
+      thread.start();
+      producers.add(thread);
+    }
+    start.countDown();
+    // Each producer's elements must come out in the order it added them.
+    long[] next = new long[producerCount];
+    for (int i = 0; i < producerCount * perProducer; i++) {
+      long[] element = queue.poll(10, TimeUnit.SECONDS);
+      assertNotNull(element);
+      assertEquals(next[(int) element[0]], element[1]);
+      next[(int) element[0]] += 1;
+    }
+    for (Thread thread : producers) {
+      thread.join();
+    }
+    assertTrue(queue.isEmpty());
+  }
+}
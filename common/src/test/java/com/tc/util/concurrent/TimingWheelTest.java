@@ -0,0 +1,196 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import com.tc.util.concurrent.TimingWheel.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TimingWheelTest extends TestCase {
+
+  private TimingWheel wheel;
+
+  @Override
+  protected void setUp() throws Exception {
+    wheel = new TimingWheel("test wheel", 10, TimeUnit.MILLISECONDS, 8);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    wheel.stop();
+  }
+
+  public void testFiresAfterDelay() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    Timeout timeout = wheel.schedule(new CountDown(latch), 100, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+    assertTrue(timeout.isExpired());
+    assertFalse(timeout.cancel());
+    assertEquals(1, wheel.getFiredCount());
+    assertEquals(0, wheel.getPendingCount());
+  }
+
+  public void testDelayLongerThanOneTurn() throws Exception {
+    // 8 buckets of 10ms make an 80ms turn, so this timeout has to wait out several rounds
+    final CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    wheel.schedule(new CountDown(latch), 250, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+  }
+
+  public void testCancelledNeverFires() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    List<Timeout> timeouts = new ArrayList<Timeout>();
+    for (int i = 0; i < 1000; i++) {
+      timeouts.add(wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          runs.incrementAndGet();
+        }
+      }, 50 + (i % 100), TimeUnit.MILLISECONDS));
+    }
+    for (Timeout timeout : timeouts) {
+      assertTrue(timeout.cancel());
+      assertTrue(timeout.isCancelled());
+      assertFalse(timeout.cancel());
+    }
+    final CountDownLatch latch = new CountDownLatch(1);
+    wheel.schedule(new CountDown(latch), 200, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, runs.get());
+    assertEquals(1000, wheel.getCancelledCount());
+    assertEquals(1001, wheel.getScheduledCount());
+    assertEquals(1, wheel.getFiredCount());
+  }
+
+  public void testFiresInDeadlineOrder() throws Exception {
+    final List<Integer> order = new ArrayList<Integer>();
+    final CountDownLatch latch = new CountDownLatch(3);
+    for (final int delay : new int[] { 300, 0, 150 }) {
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (order) {
+            order.add(delay);
+          }
+          latch.countDown();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    synchronized (order) {
+      assertEquals(0, order.get(0).intValue());
+      assertEquals(150, order.get(1).intValue());
+      assertEquals(300, order.get(2).intValue());
+    }
+  }
+
+  public void testExpiredTasksRunOnExecutor() throws Exception {
+    final List<Runnable> handedOver = new ArrayList<Runnable>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    TimingWheel handOff = new TimingWheel("hand off wheel", 10, TimeUnit.MILLISECONDS, 8, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        synchronized (handedOver) {
+          handedOver.add(command);
+        }
+        latch.countDown();
+      }
+    });
+    try {
+      final AtomicInteger runs = new AtomicInteger();
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          runs.incrementAndGet();
+        }
+      };
+      handOff.schedule(task, 20, TimeUnit.MILLISECONDS);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      synchronized (handedOver) {
+        assertEquals(1, handedOver.size());
+        assertSame(task, handedOver.get(0));
+      }
+      assertEquals(0, runs.get());
+    } finally {
+      handOff.stop();
+    }
+  }
+
+  public void testFailingTaskDoesNotStopWheel() throws Exception {
+    wheel.schedule(new Runnable() {
+      @Override
+      public void run() {
+        throw new RuntimeException("expected");
+      }
+    }, 10, TimeUnit.MILLISECONDS);
+    final CountDownLatch latch = new CountDownLatch(1);
+    wheel.schedule(new CountDown(latch), 50, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  public void testIllegalDelays() throws Exception {
+    try {
+      wheel.schedule(new CountDown(new CountDownLatch(1)), -1, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      wheel.schedule(new CountDown(new CountDownLatch(1)), Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(0, wheel.getScheduledCount());
+  }
+
+  public void testScheduleAfterStop() throws Exception {
+    wheel.stop();
+    try {
+      wheel.schedule(new CountDown(new CountDownLatch(1)), 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private static class CountDown implements Runnable {
+    private final CountDownLatch latch;
+
+    CountDown(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void run() {
+      latch.countDown();
+    }
+  }
+}
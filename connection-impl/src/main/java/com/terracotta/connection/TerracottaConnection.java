@@ -80,6 +80,7 @@ public class TerracottaConnection implements Connection {
   @Override
   public synchronized void close() {
     checkShutdown();
+    maintenanceModeService.shutdown();
     shutdown.run();
     isShutdown = true;
   }
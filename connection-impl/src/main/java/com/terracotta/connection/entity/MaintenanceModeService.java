@@ -25,6 +25,9 @@ import com.tc.object.locks.ClientLockManager;
 import com.tc.object.locks.EntityLockID;
 import com.tc.object.locks.LockID;
 import com.tc.object.locks.LockLevel;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.util.concurrent.NamedThreadFactory;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -32,14 +35,44 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 /**
+ * Client locks belong to the thread that takes them, and an entity ref may be released from a different thread than
+ * the one that fetched it, so every lock and unlock runs on a thread owned by this service. Entities are striped across
+ * several such threads: all requests for one entity still land on the same thread, while fetches of different entities
+ * wait on their server round trips in parallel.
+ *
  * @author twu
  */
 public class MaintenanceModeService {
-  private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+  private final ExecutorService[] stripes;
   private final ClientLockManager clientLockManager;
 
   public MaintenanceModeService(ClientLockManager clientLockManager) {
+    this(clientLockManager, TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L1_LOCKMANAGER_ENTITY_STRIPES, 16));
+  }
+
+  MaintenanceModeService(ClientLockManager clientLockManager, int stripeCount) {
     this.clientLockManager = clientLockManager;
+    this.stripes = new ExecutorService[Math.max(1, stripeCount)];
+    NamedThreadFactory threadFactory = new NamedThreadFactory("Entity maintenance lock", true);
+    for (int i = 0; i < this.stripes.length; i++) {
+      // threads are only started once a stripe sees its first request
+      this.stripes[i] = Executors.newSingleThreadExecutor(threadFactory);
+    }
+  }
+
+  /**
+   * Stops the stripe threads once the connection is closed.  Requests already submitted are still run.
+   */
+  public void shutdown() {
+    for (ExecutorService stripe : this.stripes) {
+      stripe.shutdown();
+    }
+  }
+
+  private ExecutorService stripeFor(LockID lockID) {
+    int hash = lockID.hashCode();
+    hash ^= (hash >>> 16);
+    return this.stripes[(hash & Integer.MAX_VALUE) % this.stripes.length];
   }
 
   private static void await(Future<?> future) {
@@ -60,40 +93,40 @@ public class MaintenanceModeService {
   }
 
   public <T extends Entity> void readLockEntity(final Class<T> c, final String name) {
-    await(executorService.submit(new Runnable() {
+    final LockID lockID = new EntityLockID(c.getName(), name);
+    await(stripeFor(lockID).submit(new Runnable() {
       @Override
       public void run() {
-        LockID lockID = new EntityLockID(c.getName(), name);
         lock(lockID, LockLevel.READ);
       }
     }));
   }
 
   public <T extends Entity> void readUnlockEntity(final Class<T> c, final String name) {
-    await(executorService.submit(new Runnable() {
+    final LockID lockID = new EntityLockID(c.getName(), name);
+    await(stripeFor(lockID).submit(new Runnable() {
       @Override
       public void run() {
-        LockID lockID = new EntityLockID(c.getName(), name);
         unlock(lockID, LockLevel.READ);
       }
     }));
   }
 
   public <T extends Entity> void enterMaintenanceMode(final Class<T> c, final String name) {
-    await(executorService.submit(new Runnable() {
+    final LockID lockID = new EntityLockID(c.getName(), name);
+    await(stripeFor(lockID).submit(new Runnable() {
       @Override
       public void run() {
-        LockID lockID = new EntityLockID(c.getName(), name);
         lock(lockID, LockLevel.WRITE);
       }
     }));
   }
 
   public <T extends Entity> void exitMaintenanceMode(final Class<T> c, final String name) {
-    await(executorService.submit(new Runnable() {
+    final LockID lockID = new EntityLockID(c.getName(), name);
+    await(stripeFor(lockID).submit(new Runnable() {
       @Override
       public void run() {
-        LockID lockID = new EntityLockID(c.getName(), name);
         unlock(lockID, LockLevel.WRITE);
       }
     }));
@@ -0,0 +1,125 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.terracotta.connection.entity;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.terracotta.connection.entity.Entity;
+
+import com.tc.object.locks.ClientLockManager;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.LockLevel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches a growing number of entities from many threads against a lock manager that takes a fixed round trip per
+ * lock, once with a single stripe (the old single executor) and once striped.
+ * Not part of the unit tests, run it by hand.
+ */
+public class MaintenanceModeServiceBenchmark {
+
+  private static final int ROUND_TRIP_MILLIS = 1;
+  private static final int FETCHERS          = 32;
+
+  private final AtomicInteger inFlight    = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  public static void main(String[] args) throws Exception {
+    new MaintenanceModeServiceBenchmark().run();
+  }
+
+  private void run() throws Exception {
+    for (int entities : new int[] { 16, 128, 512 }) {
+      maxInFlight.set(0);
+      long single = fetchAll(new MaintenanceModeService(lockManager(), 1), entities);
+      int singleInFlight = maxInFlight.get();
+      maxInFlight.set(0);
+      long striped = fetchAll(new MaintenanceModeService(lockManager(), 16), entities);
+      System.out.println("Fetched " + entities + " entities from " + FETCHERS + " threads: single stripe "
+                         + perSecond(entities, single) + "/s (" + singleInFlight + " in flight), 16 stripes "
+                         + perSecond(entities, striped) + "/s (" + maxInFlight.get() + " in flight)");
+    }
+  }
+
+  private long fetchAll(final MaintenanceModeService service, final int entities) throws Exception {
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService fetchers = Executors.newFixedThreadPool(FETCHERS);
+    try {
+      Future<?>[] results = new Future<?>[FETCHERS];
+      for (int i = 0; i < FETCHERS; i++) {
+        results[i] = fetchers.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            for (int e; (e = next.getAndIncrement()) < entities;) {
+              service.readLockEntity(Entity.class, "entity-" + e);
+            }
+          }
+        });
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Future<?> result : results) {
+        result.get();
+      }
+      return System.nanoTime() - begin;
+    } finally {
+      fetchers.shutdown();
+      service.shutdown();
+    }
+  }
+
+  private static long perSecond(int count, long nanos) {
+    return (count * 1000000000L) / Math.max(1, nanos);
+  }
+
+  private ClientLockManager lockManager() {
+    ClientLockManager lockManager = mock(ClientLockManager.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        int current = inFlight.incrementAndGet();
+        for (int max; (max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current);) {
+          // retry
+        }
+        try {
+          Thread.sleep(ROUND_TRIP_MILLIS);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        return null;
+      }
+    }).when(lockManager).lock(any(LockID.class), any(LockLevel.class));
+    return lockManager;
+  }
+}
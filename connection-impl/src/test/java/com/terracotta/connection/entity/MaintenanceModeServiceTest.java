@@ -0,0 +1,150 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.terracotta.connection.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.terracotta.connection.entity.Entity;
+
+import com.tc.object.locks.ClientLockManager;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.LockLevel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+public class MaintenanceModeServiceTest {
+  private final Map<LockID, Thread> lockedBy   = new ConcurrentHashMap<LockID, Thread>();
+  private final Map<LockID, Thread> unlockedBy = new ConcurrentHashMap<LockID, Thread>();
+
+  @Test
+  public void testEntityIsUnlockedByTheThreadThatLockedIt() throws Exception {
+    final MaintenanceModeService service = new MaintenanceModeService(lockManager(null, null), 4);
+    for (int i = 0; i < 64; i++) {
+      service.readLockEntity(Entity.class, "entity-" + i);
+    }
+
+    // release every entity from some other thread, as closing an entity ref does
+    ExecutorService releaser = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < 64; i++) {
+        final String name = "entity-" + i;
+        releaser.submit(new Runnable() {
+          @Override
+          public void run() {
+            service.readUnlockEntity(Entity.class, name);
+          }
+        }).get();
+      }
+    } finally {
+      releaser.shutdown();
+    }
+
+    assertEquals(64, lockedBy.size());
+    assertEquals(lockedBy, unlockedBy);
+    service.shutdown();
+  }
+
+  /**
+   * Holds every lock request inside the lock manager until two of them are in there at once:  since each stripe runs
+   * one request at a time, that can only happen if different stripes are fetching in parallel.
+   */
+  @Test
+  public void testStripesLockConcurrently() throws Exception {
+    CountDownLatch entered = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    final MaintenanceModeService service = new MaintenanceModeService(lockManager(entered, release), 4);
+    ExecutorService fetchers = Executors.newFixedThreadPool(16);
+    try {
+      Future<?>[] results = new Future<?>[16];
+      for (int i = 0; i < results.length; i++) {
+        final String name = "entity-" + i;
+        results[i] = fetchers.submit(new Runnable() {
+          @Override
+          public void run() {
+            service.readLockEntity(Entity.class, name);
+          }
+        });
+      }
+      assertTrue(entered.await(10, TimeUnit.SECONDS));
+      release.countDown();
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      release.countDown();
+      fetchers.shutdown();
+      service.shutdown();
+    }
+    assertEquals(16, lockedBy.size());
+  }
+
+  @Test
+  public void testStripeThreadsStopOnShutdown() throws Exception {
+    MaintenanceModeService service = new MaintenanceModeService(lockManager(null, null), 4);
+    service.readLockEntity(Entity.class, "entity");
+    Thread stripe = lockedBy.values().iterator().next();
+    // a connection which is never closed must not keep the VM alive
+    assertTrue(stripe.isDaemon());
+    service.shutdown();
+    stripe.join(10000);
+    assertFalse(stripe.isAlive());
+  }
+
+  /**
+   * A lock manager which records the thread of every lock and unlock.  If given latches, each lock counts down entered
+   * and then waits for release.
+   */
+  private ClientLockManager lockManager(final CountDownLatch entered, final CountDownLatch release) {
+    ClientLockManager lockManager = mock(ClientLockManager.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        if (null != entered) {
+          entered.countDown();
+          release.await();
+        }
+        lockedBy.put((LockID) invocation.getArguments()[0], Thread.currentThread());
+        return null;
+      }
+    }).when(lockManager).lock(any(LockID.class), any(LockLevel.class));
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        unlockedBy.put((LockID) invocation.getArguments()[0], Thread.currentThread());
+        return null;
+      }
+    }).when(lockManager).unlock(any(LockID.class), any(LockLevel.class));
+    return lockManager;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import org.terracotta.entity.InvokeFuture;
+
+import java.util.concurrent.CompletionStage;
+
+
+/**
+ * An InvokeFuture which can also notify the caller when it completes, instead of requiring a thread to block in get().
+ * This allows a single thread to keep many invocations outstanding at once.
+ * 
+ * @param <T> The type of the response
+ */
+public interface AsyncInvokeFuture<T> extends InvokeFuture<T> {
+  /**
+   * Returns a stage which completes with the response once the invocation has been applied on the server.  If the
+   * invocation failed, the stage completes exceptionally with a CompletionException whose cause is the EntityException.
+   * Note that dependent actions may run on the thread which delivers the response so they must not block.
+   * 
+   * @return A stage completed by the response to this invocation
+   */
+  CompletionStage<T> toCompletionStage();
+}
@@ -24,6 +24,7 @@ import org.terracotta.exception.EntityException;
 
 import com.google.common.base.Throwables;
 import com.tc.entity.NetworkVoltronEntityMessage;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
 import com.tc.entity.ResendVoltronEntityMessage;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.logging.ClientIDLogger;
@@ -39,19 +40,23 @@ import com.tc.text.PrettyPrinter;
 import com.tc.util.Assert;
 import com.tc.util.Util;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 
 public class ClientEntityManagerImpl implements ClientEntityManager {
   private static final int MAX_PENDING_REQUESTS = 5000;
   private static final int MAX_QUEUED_REQUESTS = 100;
+  // A rough allowance for the non-payload part of each request when deciding how big a batch has become.
+  private static final int REQUEST_OVERHEAD_BYTES = 64;
   private final TCLogger logger;
   
   private final ClientMessageChannel channel;
@@ -59,13 +64,25 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private final ConcurrentMap<TransactionID, InFlightMessage> inFlightMessages;
   private final BlockingQueue<InFlightMessage> outbound;
   private final Semaphore requestTickets;
-  private final AtomicLong currentTransactionID;
+  private final PendingTransactionWindow pendingTransactions;
+  private final int maxBatchMessages;
+  private final int maxBatchBytes;
+  private final long maxBatchLingerNanos;
 
   private final ClientEntityStateManager stateManager;
   private final ConcurrentMap<EntityDescriptor, EntityClientEndpoint> objectStoreMap;
 
   
   public ClientEntityManagerImpl(ClientMessageChannel channel) {
+    this(channel, 1, 0, 0);
+  }
+
+  /**
+   * @param maxBatchMessages The most queued requests to pack into a single network message (1 disables batching)
+   * @param maxBatchBytes Stop adding requests to a batch once their payloads reach this many bytes
+   * @param maxBatchLingerMillis How long to wait for more requests, once the queue is empty, before sending a batch
+   */
+  public ClientEntityManagerImpl(ClientMessageChannel channel, int maxBatchMessages, int maxBatchBytes, long maxBatchLingerMillis) {
     this.logger = new ClientIDLogger(channel, TCLogging.getLogger(ClientEntityManager.class));
     
     this.channel = channel;
@@ -79,7 +96,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     this.inFlightMessages = new ConcurrentHashMap<TransactionID, InFlightMessage>();
     this.outbound = new LinkedBlockingQueue<InFlightMessage>(MAX_QUEUED_REQUESTS);
     this.requestTickets = new Semaphore(MAX_PENDING_REQUESTS);
-    this.currentTransactionID = new AtomicLong();
+    this.pendingTransactions = new PendingTransactionWindow(1);
+    this.maxBatchMessages = maxBatchMessages;
+    this.maxBatchBytes = maxBatchBytes;
+    this.maxBatchLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchLingerMillis);
     this.stateManager = new ClientEntityStateManager();
     this.objectStoreMap = new ConcurrentHashMap<EntityDescriptor, EntityClientEndpoint>(10240, 0.75f, 128);
     
@@ -148,7 +168,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   }
 
   @Override
-  public InvokeFuture<byte[]> invokeAction(EntityDescriptor entityDescriptor, Set<VoltronEntityMessage.Acks> requestedAcks, boolean requiresReplication, byte[] payload) {
+  public AsyncInvokeFuture<byte[]> invokeAction(EntityDescriptor entityDescriptor, Set<VoltronEntityMessage.Acks> requestedAcks, boolean requiresReplication, byte[] payload) {
     NetworkVoltronEntityMessage message = createMessageWithDescriptor(entityDescriptor, requiresReplication, payload, VoltronEntityMessage.Type.INVOKE_ACTION);
     return createInFlightMessageAfterAcks(message, requestedAcks);
   }
@@ -184,6 +204,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     // Note that this call comes the platform, potentially concurrently with received().
     InFlightMessage inFlight = inFlightMessages.remove(id);
     if (inFlight != null) {
+      pendingTransactions.complete(id);
       requestTickets.release();
       inFlight.setResult(value, null);
     } else {
@@ -198,6 +219,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     if (inFlight == null) {
       throw new IllegalArgumentException("Got an unknown transaction id that failed with error.", e);
     }
+    pendingTransactions.complete(id);
     requestTickets.release();
     inFlight.setResult(null, e);
   }
@@ -350,20 +372,77 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
 
   private void sendLoop() {
     boolean interrupted = false;
+    List<InFlightMessage> batch = new ArrayList<InFlightMessage>();
     while (!interrupted) {
       try {
-        InFlightMessage first = outbound.take();
+        batch.add(outbound.take());
+        interrupted = fillBatch(batch);
         synchronized (this) {
-          inFlightMessages.put(first.getTransactionID(), first);
-          first.sent();
+          for (InFlightMessage inFlight : batch) {
+            inFlightMessages.put(inFlight.getTransactionID(), inFlight);
+            inFlight.sent();
+          }
         }
-        first.send();
+        sendBatch(batch);
+        batch.clear();
       } catch (InterruptedException e) {
-        logger.info("ClientRequestManager interrupted! bailing out.");
-        // We now want to fall out of the loop.
         interrupted = true;
       }
     }
+    logger.info("ClientRequestManager interrupted! bailing out.");
+  }
+
+  /**
+   * Adds whatever else is waiting in the outbound queue to the batch, up to the configured limits, lingering for more if
+   * the queue runs dry.  Note that a lone message is never measured, since that can only be sent on its own, anyway.
+   * 
+   * @return True if the thread was interrupted while lingering (the batch must still be sent)
+   */
+  private boolean fillBatch(List<InFlightMessage> batch) {
+    boolean interrupted = false;
+    long lingerEnd = System.nanoTime() + this.maxBatchLingerNanos;
+    int bytes = 0;
+    while ((batch.size() < this.maxBatchMessages) && (bytes < this.maxBatchBytes)) {
+      InFlightMessage next = outbound.poll();
+      if (null == next) {
+        long remaining = lingerEnd - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        try {
+          next = outbound.poll(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+          break;
+        }
+        if (null == next) {
+          break;
+        }
+      }
+      if (1 == batch.size()) {
+        bytes = sizeOf(batch.get(0));
+      }
+      batch.add(next);
+      bytes += sizeOf(next);
+    }
+    return interrupted;
+  }
+
+  private static int sizeOf(InFlightMessage inFlight) {
+    return REQUEST_OVERHEAD_BYTES + inFlight.getMessage().getExtendedData().length;
+  }
+
+  private void sendBatch(List<InFlightMessage> batch) {
+    if (1 == batch.size()) {
+      batch.get(0).send();
+    } else {
+      NetworkVoltronEntityMultiMessage multi = (NetworkVoltronEntityMultiMessage) channel.createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+      for (InFlightMessage inFlight : batch) {
+        inFlight.sentInBatch();
+        multi.addMessage(inFlight.getMessage());
+      }
+      multi.send();
+    }
   }
 
   private InFlightMessage createInFlightMessageAfterAcks(NetworkVoltronEntityMessage message, Set<VoltronEntityMessage.Acks> requestedAcks) {
@@ -392,15 +471,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     // Get the clientID for our channel.
     ClientID clientID = this.channel.getClientID();
     // Get the next transaction ID.
-    TransactionID transactionID = new TransactionID(currentTransactionID.incrementAndGet());
-    // Figure out the "trailing edge" of the current progress through the transaction stream.
-    TransactionID oldestTransactionPending = transactionID;
-    for (TransactionID pendingID : this.inFlightMessages.keySet()) {
-      if (oldestTransactionPending.compareTo(pendingID) > 0) {
-        // peindingID is earlier than oldestTransactionPending.
-        oldestTransactionPending = pendingID;
-      }
-    }
+    TransactionID transactionID = pendingTransactions.begin();
+    // Figure out the "trailing edge" of the current progress through the transaction stream.  Note that this also
+    //  counts transactions which are still queued to be sent, not just those in flight.
+    TransactionID oldestTransactionPending = pendingTransactions.getOldestPending();
     // Create the message and populate it.
     NetworkVoltronEntityMessage message = (NetworkVoltronEntityMessage) channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE);
     message.setContents(clientID, transactionID, entityDescriptor, type, requiresReplication, config, oldestTransactionPending);
@@ -22,7 +22,6 @@ package com.tc.object;
 import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.InvocationBuilder;
-import org.terracotta.entity.InvokeFuture;
 
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.util.Assert;
@@ -125,7 +124,7 @@ public class EntityClientEndpointImpl implements EntityClientEndpoint {
     }
 
     @Override
-    public synchronized InvokeFuture<byte[]> invoke() {
+    public synchronized AsyncInvokeFuture<byte[]> invoke() {
       checkInvoked();
       invoked = true;
       return invocationHandler.invokeAction(entityDescriptor, this.acks, this.requiresReplication, this.payload);
@@ -18,7 +18,6 @@
  */
 package com.tc.object;
 
-import org.terracotta.entity.InvokeFuture;
 import org.terracotta.exception.EntityException;
 
 import com.tc.entity.NetworkVoltronEntityMessage;
@@ -26,11 +25,15 @@ import com.tc.entity.VoltronEntityMessage;
 import com.tc.object.tx.TransactionID;
 import com.tc.util.Assert;
 
-import java.util.EnumSet;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 
 /**
@@ -38,30 +41,41 @@ import java.util.concurrent.TimeoutException;
  * The message is stored here, since it is sent asynchronously, along with storage for the return value.
  * Note that this is only used from within ClietEntityManagerImpl, and was originally embedded there, but was extracted to
  * make unit testing more direct.
+ * None of the state here is guarded by a monitor:  the pending ACKs are a bit set updated with CAS and the response is
+ * held in a CompletableFuture, so the threads delivering ACKs and responses never contend with those waiting on them.
  */
-public class InFlightMessage implements InvokeFuture<byte[]> {
+public class InFlightMessage implements AsyncInvokeFuture<byte[]> {
   private final NetworkVoltronEntityMessage message;
   /**
    * The set of pending ACKs determines when the caller returns from the send, in order to preserve ordering in the
    * client code.  This is different from being "done" which specifically means that the APPLIED has happened,
    * potentially returning a value or exception.
-   * ACKs are removed from this pending set, as they arrive.
+   * ACKs are removed from this pending set (one bit per Acks ordinal), as they arrive.
    */
-  private final Set<VoltronEntityMessage.Acks> pendingAcks;
+  private final AtomicInteger pendingAcks;
+  // Completed when the last of the pending ACKs has been removed.
+  private final CompletableFuture<Void> acksDone;
+  private final CompletableFuture<byte[]> result;
   // Note that the point where we wait for acks isn't exposed outside the InvokeFuture interface so this set of waiting
   // threads only applies to those threads waiting to get a response.
   private final Set<Thread> waitingThreads;
 
+  // Only touched by the sending thread.
   private boolean isSent;
-  private EntityException exception;
-  private byte[] value;
-  private boolean done;
 
   public InFlightMessage(NetworkVoltronEntityMessage message, Set<VoltronEntityMessage.Acks> acks) {
     this.message = message;
-    this.pendingAcks = EnumSet.noneOf(VoltronEntityMessage.Acks.class);
-    this.pendingAcks.addAll(acks);
-    this.waitingThreads = new HashSet<Thread>();
+    int mask = 0;
+    for (VoltronEntityMessage.Acks ack : acks) {
+      mask |= bitFor(ack);
+    }
+    this.pendingAcks = new AtomicInteger(mask);
+    this.acksDone = new CompletableFuture<Void>();
+    if (0 == mask) {
+      this.acksDone.complete(null);
+    }
+    this.result = new CompletableFuture<byte[]>();
+    this.waitingThreads = ConcurrentHashMap.newKeySet();
   }
 
   /**
@@ -81,104 +95,110 @@ public class InFlightMessage implements InvokeFuture<byte[]> {
     this.message.send();
   }
 
-  public synchronized void waitForAcks() {
-    boolean interrupted = false;
-    while (!this.pendingAcks.isEmpty()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        interrupted = true;
-      }
-    }
-    if (interrupted) {
-      Thread.currentThread().interrupt();
-    }
+  /**
+   * Used instead of send() when the message was carried to the server as part of a larger multi-message.
+   */
+  public void sentInBatch() {
+    Assert.assertFalse(this.isSent);
+    this.isSent = true;
   }
 
-  public synchronized void sent() {
-    if (this.pendingAcks.remove(VoltronEntityMessage.Acks.SENT)) {
-      if (this.pendingAcks.isEmpty()) {
-        notifyAll();
-      }
-    }
+  public void waitForAcks() {
+    // Note that join() ignores interruption but leaves the interrupted status set for the caller.
+    this.acksDone.join();
   }
 
-  public synchronized void received() {
-    if (this.pendingAcks.remove(VoltronEntityMessage.Acks.RECEIVED)) {
-      if (this.pendingAcks.isEmpty()) {
-        notifyAll();
-      }
-    }
+  public void sent() {
+    removeAck(VoltronEntityMessage.Acks.SENT);
+  }
+
+  public void received() {
+    removeAck(VoltronEntityMessage.Acks.RECEIVED);
   }
 
   @Override
-  public synchronized void interrupt() {
+  public void interrupt() {
     for (Thread waitingThread : this.waitingThreads) {
       waitingThread.interrupt();
     }
   }
 
   @Override
-  public synchronized boolean isDone() {
-    return done;
+  public boolean isDone() {
+    return this.result.isDone();
   }
 
   @Override
-  public synchronized byte[] get() throws InterruptedException, EntityException {
+  public byte[] get() throws InterruptedException, EntityException {
     Thread callingThread = Thread.currentThread();
     boolean didAdd = this.waitingThreads.add(callingThread);
     // We can't have already been waiting.
     Assert.assertTrue(didAdd);
     
     try {
-      while (!done) {
-        wait();
-      }
+      return this.result.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e);
     } finally {
       // We will hit this path on interrupt, for example.
       this.waitingThreads.remove(callingThread);
     }
-    
-    // If we didn't throw due to interruption, we fall through here.
-    if (exception != null) {
-      throw this.exception;
-    } else {
-      return value;
-    }
   }
 
   @Override
-  public synchronized byte[] getWithTimeout(long timeout, TimeUnit unit) throws InterruptedException, EntityException, TimeoutException {
+  public byte[] getWithTimeout(long timeout, TimeUnit unit) throws InterruptedException, EntityException, TimeoutException {
     Thread callingThread = Thread.currentThread();
     boolean didAdd = this.waitingThreads.add(callingThread);
     // We can't have already been waiting.
     Assert.assertTrue(didAdd);
     
-    long end = System.nanoTime() + unit.toNanos(timeout);
     try {
-      while (!done) {
-        long timing = end - System.nanoTime();
-        if (timing <= 0) {
-          throw new TimeoutException();
-        } else {
-          wait(timing / TimeUnit.MILLISECONDS.toNanos(1), (int)(timing % TimeUnit.MILLISECONDS.toNanos(1))); 
-        }
-      }
+      return this.result.get(timeout, unit);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
     } finally {
       this.waitingThreads.remove(callingThread);
     }
-    if (exception != null) {
-      throw this.exception;
+  }
+
+  @Override
+  public CompletionStage<byte[]> toCompletionStage() {
+    // Hand out a dependent stage so that callers can't complete our result.
+    return this.result.thenApply(Function.identity());
+  }
+
+  void setResult(byte[] value, EntityException e) {
+    if (null != e) {
+      this.result.completeExceptionally(e);
     } else {
-      return value;
+      this.result.complete(value);
     }
+    removeAck(VoltronEntityMessage.Acks.APPLIED);
+  }
+
+  private void removeAck(VoltronEntityMessage.Acks ack) {
+    int bit = bitFor(ack);
+    while (true) {
+      int current = this.pendingAcks.get();
+      if (0 == (current & bit)) {
+        break;
+      }
+      int next = current & ~bit;
+      if (this.pendingAcks.compareAndSet(current, next)) {
+        if (0 == next) {
+          this.acksDone.complete(null);
+        }
+        break;
+      }
+    }
+  }
+
+  private static int bitFor(VoltronEntityMessage.Acks ack) {
+    return 1 << ack.ordinal();
   }
 
-  synchronized void setResult(byte[] value, EntityException e) {
-    this.pendingAcks.remove(VoltronEntityMessage.Acks.APPLIED);
-    this.exception = e;
-    this.value = value;
-    this.done = true;
-    notifyAll();
+  private static EntityException unwrap(ExecutionException e) {
+    // Our result is only ever completed exceptionally, in setResult(), and always with an EntityException.
+    return (EntityException) e.getCause();
   }
 }
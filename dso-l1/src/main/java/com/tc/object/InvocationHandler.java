@@ -22,12 +22,14 @@ import com.tc.entity.VoltronEntityMessage;
 
 import java.util.Set;
 
-import org.terracotta.entity.InvokeFuture;
-
 
 /**
  * The minimal interface, provided to the EntityClientEndpoint, to handle invocations to send to the server.
  */
 public interface InvocationHandler {
-  InvokeFuture<byte[]> invokeAction(EntityDescriptor entityDescriptor, Set<VoltronEntityMessage.Acks> acks, boolean requiresReplication, byte[] payload);
+  /**
+   * Sends the invocation, returning once the requested acks have arrived.  The returned future can be waited on or, to
+   * avoid parking a thread per outstanding invocation, observed through its completion stage.
+   */
+  AsyncInvokeFuture<byte[]> invokeAction(EntityDescriptor entityDescriptor, Set<VoltronEntityMessage.Acks> acks, boolean requiresReplication, byte[] payload);
 }
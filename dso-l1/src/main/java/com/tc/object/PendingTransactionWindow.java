@@ -0,0 +1,93 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.object.tx.TransactionID;
+import com.tc.util.Assert;
+
+
+/**
+ * Hands out transaction IDs in increasing order and tracks which of them are still pending, so that the oldest pending
+ * transaction (the "trailing edge" the server uses to trim its ordering records) is always known in constant time.
+ * <p>
+ * Transactions may complete in any order.  The window is a ring of completion flags covering every ID from the oldest
+ * pending one up to the newest one handed out:  completing the oldest ID slides the start of the window forward over
+ * any later IDs which have already completed, so each ID is passed over exactly once.
+ */
+class PendingTransactionWindow {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private boolean[] completed = new boolean[INITIAL_CAPACITY];
+  // The lowest ID which has not yet completed (equal to next when nothing is pending).
+  private long oldest;
+  private long next;
+
+  /**
+   * @param first the first ID to hand out
+   */
+  PendingTransactionWindow(long first) {
+    this.oldest = first;
+    this.next = first;
+  }
+
+  /**
+   * @return a new, pending, transaction ID, greater than any handed out before it
+   */
+  synchronized TransactionID begin() {
+    if (this.next - this.oldest == this.completed.length) {
+      grow();
+    }
+    this.completed[slot(this.next)] = false;
+    TransactionID id = new TransactionID(this.next);
+    this.next += 1;
+    return id;
+  }
+
+  synchronized void complete(TransactionID id) {
+    long value = id.toLong();
+    Assert.assertTrue(value >= this.oldest && value < this.next);
+    this.completed[slot(value)] = true;
+    while (this.oldest < this.next && this.completed[slot(this.oldest)]) {
+      this.oldest += 1;
+    }
+  }
+
+  /**
+   * @return the oldest pending transaction or, if none are pending, the next one which will be handed out
+   */
+  synchronized TransactionID getOldestPending() {
+    return new TransactionID(this.oldest);
+  }
+
+  synchronized int size() {
+    return (int) (this.next - this.oldest);
+  }
+
+  private int slot(long id) {
+    return (int) (id % this.completed.length);
+  }
+
+  private void grow() {
+    boolean[] larger = new boolean[this.completed.length * 2];
+    for (long id = this.oldest; id < this.next; ++id) {
+      larger[(int) (id % larger.length)] = this.completed[slot(id)];
+    }
+    this.completed = larger;
+  }
+}
@@ -57,6 +57,9 @@ import com.tc.object.msg.ClientHandshakeMessageFactory;
 import com.tc.object.msg.LockRequestMessageFactory;
 import com.tc.object.session.SessionManager;
 import com.tc.object.session.SessionProvider;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.runtime.logging.LongGCLogger;
 import com.tc.util.UUID;
 import com.tc.util.concurrent.TaskRunner;
@@ -148,7 +151,11 @@ public class StandardClientBuilder implements ClientBuilder {
 
   @Override
   public ClientEntityManager createClientEntityManager(ClientMessageChannel channel) {
-    return new ClientEntityManagerImpl(channel);
+    TCProperties properties = TCPropertiesImpl.getProperties();
+    return new ClientEntityManagerImpl(channel,
+        properties.getInt(TCPropertiesConsts.L1_ENTITYMANAGER_BATCH_MAX_MESSAGES, 1),
+        properties.getInt(TCPropertiesConsts.L1_ENTITYMANAGER_BATCH_MAX_BYTES, 131072),
+        properties.getLong(TCPropertiesConsts.L1_ENTITYMANAGER_BATCH_LINGER_MILLIS, 0));
   }
 
 }
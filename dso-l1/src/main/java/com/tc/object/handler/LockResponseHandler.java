@@ -24,6 +24,7 @@ import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.object.ClientConfigurationContext;
 import com.tc.object.locks.ClientLockManager;
+import com.tc.object.locks.LockResponseBatchContext;
 import com.tc.object.msg.LockResponseMessage;
 import com.tc.object.session.SessionID;
 import com.tc.object.session.SessionManager;
@@ -69,6 +70,11 @@ public class LockResponseHandler<EC> extends AbstractEventHandler<EC> {
       case INFO:
         this.lockManager.info(msg.getLockID(), msg.getThreadID(), msg.getContexts());
         return;
+      case BATCHED:
+        for (LockResponseBatchContext response : msg.getBatchedResponses()) {
+          handleBatchedResponse(sessionID, response);
+        }
+        return;
       default:
         logger.error("Unknown lock response message: " + msg.getResponseType());
         return;
@@ -76,6 +82,20 @@ public class LockResponseHandler<EC> extends AbstractEventHandler<EC> {
 
   }
 
+  private void handleBatchedResponse(SessionID sessionID, LockResponseBatchContext response) {
+    switch (response.getResponseType()) {
+      case AWARD:
+        this.lockManager.award(sessionID, response.getLockID(), response.getThreadID(), response.getLockLevel());
+        return;
+      case REFUSE:
+        this.lockManager.refuse(sessionID, response.getLockID(), response.getThreadID(), response.getLockLevel());
+        return;
+      default:
+        logger.error("Unexpected batched lock response: " + response.getResponseType());
+        return;
+    }
+  }
+
   @Override
   public void initialize(ConfigurationContext context) {
     super.initialize(context);
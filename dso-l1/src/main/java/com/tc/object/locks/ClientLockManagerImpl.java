@@ -30,6 +30,7 @@ import com.tc.util.FindbugsSuppressWarnings;
 import com.tc.util.Util;
 import com.tc.util.concurrent.TaskRunner;
 import com.tc.util.concurrent.Timer;
+import com.tc.util.concurrent.TimingWheel;
 import com.tc.util.runtime.ThreadIDManager;
 
 import java.util.ArrayList;
@@ -39,6 +40,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -67,6 +69,7 @@ public class ClientLockManagerImpl implements ClientLockManager, ClientLockManag
 
   private final Timer                             gcTimer;
   private final Timer                             lockLeaseTimer;
+  private final TimingWheel                       lockLeaseWheel;
   private final AtomicLong                        lockAwardSequence   = new AtomicLong();
 
   private final ClientIDProvider clientIdProvider;
@@ -85,6 +88,14 @@ public class ClientLockManagerImpl implements ClientLockManager, ClientLockManag
     final long gcPeriod = Math.max(config.getTimeoutInterval(), 100);
     this.gcTimer = taskRunner.newTimer("ClientLockManager LockGC");
     this.lockLeaseTimer = taskRunner.newTimer("ClientLockManager Lock Lease Timer");
+    // leases are timed on the wheel and then run on the lease timer, keeping recalls off the wheel thread
+    this.lockLeaseWheel = new TimingWheel("ClientLockManager Lock Lease Wheel", 10, TimeUnit.MILLISECONDS, 512,
+                                          new Executor() {
+                                            @Override
+                                            public void execute(Runnable command) {
+                                              lockLeaseTimer.execute(command);
+                                            }
+                                          });
     this.gcTimer.scheduleWithFixedDelay(new LockGcTimerTask(), gcPeriod, gcPeriod, TimeUnit.MILLISECONDS);
   }
 
@@ -487,7 +498,8 @@ public class ClientLockManagerImpl implements ClientLockManager, ClientLockManag
       if (lockState != null) {
         if (lockState.recall(this.remoteLockManager, level, lease, batch)) {
           // schedule the greedy lease
-          lockLeaseTimer.schedule(new LeaseTask(session, lock, level, batch), lease, TimeUnit.MILLISECONDS);
+          lockLeaseWheel.schedule(new LeaseTask(session, lock, level, batch), Math.max(lease, 0),
+                                 TimeUnit.MILLISECONDS);
         }
       }
     } finally {
@@ -606,6 +618,7 @@ public class ClientLockManagerImpl implements ClientLockManager, ClientLockManag
     try {
       state = state.shutdown();
       gcTimer.cancel();
+      lockLeaseWheel.stop();
       lockLeaseTimer.cancel();
       remoteLockManager.shutdown();
       runningCondition.signalAll();
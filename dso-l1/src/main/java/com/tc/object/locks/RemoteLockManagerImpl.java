@@ -23,7 +23,11 @@ import com.tc.logging.TCLogging;
 import com.tc.net.ClientID;
 import com.tc.object.ClientIDProvider;
 import com.tc.object.msg.LockRequestMessage;
+import com.tc.object.msg.LockRequestMessage.RequestType;
 import com.tc.object.msg.LockRequestMessageFactory;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.concurrent.TaskRunner;
 import com.tc.util.concurrent.Timer;
 
@@ -49,6 +53,12 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
   private final Timer                          batchRecallTimer;
   private ScheduledFuture<?>                   batchRecallTask;
 
+  // lock, unlock, try lock and query requests waiting to go out in one message, guarded by queue
+  private final boolean                        batchRequests;
+  private final int                            maxBatchedRequests;
+  private final long                           maxRequestLinger;
+  private final Queue<LockRequestBatchContext> requestQueue                = new LinkedList<LockRequestBatchContext>();
+  private ScheduledFuture<?>                   batchRequestTask;
 
   public RemoteLockManagerImpl(ClientIDProvider clientIdProvider,
                                LockRequestMessageFactory messageFactory,
@@ -56,12 +66,17 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
     this.messageFactory = messageFactory;
     this.clientIdProvider = clientIdProvider;
     this.batchRecallTimer = taskRunner.newTimer("Batch Recall Timer");
+    TCProperties lockManagerProperties = TCPropertiesImpl.getProperties();
+    this.batchRequests = lockManagerProperties.getBoolean(TCPropertiesConsts.L1_LOCKMANAGER_BATCH_ENABLED, false);
+    this.maxBatchedRequests = lockManagerProperties.getInt(TCPropertiesConsts.L1_LOCKMANAGER_BATCH_MAXSIZE, 1000);
+    this.maxRequestLinger = lockManagerProperties.getLong(TCPropertiesConsts.L1_LOCKMANAGER_BATCH_LINGERMILLIS, 1);
   }
 
   @Override
   public void cleanup() {
     synchronized (queue) {
       queue.clear();
+      requestQueue.clear();
     }
   }
 
@@ -91,6 +106,10 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
 
   @Override
   public void lock(LockID lock, ThreadID thread, ServerLockLevel level) {
+    if (batchRequests) {
+      batchRequest(new LockRequestBatchContext(RequestType.LOCK, lock, thread, level, -1));
+      return;
+    }
     sendPendingRecallCommits();
 
     final LockRequestMessage msg = createMessage();
@@ -100,6 +119,10 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
 
   @Override
   public void query(LockID lock, ThreadID thread) {
+    if (batchRequests) {
+      batchRequest(new LockRequestBatchContext(RequestType.QUERY, lock, thread, null, -1));
+      return;
+    }
     sendPendingRecallCommits();
 
     final LockRequestMessage msg = createMessage();
@@ -109,6 +132,10 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
 
   @Override
   public void tryLock(LockID lock, ThreadID thread, ServerLockLevel level, long timeout) {
+    if (batchRequests) {
+      batchRequest(new LockRequestBatchContext(RequestType.TRY_LOCK, lock, thread, level, timeout));
+      return;
+    }
     sendPendingRecallCommits();
 
     final LockRequestMessage msg = createMessage();
@@ -118,6 +145,10 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
 
   @Override
   public void unlock(LockID lock, ThreadID thread, ServerLockLevel level) {
+    if (batchRequests) {
+      batchRequest(new LockRequestBatchContext(RequestType.UNLOCK, lock, thread, level, -1));
+      return;
+    }
     sendPendingRecallCommits();
 
     final LockRequestMessage msg = createMessage();
@@ -155,6 +186,8 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
     // add it to the queue
     // check if it needs to be send immediately
     synchronized (queue) {
+      // requests batched before this commit must reach the server first
+      sendBatchedLockRequestsImmediately();
       queue.add(new RecallBatchContext(lockState, lock));
       if (queue.size() >= MAX_BATCHED_RECALL_COMMITS) {
         sendPendingRecallCommits();
@@ -168,11 +201,29 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
     }
   }
 
+  private void batchRequest(LockRequestBatchContext request) {
+    synchronized (queue) {
+      // recall commits queued before this request must reach the server first
+      sendBatchedRequestsImmediately();
+      cancelTimerTask();
+      requestQueue.add(request);
+      if (requestQueue.size() >= maxBatchedRequests) {
+        sendBatchedLockRequestsImmediately();
+        return;
+      }
+      if (batchRequestTask == null && !shutdown) {
+        batchRequestTask = batchRecallTimer.schedule(new BatchLockRequestsTask(), maxRequestLinger,
+                                                     TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
   @Override
   public void shutdown() {
     synchronized (queue) {
       shutdown = true;
       cancelTimerTask();
+      cancelRequestTimerTask();
     }
   }
 
@@ -190,10 +241,21 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
     batchRecallTask = null;
   }
 
+  private void cancelRequestTimerTask() {
+    if (batchRequestTask != null) {
+      batchRequestTask.cancel(false);
+    }
+    batchRequestTask = null;
+  }
+
+  /**
+   * Sends whatever is batched, recall commits or lock requests, ahead of a message that must not overtake them.
+   */
   public void sendPendingRecallCommits() {
     synchronized (queue) {
       sendBatchedRequestsImmediately();
       cancelTimerTask();
+      sendBatchedLockRequestsImmediately();
     }
   }
 
@@ -211,6 +273,40 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
     sendMessage(lrm);
   }
 
+  private void sendBatchedLockRequestsImmediately() {
+    cancelRequestTimerTask();
+    if (requestQueue.isEmpty()) { return; }
+    LockRequestMessage lrm = createMessage();
+    if (requestQueue.size() == 1) {
+      // a lone request goes out as it would unbatched
+      LockRequestBatchContext request = requestQueue.poll();
+      switch (request.getRequestType()) {
+        case LOCK:
+          lrm.initializeLock(request.getLockID(), request.getThreadID(), request.getLockLevel());
+          break;
+        case UNLOCK:
+          lrm.initializeUnlock(request.getLockID(), request.getThreadID(), request.getLockLevel());
+          break;
+        case TRY_LOCK:
+          lrm.initializeTryLock(request.getLockID(), request.getThreadID(), request.getTimeout(),
+                                request.getLockLevel());
+          break;
+        case QUERY:
+          lrm.initializeQuery(request.getLockID(), request.getThreadID());
+          break;
+        default:
+          throw new AssertionError("unexpected batched request: " + request);
+      }
+    } else {
+      lrm.initializeBatchedRequest();
+      for (final LockRequestBatchContext request : requestQueue) {
+        lrm.addBatchedRequest(request);
+      }
+      requestQueue.clear();
+    }
+    sendMessage(lrm);
+  }
+
   private LockRequestMessage createMessage() {
     return this.messageFactory.newLockRequestMessage();
   }
@@ -232,4 +328,18 @@ public class RemoteLockManagerImpl implements RemoteLockManager {
       }
     }
   }
+
+  private class BatchLockRequestsTask implements Runnable {
+    @Override
+    public void run() {
+      synchronized (queue) {
+        if (shutdown) {
+          logger.info("Ignoring Batched Lock Requests Timer task as timer is already shut down.");
+          return;
+        }
+        batchRequestTask = null;
+        sendBatchedLockRequestsImmediately();
+      }
+    }
+  }
 }
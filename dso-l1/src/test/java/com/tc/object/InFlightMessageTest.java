@@ -19,12 +19,16 @@
 package com.tc.object;
 
 import org.terracotta.exception.EntityException;
+import org.terracotta.exception.EntityNotFoundException;
 
 import com.tc.entity.NetworkVoltronEntityMessage;
 import com.tc.entity.VoltronEntityMessage.Acks;
+import com.tc.util.concurrent.ThreadUtil;
 
 import java.util.Collections;
-import java.util.Set;
+import java.util.EnumSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 import static org.mockito.Mockito.mock;
@@ -34,18 +38,17 @@ public class InFlightMessageTest extends TestCase {
   public void testInterruptedGet() {
     // Create the message we will use in the test.
     NetworkVoltronEntityMessage mockedEntityMessage = mock(NetworkVoltronEntityMessage.class);
-    // We need to use the interlock message since we want to interrupt only after the get() has been called to ensure that
-    // the message interrupt call actually knows which thread to interrupt.
-    // While we could interrupt the thread before the blocking call, and it would still behave as if we interrupted it after
-    // it started the call, the message won't know what thread(s) are blocked until they call it.
-    InterlockMessage message = new InterlockMessage(mockedEntityMessage, Collections.<Acks>emptySet());
+    InFlightMessage message = new InFlightMessage(mockedEntityMessage, Collections.<Acks>emptySet());
     // Create the thread which we will interrupt.
     InterruptableThread thread = new InterruptableThread(message);
     
     // Start the thread: it will begin progressing to the get().
     thread.start();
-    // Wait for the other thread to enter the monitor.
-    message.waitOnEnter();
+    // We want to interrupt only after the get() has started blocking to ensure that the message interrupt call actually
+    // knows which thread to interrupt, so spin until we can observe that the thread is in the WAITING state.
+    while (thread.getState() != Thread.State.WAITING) {
+      ThreadUtil.reallySleep(10);
+    }
     // We can now interrupt the message and know that the other thread will receive the interrupt.
     message.interrupt();
     try {
@@ -57,6 +60,60 @@ public class InFlightMessageTest extends TestCase {
     assertTrue(thread.didInterrupt);
   }
 
+  public void testAcksReleaseWaiter() throws Exception {
+    NetworkVoltronEntityMessage mockedEntityMessage = mock(NetworkVoltronEntityMessage.class);
+    InFlightMessage message = new InFlightMessage(mockedEntityMessage, EnumSet.of(Acks.SENT, Acks.RECEIVED));
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        message.waitForAcks();
+      }
+    };
+    waiter.start();
+    message.sent();
+    // Duplicate acks are ignored.
+    message.sent();
+    waiter.join(100);
+    assertTrue(waiter.isAlive());
+    message.received();
+    waiter.join();
+    assertFalse(message.isDone());
+  }
+
+  public void testCompletionStageSuccess() throws Exception {
+    NetworkVoltronEntityMessage mockedEntityMessage = mock(NetworkVoltronEntityMessage.class);
+    InFlightMessage message = new InFlightMessage(mockedEntityMessage, Collections.<Acks>emptySet());
+    AtomicReference<byte[]> observed = new AtomicReference<byte[]>();
+    message.toCompletionStage().thenAccept(observed::set);
+    assertNull(observed.get());
+    
+    byte[] value = new byte[] { 1 };
+    message.setResult(value, null);
+    assertSame(value, observed.get());
+    assertTrue(message.isDone());
+    assertSame(value, message.get());
+  }
+
+  public void testCompletionStageFailure() throws Exception {
+    NetworkVoltronEntityMessage mockedEntityMessage = mock(NetworkVoltronEntityMessage.class);
+    InFlightMessage message = new InFlightMessage(mockedEntityMessage, EnumSet.of(Acks.APPLIED));
+    AtomicReference<Throwable> observed = new AtomicReference<Throwable>();
+    message.toCompletionStage().whenComplete((value, error) -> observed.set(error));
+    
+    EntityException failure = new EntityNotFoundException(null, null);
+    message.setResult(null, failure);
+    // The failure also satisfies the APPLIED ack.
+    message.waitForAcks();
+    assertTrue(observed.get() instanceof CompletionException);
+    assertSame(failure, observed.get().getCause());
+    try {
+      message.get();
+      fail();
+    } catch (EntityException e) {
+      assertSame(failure, e);
+    }
+  }
+
   /**
    * This thread just calls get() on the given message and records whether or not it was interrupted.
    */
@@ -81,40 +138,4 @@ public class InFlightMessageTest extends TestCase {
       }
     }
   }
-
-  /**
-   * Even though we are trying to test InFlightMessage we need this subclass to expose details of the monitor state in order
-   * to test the thread interaction in a deterministic way.
-   */
-  private static class InterlockMessage extends InFlightMessage {
-    private boolean didEnter;
-    
-    public InterlockMessage(NetworkVoltronEntityMessage message, Set<Acks> acks) {
-      super(message, acks);
-      this.didEnter = false;
-    }
-
-    @Override
-    public synchronized byte[] get() throws InterruptedException, EntityException {
-      // Notify anyone waiting so that they know we now have the monitor and are going to block in get().
-      this.didEnter = true;
-      notifyAll();
-      // Call the super to actually block.
-      return super.get();
-    }
-    
-    /**
-     * Blocks the caller until someone has called get() on the same instance.
-     */
-    public synchronized void waitOnEnter() {
-      while (!this.didEnter) {
-        try {
-          wait();
-        } catch (InterruptedException e) {
-          // NOT expected.
-          fail();
-        }
-      }
-    }
-  }
 }
@@ -0,0 +1,114 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.object.tx.TransactionID;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Measures the bookkeeping {@link ClientEntityManagerImpl} does for each send as the number of requests in flight
+ * grows, once the way it used to (scan every in-flight transaction for the oldest) and once with a
+ * {@link PendingTransactionWindow}.  Each send begins a new transaction, finds the trailing edge and records it as in
+ * flight, while the oldest in-flight transaction completes to keep the depth steady.
+ * Not part of the unit tests, run it by hand.
+ */
+public class PendingTransactionWindowBenchmark {
+
+  private static final int SENDS  = 20000;
+  private static final int ROUNDS = 5;
+
+  // keeps the JIT from dropping the trailing edge computations
+  private static long sink;
+
+  public static void main(String[] args) {
+    // the client never has more than 5000 requests in flight
+    for (int depth : new int[] { 1, 10, 100, 1000, 5000 }) {
+      // warm up both paths before timing them
+      scanning(depth);
+      windowed(depth);
+
+      long scan = Long.MAX_VALUE;
+      long window = Long.MAX_VALUE;
+      for (int i = 0; i < ROUNDS; i++) {
+        scan = Math.min(scan, scanning(depth));
+        window = Math.min(window, windowed(depth));
+      }
+      System.out.println("Sends with " + depth + " in flight: scanning " + perSecond(SENDS, scan) + "/s, window "
+                         + perSecond(SENDS, window) + "/s");
+    }
+  }
+
+  private static long scanning(int depth) {
+    ConcurrentMap<TransactionID, Object> inFlight = new ConcurrentHashMap<TransactionID, Object>();
+    ArrayDeque<TransactionID> order = new ArrayDeque<TransactionID>();
+    long current = 0;
+    for (int i = 0; i < depth; i++) {
+      TransactionID id = new TransactionID(++current);
+      inFlight.put(id, id);
+      order.add(id);
+    }
+
+    long begin = System.nanoTime();
+    for (int i = 0; i < SENDS; i++) {
+      TransactionID id = new TransactionID(++current);
+      TransactionID oldest = id;
+      for (TransactionID pending : inFlight.keySet()) {
+        if (oldest.compareTo(pending) > 0) {
+          oldest = pending;
+        }
+      }
+      sink += oldest.toLong();
+      inFlight.put(id, id);
+      order.add(id);
+      inFlight.remove(order.poll());
+    }
+    return System.nanoTime() - begin;
+  }
+
+  private static long windowed(int depth) {
+    ConcurrentMap<TransactionID, Object> inFlight = new ConcurrentHashMap<TransactionID, Object>();
+    ArrayDeque<TransactionID> order = new ArrayDeque<TransactionID>();
+    PendingTransactionWindow window = new PendingTransactionWindow(1);
+    for (int i = 0; i < depth; i++) {
+      TransactionID id = window.begin();
+      inFlight.put(id, id);
+      order.add(id);
+    }
+
+    long begin = System.nanoTime();
+    for (int i = 0; i < SENDS; i++) {
+      TransactionID id = window.begin();
+      TransactionID oldest = window.getOldestPending();
+      sink += oldest.toLong();
+      inFlight.put(id, id);
+      order.add(id);
+      TransactionID completed = order.poll();
+      inFlight.remove(completed);
+      window.complete(completed);
+    }
+    return System.nanoTime() - begin;
+  }
+
+  private static long perSecond(int count, long nanos) {
+    return (count * 1000000000L) / Math.max(1, nanos);
+  }
+}
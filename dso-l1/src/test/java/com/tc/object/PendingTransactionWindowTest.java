@@ -0,0 +1,73 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.object.tx.TransactionID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class PendingTransactionWindowTest extends TestCase {
+  public void testOldestWithNothingPending() {
+    PendingTransactionWindow window = new PendingTransactionWindow(1);
+    assertEquals(new TransactionID(1), window.getOldestPending());
+    TransactionID first = window.begin();
+    assertEquals(new TransactionID(1), first);
+    window.complete(first);
+    assertEquals(new TransactionID(2), window.getOldestPending());
+    assertEquals(0, window.size());
+  }
+
+  public void testOutOfOrderCompletion() {
+    PendingTransactionWindow window = new PendingTransactionWindow(1);
+    TransactionID one = window.begin();
+    TransactionID two = window.begin();
+    TransactionID three = window.begin();
+    window.complete(two);
+    window.complete(three);
+    // The oldest is still pending so the trailing edge can't move.
+    assertEquals(one, window.getOldestPending());
+    window.complete(one);
+    // Completing it slides past everything which already completed.
+    assertEquals(new TransactionID(4), window.getOldestPending());
+  }
+
+  public void testGrowsPastInitialCapacity() {
+    PendingTransactionWindow window = new PendingTransactionWindow(1);
+    List<TransactionID> pending = new ArrayList<TransactionID>();
+    for (int i = 0; i < 5000; ++i) {
+      pending.add(window.begin());
+    }
+    assertEquals(5000, window.size());
+    Collections.shuffle(pending, new Random(0));
+    for (TransactionID id : pending) {
+      TransactionID oldest = window.getOldestPending();
+      window.complete(id);
+      // The trailing edge only ever moves forward.
+      assertTrue(window.getOldestPending().compareTo(oldest) >= 0);
+    }
+    assertEquals(0, window.size());
+    assertEquals(new TransactionID(5001), window.getOldestPending());
+  }
+}
@@ -16,28 +16,19 @@
  *  Terracotta, Inc., a Software AG company
  *
  */
-package com.tc.objectserver.locks.context;
+package com.tc.management.beans;
 
-import com.tc.net.ClientID;
-import com.tc.object.locks.ServerLockContext;
-import com.tc.object.locks.ThreadID;
+import com.tc.management.TerracottaMBean;
 
-public class LinkedServerLockContext extends ServerLockContext {
-  private ServerLockContext next;
-  
-  public LinkedServerLockContext(ClientID clientID, ThreadID threadID) {
-    super(clientID, threadID);
-  }
-
-  @Override
-  public ServerLockContext getNext() {
-    return next;
-  }
+/**
+ * How client connections are spread over the server's worker comm threads, and how often they have been moved to
+ * even out the traffic.
+ */
+public interface CommThreadsMBean extends TerracottaMBean {
+  long getConnectionsRebalanced();
 
-  @Override
-  public ServerLockContext setNext(ServerLockContext next) {
-    ServerLockContext old = this.next;
-    this.next = next;
-    return old;
-  }
+  /**
+   * @return a line for each worker comm thread with its weight, connections and recent traffic
+   */
+  String[] getWorkerCommLoad();
 }
@@ -0,0 +1,108 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.management.beans;
+
+import com.tc.management.AbstractTerracottaMBean;
+import com.tc.objectserver.entity.PassiveSyncWindow;
+import com.tc.objectserver.entity.ActiveToPassiveReplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.NotCompliantMBeanException;
+
+public class PassiveSync extends AbstractTerracottaMBean implements PassiveSyncMBean {
+  private final ActiveToPassiveReplication replication;
+
+  public PassiveSync(ActiveToPassiveReplication replication) throws NotCompliantMBeanException {
+    super(PassiveSyncMBean.class, false);
+    this.replication = replication;
+  }
+
+  @Override
+  public int getPassivesSyncing() {
+    return syncing().size();
+  }
+
+  @Override
+  public int getEntitiesToSync() {
+    int count = 0;
+    for (PassiveSyncWindow sync : syncing()) {
+      count += sync.getEntityCount();
+    }
+    return count;
+  }
+
+  @Override
+  public int getEntitiesSynced() {
+    int count = 0;
+    for (PassiveSyncWindow sync : syncing()) {
+      count += sync.getEntitiesSynced();
+    }
+    return count;
+  }
+
+  @Override
+  public long getBytesSynced() {
+    long bytes = 0;
+    for (PassiveSyncWindow sync : syncing()) {
+      bytes += sync.getBytesSent();
+    }
+    return bytes;
+  }
+
+  @Override
+  public long getEstimatedMillisRemaining() {
+    long remaining = 0;
+    for (PassiveSyncWindow sync : syncing()) {
+      long estimate = sync.getEstimatedMillisRemaining();
+      if (estimate < 0) {
+        return -1;
+      }
+      remaining = Math.max(remaining, estimate);
+    }
+    return remaining;
+  }
+
+  @Override
+  public String[] getPassiveSyncProgress() {
+    List<String> progress = new ArrayList<String>();
+    for (PassiveSyncWindow sync : replication.getPassiveSyncs()) {
+      progress.add(sync.getPassive() + ": " + sync.getEntitiesSynced() + "/" + sync.getEntityCount() + " entities, "
+                   + sync.getBytesSent() + " bytes, " + sync.getElapsedMillis() + "ms elapsed, "
+                   + (sync.isFinished() ? "done" : sync.getEstimatedMillisRemaining() + "ms remaining"));
+    }
+    return progress.toArray(new String[progress.size()]);
+  }
+
+  @Override
+  public void reset() {
+    replication.clearFinishedPassiveSyncs();
+  }
+
+  private List<PassiveSyncWindow> syncing() {
+    List<PassiveSyncWindow> syncing = new ArrayList<PassiveSyncWindow>();
+    for (PassiveSyncWindow sync : replication.getPassiveSyncs()) {
+      if (!sync.isFinished()) {
+        syncing.add(sync);
+      }
+    }
+    return syncing;
+  }
+}
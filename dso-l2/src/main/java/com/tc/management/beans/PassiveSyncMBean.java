@@ -0,0 +1,46 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.management.beans;
+
+import com.tc.management.TerracottaMBean;
+
+/**
+ * Progress of the sync of new passives from this active.  The totals cover the passives still being synced.
+ */
+public interface PassiveSyncMBean extends TerracottaMBean {
+  int getPassivesSyncing();
+
+  int getEntitiesToSync();
+
+  int getEntitiesSynced();
+
+  long getBytesSynced();
+
+  /**
+   * @return the estimated milliseconds until every passive being synced is done, or -1 if there is not yet enough to
+   *         base an estimate on
+   */
+  long getEstimatedMillisRemaining();
+
+  /**
+   * @return a line of progress for each passive synced, whether done or still in progress.  {@link #reset()} forgets
+   *         the ones which are done
+   */
+  String[] getPassiveSyncProgress();
+}
@@ -23,6 +23,7 @@ import org.terracotta.entity.ClientDescriptor;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.object.EntityID;
+import com.tc.objectserver.entity.PassiveSyncWindow;
 
 
 /**
@@ -59,6 +60,7 @@ public interface ManagedEntity {
    * Called to sync an entity.  Caller initiates sync of an entity through this method.  
    * 
    * @param passive target passive
+   * @param window flow control for the messages sent to the passive, shared by every entity being synced to it
    */
-  void sync(NodeID passive);
+  void sync(NodeID passive, PassiveSyncWindow window);
 }
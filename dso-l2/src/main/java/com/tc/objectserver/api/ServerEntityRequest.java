@@ -24,6 +24,8 @@ import org.terracotta.exception.EntityException;
 import com.tc.net.NodeID;
 import com.tc.object.tx.TransactionID;
 
+import java.util.concurrent.CompletionStage;
+
 
 public interface ServerEntityRequest {
 
@@ -48,4 +50,10 @@ public interface ServerEntityRequest {
   void received();
 
   boolean requiresReplication();
+
+  /**
+   * Holds back the response sent by {@link #complete()}, {@link #complete(byte[])} or {@link #failure(EntityException)}
+   * until the given stage completes, so the request can be executed before its replication has been acknowledged.
+   */
+  void deferResponse(CompletionStage<Void> until);
 }
@@ -43,4 +43,14 @@ public interface GlobalServerStats {
   SampledCumulativeCounter getServerMapGetValueRequestsCounter();
 
   SampledCounter getOperationCounter();
+
+  SampledCounter getPersistenceCommitCounter();
+
+  SampledRateCounter getPersistenceCommitBatchSizeCounter();
+
+  SampledRateCounter getPersistenceCommitLatencyCounter();
+
+  SampledCounter getSpeculativeExecutionCounter();
+
+  SampledRateCounter getSpeculativeExecutionOverlapCounter();
 }
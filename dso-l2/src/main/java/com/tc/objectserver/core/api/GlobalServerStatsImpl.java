@@ -38,6 +38,13 @@ public class GlobalServerStatsImpl implements GlobalServerStats {
   private SampledCumulativeCounter serverMapGetValueRequestsCounter;
   private SampledCumulativeCounter serverMapGetSnapshotRequestsCounter;
 
+  private SampledCounter                 persistenceCommitCounter;
+  private SampledRateCounter             persistenceCommitBatchSizeCounter;
+  private SampledRateCounter             persistenceCommitLatencyCounter;
+
+  private SampledCounter                 speculativeExecutionCounter;
+  private SampledRateCounter             speculativeExecutionOverlapCounter;
+
   public GlobalServerStatsImpl(SampledCounter readCounter, SampledCounter txnCounter,
                                SampledCounter broadcastCounter,
                                SampledCounter globalLockRecallCounter,
@@ -77,6 +84,19 @@ public class GlobalServerStatsImpl implements GlobalServerStats {
     return this;
   }
 
+  public GlobalServerStatsImpl persistenceCommitCounters(SampledCounter commitCounter, SampledRateCounter batchSizeCounter, SampledRateCounter latencyCounter) {
+    this.persistenceCommitCounter = commitCounter;
+    this.persistenceCommitBatchSizeCounter = batchSizeCounter;
+    this.persistenceCommitLatencyCounter = latencyCounter;
+    return this;
+  }
+
+  public GlobalServerStatsImpl speculativeExecutionCounters(SampledCounter executionCounter, SampledRateCounter overlapCounter) {
+    this.speculativeExecutionCounter = executionCounter;
+    this.speculativeExecutionOverlapCounter = overlapCounter;
+    return this;
+  }
+
   @Override
   public SampledCounter getReadOperationRateCounter() {
     return this.readCounter;
@@ -131,4 +151,29 @@ public class GlobalServerStatsImpl implements GlobalServerStats {
     return serverMapGetSnapshotRequestsCounter;
   }
 
+  @Override
+  public SampledCounter getPersistenceCommitCounter() {
+    return persistenceCommitCounter;
+  }
+
+  @Override
+  public SampledRateCounter getPersistenceCommitBatchSizeCounter() {
+    return persistenceCommitBatchSizeCounter;
+  }
+
+  @Override
+  public SampledRateCounter getPersistenceCommitLatencyCounter() {
+    return persistenceCommitLatencyCounter;
+  }
+
+  @Override
+  public SampledCounter getSpeculativeExecutionCounter() {
+    return speculativeExecutionCounter;
+  }
+
+  @Override
+  public SampledRateCounter getSpeculativeExecutionOverlapCounter() {
+    return speculativeExecutionOverlapCounter;
+  }
+
 }
@@ -22,6 +22,7 @@ import com.tc.entity.VoltronEntityAppliedResponse;
 import com.tc.entity.VoltronEntityReceivedResponse;
 import com.tc.net.NodeID;
 import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessage;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.EntityDescriptor;
 import com.tc.object.tx.TransactionID;
@@ -29,6 +30,7 @@ import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
 
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 
 import org.terracotta.exception.EntityException;
 
@@ -42,6 +44,8 @@ public abstract class AbstractServerEntityRequest implements ServerEntityRequest
   private final boolean requiresReplication;
   
   private boolean done = false;
+  // If set, the response is only sent once this completes (see deferResponse).
+  private CompletionStage<Void> responseGate = null;
 
   public AbstractServerEntityRequest(EntityDescriptor descriptor, ServerEntityAction action, TransactionID transaction, TransactionID oldest, NodeID src, boolean requiresReplication) {
     this.action = action;
@@ -91,7 +95,7 @@ public abstract class AbstractServerEntityRequest implements ServerEntityRequest
     getReturnChannel().ifPresent(channel -> {
       VoltronEntityAppliedResponse message = (VoltronEntityAppliedResponse) channel.createMessage(TCMessageType.VOLTRON_ENTITY_APPLIED_RESPONSE);
       message.setFailure(transaction, e);
-      message.send();
+      respond(message);
     });
     done = true;
     this.notifyAll();
@@ -117,7 +121,7 @@ public abstract class AbstractServerEntityRequest implements ServerEntityRequest
         case DOES_EXIST:
           // In these cases, we just return an empty success to acknowledge that they completed.
           actionResponse.setSuccess(transaction, new byte[0]);
-          actionResponse.send();
+          respond(actionResponse);
           break;
         default:
           // Unknown action completion type.
@@ -136,7 +140,7 @@ public abstract class AbstractServerEntityRequest implements ServerEntityRequest
         case FETCH_ENTITY:
           VoltronEntityAppliedResponse actionResponse = (VoltronEntityAppliedResponse) channel.createMessage(TCMessageType.VOLTRON_ENTITY_APPLIED_RESPONSE);
           actionResponse.setSuccess(transaction, value);
-          actionResponse.send();
+          respond(actionResponse);
           break;
         default:
           throw new IllegalArgumentException("Unexpected action in complete(byte[]) " + action);
@@ -146,6 +150,21 @@ public abstract class AbstractServerEntityRequest implements ServerEntityRequest
     this.notifyAll();
   }  
   
+  @Override
+  public synchronized void deferResponse(CompletionStage<Void> until) {
+    if (isDone()) throw new AssertionError("Response already sent");
+    this.responseGate = until;
+  }
+
+  private void respond(TCMessage response) {
+    if (null == this.responseGate) {
+      response.send();
+    } else {
+      // Runs right away if the gate has already completed, otherwise on whichever thread completes it.
+      this.responseGate.thenRun(response::send);
+    }
+  }
+  
   protected EntityDescriptor getEntityDescriptor() {
     return descriptor;
   }
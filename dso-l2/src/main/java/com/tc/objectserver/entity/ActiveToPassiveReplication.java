@@ -32,20 +32,22 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.handler.ReplicationSender;
 import com.tc.util.Assert;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
-import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  *  This class acts to connect {@link ProcessTransactionHandler} to the {@link ReplicationSender}
@@ -61,14 +63,32 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   private boolean activated = false;
   private final Set<NodeID> passiveNodes = new CopyOnWriteArraySet<>();
   private final Set<NodeID> standByNodes = new CopyOnWriteArraySet<>();
-  private final ConcurrentHashMap<MessageID, Set<NodeID>> waiters = new ConcurrentHashMap<>();
+//  for each passive, the messages which have been sent to it but not yet acknowledged
+  private final ConcurrentHashMap<NodeID, PassiveTracker> trackers = new ConcurrentHashMap<>();
+//  each passive being replicated to has a bit of its own, which a replication waiter clears once the passive has it
+  private final AtomicLong passiveBits = new AtomicLong();
   private final Sink<ReplicationEnvelope> replicate;
   private final Executor passiveSyncPool = Executors.newCachedThreadPool();
+//  the sync to each passive, in progress or the last one completed
+  private final ConcurrentHashMap<NodeID, PassiveSyncWindow> syncs = new ConcurrentHashMap<>();
+  private final int syncWindow;
+  private final int syncParallelism;
 
   public ActiveToPassiveReplication(Iterable<NodeID> passives, Iterable<ManagedEntity> entities, Sink<ReplicationEnvelope> replicate) {
+    this(passives, entities, replicate, 1, 1);
+  }
+
+  /**
+   * @param syncWindow the most sync messages in flight to a syncing passive
+   * @param syncParallelism the most entities synced to a passive at the same time
+   */
+  public ActiveToPassiveReplication(Iterable<NodeID> passives, Iterable<ManagedEntity> entities, Sink<ReplicationEnvelope> replicate,
+      int syncWindow, int syncParallelism) {
     this.entities = entities;
     this.replicate = replicate;
     this.passivesStandbys = passives;
+    this.syncWindow = syncWindow;
+    this.syncParallelism = Math.max(1, syncParallelism);
   }
   
   @Override
@@ -79,7 +99,7 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   private void setPassiveStandbyServers(Iterable<NodeID> standbys) {
     Assert.assertFalse(activated);
     Assert.assertTrue(passiveNodes.isEmpty());
-    standbys.forEach(i -> {Assert.assertTrue(standByNodes.contains(i)); passiveNodes.add(i);});
+    standbys.forEach(i -> {Assert.assertTrue(standByNodes.contains(i)); addPassive(i);});
     passiveNodes.forEach(i -> sendReset(i));
     activated = true;
   }
@@ -94,116 +114,131 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   }
   
   public void startPassiveSync(NodeID newNode) {
-      passiveNodes.add(newNode);
+      // start passive sync message.  queued before anything is replicated to the new passive, which must see it first
+      replicate.addSingleThreaded(PassiveSyncMessage.createStartSyncMessage().target(newNode));
+      addPassive(newNode);
       executePassiveSync(newNode);
   }
+
+  private void addPassive(NodeID node) {
+    long bits;
+    long bit;
+    do {
+      bits = passiveBits.get();
+      bit = Long.lowestOneBit(~bits & ~ReplicationWaiter.ISSUING);
+      if (bit == 0) {
+        throw new IllegalStateException("too many passives to replicate to");
+      }
+    } while (!passiveBits.compareAndSet(bits, bits | bit));
+    trackers.put(node, new PassiveTracker(bit));
+    passiveNodes.add(node);
+  }
   /**
-   * Using an executor service here to sync multiple passives at once
-   * @param groups
+   * Using an executor service here to sync multiple passives at once, and several entities to each of them
    * @param newNode 
    */
   private void executePassiveSync(final NodeID newNode) {
     passiveSyncPool.execute(new Runnable() {
       @Override
       public void run() {    
-        // start passive sync message
-        replicate.addSingleThreaded(PassiveSyncMessage.createStartSyncMessage().target(newNode));
-        for (ManagedEntity entity : entities) {
-            entity.sync(newNode);
+        List<ManagedEntity> toSync = new ArrayList<>();
+        entities.forEach(toSync::add);
+        PassiveSyncWindow window = new PassiveSyncWindow(newNode, syncWindow, toSync.size());
+        syncs.put(newNode, window);
+        Semaphore running = new Semaphore(syncParallelism);
+        List<CompletableFuture<Void>> synced = new ArrayList<>(toSync.size());
+        for (ManagedEntity entity : toSync) {
+          running.acquireUninterruptibly();
+          CompletableFuture<Void> one = CompletableFuture.runAsync(() -> entity.sync(newNode, window), passiveSyncPool);
+          one.thenRun(window::entitySynced);
+          one.whenComplete((done, failure) -> running.release());
+          synced.add(one);
         }
+    //  every entity must have ended its sync before the passive is told the sync is done
+        CompletableFuture.allOf(synced.toArray(new CompletableFuture<?>[synced.size()])).join();
     //  passive sync done message.  causes passive to go into passive standby mode
         replicate.addSingleThreaded(PassiveSyncMessage.createEndSyncMessage().target(newNode));
+        window.finished();
       }
     });
   }
 
-  private void acknowledge(MessageID mid, NodeID releaser) {
-    Set<NodeID> plist = waiters.get(mid);
-    if (plist != null) {
-      synchronized(plist) {
-        if (plist.remove(releaser) && plist.isEmpty()) {
-          waiters.remove(mid);
-          plist.notifyAll();
-        }
-      }
-    }
-  }    
+  /**
+   * @return the sync to each passive which is being synced, or has been since it joined
+   */
+  public Collection<PassiveSyncWindow> getPassiveSyncs() {
+    return Collections.unmodifiableCollection(syncs.values());
+  }
 
+  /**
+   * Forgets the syncs which are done, leaving those still in progress.
+   */
+  public void clearFinishedPassiveSyncs() {
+    syncs.values().removeIf(PassiveSyncWindow::isFinished);
+  }
+
+  /**
+   * Releases the one message the passive has acknowledged by message ID.
+   */
   public void acknowledge(GroupMessage msg) {
-    acknowledge(msg.inResponseTo(), msg.messageFrom());
+    PassiveTracker tracker = trackers.get(msg.messageFrom());
+    if (tracker != null) {
+      tracker.acknowledge(msg.inResponseTo());
+    }
   }    
 
+  /**
+   * Releases, in one sweep, every message the passive has acknowledged by replication ID.
+   */
+  public void acknowledgeThrough(NodeID releaser, long replicationID) {
+    PassiveTracker tracker = trackers.get(releaser);
+    if (tracker != null) {
+      tracker.acknowledgeThrough(replicationID);
+    }
+  }
+
   @Override
   public Set<NodeID> passives() {
     return passiveNodes;
   }
 
-  //  this method is synchronized to protect the passiveNodes list.  It will compete
-  // with passive node removal.  this is only called by a single thread as is node disconnect
   @Override
-  public synchronized Future<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> all) {
-    Set<NodeID> copy = new HashSet<>(all); 
-    copy.removeIf(node -> !passiveNodes.contains(node));
-    if (!copy.isEmpty()) {
-      waiters.put(msg.getMessageID(), copy);
-      for (NodeID node : copy) {
-        replicate.addSingleThreaded(msg.target(node, ()->acknowledge(msg.getMessageID(), node)));
-      }
+  public CompletableFuture<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> all) {
+    if (trackers.isEmpty()) {
+      return NoReplicationBroker.NOOP_FUTURE;
     }
-    
-    return new Future<Void>() {
-
-      @Override
-      public boolean cancel(boolean mayInterruptIfRunning) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-      }
-
-      @Override
-      public boolean isCancelled() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-      }
-
-      @Override
-      public boolean isDone() {
-        synchronized(copy) {
-          return copy.isEmpty();
-        }
-      }
-
-      @Override
-      public Void get() throws InterruptedException, ExecutionException {
-        synchronized (copy) {
-          while (!copy.isEmpty()) {
-            copy.wait();
-          }
+    ReplicationWaiter waiter = new ReplicationWaiter(msg.getMessageID());
+    if (all.size() == 1) {
+      issue(msg, all.iterator().next(), waiter);
+    } else {
+//  every passive must be sent messages in the same order, so those going to several are queued for all of them at once
+      synchronized (this) {
+        for (NodeID node : all) {
+          issue(msg, node, waiter);
         }
-        return null;
       }
+    }
+//  if there was nobody to send it to, this completes it
+    waiter.release(ReplicationWaiter.ISSUING);
+    return waiter.isPending() ? waiter : NoReplicationBroker.NOOP_FUTURE;
+  }
 
-      @Override
-      public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        synchronized (copy) {
-          while (!copy.isEmpty()) {
-            copy.wait(unit.toMillis(timeout));
-          }
-        }
-        return null;
-      }
-    };
+  private void issue(ReplicationMessage msg, NodeID node, ReplicationWaiter waiter) {
+    PassiveTracker tracker = trackers.get(node);
+    if (tracker != null) {
+      waiter.add(tracker.bit);
+//  if the passive is gone by the time this is sent, the replication sender drops it and releases it
+      replicate.addSingleThreaded(msg.target(node, ()->waiter.release(tracker.bit), rid->tracker.ordered(rid, waiter)));
+    }
   }
-  //  this method is synchronized to protect the passiveNodes list.  It will compete
-  // with passive node replicate
-  public synchronized void removePassive(NodeID nodeID) {
+
+  public void removePassive(NodeID nodeID) {
     passiveNodes.remove(nodeID);
-    
-    for (Map.Entry<MessageID, Set<NodeID>> entry : waiters.entrySet()) {
-      Set<NodeID> all = entry.getValue();
-      synchronized (all) {
-        if (all.remove(nodeID) && all.isEmpty()) {
-          waiters.remove(entry.getKey());
-          all.notifyAll();
-        }
-      }
+    PassiveTracker tracker = trackers.remove(nodeID);
+    syncs.remove(nodeID);
+    if (tracker != null) {
+      tracker.remove();
+      passiveBits.getAndAdd(-tracker.bit);
     }
 //  this is a flush message (null).  Tell the sink there will be no more 
 //  messages targeted at this nodeid
@@ -220,4 +255,137 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     removePassive(nodeID);
     standByNodes.remove(nodeID);
   }
+
+  /**
+   * The passives which have yet to acknowledge one replicated message, a bit for each.  Completes, on the thread
+   * delivering the last acknowledgement, so that anything waiting on the replication can be chained onto it rather
+   * than block.  Releasing a passive which has already been released does nothing, so the same acknowledgement may
+   * safely be seen twice.
+   */
+  private static class ReplicationWaiter extends CompletableFuture<Void> {
+//  held while the message is being queued for its passives, so early acknowledgements cannot complete it
+    static final long ISSUING = Long.MIN_VALUE;
+    private static final AtomicLongFieldUpdater<ReplicationWaiter> PENDING = AtomicLongFieldUpdater.newUpdater(ReplicationWaiter.class, "pending");
+    private final MessageID mid;
+    private volatile long pending = ISSUING;
+
+    ReplicationWaiter(MessageID mid) {
+      this.mid = mid;
+    }
+
+    void add(long bit) {
+      PENDING.getAndAccumulate(this, bit, (current, add) -> current | add);
+    }
+
+    boolean isPending() {
+      return pending != 0;
+    }
+
+    /**
+     * @return true if this was the last passive to release the message
+     */
+    boolean release(long bit) {
+      long current;
+      do {
+        current = pending;
+        if ((current & bit) == 0) {
+          return false;
+        }
+      } while (!PENDING.compareAndSet(this, current, current & ~bit));
+      if (current == bit) {
+        complete(null);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The messages sent to one passive and not yet acknowledged, in a ring indexed by replication ID.  Only the
+   * replication sender thread adds to the ring, always past the highest ID acknowledged so far, while acknowledgements
+   * clear it from the other end.
+   */
+  private static class PassiveTracker {
+    private static final int INITIAL_CAPACITY = 64;
+    private final long bit;
+    private volatile AtomicReferenceArray<ReplicationWaiter> ring = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private final AtomicLong acknowledged = new AtomicLong(-1);
+    private volatile long ordered = -1;
+    private volatile boolean removed = false;
+
+    PassiveTracker(long bit) {
+      this.bit = bit;
+    }
+
+    void ordered(long replicationID, ReplicationWaiter waiter) {
+      AtomicReferenceArray<ReplicationWaiter> current = ring;
+      if (replicationID == 0) {
+//  the ordering has been reset so anything left over from a previous connection to this node is stale
+        current = new AtomicReferenceArray<>(current.length());
+        ring = current;
+        acknowledged.set(-1);
+      } else if (replicationID - acknowledged.get() > current.length()) {
+        current = grow(current, replicationID);
+      }
+      current.set(index(current, replicationID), waiter);
+      ordered = replicationID;
+//  the passive may have been removed while this was on its way to the sender
+      if (removed) {
+        waiter.release(bit);
+      }
+    }
+
+    private AtomicReferenceArray<ReplicationWaiter> grow(AtomicReferenceArray<ReplicationWaiter> current, long replicationID) {
+      long from = acknowledged.get() + 1;
+      int capacity = current.length();
+      while (replicationID - from >= capacity) {
+        capacity <<= 1;
+      }
+      AtomicReferenceArray<ReplicationWaiter> grown = new AtomicReferenceArray<>(capacity);
+      for (long rid = from; rid <= ordered; rid++) {
+        grown.set(index(grown, rid), current.get(index(current, rid)));
+      }
+      ring = grown;
+      return grown;
+    }
+
+    void acknowledgeThrough(long replicationID) {
+      long from = acknowledged.get();
+      long through = Math.min(replicationID, ordered);
+      AtomicReferenceArray<ReplicationWaiter> current = ring;
+      for (long rid = from + 1; rid <= through; rid++) {
+        ReplicationWaiter waiter = current.getAndSet(index(current, rid), null);
+        if (waiter != null) {
+          waiter.release(bit);
+        }
+      }
+//  loses out to a reset of the ordering in the meantime
+      acknowledged.compareAndSet(from, Math.max(from, through));
+    }
+
+    void acknowledge(MessageID mid) {
+      AtomicReferenceArray<ReplicationWaiter> current = ring;
+      for (long rid = acknowledged.get() + 1; rid <= ordered; rid++) {
+        int index = index(current, rid);
+        ReplicationWaiter waiter = current.get(index);
+        if (waiter != null && waiter.mid.equals(mid)) {
+          current.compareAndSet(index, waiter, null);
+          waiter.release(bit);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Releases everything outstanding to this passive, which will not be acknowledging it.
+     */
+    void remove() {
+      removed = true;
+      acknowledgeThrough(Long.MAX_VALUE);
+    }
+
+    private static int index(AtomicReferenceArray<ReplicationWaiter> ring, long replicationID) {
+      return (int) (replicationID & (ring.length() - 1));
+    }
+  }
 }
@@ -44,6 +44,7 @@ import com.tc.util.Assert;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import org.terracotta.entity.EntityResponse;
@@ -178,6 +179,8 @@ public class EntityManagerImpl implements EntityManager {
     private final long version;
     private final ServerEntityAction action;
     private boolean complete = false;
+    // If set, waitForCompletion only returns once this completes as well (see deferResponse).
+    private CompletionStage<Void> responseGate = null;
 
     public InternalRequest(EntityID id, long version, ServerEntityAction action) {
       this.entity = id;
@@ -199,6 +202,15 @@ public class EntityManagerImpl implements EntityManager {
 
     @Override
     public synchronized void complete() {
+      if (null == responseGate) {
+        completed();
+      } else {
+        // Runs right away if the gate has already completed, otherwise on whichever thread completes it.
+        responseGate.thenRun(this::completed);
+      }
+    }
+    
+    private synchronized void completed() {
       complete = true;
       notifyAll();
     }
@@ -232,6 +244,12 @@ public class EntityManagerImpl implements EntityManager {
       // These are internal requests so they are never replicated.
       return false;
     }
+
+    @Override
+    public synchronized void deferResponse(CompletionStage<Void> until) {
+      if (complete) throw new AssertionError("Already complete");
+      this.responseGate = until;
+    }
     
     public synchronized void waitForCompletion() {
       boolean interrupted = false;
@@ -43,9 +43,9 @@ import com.tc.objectserver.api.ServerEntityRequest;
 import com.tc.objectserver.core.api.ITopologyEventCollector;
 import com.tc.util.Assert;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -351,17 +351,15 @@ public class ManagedEntityImpl implements ManagedEntity {
       if (null == this.activeServerEntity) {
         throw new IllegalStateException("Actions on a non-existent entity.");
       } else {
-        // Create the channel which will send the payloads over the wire.
+        // Create the channel which will send the payloads over the wire.  Sync requests are only ever created by sync()
+        PassiveSyncWindow window = ((PassiveSyncServerEntityRequest)wrappedRequest).getWindow();
         PassiveSynchronizationChannel syncChannel = new PassiveSynchronizationChannel() {
           @Override
 //  TODO:  what should be done about exception handling?
           public void synchronizeToPassive(byte[] payload) {
-            Future<Void> wait = executor.scheduleSync(PassiveSyncMessage.createPayloadMessage(id, version, concurrencyKey, payload), wrappedRequest.getNodeID());
             try {
-              wait.get();
-            } catch (ExecutionException ee) {
-            // TODO: do something reasoned here
-              throw new RuntimeException(ee);
+//  only waits once the window to the passive is full, rather than for every payload
+              window.send(payload.length, () -> executor.scheduleSync(PassiveSyncMessage.createPayloadMessage(id, version, concurrencyKey, payload), wrappedRequest.getNodeID()));
             } catch (InterruptedException ie) {
             // TODO: do something reasoned here
               Thread.currentThread().interrupt();
@@ -369,7 +367,11 @@ public class ManagedEntityImpl implements ManagedEntity {
             }
           }};
 //  start is handled by the sync request that triggered this action
-        this.activeServerEntity.synchronizeKeyToPassive(syncChannel, concurrencyKey);
+        try {
+          this.activeServerEntity.synchronizeKeyToPassive(syncChannel, concurrencyKey);
+        } finally {
+          window.keySynced();
+        }
         executor.scheduleSync(PassiveSyncMessage.createEndEntityKeyMessage(id, version, concurrencyKey), wrappedRequest.getNodeID());
         wrappedRequest.complete();
       }
@@ -464,14 +466,26 @@ public class ManagedEntityImpl implements ManagedEntity {
   }
 
   @Override
-  public void sync(NodeID passive) {
+  public void sync(NodeID passive, PassiveSyncWindow window) {
     executor.scheduleSync(PassiveSyncMessage.createStartEntityMessage(id, version, constructorInfo), passive);
-// iterate through all the concurrency keys of an entity
+    // We don't actually use the message in the direct strategy so this is safe.
+    EntityDescriptor entityDescriptor = new EntityDescriptor(this.id, ClientInstanceID.NULL_ID, this.version);
+// iterate through all the concurrency keys of an entity.  each is synced on its own request processor thread so
+// the keys are synced in parallel, sharing the window to the passive.  a key is only scheduled once the window lets
+// it start, so the keys waiting on the passive never hold more request processor threads than that
+    List<PassiveSyncServerEntityRequest> keys = new ArrayList<>();
     for (Integer concurrency : this.activeServerEntity.getConcurrencyStrategy().getKeysForSynchronization()) {
-      PassiveSyncServerEntityRequest req = new PassiveSyncServerEntityRequest(id, version, passive);
-      // We don't actually use the message in the direct strategy so this is safe.
-      EntityDescriptor entityDescriptor = new EntityDescriptor(this.id, ClientInstanceID.NULL_ID, this.version);
+      try {
+        window.startKey();
+      } catch (InterruptedException ie) {
+        //  TODO
+        throw new RuntimeException(ie);
+      }
+      PassiveSyncServerEntityRequest req = new PassiveSyncServerEntityRequest(id, version, passive, window);
       executor.scheduleRequest(entityDescriptor, req, null, () -> invoke(req, null, concurrency), concurrency);
+      keys.add(req);
+    }
+    for (PassiveSyncServerEntityRequest req : keys) {
       req.waitFor();
     }
 //  end passive sync for an entity
@@ -505,9 +519,15 @@ public class ManagedEntityImpl implements ManagedEntity {
   }
 
   private static class PassiveSyncServerEntityRequest extends AbstractServerEntityRequest {
+    private final PassiveSyncWindow window;
     
-    public PassiveSyncServerEntityRequest(EntityID eid, long version, NodeID passive) {
+    public PassiveSyncServerEntityRequest(EntityID eid, long version, NodeID passive, PassiveSyncWindow window) {
       super(new EntityDescriptor(eid,ClientInstanceID.NULL_ID,version), ServerEntityAction.REQUEST_SYNC_ENTITY, null, null, passive, false);
+      this.window = window;
+    }
+
+    public PassiveSyncWindow getWindow() {
+      return window;
     }
 
     @Override
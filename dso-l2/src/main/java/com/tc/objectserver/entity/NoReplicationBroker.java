@@ -23,10 +23,7 @@ import com.tc.net.NodeID;
 import com.tc.util.Assert;
 import java.util.Collections;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CompletableFuture;
 /**
  * Stubbed implementation which provides no replication.
  */
@@ -34,32 +31,7 @@ public class NoReplicationBroker implements PassiveReplicationBroker {
   
   private boolean isActive = false;
   
-  public static final Future<Void> NOOP_FUTURE = new Future<Void>() {
-      @Override
-      public boolean cancel(boolean mayInterruptIfRunning) {
-        return false;
-      }
-
-      @Override
-      public boolean isCancelled() {
-        return false;
-      }
-
-      @Override
-      public boolean isDone() {
-        return true;
-      }
-
-      @Override
-      public Void get() throws InterruptedException, ExecutionException {
-        return null;
-      }
-
-      @Override
-      public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        return null;
-      }
-  };
+  public static final CompletableFuture<Void> NOOP_FUTURE = CompletableFuture.completedFuture(null);
 
   @Override
   public void enterActiveState() {
@@ -74,7 +46,7 @@ public class NoReplicationBroker implements PassiveReplicationBroker {
   }
 
   @Override
-  public Future<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> passives) {
+  public CompletableFuture<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> passives) {
     return NOOP_FUTURE;
   }
 }
@@ -21,10 +21,13 @@ package com.tc.objectserver.entity;
 import com.tc.l2.msg.ReplicationMessage;
 import com.tc.net.NodeID;
 import java.util.Set;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public interface PassiveReplicationBroker {
-  Future<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> passives);
+  /**
+   * @return a future which completes once every one of the given passives has acknowledged the message (or left)
+   */
+  CompletableFuture<Void> replicateMessage(ReplicationMessage msg, Set<NodeID> passives);
   Set<NodeID> passives();
   void enterActiveState();
 }
@@ -0,0 +1,143 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.net.NodeID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Flow control and progress for the sync of one passive.
+ * <p>
+ * Only a window's worth of sync messages may be in flight to the passive at once.  Entities producing their sync
+ * payloads run ahead of the passive that far rather than waiting for each payload in turn, and are only held back once
+ * the window is full.  The concurrency keys being synced at once, each on a request processor thread, are bounded by
+ * the window as well, and a key waits for its turn on the sync thread before it is scheduled.
+ */
+public class PassiveSyncWindow {
+  private final NodeID passive;
+  private final Semaphore window;
+  private final Semaphore keys;
+  private final int entityCount;
+  private final AtomicInteger entitiesSynced = new AtomicInteger();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final long startNanos = System.nanoTime();
+  private long endNanos;
+  private volatile boolean finished = false;
+
+  /**
+   * @param passive the passive being synced
+   * @param size the most messages in flight to the passive at once
+   * @param entityCount the number of entities to be synced, used to estimate the time remaining
+   */
+  public PassiveSyncWindow(NodeID passive, int size, int entityCount) {
+    this.passive = passive;
+    this.window = new Semaphore(Math.max(1, size));
+    this.keys = new Semaphore(Math.max(1, size));
+    this.entityCount = entityCount;
+  }
+
+  /**
+   * Waits for room in the window, then sends the message.  The room is given back once the returned future completes,
+   * when the passive has acknowledged the message or has left.
+   * 
+   * @param bytes the size of the message payload
+   * @param sender sends the message, returning its replication future
+   */
+  public CompletableFuture<Void> send(int bytes, Supplier<CompletableFuture<Void>> sender) throws InterruptedException {
+    window.acquire();
+    CompletableFuture<Void> sent;
+    try {
+      sent = sender.get();
+    } catch (RuntimeException re) {
+      window.release();
+      throw re;
+    }
+    bytesSent.addAndGet(bytes);
+    sent.whenComplete((done, failure) -> window.release());
+    return sent;
+  }
+
+  /**
+   * Waits until a concurrency key may start syncing.  Called before the key is scheduled, and matched by
+   * {@link #keySynced()} once it is done.
+   */
+  public void startKey() throws InterruptedException {
+    keys.acquire();
+  }
+
+  public void keySynced() {
+    keys.release();
+  }
+
+  public void entitySynced() {
+    entitiesSynced.incrementAndGet();
+  }
+
+  public void finished() {
+    endNanos = System.nanoTime();
+    finished = true;
+  }
+
+  public NodeID getPassive() {
+    return passive;
+  }
+
+  public int getEntityCount() {
+    return entityCount;
+  }
+
+  public int getEntitiesSynced() {
+    return entitiesSynced.get();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public long getElapsedMillis() {
+    long end = finished ? endNanos : System.nanoTime();
+    return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+  }
+
+  /**
+   * Estimates the time left from the rate at which entities have been synced so far.
+   * 
+   * @return milliseconds remaining, or -1 if nothing has been synced yet to base an estimate on
+   */
+  public long getEstimatedMillisRemaining() {
+    if (isFinished()) {
+      return 0;
+    }
+    int synced = entitiesSynced.get();
+    if (synced == 0) {
+      return -1;
+    }
+    return getElapsedMillis() * Math.max(0, entityCount - synced) / synced;
+  }
+}
@@ -70,7 +70,7 @@ public class PlatformEntity implements ManagedEntity {
   }
 
   @Override
-  public void sync(NodeID passive) {
+  public void sync(NodeID passive, PassiveSyncWindow window) {
   //  never sync
   }
 }
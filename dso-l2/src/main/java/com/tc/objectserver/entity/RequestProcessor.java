@@ -29,11 +29,21 @@ import com.tc.object.EntityDescriptor;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
+import com.tc.stats.counter.sampled.SampledCounter;
+import com.tc.stats.counter.sampled.derived.SampledRateCounter;
 import com.tc.util.Assert;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.terracotta.entity.ConcurrencyStrategy;
 
 
@@ -41,10 +51,42 @@ public class RequestProcessor implements StateChangeListener {
   private PassiveReplicationBroker passives;
   private final Sink<Runnable> requestExecution;
   private boolean isActive = false;
+//  if true, a request is only handed to the stage once its replication is acknowledged so it never waits on a worker thread
+  private final boolean holdUntilReplicated;
+//  if true, invokes run while their replication is in flight and only the response to the client waits for the passives
+  private final boolean speculative;
+  private final SampledCounter speculativeExecutionCounter;
+  private final SampledRateCounter speculativeOverlapCounter;
+//  requests held back because their replication, or that of an earlier request they must follow, is outstanding.
+//  keyed requests are held in order, by scheduling key.  a held flush is a barrier, nothing sequenced after it is
+//  released before it is.  all of this is guarded by the heldByKey monitor
+  private final Map<Object, Deque<EntityRequest>> heldByKey = new HashMap<>();
+  private final Set<EntityRequest> heldUnkeyed = new LinkedHashSet<>();
+  private final Deque<EntityRequest> heldFlushes = new ArrayDeque<>();
+  private final AtomicInteger heldCount = new AtomicInteger();
+  private long heldSequence = 0;
 //  TODO: do some accounting for transaction de-dupping on failover
 
   public RequestProcessor(Sink<Runnable> requestExecution) {
+    this(requestExecution, false);
+  }
+
+  public RequestProcessor(Sink<Runnable> requestExecution, boolean holdUntilReplicated) {
+    this(requestExecution, holdUntilReplicated, false, null, null);
+  }
+
+  /**
+   * @param speculativeExecutionCounter counts the invokes executed ahead of their replication (may be null)
+   * @param speculativeOverlapCounter samples the time, in microseconds, for which each of those invokes was executing
+   *        while its replication was still outstanding (may be null)
+   */
+  public RequestProcessor(Sink<Runnable> requestExecution, boolean holdUntilReplicated, boolean speculative,
+      SampledCounter speculativeExecutionCounter, SampledRateCounter speculativeOverlapCounter) {
     this.requestExecution = requestExecution;
+    this.holdUntilReplicated = holdUntilReplicated;
+    this.speculative = speculative;
+    this.speculativeExecutionCounter = speculativeExecutionCounter;
+    this.speculativeOverlapCounter = speculativeOverlapCounter;
   }
 
   public void enterActiveState() {
@@ -52,7 +94,7 @@ public class RequestProcessor implements StateChangeListener {
     isActive = true;
   }
 
-  public Future<Void> scheduleSync(PassiveSyncMessage msg, NodeID passive) {
+  public CompletableFuture<Void> scheduleSync(PassiveSyncMessage msg, NodeID passive) {
     return passives.replicateMessage(msg, Collections.singleton(passive));
   }
   
@@ -69,12 +111,145 @@ public class RequestProcessor implements StateChangeListener {
   public void scheduleRequest(EntityDescriptor entity, ServerEntityRequest request, byte[] payload, Runnable call, int concurrencyKey) {
     // Unless this is a message type we allow to choose its own concurrency key, we will use management (default for all internal operations).
     Set<NodeID> replicateTo = (isActive && passives != null && request.requiresReplication()) ? passives.passives() : Collections.emptySet();
-    Future<Void> token = (!replicateTo.isEmpty())
+    CompletableFuture<Void> token = (!replicateTo.isEmpty())
         ? passives.replicateMessage(createReplicationMessage(entity, request.getNodeID(), request.getAction(), 
             request.getTransaction(), request.getOldestTransactionOnClient(), payload, concurrencyKey), replicateTo)
         : NoReplicationBroker.NOOP_FUTURE;
-    EntityRequest entityRequest =  new EntityRequest(entity, request, call, concurrencyKey, token);
-    requestExecution.addMultiThreaded(entityRequest);
+    EntityRequest entityRequest;
+    if (speculative && !token.isDone() && request.getAction() == ServerEntityAction.INVOKE_ACTION) {
+//  run it now, the client only hears about it once the passives have it
+      request.deferResponse(token);
+      entityRequest = new EntityRequest(entity, request, new Speculation(call, token), concurrencyKey, NoReplicationBroker.NOOP_FUTURE);
+    } else {
+      entityRequest = new EntityRequest(entity, request, call, concurrencyKey, token);
+    }
+    if (!holdUntilReplicated || (token.isDone() && heldCount.get() == 0)) {
+//  nothing to wait for and nothing held which this could overtake, held flushes included
+      requestExecution.addMultiThreaded(entityRequest);
+    } else {
+      hold(entityRequest);
+    }
+  }
+  
+  private void hold(EntityRequest request) {
+    synchronized (heldByKey) {
+      Object key = request.getSchedulingKey();
+      Deque<EntityRequest> queue = (null != key) ? heldByKey.get(key) : null;
+      if (request.token.isDone() && null == queue && heldFlushes.isEmpty() && (!request.flush() || heldCount.get() == 0)) {
+        requestExecution.addMultiThreaded(request);
+        return;
+      }
+      request.sequence = ++heldSequence;
+      if (null == key) {
+        heldUnkeyed.add(request);
+      } else {
+        if (null == queue) {
+          queue = new ArrayDeque<>();
+          heldByKey.put(key, queue);
+        }
+        queue.add(request);
+      }
+      if (request.flush()) {
+        heldFlushes.add(request);
+      }
+      heldCount.incrementAndGet();
+    }
+//  runs right away, on this thread, if the replication has already completed
+    request.token.thenRun(() -> replicated(request));
+  }
+  
+  private void replicated(EntityRequest request) {
+    synchronized (heldByKey) {
+      Object key = request.getSchedulingKey();
+      boolean flushHeld = !heldFlushes.isEmpty();
+      if (null == key) {
+        if (request.sequence < barrier() && heldUnkeyed.remove(request)) {
+          release(request);
+        }
+      } else {
+        releaseReady(key);
+      }
+      if (flushHeld) {
+//  anything released may have been what a held flush was waiting for, and a released flush lets through what
+//  queued up behind it
+        int before;
+        do {
+          before = heldCount.get();
+          releaseUnkeyed();
+          for (Object flushKey : heldByKey.keySet().toArray()) {
+            releaseReady(flushKey);
+          }
+        } while (before != heldCount.get());
+      }
+    }
+  }
+  
+  /**
+   * The sequence of the oldest held flush; only requests sequenced before it may be released.
+   */
+  private long barrier() {
+    EntityRequest flush = heldFlushes.peek();
+    return (null != flush) ? flush.sequence : Long.MAX_VALUE;
+  }
+  
+  /**
+   * Releases the held unkeyed requests which are no longer waiting on anything.
+   */
+  private void releaseUnkeyed() {
+    long barrier = barrier();
+    for (Iterator<EntityRequest> unkeyed = heldUnkeyed.iterator(); unkeyed.hasNext(); ) {
+      EntityRequest next = unkeyed.next();
+      if (next.sequence > barrier) {
+        break;
+      } else if (next.token.isDone()) {
+        unkeyed.remove();
+        release(next);
+      }
+    }
+  }
+  
+  /**
+   * Releases, in order, the held requests for the given key which are no longer waiting on anything.
+   */
+  private void releaseReady(Object key) {
+    Deque<EntityRequest> queue = heldByKey.get(key);
+    if (null != queue) {
+      EntityRequest head = queue.peek();
+      while (null != head && head.token.isDone() && (head.flush() ? isOldestHeld(head) : head.sequence < barrier())) {
+        queue.poll();
+        release(head);
+        head = queue.peek();
+      }
+      if (queue.isEmpty()) {
+        heldByKey.remove(key);
+      }
+    }
+  }
+  
+  /**
+   * A flush must not be released ahead of anything which was scheduled before it.
+   */
+  private boolean isOldestHeld(EntityRequest flush) {
+    Iterator<EntityRequest> unkeyed = heldUnkeyed.iterator();
+    if (unkeyed.hasNext() && unkeyed.next().sequence < flush.sequence) {
+      return false;
+    }
+    for (Deque<EntityRequest> queue : heldByKey.values()) {
+      if (queue.peek().sequence < flush.sequence) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private void release(EntityRequest request) {
+//  hand it to the stage before it stops counting as held so a new request can't slip past it
+    requestExecution.addMultiThreaded(request);
+    if (request.flush()) {
+//  only the oldest held flush is ever released
+      Assert.assertTrue(heldFlushes.poll() == request);
+    }
+    heldCount.decrementAndGet();
   }
   
   private static ReplicationMessage createReplicationMessage(EntityDescriptor id, NodeID src,
@@ -115,14 +290,49 @@ public class RequestProcessor implements StateChangeListener {
     return new ReplicationMessage(id, src, tid, oldest, actionCode, payload, concurrency);
   }
   
+  /**
+   * Runs an invoke ahead of its replication and records how much of the execution the replication was hidden behind.
+   */
+  private class Speculation implements Runnable {
+    private final Runnable call;
+    private final CompletableFuture<Long> replicated;
+
+    Speculation(Runnable call, CompletableFuture<Void> token) {
+      this.call = call;
+      this.replicated = token.thenApply(done -> System.nanoTime());
+    }
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      try {
+        call.run();
+      } finally {
+        long end = System.nanoTime();
+        replicated.thenAccept(done -> recordOverlap(Math.max(0, Math.min(end, done) - start)));
+      }
+    }
+  }
+  
+  private void recordOverlap(long overlapNanos) {
+    if (null != speculativeExecutionCounter) {
+      speculativeExecutionCounter.increment();
+    }
+    if (null != speculativeOverlapCounter) {
+      speculativeOverlapCounter.increment(TimeUnit.NANOSECONDS.toMicros(overlapNanos), 1);
+    }
+  }
+  
   private static class EntityRequest implements MultiThreadedEventContext, Runnable {
     private final EntityDescriptor entity;
     private final ServerEntityRequest request;
     private final Runnable invoke;
-    private final Future<Void>  token;
+    private final CompletableFuture<Void>  token;
     private final int key;
+//  only meaningful while the request is held, waiting on replication
+    private long sequence;
 
-    public EntityRequest(EntityDescriptor entity, ServerEntityRequest request, Runnable runnable, int key, Future<Void>  token) {
+    public EntityRequest(EntityDescriptor entity, ServerEntityRequest request, Runnable runnable, int key, CompletableFuture<Void>  token) {
       this.entity = entity;
       this.request = request;
       this.invoke = runnable;
@@ -21,6 +21,7 @@ package com.tc.objectserver.handler;
 import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.Sink;
 import com.tc.entity.ResendVoltronEntityMessage;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.net.NodeID;
@@ -38,6 +39,7 @@ import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.entity.ServerEntityRequestImpl;
 import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.objectserver.persistence.GroupCommitScheduler;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
 import com.tc.util.Assert;
 import com.tc.util.SparseList;
@@ -56,6 +58,7 @@ import org.terracotta.exception.EntityUserException;
 public class ProcessTransactionHandler {
   private final EntityPersistor entityPersistor;
   private final TransactionOrderPersistor transactionOrderPersistor;
+  private final GroupCommitScheduler groupCommit;
   
   private EntityManager entityManager;
   private DSOChannelManager dsoChannelManager;
@@ -63,6 +66,9 @@ public class ProcessTransactionHandler {
   // Data required for handling transaction resends.
   private SparseList<ResendVoltronEntityMessage> resendReplayList;
   private List<ResendVoltronEntityMessage> resendNewList;
+  
+  // Our own stage's sink, used to ask if more messages are immediately available (null until initialized).
+  private Sink<VoltronEntityMessage> voltronSink;
 
   private final AbstractEventHandler<VoltronEntityMessage> voltronHandler = new AbstractEventHandler<VoltronEntityMessage>() {
     @Override
@@ -76,12 +82,15 @@ public class ProcessTransactionHandler {
       TransactionID oldestTransactionOnClient = message.getOldestTransactionOnClient();
       
       ProcessTransactionHandler.this.addMessage(sourceNodeID, descriptor, action, extendedData, transactionID, doesRequireReplication, oldestTransactionOnClient);
+      // Only commit the group while we are still receiving messages if it has grown too big or too old.
+      ProcessTransactionHandler.this.commitGroup((null != voltronSink) && (voltronSink.size() > 0));
     }
 
     @Override
     protected void initialize(ConfigurationContext context) {
       super.initialize(context); 
       ServerConfigurationContext server = (ServerConfigurationContext)context;
+      voltronSink = server.getStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class).getSink();
       
       server.getL2Coordinator().getReplicatedClusterStateManager().setCurrentState(server.getL2Coordinator().getStateManager().getCurrentState());
       server.getL2Coordinator().getReplicatedClusterStateManager().goActiveAndSyncState();
@@ -105,8 +114,13 @@ public class ProcessTransactionHandler {
   }
 
   public ProcessTransactionHandler(EntityPersistor entityPersistor, TransactionOrderPersistor transactionOrderPersistor) {
+    this(entityPersistor, transactionOrderPersistor, new GroupCommitScheduler());
+  }
+
+  public ProcessTransactionHandler(EntityPersistor entityPersistor, TransactionOrderPersistor transactionOrderPersistor, GroupCommitScheduler groupCommit) {
     this.entityPersistor = entityPersistor;
     this.transactionOrderPersistor = transactionOrderPersistor;
+    this.groupCommit = groupCommit;
     
     this.resendReplayList = new SparseList<>();
     this.resendNewList = new Vector<>();
@@ -155,15 +169,29 @@ public class ProcessTransactionHandler {
     
     // In the general case, however, we need to pass this as a real ServerEntityRequest, into the entityProcessor.
     ServerEntityRequest serverEntityRequest = new ServerEntityRequestImpl(descriptor, action, transactionID, oldestTransactionOnClient, sourceNodeID, doesRequireReplication, safeGetChannel(sourceNodeID));
-    // Before we pass this on to the entity or complete it, directly, we can send the received() ACK, since we now know the message order.
-    if (null != oldestTransactionOnClient) {
-      // This client still needs transaction order persistence.
-      this.transactionOrderPersistor.updateWithNewMessage(sourceNodeID, transactionID, oldestTransactionOnClient);
-    } else {
-      // This is probably a disconnect: we can discard transaction order persistence for this client.
-      this.transactionOrderPersistor.removeTrackingForClient(sourceNodeID);
-    }
-    serverEntityRequest.received();
+    ManagedEntity targetEntity = entity;
+    EntityException failure = uncaughtException;
+    // The order persistence is grouped with that of other messages so we can only send the received() ACK, and pass
+    // this on to the entity or complete it, directly, once the group is durable.
+    this.groupCommit.execute(() -> {
+      if (null != oldestTransactionOnClient) {
+        // This client still needs transaction order persistence.
+        this.transactionOrderPersistor.updateWithNewMessage(sourceNodeID, transactionID, oldestTransactionOnClient);
+      } else {
+        // This is probably a disconnect: we can discard transaction order persistence for this client.
+        this.transactionOrderPersistor.removeTrackingForClient(sourceNodeID);
+      }
+    }, () -> {
+      serverEntityRequest.received();
+      dispatchRequest(serverEntityRequest, entityID, targetEntity, action, extendedData, failure);
+    });
+  }
+
+  private synchronized void commitGroup(boolean moreWorkPending) {
+    this.groupCommit.commitIfDue(moreWorkPending);
+  }
+
+  private void dispatchRequest(ServerEntityRequest serverEntityRequest, EntityID entityID, ManagedEntity entity, ServerEntityAction action, byte[] extendedData, EntityException uncaughtException) {
     if (null == uncaughtException) {
       // If no exception has been fired, do any special handling required by the message type.
       boolean entityFound = (null != entity);
@@ -224,6 +252,9 @@ public class ProcessTransactionHandler {
       executeResend(message);
     }
     this.resendNewList = null;
+    
+    // Make sure all the replayed messages are durable before anything new arrives.
+    commitGroup(false);
   }
 
 
@@ -22,6 +22,7 @@ import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandler;
 import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.Sink;
 import com.tc.l2.msg.ReplicationMessage;
 import com.tc.l2.msg.ReplicationMessageAck;
 import com.tc.l2.state.StateManager;
@@ -43,8 +44,16 @@ import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
 import com.tc.util.Assert;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.terracotta.exception.EntityException;
 
@@ -60,8 +69,34 @@ public class ReplicatedTransactionHandler {
   
   private final SyncState state = new SyncState();
   
+  private final int maxUnacknowledged;
+  private final long maxAcknowledgeDelayNanos;
+  // Our own stage's sink, used to ask if more messages are immediately available (null until initialized).
+  private Sink<ReplicationMessage> ownSink;
+  // Acknowledgements are cumulative:  the active is told, now and then, the highest replication ID received so far.
+  private NodeID acknowledgeTo = ServerID.NULL_ID;
+  private long acknowledgeThrough = -1;
+  private long acknowledgedThrough = -1;
+  // Messages from the active held back behind an entity sync, by replication ID.  The acknowledgement must stay below
+  // the lowest of these until it has been applied.
+  private final SortedMap<Long, ReplicationMessage> deferredUnapplied = new TreeMap<>();
+  private int unacknowledged;
+  private long oldestUnacknowledgedNanos;
+  
   public ReplicatedTransactionHandler(StateManager state, TransactionOrderPersistor transactionOrderPersistor, 
       EntityManager manager, EntityPersistor entityPersistor, GroupManager groupManager) {
+    this(state, transactionOrderPersistor, manager, entityPersistor, groupManager, 1, 0);
+  }
+  
+  /**
+   * @param maxUnacknowledged the most replicated messages received before an acknowledgement is sent
+   * @param maxAcknowledgeDelayMillis the longest a received message waits to be acknowledged while more keep arriving
+   */
+  public ReplicatedTransactionHandler(StateManager state, TransactionOrderPersistor transactionOrderPersistor, 
+      EntityManager manager, EntityPersistor entityPersistor, GroupManager groupManager, 
+      int maxUnacknowledged, long maxAcknowledgeDelayMillis) {
+    this.maxUnacknowledged = maxUnacknowledged;
+    this.maxAcknowledgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxAcknowledgeDelayMillis);
     this.stateManager = state;
     this.entityManager = manager;
     this.entityPersistor = entityPersistor;
@@ -84,11 +119,13 @@ public class ReplicatedTransactionHandler {
         // TODO:  Find a better way to handle this error.
         Assert.failure("Unexpected exception executing replicated message", e);
       }
+      acknowledgeIfDue(false);
     }
 
     @Override
     protected void initialize(ConfigurationContext context) {
       ServerConfigurationContext scxt = (ServerConfigurationContext)context;
+      ownSink = scxt.getStage(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE, ReplicationMessage.class).getSink();
   //  when this spins up, send  request to active and ask for sync
       scxt.getL2Coordinator().getReplicatedClusterStateManager().setCurrentState(scxt.getL2Coordinator().getStateManager().getCurrentState());
       requestPassiveSync();
@@ -142,16 +179,14 @@ public class ReplicatedTransactionHandler {
     } else if (rep.getType() == ReplicationMessage.SYNC) {
 //  when is the right time to send the ack?  send it early for passive sync to keep the messages flowing
 //  TODO:  need some kind of feedback mechanism to slow sync if needed
-      try {
-        groupManager.sendTo(rep.messageFrom(), new ReplicationMessageAck(rep.getMessageID()));
-      } catch (GroupException ge) {
-//  Passive must have died.  Swallow the exception
-        LOGGER.info("passive died on ack", ge);
-      }
+      acknowledge(rep);
+      acknowledgeIfDue(false);
       syncMessageReceived(rep);
       return;
     } else if (rep.getType() == ReplicationMessage.START) {
+//  the active is waiting on this one before it replicates anything else
       acknowledge(rep);
+      acknowledgeIfDue(true);
       return;
     }
 
@@ -218,9 +253,12 @@ public class ReplicatedTransactionHandler {
         request.waitForDone();
         deferred = state.end(eid, sync.getConcurrency());
         break;
-      case SYNC_ENTITY_BEGIN:
       case SYNC_ENTITY_END:
         request.waitForDone();
+        state.finish(eid);
+        break;
+      case SYNC_ENTITY_BEGIN:
+        request.waitForDone();
       case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
         break;
       default:
@@ -249,12 +287,73 @@ public class ReplicatedTransactionHandler {
   }
   
   private void acknowledge(ReplicationMessage rep) {
-//  when is the right time to send the ack?
-    try {
-      groupManager.sendTo(rep.messageFrom(), new ReplicationMessageAck(rep.getMessageID()));
-    } catch (GroupException ge) {
+    NodeID from = rep.messageFrom();
+    if (from.isNull()) {
+//  a deferred message being applied late.  later acknowledgements were held below it until now
+      if (deferredUnapplied.remove(rep.getSequenceID(), rep)) {
+        owed();
+      }
+      return;
+    }
+    received(rep);
+//  a deferred message dropped along with its destroyed entity is done with as well
+    deferredUnapplied.remove(rep.getSequenceID(), rep);
+    owed();
+  }
+  
+  /**
+   * Records a message from the active which is deferred behind an entity sync.  It is only acknowledged once applied.
+   */
+  private void deferAcknowledgement(ReplicationMessage rep) {
+    received(rep);
+    deferredUnapplied.put(rep.getSequenceID(), rep);
+  }
+  
+  private void received(ReplicationMessage rep) {
+    NodeID from = rep.messageFrom();
+    if (!from.equals(acknowledgeTo) || rep.getSequenceID() == 0) {
+//  a new active or a reset of the ordering.  the active has forgotten anything still owed under the old one, and 
+//  acknowledging it now could release messages which reuse those IDs, so drop it
+      unacknowledged = 0;
+      acknowledgeTo = from;
+      acknowledgeThrough = rep.getSequenceID();
+      acknowledgedThrough = -1;
+      deferredUnapplied.clear();
+    } else {
+//  deferred messages can be acknowledged after later ones, so never move backwards
+      acknowledgeThrough = Math.max(acknowledgeThrough, rep.getSequenceID());
+    }
+  }
+  
+  private void owed() {
+    if (unacknowledged++ == 0) {
+      oldestUnacknowledgedNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * Sends a cumulative acknowledgement if one is owed and either forced, there is nothing more queued to process,
+   * enough messages are waiting or the oldest of them has waited long enough.
+   */
+  private void acknowledgeIfDue(boolean force) {
+    if (unacknowledged == 0) {
+      return;
+    }
+    if (force || ownSink == null || ownSink.size() == 0 || unacknowledged >= maxUnacknowledged
+        || System.nanoTime() - oldestUnacknowledgedNanos >= maxAcknowledgeDelayNanos) {
+      unacknowledged = 0;
+      long through = deferredUnapplied.isEmpty() ? acknowledgeThrough : Math.min(acknowledgeThrough, deferredUnapplied.firstKey() - 1);
+      if (through <= acknowledgedThrough) {
+//  everything newly received is behind a deferred message.  applying it will make this due again
+        return;
+      }
+      acknowledgedThrough = through;
+      try {
+        groupManager.sendTo(acknowledgeTo, ReplicationMessageAck.createAcknowledgeThrough(through));
+      } catch (GroupException ge) {
 //  Passive must have died.  Swallow the exception
-      LOGGER.info("passive died on ack", ge);
+        LOGGER.info("passive died on ack", ge);
+      }
     }
   }
 
@@ -288,45 +387,55 @@ public class ReplicatedTransactionHandler {
   }  
   
  private class SyncState {
-    private LinkedList<ReplicationMessage> defer = new LinkedList<>();
-    
-    private EntityID syncing;
-    private int currentKey = -1;
-    private boolean destroyed = false;
-    
+//  the entities part way through their sync.  several of them, and several keys of each, may be syncing at once
+    private final Map<EntityID, EntitySync> syncing = new HashMap<>();
     
     public void start(EntityID eid, int concurrency) {
-      if (destroyed && !syncing.equals(eid)) {
-        destroyed = false;
+      EntitySync entity = syncing.get(eid);
+      if (entity == null) {
+        entity = new EntitySync();
+        syncing.put(eid, entity);
       }
-      syncing = eid;
-      currentKey = concurrency;
+      entity.keys.add(concurrency);
       if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("Starting " + eid + "/" + currentKey);
+        LOGGER.debug("Starting " + eid + "/" + concurrency);
       }
     }
     
     public Deque<ReplicationMessage> end(EntityID eid, int concurrency) {
-      try {
-        if (!eid.equals(syncing) || concurrency != currentKey) {
-          throw new AssertionError();
-        }
-        syncing = null;
-        concurrency = -1;
-        if (LOGGER.isDebugEnabled()) {
-          LOGGER.debug("Ending " + eid + "/" + currentKey);
+      EntitySync entity = syncing.get(eid);
+      if (entity == null || !entity.keys.remove(concurrency)) {
+        throw new AssertionError();
+      }
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Ending " + eid + "/" + concurrency);
+      }
+      Deque<ReplicationMessage> ready = new LinkedList<>();
+      if (entity.keys.isEmpty()) {
+        ready.addAll(entity.defer);
+        entity.defer.clear();
+      } else if (!entity.destroyed) {
+//  a destroy is only applied once every key being synced is done with
+        for (Iterator<ReplicationMessage> i = entity.defer.iterator(); i.hasNext();) {
+          ReplicationMessage next = i.next();
+          if (next.getConcurrency() == concurrency) {
+            i.remove();
+            ready.add(next);
+          }
         }
-        return defer;
-      } finally {
-        defer = new LinkedList<>();
       }
+      return ready;
+    }
+
+    public void finish(EntityID eid) {
+      syncing.remove(eid);
     }
     
     private boolean defer(ReplicationMessage rep) {
       EntityID eid = rep.getEntityDescriptor().getEntityID();
-      if (syncing != null) {
-        if (eid.equals(syncing)) {
-          if (destroyed) {
+      EntitySync entity = syncing.get(eid);
+      if (entity != null && !entity.keys.isEmpty()) {
+          if (entity.destroyed) {
 //  blackhole this request.  The entity has been destroyed. 
             acknowledge(rep);
             if (LOGGER.isDebugEnabled()) {
@@ -334,23 +443,29 @@ public class ReplicatedTransactionHandler {
             }
             return true;
           } else if (rep.getReplicationType() == ReplicationMessage.ReplicationType.DESTROY_ENTITY) {
-            defer.forEach(q->acknowledge(q));
-            defer.clear();
-            defer.add(rep);
+            entity.defer.forEach(q->acknowledge(q));
+            entity.defer.clear();
+            entity.defer.add(rep);
             if (LOGGER.isDebugEnabled()) {
               LOGGER.debug("Destroying " + rep.getReplicationType() + " for " + eid + "/" + rep.getConcurrency());
             }
-            destroyed = true;
-          } else if (currentKey == rep.getConcurrency()) {
+            entity.destroyed = true;
+          } else if (entity.keys.contains(rep.getConcurrency())) {
             if (LOGGER.isDebugEnabled()) {
               LOGGER.debug("Deferring " + rep.getReplicationType() + " for " + eid + "/" + rep.getConcurrency());
             }
-            defer.add(rep);
+            entity.defer.add(rep);
+            deferAcknowledgement(rep);
             return true;
           }
-        }
       }
       return false;
     }
+  }
+
+  private static class EntitySync {
+    private final Set<Integer> keys = new HashSet<>();
+    private final LinkedList<ReplicationMessage> defer = new LinkedList<>();
+    private boolean destroyed = false;
   }  
 }
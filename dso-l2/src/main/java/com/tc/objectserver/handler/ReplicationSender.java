@@ -21,8 +21,10 @@ package com.tc.objectserver.handler;
 import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.Sink;
 import com.tc.l2.msg.ReplicationEnvelope;
 import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.msg.ReplicationMessageBatch;
 import static com.tc.l2.msg.ReplicationMessage.ReplicationType.SYNC_BEGIN;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
@@ -31,15 +33,24 @@ import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.object.EntityID;
 import com.tc.objectserver.entity.ActiveToPassiveReplication;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.util.Assert;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * Assigns each replicated message its per-passive order and filters out what a syncing passive must not see, before
+ * sending it on.
+ * <p>
+ * When batching is enabled, consecutive messages for the same passive are packed into a {@link ReplicationMessageBatch}
+ * rather than being sent one group message at a time.  A batch is sent once it is full (by count or estimated size),
+ * once its first message has lingered too long while the stage stays busy, or as soon as the stage queue is empty, so
+ * batching never adds latency when the stage is idle.
  */
 public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope> {
   //  this is all single threaded.  If there is any attempt to make this multi-threaded,
@@ -47,10 +58,28 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
   private final GroupManager group;
   private final Map<NodeID, AtomicLong> ordering = new HashMap<NodeID, AtomicLong>();
   private final Map<NodeID, SyncState> filtering = new HashMap<NodeID, SyncState>();
+  private final Map<NodeID, PendingBatch> batches = new HashMap<NodeID, PendingBatch>();
+  private final int maxBatchMessages;
+  private final int maxBatchBytes;
+  private final long maxLingerNanos;
+  // Our own stage's sink, used to ask if more messages are immediately available (null until initialized).
+  private Sink<ReplicationEnvelope> ownSink;
   private static final TCLogger logger           = TCLogging.getLogger(ReplicationSender.class);
 
   public ReplicationSender(GroupManager group) {
+    this(group, 1, 0, 0);
+  }
+
+  /**
+   * @param maxBatchMessages the most messages sent to a passive in one batch.  1 or less disables batching
+   * @param maxBatchBytes the estimated size at which a batch is sent
+   * @param maxLingerMillis the longest a message waits in a batch while more work keeps arriving
+   */
+  public ReplicationSender(GroupManager group, int maxBatchMessages, int maxBatchBytes, long maxLingerMillis) {
     this.group = group;
+    this.maxBatchMessages = maxBatchMessages;
+    this.maxBatchBytes = maxBatchBytes;
+    this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
   }
 
   @Override
@@ -61,21 +90,30 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
 // this is a flush of the replication channel.  shut it down and return;
       ordering.remove(nodeid);
       filtering.remove(nodeid);
+//  the node is gone so anything still waiting to be batched can never be delivered
+      batches.remove(nodeid);
     } else {
       AtomicLong rOrder = ordering.get(nodeid);
       SyncState syncing = null;
 
       if (rOrder == null) {
-        rOrder = new AtomicLong();
-        ordering.put(nodeid, rOrder);
-        
         if (msg.getType() == ReplicationMessage.START) {
 //  do nothing, the server was in standby state when added          
         } else if (msg.getReplicationType() == SYNC_BEGIN) {
           filtering.put(nodeid, new SyncState());
         } else {
-          throw new AssertionError("out of order message");
+//  the passive has left and this was queued for it before the broker knew.  nobody is going to acknowledge it
+          if (logger.isDebugEnabled()) {
+            logger.debug(nodeid + ":Dropping " + msg.getReplicationType() + " for departed passive");
+          }
+          if (context.isWaiting()) {
+            context.release();
+          }
+          flushIfIdle();
+          return;
         }
+        rOrder = new AtomicLong();
+        ordering.put(nodeid, rOrder);
       } else {
         if (msg.getType() == ReplicationMessage.START || msg.getReplicationType() == SYNC_BEGIN) {
           throw new AssertionError(msg.getEntityID() + "/" + msg.getConcurrency() + " " + rOrder.get());
@@ -88,83 +126,149 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
           if (logger.isDebugEnabled()) {
             logger.debug(nodeid + ":Filtering " + msg.getReplicationType() + " for " + msg.getEntityDescriptor().getEntityID() + "/" + msg.getConcurrency());
           }
-          if (msg.getType() == ReplicationMessage.REPLICATE) {
+          if (context.isWaiting()) {
             context.release();
           }
+          flushIfIdle();
           return;
         } else if (msg.getReplicationType() == ReplicationMessage.ReplicationType.SYNC_END) {
           filtering.remove(nodeid);
         }
       }
-      try {
-        msg.setReplicationID(rOrder.getAndIncrement());
-        if (logger.isDebugEnabled()) {
-          logger.debug(nodeid + ":Sending " + msg.getReplicationType() + " for " + msg.getEntityID() + "/" + msg.getConcurrency() + "-" + msg.getSequenceID());
+      msg.setReplicationID(rOrder.getAndIncrement());
+      context.ordered(msg.getSequenceID());
+      if (logger.isDebugEnabled()) {
+        logger.debug(nodeid + ":Sending " + msg.getReplicationType() + " for " + msg.getEntityID() + "/" + msg.getConcurrency() + "-" + msg.getSequenceID());
+      }
+      if (maxBatchMessages <= 1) {
+        send(nodeid, msg);
+      } else {
+        PendingBatch pending = batches.get(nodeid);
+        if (pending == null) {
+          pending = new PendingBatch();
+          batches.put(nodeid, pending);
+        }
+        pending.add(msg);
+        if (pending.batch.getMessageCount() >= maxBatchMessages || pending.batch.getSize() >= maxBatchBytes) {
+          batches.remove(nodeid);
+          send(nodeid, pending);
         }
-        group.sendTo(nodeid, msg);
-      }  catch (GroupException ge) {
-        logger.info(msg, ge);
       }
     }
+    flushIfIdle();
   }
 
   @Override
   protected void initialize(ConfigurationContext context) {
     super.initialize(context);
+    ownSink = context.getStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_STAGE, ReplicationEnvelope.class).getSink();
+  }
+
+  /**
+   * Sends every pending batch if there is nothing more queued behind the current message, otherwise only those which
+   * have lingered for too long.
+   */
+  private void flushIfIdle() {
+    if (batches.isEmpty()) {
+      return;
+    }
+    boolean idle = ownSink == null || ownSink.size() == 0;
+    long now = System.nanoTime();
+    for (Iterator<Map.Entry<NodeID, PendingBatch>> i = batches.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<NodeID, PendingBatch> next = i.next();
+      if (idle || now - next.getValue().startNanos >= maxLingerNanos) {
+        i.remove();
+        send(next.getKey(), next.getValue());
+      }
+    }
+  }
+
+  private void send(NodeID nodeid, ReplicationMessage msg) {
+    try {
+      group.sendTo(nodeid, msg);
+    } catch (GroupException ge) {
+      logger.info(msg, ge);
+    }
+  }
+
+  private void send(NodeID nodeid, PendingBatch pending) {
+//  a batch of one gains nothing from the extra framing
+    if (pending.batch.getMessageCount() == 1) {
+//  the message may have been ordered for another passive since, so restore the ID it was given for this one
+      pending.first.setReplicationID(pending.firstReplicationID);
+      send(nodeid, pending.first);
+    } else {
+      try {
+        group.sendTo(nodeid, pending.batch);
+      } catch (GroupException ge) {
+        logger.info(pending.batch, ge);
+      }
+    }
+  }
+
+  private static class PendingBatch {
+    private final ReplicationMessageBatch batch = new ReplicationMessageBatch();
+    private final long startNanos = System.nanoTime();
+    private ReplicationMessage first;
+    private long firstReplicationID;
+
+    private void add(ReplicationMessage msg) {
+      if (first == null) {
+        first = msg;
+        firstReplicationID = msg.getSequenceID();
+      }
+      batch.addMessage(msg);
+    }
   }
   
+  /**
+   * What a syncing passive has been sent so far.  Several entities, and several keys of each, may be part way through
+   * their sync at once.
+   */
   private static class SyncState {
     private final Set<EntityID> syncd = new HashSet<EntityID>();
-    private EntityID syncingID = EntityID.NULL_ID;
-    private final Set<Integer> syncdID = new HashSet<Integer>();
-    private int syncingConcurrency = -1;
+    private final Map<EntityID, EntitySync> syncing = new HashMap<EntityID, EntitySync>();
     
     public boolean filter(ReplicationMessage msg) {
       final EntityID eid = msg.getEntityDescriptor().getEntityID();
+      final EntitySync entity = syncing.get(eid);
         switch (msg.getReplicationType()) {
           case SYNC_BEGIN:
             return true;
           case SYNC_ENTITY_BEGIN:
-            syncingID = eid;
-            syncdID.clear();
-            syncingConcurrency = 0;
 //  if the entity is created through the create message replication, the entity should not be sync'd
-//  set syncid to null so all messages until end get filtered out.  this should not be alot, it just got created
-            if (syncd.contains(syncingID)) {
-              syncingID = EntityID.NULL_ID;
-              return false;
-            }
-            return true;
+//  mark it skipped so all messages until end get filtered out.  this should not be alot, it just got created
+            Assert.assertNull(entity);
+            syncing.put(eid, new EntitySync(syncd.contains(eid)));
+            return !syncd.contains(eid);
           case SYNC_ENTITY_CONCURRENCY_BEGIN:
-            if (syncingID == EntityID.NULL_ID) {
+            if (entity == null || entity.skipped) {
               return false;
             }
-            Assert.assertEquals(syncingID, eid);
-            Assert.assertEquals(syncingConcurrency, 0);
-            syncingConcurrency = msg.getConcurrency();
+            Assert.assertTrue(entity.syncingKeys.add(msg.getConcurrency()));
             return true;
           case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
-            if (syncingID == EntityID.NULL_ID) {
+            if (entity == null || entity.skipped) {
               return false;
             }
             return true;
           case SYNC_ENTITY_CONCURRENCY_END:
-            if (syncingID == EntityID.NULL_ID) {
+            if (entity == null || entity.skipped) {
               return false;
             }
-            Assert.assertEquals(syncingConcurrency, msg.getConcurrency());
-            syncdID.add(syncingConcurrency);
-            syncingConcurrency = 0;
+            Assert.assertTrue(entity.syncingKeys.remove(msg.getConcurrency()));
+            entity.syncdKeys.add(msg.getConcurrency());
             return true;
           case SYNC_ENTITY_END:
-            Assert.assertEquals(syncingID, eid);
-            syncd.add(syncingID);
-            syncingID = EntityID.NULL_ID;
-            return true;
+            Assert.assertNotNull(entity);
+            syncing.remove(eid);
+            syncd.add(eid);
+            return !entity.skipped;
           case SYNC_END:
+            Assert.assertTrue(syncing.isEmpty());
             return true;
           case CREATE_ENTITY:
-            if (syncd.contains(eid) || eid.equals(syncingID)) {
+            if (syncd.contains(eid) || entity != null) {
 //  this entity is being or has been replicated, don't create it on the passive
               return false;
             } else {
@@ -175,7 +279,7 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
           case DESTROY_ENTITY:
             if (syncd.contains(eid)) {
               return true;
-            } else if (syncingID.equals(eid)) {
+            } else if (entity != null) {
  //  tricky.  this one needs to pass but only be applied after sync of this entity is complete
               return true;
             } else {
@@ -186,12 +290,12 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
           case INVOKE_ACTION:
             if (syncd.contains(eid)) {
               return true;
-            } else if (syncingID.equals(eid)) {
-              if (syncingConcurrency == msg.getConcurrency()) {
+            } else if (entity != null) {
+              if (entity.syncingKeys.contains(msg.getConcurrency())) {
 //  special case.  passive will apply this after sync of the key is complete
                 return true;
               }
-              return syncdID.contains(msg.getConcurrency());
+              return entity.syncdKeys.contains(msg.getConcurrency());
             } else {
 // hasn't been sync'd yet.  state will be captured in sync
               return false;
@@ -204,5 +308,16 @@ public class ReplicationSender extends AbstractEventHandler<ReplicationEnvelope>
         }
     }
   }
+
+  private static class EntitySync {
+//  set if the entity was created on the passive through replication before its sync began
+    private final boolean skipped;
+    private final Set<Integer> syncingKeys = new HashSet<Integer>();
+    private final Set<Integer> syncdKeys = new HashSet<Integer>();
+
+    private EntitySync(boolean skipped) {
+      this.skipped = skipped;
+    }
+  }
   
 }
@@ -26,6 +26,7 @@ import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.object.locks.ClientServerExchangeLockContext;
 import com.tc.object.locks.LockID;
+import com.tc.object.locks.LockRequestBatchContext;
 import com.tc.object.locks.RecallBatchContext;
 import com.tc.object.locks.ThreadID;
 import com.tc.object.msg.LockRequestMessage;
@@ -81,12 +82,40 @@ public class RequestLockUnLockHandler extends AbstractEventHandler<LockRequestMe
           lockManager.recallCommit(recallContext.getLockID(), (ClientID) cid, lockState);
         }
         return;
+      case BATCHED_REQUEST:
+        for (LockRequestBatchContext request : lrm.getBatchedRequests()) {
+          handleBatchedRequest((ClientID) cid, request);
+        }
+        return;
       default:
         logger.error("Unexpected lock request type: " + lrm.getRequestType());
         return;
     }
   }
 
+  private void handleBatchedRequest(ClientID cid, LockRequestBatchContext request) {
+    LockID lid = request.getLockID();
+    ThreadID tid = request.getThreadID();
+
+    switch (request.getRequestType()) {
+      case LOCK:
+        lockManager.lock(lid, cid, tid, request.getLockLevel());
+        return;
+      case TRY_LOCK:
+        lockManager.tryLock(lid, cid, tid, request.getLockLevel(), request.getTimeout());
+        return;
+      case UNLOCK:
+        lockManager.unlock(lid, cid, tid);
+        return;
+      case QUERY:
+        lockManager.queryLock(lid, cid, tid);
+        return;
+      default:
+        logger.error("Unexpected batched lock request type: " + request.getRequestType());
+        return;
+    }
+  }
+
   @Override
   public void initialize(ConfigurationContext context) {
     super.initialize(context);
@@ -20,31 +20,123 @@ package com.tc.objectserver.handler;
 
 import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
+import com.tc.async.api.Sink;
 import com.tc.logging.TCLogger;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.locks.ClientServerExchangeLockContext;
+import com.tc.object.locks.LockResponseBatchContext;
 import com.tc.object.locks.ThreadID;
 import com.tc.object.locks.ServerLockContext.State;
 import com.tc.object.msg.LockResponseMessage;
+import com.tc.object.msg.LockResponseMessage.ResponseType;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.object.net.NoSuchChannelException;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.locks.LockResponseContext;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * When batching is enabled, awards and refusals are held back per client and sent together once the stage queue
+ * drains or a batch is full. This relies on the stage running a single thread.
+ *
  * @author steve
  */
 public class RespondToRequestLockHandler extends AbstractEventHandler<LockResponseContext> {
-  private DSOChannelManager channelManager;
-  private TCLogger          logger;
+  private final boolean                                batchResponses;
+  private final int                                    maxBatchSize;
+  private final Map<NodeID, List<LockResponseContext>> batches = new LinkedHashMap<NodeID, List<LockResponseContext>>();
+
+  private DSOChannelManager                            channelManager;
+  private TCLogger                                     logger;
+  private Sink<LockResponseContext>                    responseSink;
+
+  public RespondToRequestLockHandler() {
+    this(TCPropertiesImpl.getProperties());
+  }
+
+  private RespondToRequestLockHandler(TCProperties properties) {
+    this(properties.getBoolean(TCPropertiesConsts.L2_LOCKMANAGER_BATCH_ENABLED, false), properties
+        .getInt(TCPropertiesConsts.L2_LOCKMANAGER_BATCH_MAXSIZE, 1000));
+  }
+
+  public RespondToRequestLockHandler(boolean batchResponses, int maxBatchSize) {
+    this.batchResponses = batchResponses;
+    this.maxBatchSize = maxBatchSize;
+  }
 
   @Override
   public void handleEvent(LockResponseContext lrc) {
+    if (!batchResponses) {
+      respond(lrc);
+      return;
+    }
+
+    if (lrc.isLockAward() || lrc.isLockNotAwarded()) {
+      batch(lrc);
+    } else {
+      // recalls, wait timeouts and info must not overtake what is already batched for the client
+      sendBatch(lrc.getNodeID());
+      respond(lrc);
+    }
+    if (responseSink.size() == 0) {
+      sendAllBatches();
+    }
+  }
+
+  private void batch(LockResponseContext lrc) {
+    NodeID cid = lrc.getNodeID();
+    List<LockResponseContext> batch = batches.get(cid);
+    if (batch == null) {
+      batch = new ArrayList<LockResponseContext>();
+      batches.put(cid, batch);
+    }
+    batch.add(lrc);
+    if (batch.size() >= maxBatchSize) {
+      sendBatch(cid);
+    }
+  }
+
+  private void sendAllBatches() {
+    while (!batches.isEmpty()) {
+      sendBatch(batches.keySet().iterator().next());
+    }
+  }
+
+  private void sendBatch(NodeID cid) {
+    List<LockResponseContext> batch = batches.remove(cid);
+    if (batch == null) { return; }
+    if (batch.size() == 1) {
+      // a lone response goes out as it would unbatched
+      respond(batch.get(0));
+      return;
+    }
+
+    try {
+      LockResponseMessage responseMessage = createMessage(batch.get(0), TCMessageType.LOCK_RESPONSE_MESSAGE);
+      responseMessage.initializeBatched();
+      for (LockResponseContext lrc : batch) {
+        ResponseType type = lrc.isLockAward() ? ResponseType.AWARD : ResponseType.REFUSE;
+        responseMessage.addBatchedResponse(new LockResponseBatchContext(type, lrc.getLockID(), lrc.getThreadID(), lrc
+            .getLockLevel()));
+      }
+      send(responseMessage);
+    } catch (NoSuchChannelException e) {
+      logger.info("Failed to send " + batch.size() + " lock messages to:" + cid + " because the session is dead.");
+    }
+  }
+
+  private void respond(LockResponseContext lrc) {
     NodeID cid = lrc.getNodeID();
 
     try {
@@ -102,6 +194,8 @@ public class RespondToRequestLockHandler extends AbstractEventHandler<LockRespon
     ServerConfigurationContext oscc = (ServerConfigurationContext) context;
     this.channelManager = oscc.getChannelManager();
     this.logger = oscc.getLogger(this.getClass());
+    this.responseSink = oscc.getStage(ServerConfigurationContext.RESPOND_TO_LOCK_REQUEST_STAGE,
+                                      LockResponseContext.class).getSink();
   }
 
   // used in tests to by pass the network
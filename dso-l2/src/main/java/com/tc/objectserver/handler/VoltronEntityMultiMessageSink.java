@@ -0,0 +1,100 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.async.api.Sink;
+import com.tc.async.api.SpecializedEventContext;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
+import com.tc.entity.VoltronEntityMessage;
+import com.tc.stats.Stats;
+
+
+/**
+ * The destination sink for hydrated multi-messages:  it unpacks each one, in order, into the sink feeding the
+ * ProcessTransactionHandler, so the handler sees exactly what it would have seen had the client sent each message on
+ * its own.
+ * Note that this runs on the hydrate thread for the sending client, rather than its own stage, so that a multi-message
+ * can't be reordered relative to any single messages sent by that client before or after it.
+ */
+public class VoltronEntityMultiMessageSink implements Sink<NetworkVoltronEntityMultiMessage> {
+  private final Sink<VoltronEntityMessage> sink;
+
+  public VoltronEntityMultiMessageSink(Sink<VoltronEntityMessage> sink) {
+    this.sink = sink;
+  }
+
+  @Override
+  public void addSingleThreaded(NetworkVoltronEntityMultiMessage context) {
+    for (VoltronEntityMessage message : context.getMessages()) {
+      sink.addSingleThreaded(message);
+    }
+  }
+
+  @Override
+  public void addMultiThreaded(NetworkVoltronEntityMultiMessage context) {
+    // Voltron messages are always processed single-threaded.
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void addSpecialized(SpecializedEventContext specialized) {
+    // Not used for multi-messages.
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    return sink.size();
+  }
+
+  @Override
+  public void clear() {
+    sink.clear();
+  }
+
+  @Override
+  public void setClosed(boolean closed) {
+    sink.setClosed(closed);
+  }
+
+  @Override
+  public void enableStatsCollection(boolean enable) {
+    sink.enableStatsCollection(enable);
+  }
+
+  @Override
+  public boolean isStatsCollectionEnabled() {
+    return sink.isStatsCollectionEnabled();
+  }
+
+  @Override
+  public Stats getStats(long frequency) {
+    return sink.getStats(frequency);
+  }
+
+  @Override
+  public Stats getStatsAndReset(long frequency) {
+    return sink.getStatsAndReset(frequency);
+  }
+
+  @Override
+  public void resetStats() {
+    sink.resetStats();
+  }
+}
@@ -40,13 +40,13 @@ import com.tc.objectserver.entity.ClientDescriptorImpl;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.locks.LockManager;
 import com.tc.util.Assert;
+import com.tc.util.concurrent.TimingWheel;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 
 public class ServerClientHandshakeManager {
@@ -59,7 +59,7 @@ public class ServerClientHandshakeManager {
 
   private State                          state                             = State.INIT;
 
-  private final Timer                    timer;
+  private final TimingWheel              timer;
   private final ReconnectTimerTask       reconnectTimerTask;
   private final LockManager              lockManager;
   private final EntityManager entityManager;
@@ -76,7 +76,7 @@ public class ServerClientHandshakeManager {
                                       LockManager lockManager, EntityManager entityManager, 
                                       ProcessTransactionHandler transactionHandler,
                                       Stage<?> messageStage, 
-                                      Timer timer, long reconnectTimeout,
+                                      TimingWheel timer, long reconnectTimeout,
                                       boolean persistent, TCLogger consoleLogger) {
     this.logger = logger;
     this.channelManager = channelManager;
@@ -158,7 +158,7 @@ public class ServerClientHandshakeManager {
         this.existingUnconnectedClients.remove(clientID);
         if (this.existingUnconnectedClients.isEmpty()) {
           this.logger.debug("Last existing unconnected client (" + clientID + ") now connected.  Cancelling timer");
-          this.timer.cancel();
+          this.timer.stop();
           start();
         }
       } else {
@@ -232,11 +232,7 @@ public class ServerClientHandshakeManager {
     }
     this.consoleLogger.info(message);
 
-    if (this.reconnectTimeout < RECONNECT_WARN_INTERVAL) {
-      this.timer.schedule(this.reconnectTimerTask, this.reconnectTimeout);
-    } else {
-      this.timer.schedule(this.reconnectTimerTask, RECONNECT_WARN_INTERVAL, RECONNECT_WARN_INTERVAL);
-    }
+    this.reconnectTimerTask.schedule();
   }
 
   private void assertInit() {
@@ -252,24 +248,25 @@ public class ServerClientHandshakeManager {
   }
 
   /**
-   * Notifies handshake manager that the reconnect time has passed.
+   * Notifies handshake manager that the reconnect time has passed. Logs progress every RECONNECT_WARN_INTERVAL until
+   * then, rescheduling itself on the wheel for each interval.
    * 
    * @author orion
    */
-  private static class ReconnectTimerTask extends TimerTask {
+  private static class ReconnectTimerTask implements Runnable {
 
-    private final Timer                        timer;
+    private final TimingWheel                  timer;
     private final ServerClientHandshakeManager handshakeManager;
     private long                               timeToWait;
 
-    private ReconnectTimerTask(ServerClientHandshakeManager handshakeManager, Timer timer) {
+    private ReconnectTimerTask(ServerClientHandshakeManager handshakeManager, TimingWheel timer) {
       this.handshakeManager = handshakeManager;
       this.timer = timer;
       this.timeToWait = handshakeManager.reconnectTimeout;
     }
 
-    public void setTimeToWait(long timeToWait) {
-      this.timeToWait = timeToWait;
+    private void schedule() {
+      this.timer.schedule(this, Math.min(this.timeToWait, RECONNECT_WARN_INTERVAL), TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -284,14 +281,9 @@ public class ServerClientHandshakeManager {
         }
         this.handshakeManager.consoleLogger.info(message);
 
-        if (this.timeToWait < RECONNECT_WARN_INTERVAL) {
-          cancel();
-          final ReconnectTimerTask task = new ReconnectTimerTask(this.handshakeManager, this.timer);
-          task.setTimeToWait(this.timeToWait);
-          this.timer.schedule(task, this.timeToWait);
-        }
+        schedule();
       } else {
-        this.timer.cancel();
+        this.timer.stop();
         this.handshakeManager.notifyTimeout();
       }
     }
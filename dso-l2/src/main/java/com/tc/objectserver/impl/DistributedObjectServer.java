@@ -36,6 +36,7 @@ import com.tc.config.NodesStore;
 import com.tc.config.schema.setup.ConfigurationSetupException;
 import com.tc.config.schema.setup.L2ConfigurationSetupManager;
 import com.tc.entity.NetworkVoltronEntityMessageImpl;
+import com.tc.entity.NetworkVoltronEntityMultiMessageImpl;
 import com.tc.entity.ServerEntityMessageImpl;
 import com.tc.entity.ServerEntityResponseMessage;
 import com.tc.entity.ServerEntityResponseMessageImpl;
@@ -75,6 +76,7 @@ import com.tc.l2.msg.PassiveSyncMessage;
 import com.tc.l2.msg.ReplicationEnvelope;
 import com.tc.l2.msg.ReplicationMessage;
 import com.tc.l2.msg.ReplicationMessageAck;
+import com.tc.l2.msg.ReplicationMessageBatch;
 import com.tc.l2.operatorevent.OperatorEventsPassiveServerConnectionListener;
 import com.tc.l2.state.StateChangeListener;
 import com.tc.l2.state.StateManager;
@@ -94,8 +96,10 @@ import com.tc.management.RemoteManagement;
 import com.tc.management.RemoteManagementImpl;
 import com.tc.management.TSAManagementEventPayload;
 import com.tc.management.TerracottaRemoteManagement;
+import com.tc.management.beans.CommThreads;
 import com.tc.management.beans.L2DumperMBean;
 import com.tc.management.beans.L2MBeanNames;
+import com.tc.management.beans.PassiveSync;
 import com.tc.management.beans.L2State;
 import com.tc.management.beans.TCDumper;
 import com.tc.management.beans.TCServerInfoMBean;
@@ -169,12 +173,14 @@ import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.handler.RequestLockUnLockHandler;
 import com.tc.objectserver.handler.RespondToRequestLockHandler;
 import com.tc.objectserver.handler.ServerManagementHandler;
+import com.tc.objectserver.handler.VoltronEntityMultiMessageSink;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.objectserver.locks.LockManagerImpl;
 import com.tc.objectserver.locks.LockResponseContext;
 import com.tc.objectserver.persistence.ClientStatePersistor;
 import com.tc.objectserver.persistence.FlatFileStorageProviderConfiguration;
 import com.tc.objectserver.persistence.FlatFileStorageServiceProvider;
+import com.tc.objectserver.persistence.GroupCommitScheduler;
 import com.tc.objectserver.persistence.Persistor;
 import com.tc.objectserver.persistence.NullPlatformStorageServiceProvider;
 import com.tc.objectserver.persistence.NullPlatformStorageProviderConfiguration;
@@ -213,6 +219,7 @@ import com.tc.util.TCTimeoutException;
 import com.tc.util.UUID;
 import com.tc.util.concurrent.Runners;
 import com.tc.util.concurrent.TaskRunner;
+import com.tc.util.concurrent.TimingWheel;
 import com.tc.util.runtime.LockInfoByThreadID;
 import com.tc.util.runtime.NullThreadIDMapImpl;
 import com.tc.util.runtime.ThreadIDMap;
@@ -228,8 +235,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.Timer;
 
+import javax.management.JMException;
 import javax.management.MBeanServer;
 import javax.management.remote.JMXConnectorServer;
 
@@ -436,7 +443,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
       System.exit(1);
     }
 
-    final int maxStageSize = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEDA_STAGE_SINK_CAPACITY);
+    final int maxStageSize = tcProperties.getInt(TCPropertiesConsts.L2_SEDA_STAGE_SINK_CAPACITY);
     final StageManager stageManager = this.seda.getStageManager();
     final SessionManager sessionManager = new NullSessionManager();
 
@@ -454,7 +461,11 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
       //  treating it as a core component of the platform but, in the future, it may move out and be loaded like user
       //  services or be discarded, entirely.
       FlatFileStorageServiceProvider flatFileService = new FlatFileStorageServiceProvider();
-      if (!flatFileService.initialize(new FlatFileStorageProviderConfiguration(null, restartable))) {
+      FlatFileStorageProviderConfiguration flatFileConfiguration = new FlatFileStorageProviderConfiguration(null, restartable,
+          tcProperties.getBoolean(TCPropertiesConsts.L2_PLATFORM_PERSISTENCE_APPENDLOG_ENABLED, false),
+          tcProperties.getLong(TCPropertiesConsts.L2_PLATFORM_PERSISTENCE_APPENDLOG_SEGMENT_SIZE, FlatFileStorageProviderConfiguration.DEFAULT_SEGMENT_SIZE),
+          tcProperties.getLong(TCPropertiesConsts.L2_PLATFORM_PERSISTENCE_APPENDLOG_COMPACTION_THRESHOLD, FlatFileStorageProviderConfiguration.DEFAULT_COMPACTION_THRESHOLD));
+      if (!flatFileService.initialize(flatFileConfiguration)) {
         flatFileService.close();
         throw new AssertionError("bad flat file initialization");
       }
@@ -504,7 +515,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
       networkStackHarnessFactory = new PlainNetworkStackHarnessFactory();
     }
 
-    final MessageMonitor mm = MessageMonitorImpl.createMonitor(TCPropertiesImpl.getProperties(), logger);
+    final MessageMonitor mm = MessageMonitorImpl.createMonitor(tcProperties, logger);
 
     final TCMessageRouter messageRouter = new TCMessageRouterImpl();
     this.communicationsManager = new CommunicationsManagerImpl(CommunicationsManager.COMMSMGR_SERVER, mm,
@@ -516,13 +527,19 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                new TransportHandshakeErrorNullHandler(),
                                                                getMessageTypeClassMappings(), Collections.emptyMap(),
                                                                tcSecurityManager);
+    try {
+      getMBeanServer().registerMBean(new CommThreads(this.communicationsManager.getConnectionManager().getTcComm()),
+                                     L2MBeanNames.COMM_THREADS);
+    } catch (JMException jmx) {
+      logger.warn("Unable to register the comm threads MBean", jmx);
+    }
 
 
     final SampledCumulativeCounterConfig sampledCumulativeCounterConfig = new SampledCumulativeCounterConfig(1, 300,
                                                                                                              true, 0L);
 
     final TCMemoryManagerImpl tcMemManager = new TCMemoryManagerImpl(this.threadGroup);
-    final long timeOut = TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.LOGGING_LONG_GC_THRESHOLD);
+    final long timeOut = tcProperties.getLong(TCPropertiesConsts.LOGGING_LONG_GC_THRESHOLD);
     final LongGCLogger gcLogger = this.serverBuilder.createLongGCLogger(timeOut);
 
     tcMemManager.registerForMemoryEvents(gcLogger);
@@ -612,9 +629,23 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
         .createCounter(sampledCumulativeCounterConfig);
     final SampledCumulativeCounter globalServerMapGetSnapshotRequestsCounter = (SampledCumulativeCounter) this.sampledCounterManager
         .createCounter(sampledCumulativeCounterConfig);
+    final SampledCounter persistenceCommitCounter = (SampledCounter) this.sampledCounterManager
+        .createCounter(sampledCounterConfig);
+    final SampledRateCounter persistenceCommitBatchSizeCounter = (SampledRateCounter) this.sampledCounterManager
+        .createCounter(sampledRateCounterConfig);
+    final SampledRateCounter persistenceCommitLatencyCounter = (SampledRateCounter) this.sampledCounterManager
+        .createCounter(sampledRateCounterConfig);
+    final SampledCounter speculativeExecutionCounter = (SampledCounter) this.sampledCounterManager
+        .createCounter(sampledCounterConfig);
+    final SampledRateCounter speculativeExecutionOverlapCounter = (SampledRateCounter) this.sampledCounterManager
+        .createCounter(sampledRateCounterConfig);
 
     // We need to set up a stage to point at the ProcessTransactionHandler and we also need to register it for events, below.
-    final ProcessTransactionHandler processTransactionHandler = new ProcessTransactionHandler(this.persistor.getEntityPersistor(), this.persistor.getTransactionOrderPersistor());
+    final GroupCommitScheduler groupCommit = new GroupCommitScheduler(this.persistor.getPersistentStorage(),
+        tcProperties.getInt(TCPropertiesConsts.L2_PLATFORM_PERSISTENCE_GROUPCOMMIT_BATCH_SIZE, 64),
+        tcProperties.getLong(TCPropertiesConsts.L2_PLATFORM_PERSISTENCE_GROUPCOMMIT_WINDOW_MILLIS, 2),
+        persistenceCommitCounter, persistenceCommitBatchSizeCounter, persistenceCommitLatencyCounter);
+    final ProcessTransactionHandler processTransactionHandler = new ProcessTransactionHandler(this.persistor.getEntityPersistor(), this.persistor.getTransactionOrderPersistor(), groupCommit);
     final Stage<Runnable> requestProcessorStage = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class, new RequestProcessorHandler(), L2Utils.getOptimalApplyStageWorkerThreads(true), maxStageSize);
     final Stage<VoltronEntityMessage> processTransactionStage_voltron = stageManager.createStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class, processTransactionHandler.getVoltronMessageHandler(), 1, maxStageSize);
     final Sink<VoltronEntityMessage> voltronMessageSink = processTransactionStage_voltron.getSink();
@@ -624,7 +655,10 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     ClientEntityStateManager clientEntityStateManager = new ClientEntityStateManagerImpl(voltronMessageSink);
 
     ManagementTopologyEventCollector eventCollector = new ManagementTopologyEventCollector();
-    RequestProcessor processor = new RequestProcessor(requestProcessorSink);
+    RequestProcessor processor = new RequestProcessor(requestProcessorSink,
+        tcProperties.getBoolean(TCPropertiesConsts.L2_NHA_REPLICATION_NONBLOCKING, false),
+        tcProperties.getBoolean(TCPropertiesConsts.L2_NHA_REPLICATION_SPECULATIVE, false),
+        speculativeExecutionCounter, speculativeExecutionOverlapCounter);
     EntityManagerImpl entityManager = new EntityManagerImpl(this.serviceRegistry, clientEntityStateManager, eventCollector, processor);
     channelManager.addEventListener(clientEntityStateManager);
     processTransactionHandler.setLateBoundComponents(channelManager, entityManager);
@@ -667,11 +701,12 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     messageRouter.routeMessageType(TCMessageType.LIST_REGISTERED_SERVICES_RESPONSE_MESSAGE, managementStage_list.getSink(), hydrateSink);
     messageRouter.routeMessageType(TCMessageType.INVOKE_REGISTERED_SERVICE_RESPONSE_MESSAGE, managementStage_invoke.getSink(), hydrateSink);
     messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MESSAGE, voltronMessageSink, hydrateSink);
+    messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE, new VoltronEntityMultiMessageSink(voltronMessageSink), hydrateSink);
     messageRouter.routeMessageType(TCMessageType.SERVER_ENTITY_RESPONSE_MESSAGE, communicatorResponseStage.getSink(), hydrateSink);
 
     long reconnectTimeout = l2DSOConfig.clientReconnectWindow();
 
-    HASettingsChecker haChecker = new HASettingsChecker(configSetupManager, TCPropertiesImpl.getProperties());
+    HASettingsChecker haChecker = new HASettingsChecker(configSetupManager, tcProperties);
     haChecker.validateHealthCheckSettingsForHighAvailability();
 
     logger.debug("Client Reconnect Window: " + reconnectTimeout + " seconds");
@@ -684,9 +719,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                                                  entityManager,
                                                                                                  processTransactionHandler,
                                                                                                  processTransactionStage_voltron,
-                                                                                                 new Timer(
-                                                                                                           "Reconnect timer",
-                                                                                                           true),
+                                                                                                 new TimingWheel(
+                                                                                                                 "Reconnect timer"),
                                                                                                  reconnectTimeout,
                                                                                                  restartable,
                                                                                                  consoleLogger);
@@ -716,14 +750,27 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
 
     connectServerStateToReplicatedState(state, l2Coordinator.getReplicatedClusterStateManager());
 // setup replication    
-    final Stage<ReplicationEnvelope> replicationDriver = stageManager.createStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_STAGE, ReplicationEnvelope.class, new ReplicationSender(groupCommManager), 1, maxStageSize);
+    final ReplicationSender replicationSender = new ReplicationSender(groupCommManager,
+        tcProperties.getInt(TCPropertiesConsts.L2_NHA_REPLICATION_BATCH_MAX_MESSAGES, 1),
+        tcProperties.getInt(TCPropertiesConsts.L2_NHA_REPLICATION_BATCH_MAX_BYTES, 256 * 1024),
+        tcProperties.getLong(TCPropertiesConsts.L2_NHA_REPLICATION_BATCH_LINGER_MILLIS, 2));
+    final Stage<ReplicationEnvelope> replicationDriver = stageManager.createStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_STAGE, ReplicationEnvelope.class, replicationSender, 1, maxStageSize);
     
-    final ActiveToPassiveReplication passives = new ActiveToPassiveReplication(l2Coordinator.getReplicatedClusterStateManager().getPassives(), processTransactionHandler.getEntityList(), replicationDriver.getSink());
+    final ActiveToPassiveReplication passives = new ActiveToPassiveReplication(l2Coordinator.getReplicatedClusterStateManager().getPassives(), processTransactionHandler.getEntityList(), replicationDriver.getSink(),
+        tcProperties.getInt(TCPropertiesConsts.L2_NHA_PASSIVE_SYNC_WINDOW, 32),
+        tcProperties.getInt(TCPropertiesConsts.L2_NHA_PASSIVE_SYNC_PARALLELISM, 4));
+    try {
+      getMBeanServer().registerMBean(new PassiveSync(passives), L2MBeanNames.PASSIVE_SYNC);
+    } catch (JMException jmx) {
+      logger.warn("Unable to register the passive sync MBean", jmx);
+    }
     processor.setReplication(passives); 
 //  routing for passive to receive replication    
     Stage<ReplicationMessage> replicationStage = stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE, ReplicationMessage.class, 
         new ReplicatedTransactionHandler(this.l2Coordinator.getStateManager(), this.persistor.getTransactionOrderPersistor(), entityManager, 
-            this.persistor.getEntityPersistor(), groupCommManager).getEventHandler(), 1, maxStageSize);
+            this.persistor.getEntityPersistor(), groupCommManager,
+            tcProperties.getInt(TCPropertiesConsts.L2_NHA_REPLICATION_ACK_MAX_MESSAGES, 1),
+            tcProperties.getLong(TCPropertiesConsts.L2_NHA_REPLICATION_ACK_DELAY_MILLIS, 2)).getEventHandler(), 1, maxStageSize);
     Stage<ReplicationMessageAck> replicationStageAck = stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_ACK_STAGE, ReplicationMessageAck.class, 
         new AbstractEventHandler<ReplicationMessageAck>() {
           @Override
@@ -732,6 +779,9 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
               case ReplicationMessage.RESPONSE:
             passives.acknowledge(context);
                 break;
+              case ReplicationMessage.RESPONSE_THROUGH:
+                passives.acknowledgeThrough(context.messageFrom(), context.getSequenceID());
+                break;
               case ReplicationMessage.START:
                 passives.startPassiveSync(context.messageFrom());
                 break;
@@ -756,6 +806,12 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     Sink<ReplicationMessage> replication = new OrderedSink<ReplicationMessage>(logger, replicationStage.getSink());
     this.groupCommManager.routeMessages(ReplicationMessage.class, replication);
     this.groupCommManager.routeMessages(PassiveSyncMessage.class, replication);
+//  batches are unpacked straight into the same ordered sink, where the replication IDs restore any interleaving
+    this.groupCommManager.registerForMessages(ReplicationMessageBatch.class, (NodeID fromNode, ReplicationMessageBatch batch) -> {
+      for (ReplicationMessage msg : batch.unpack(fromNode)) {
+        replication.addSingleThreaded(msg);
+      }
+    });
 
     this.groupCommManager.routeMessages(ReplicationMessageAck.class, replicationStageAck.getSink());
     
@@ -775,7 +831,9 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
 
     serverStats.serverMapGetSizeRequestsCounter(globalServerMapGetSizeRequestsCounter)
         .serverMapGetValueRequestsCounter(globalServerMapGetValueRequestsCounter)
-        .serverMapGetSnapshotRequestsCounter(globalServerMapGetSnapshotRequestsCounter);
+        .serverMapGetSnapshotRequestsCounter(globalServerMapGetSnapshotRequestsCounter)
+        .persistenceCommitCounters(persistenceCommitCounter, persistenceCommitBatchSizeCounter, persistenceCommitLatencyCounter)
+        .speculativeExecutionCounters(speculativeExecutionCounter, speculativeExecutionOverlapCounter);
 
     this.context = this.serverBuilder.createServerConfigurationContext(stageManager,
         this.lockManager, channelManager,
@@ -923,6 +981,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     messageTypeClassMapping.put(TCMessageType.INVOKE_REGISTERED_SERVICE_MESSAGE, InvokeRegisteredServiceMessage.class);
     messageTypeClassMapping.put(TCMessageType.INVOKE_REGISTERED_SERVICE_RESPONSE_MESSAGE, InvokeRegisteredServiceResponseMessage.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_MESSAGE, NetworkVoltronEntityMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE, NetworkVoltronEntityMultiMessageImpl.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE, VoltronEntityReceivedResponseImpl.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_APPLIED_RESPONSE, VoltronEntityAppliedResponseImpl.class);
     messageTypeClassMapping.put(TCMessageType.SERVER_ENTITY_MESSAGE, ServerEntityMessageImpl.class);
@@ -30,27 +30,26 @@ import com.tc.object.locks.ServerLockContext.Type;
 import com.tc.object.locks.ServerLockLevel;
 import com.tc.object.locks.ThreadID;
 import com.tc.object.net.DSOChannelManager;
-import com.tc.objectserver.locks.context.LinkedServerLockContext;
 import com.tc.objectserver.locks.context.SingleServerLockContext;
 import com.tc.objectserver.locks.context.WaitServerLockContext;
 import com.tc.objectserver.locks.timer.LockTimer.LockTimerContext;
 import com.tc.text.PrettyPrintable;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.Assert;
-import com.tc.util.SinglyLinkedList;
+import com.tc.util.concurrent.TimingWheel.Timeout;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.TimerTask;
 
 /**
- * This class extends SinglyLinkedList which stores ServerLockContext. The ServerLockContexts are placed in the order of
- * greedy holders, pending requests, try lock requests and then waiters.
+ * This class extends ServerLockContextStore which stores ServerLockContext. Holders are looked up by client and thread,
+ * pending and try lock requests are awarded in the order they arrive and waiters are notified in the order they started
+ * waiting.
  */
-public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockContext> implements ServerLock,
-    PrettyPrintable {
+public abstract class AbstractServerLock extends ServerLockContextStore implements ServerLock, PrettyPrintable {
   private final static EnumSet<Type> SET_OF_TRY_PENDING_OR_WAITERS = EnumSet.of(Type.TRY_PENDING, Type.WAITER);
   private final static EnumSet<Type> SET_OF_WAITERS                = EnumSet.of(Type.WAITER);
   private final static EnumSet<Type> SET_OF_HOLDERS                = EnumSet.of(Type.HOLDER, Type.GREEDY_HOLDER);
@@ -66,6 +65,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   public void lock(ClientID cid, ThreadID tid, ServerLockLevel level, LockHelper helper) {
     validateAndGetNumberOfPending(cid, tid, level);
     requestLock(cid, tid, level, Type.PENDING, -1, helper);
+    updateClientIndex(cid, helper);
   }
 
   @Override
@@ -78,6 +78,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     }
 
     requestLock(cid, tid, level, Type.TRY_PENDING, timeout, helper);
+    updateClientIndex(cid, helper);
   }
 
   @Override
@@ -149,8 +150,13 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
 
   @Override
   public void wait(ClientID cid, ThreadID tid, long timeout, LockHelper helper) {
-    moveFromHolderToWaiter(cid, tid, timeout, helper);
-    processPendingRequests(helper);
+    try {
+      moveFromHolderToWaiter(cid, tid, timeout, helper);
+      processPendingRequests(helper);
+    } finally {
+      // a refused wait has already dropped the hold
+      updateClientIndex(cid, helper);
+    }
   }
 
   /**
@@ -180,6 +186,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
 
     if (context == null) { return; }
     Assert.assertTrue(context.isHolder());
+    updateClientIndex(cid, helper);
 
     if (clearLockIfRequired(helper)) { return; }
     processPendingRequests(helper);
@@ -204,14 +211,13 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
       default:
         throw new IllegalArgumentException("Called with wrong type = " + cselc.getState().getType());
     }
+    updateClientIndex((ClientID) cselc.getNodeID(), helper);
   }
 
   @Override
   public LockMBean getMBean(DSOChannelManager channelManager) {
     List<ServerLockContextBean> contextsPresent = new ArrayList<>();
-    SinglyLinkedListIterator<ServerLockContext> contexts = iterator();
-    while (contexts.hasNext()) {
-      ServerLockContext context = contexts.next();
+    for (ServerLockContext context : this) {
       ServerLockContextBean clonedContext = null;
       String client = channelManager.getChannelAddress(context.getClientID());
       switch (context.getState().getType()) {
@@ -268,6 +274,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     } else {
       tryLockTimeout(context, helper);
     }
+    updateClientIndex(cid, helper);
   }
 
   @Override
@@ -295,7 +302,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
         .getThreadID(), cselc.getState(), cselc.timeout(), helper);
     if (cselc.timeout() > 0) {
       LockTimerContext ltc = new LockTimerContext(lockID, cselc.getThreadID(), (ClientID) cselc.getNodeID(), helper);
-      TimerTask task = helper.getLockTimer().scheduleTimer(helper.getTimerCallback(), cselc.timeout(), ltc);
+      Timeout task = helper.getLockTimer().scheduleTimer(helper.getTimerCallback(), cselc.timeout(), ltc);
       context.setTimerTask(task);
     }
     return context;
@@ -322,7 +329,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     WaitServerLockContext waiter = createWaitOrTryPendingServerLockContext(cid, tid, State.WAITER, timeout, helper);
     if (timeout > 0) {
       LockTimerContext ltc = new LockTimerContext(lockID, tid, cid, helper);
-      TimerTask task = helper.getLockTimer().scheduleTimer(helper.getTimerCallback(), timeout, ltc);
+      Timeout task = helper.getLockTimer().scheduleTimer(helper.getTimerCallback(), timeout, ltc);
       waiter.setTimerTask(task);
     }
     addWaiter(waiter, helper);
@@ -344,7 +351,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
         WaitServerLockContext waitContext = createTryPendingServerLockContext(cid, tid, level, timeout, helper);
         if (timeout > 0) {
           LockTimerContext ltc = new LockTimerContext(lockID, tid, cid, helper);
-          TimerTask task;
+          Timeout task;
           try {
             task = helper.getLockTimer().scheduleTimer(helper.getTimerCallback(), timeout, ltc);
           } catch (IllegalArgumentException e) {
@@ -375,59 +382,62 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   }
 
   protected int validateAndGetNumberOfPending(ClientID cid, ThreadID tid, ServerLockLevel reqLevel) {
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    int noOfPendingRequests = 0;
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
+    ServerLockContext key = new SingleServerLockContext(cid, tid);
+    ServerLockContext holder = getContext(key, Type.HOLDER);
+    if (holder != null) {
+      if (isUpgradeRequest(cid, tid, reqLevel, holder)) { throw new TCLockUpgradeNotSupportedError(
+                                                                                                   "Lock upgrade is not supported."
+                                                                                                       + holder
+                                                                                                       + " lock = "
+                                                                                                       + lockID); }
+      if (isAlreadyHeldBySameContext(cid, tid, reqLevel, holder)) { throw new AssertionError(
+                                                                                             "Client requesting already held lock!"
+                                                                                                 + holder
+                                                                                                 + " lock = "
+                                                                                                 + lockID); }
+    }
+    if (getContext(key, Type.WAITER) != null) { throw new AssertionError("This thread is already in wait state for "
+                                                                        + lockID); }
+    return getNoOfPendingRequests();
+  }
+
+  protected void clearContextsForClient(ClientID cid, LockHelper helper) {
+    List<ServerLockContext> contexts = new ArrayList<>();
+    if (hasContextsFor(cid)) {
+      for (ServerLockContext context : this) {
+        if (context.getClientID().equals(cid)) {
+          contexts.add(context);
+        }
+      }
+    }
+
+    // clear contexts and cancel timer tasks
+    for (ServerLockContext context : contexts) {
+      removeContext(context);
       switch (context.getState().getType()) {
-        case GREEDY_HOLDER:
-        case HOLDER:
-          if (isUpgradeRequest(cid, tid, reqLevel, context)) { throw new TCLockUpgradeNotSupportedError(
-                                                                                                        "Lock upgrade is not supported."
-                                                                                                            + context
-                                                                                                            + " lock = "
-                                                                                                            + lockID); }
-          if (isAlreadyHeldBySameContext(cid, tid, reqLevel, context)) { throw new AssertionError(
-                                                                                                  "Client requesting already held lock!"
-                                                                                                      + context
-                                                                                                      + " lock = "
-                                                                                                      + lockID); }
-          break;
-        case PENDING:
-        case TRY_PENDING:
-          noOfPendingRequests++;
-          break;
         case WAITER:
-          if (context.getClientID().equals(cid) && context.getThreadID().equals(tid)) { throw new AssertionError(
-                                                                                                                 "This thread is already in wait state for "
-                                                                                                                     + lockID); }
+        case TRY_PENDING:
+          WaitServerLockContext waitContext = (WaitServerLockContext) context;
+          if (waitContext.getTimerTask() != null) {
+            waitContext.getTimerTask().cancel();
+          }
           break;
+        //$CASES-OMITTED$
         default:
       }
     }
-    return noOfPendingRequests;
+    helper.getClientLockIndex().remove(cid, lockID);
   }
 
-  protected void clearContextsForClient(ClientID cid, LockHelper helper) {
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-
-    // clear contexts and cancel timer tasks
-    while (iter.hasNext()) {
-      ServerLockContext context = iter.next();
-      if (context.getClientID().equals(cid)) {
-        iter.remove();
-        switch (context.getState().getType()) {
-          case WAITER:
-          case TRY_PENDING:
-            WaitServerLockContext waitContext = (WaitServerLockContext) context;
-            if (waitContext.getTimerTask() != null) {
-              waitContext.getTimerTask().cancel();
-            }
-            break;
-          //$CASES-OMITTED$
-          default:
-        }
-      }
+  /**
+   * Brings the client's entry in the {@link ClientLockIndex} in line with whether it still has any context on this
+   * lock. Only the requesting client's contexts are added or removed by an operation, so that is the only entry to fix.
+   */
+  protected void updateClientIndex(ClientID cid, LockHelper helper) {
+    if (hasContextsFor(cid)) {
+      helper.getClientLockIndex().add(cid, lockID);
+    } else {
+      helper.getClientLockIndex().remove(cid, lockID);
     }
   }
 
@@ -527,66 +537,33 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   }
 
   protected void addHolder(ServerLockContext request, LockHelper helper) {
-    preStepsForAdd(helper);
+    Assert.assertTrue(request.isHolder());
     Assert.assertFalse(checkDuplicate(request));
-    this.addFirst(request);
+    storeContext(request);
   }
 
   protected void addTryPending(ServerLockContext request, LockHelper helper) {
-    preStepsForAdd(helper);
-    // I'm not sure this is a sensible thing to assert - you are racing with the client on
-    // try lock requests...
-    // Assert.assertFalse(checkDuplicate(request));
-
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-    while (iter.hasNext()) {
-      Type type = iter.next().getState().getType();
-      switch (type) {
-        case GREEDY_HOLDER:
-        case HOLDER:
-        case PENDING:
-        case TRY_PENDING:
-          break;
-        case WAITER:
-          iter.addPrevious(request);
-          return;
-        default:
-          throw new AssertionError(type);
-      }
+    // A thread can only have one pending request, but try lock requests are racing with the client so a repeated one
+    // is ignored rather than asserted on. The try lock request already pending gets the response.
+    if (getContext(request, Type.TRY_PENDING) != null) {
+      logger.debug("Ignoring existing Try Request " + request + " in Lock " + lockID);
+      cancelTryLockOrWaitTimer(request, helper);
+      return;
     }
 
-    this.addLast(request);
+    storeContext(request);
   }
 
   protected void addPending(ServerLockContext request, LockHelper helper) {
-    preStepsForAdd(helper);
     if (checkDuplicate(request)) {
       logger.debug("Ignoring existing Request " + request + " in Lock " + lockID);
       return;
     }
 
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-    while (iter.hasNext()) {
-      Type type = iter.next().getState().getType();
-      switch (type) {
-        case GREEDY_HOLDER:
-        case HOLDER:
-        case PENDING:
-        case TRY_PENDING:
-          break;
-        case WAITER:
-          iter.addPrevious(request);
-          return;
-        default:
-          throw new AssertionError(type);
-      }
-    }
-
-    this.addLast(request);
+    storeContext(request);
   }
 
   protected void addWaiter(ServerLockContext request, LockHelper helper) {
-    preStepsForAdd(helper);
     // This has been commented out because there is a possibility in restarts that this can happen.
     // consider steps:
     // 1) ClientLock trying to do remote wait and get inside synchronization
@@ -601,38 +578,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
       return;
     }
 
-    this.addLast(request);
-  }
-
-  /**
-   * This list that is being maintained for contexts can have SingleServerLockContext, LinkedServerLockContext,
-   * WaitSingleServerLockContext and WaitLinkedServerLockContext. In case the size of the queue is 1, a
-   * SingleServerLockContext is present in the list. This has been done to save space. In order to continue adding more
-   * elements to the list, a change to LinkedServerLockContext is required.]
-   * 
-   * @param helper
-   */
-  protected void preStepsForAdd(LockHelper helper) {
-    if (isEmpty() || (!isEmpty() && (getFirst().getNext() != null || getFirst() instanceof LinkedServerLockContext))) { return; }
-
-    // Since there is only 1 element in the list, a change is required.
-    SingleServerLockContext context = (SingleServerLockContext) removeFirst();
-    LinkedServerLockContext newContext = null;
-    Type type = context.getState().getType();
-    switch (type) {
-      case GREEDY_HOLDER:
-      case HOLDER:
-      case PENDING:
-        newContext = new LinkedServerLockContext(context.getClientID(), context.getThreadID());
-        newContext.setState(helper.getContextStateMachine(), context.getState());
-        break;
-      case TRY_PENDING:
-      case WAITER:
-        throw new AssertionError("waiters/try pending are all linked server contexts");
-      default:
-        throw new AssertionError(type);
-    }
-    this.addFirst(newContext);
+    storeContext(request);
   }
 
   protected boolean checkDuplicate(ClientID cid, ThreadID tid) {
@@ -640,12 +586,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   }
 
   protected boolean checkDuplicate(ServerLockContext context) {
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-    while (iter.hasNext()) {
-      ServerLockContext temp = iter.next();
-      if (context.equals(temp)) { return true; }
-    }
-    return false;
+    return containsContext(context);
   }
 
   protected boolean canAwardRequest(ServerLockLevel requestLevel) {
@@ -662,24 +603,10 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
 
   protected ServerLockContext getNextRequestIfCanAward(LockHelper helper) {
     // Fetch the next pending context
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-    while (iter.hasNext()) {
-      ServerLockContext request = iter.next();
-      switch (request.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          if (canAwardRequest(request.getState().getLockLevel())) {
-            iter.remove();
-            return request;
-          }
-          return null;
-        case WAITER:
-          return null;
-        //$CASES-OMITTED$
-        default:
-      }
-    }
-    return null;
+    ServerLockContext request = firstPendingRequest();
+    if (request == null || !canAwardRequest(request.getState().getLockLevel())) { return null; }
+    removeContext(request);
+    return request;
   }
 
   protected void cancelTryLockOrWaitTimer(ServerLockContext request, LockHelper helper) {
@@ -703,8 +630,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     switch (request.getState().getType()) {
       case WAITER:
       case TRY_PENDING:
-        request = createSingleOrLinkedServerLockContext(request.getClientID(), request.getThreadID(), request
-            .getState(), helper);
+        request = createServerLockContext(request.getClientID(), request.getThreadID(), request.getState(), helper);
         break;
       //$CASES-OMITTED$
       default:
@@ -741,17 +667,11 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
       default:
         throw new AssertionError(level);
     }
-    return createSingleOrLinkedServerLockContext(cid, tid, state, helper);
+    return createServerLockContext(cid, tid, state, helper);
   }
 
-  private ServerLockContext createSingleOrLinkedServerLockContext(ClientID cid, ThreadID tid, State state,
-                                                                  LockHelper helper) {
-    ServerLockContext context = null;
-    if (isEmpty()) {
-      context = new SingleServerLockContext(cid, tid);
-    } else {
-      context = new LinkedServerLockContext(cid, tid);
-    }
+  private ServerLockContext createServerLockContext(ClientID cid, ThreadID tid, State state, LockHelper helper) {
+    ServerLockContext context = new SingleServerLockContext(cid, tid);
     context.setState(helper.getContextStateMachine(), state);
     return context;
   }
@@ -764,109 +684,33 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   }
 
   // Helper methods
-  protected boolean hasHolders() {
-    if (!isEmpty() && getFirst().isHolder()) { return true; }
-    return false;
-  }
-
   protected boolean hasOnlyReadHolders() {
     return isRead();
   }
 
-  protected boolean hasWaiters() {
-    if (!isEmpty() && getLast().isWaiter()) { return true; }
-    return false;
-  }
-
-  protected boolean hasPendingRequests() {
-    for (ServerLockContext context : this) {
-      switch (context.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          return true;
-        case WAITER:
-          return false;
-        //$CASES-OMITTED$
-        default:
-      }
-    }
-    return false;
-  }
-
-  protected boolean hasPendingWrites() {
-    for (ServerLockContext context : this) {
-      switch (context.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          if (context.getState().getLockLevel() == ServerLockLevel.WRITE) { return true; }
-          break;
-        case WAITER:
-          return false;
-        //$CASES-OMITTED$
-        default:
-      }
-    }
-    return false;
-  }
-
   protected List<ServerLockContext> removeAllPendingReadRequests(LockHelper helper) {
     List<ServerLockContext> requests = new ArrayList<>();
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
-      switch (context.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          if (context.getState().getLockLevel() == ServerLockLevel.READ) {
-            iterator.remove();
-            requests.add(context);
-          }
-          break;
-        case WAITER:
-          return requests;
-        //$CASES-OMITTED$
-        default:
+    for (ServerLockContext context : pendingRequests()) {
+      if (context.getState().getLockLevel() == ServerLockLevel.READ) {
+        requests.add(context);
       }
     }
+    for (ServerLockContext request : requests) {
+      removeContext(request);
+    }
     return requests;
   }
 
   protected boolean hasPendingRequestsFromOtherClients(ClientID cid) {
-    for (ServerLockContext context : this) {
-      switch (context.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          if (!context.getClientID().equals(cid)) { return true; }
-          break;
-        case WAITER:
-          return false;
-        //$CASES-OMITTED$
-        default:
-      }
+    for (ServerLockContext context : pendingRequests()) {
+      if (!context.getClientID().equals(cid)) { return true; }
     }
     return false;
   }
 
-  protected int getNoOfPendingRequests() {
-    int count = 0;
-    for (ServerLockContext context : this) {
-      switch (context.getState().getType()) {
-        case PENDING:
-        case TRY_PENDING:
-          count++;
-          break;
-        case WAITER:
-          return count;
-        //$CASES-OMITTED$
-        default:
-      }
-    }
-    return count;
-  }
-
   protected ServerLockLevel holderLevel() {
-    if (!hasHolders()) { return null; }
-    ServerLockContext holder = getFirst();
+    ServerLockContext holder = firstHolder();
+    if (holder == null) { return null; }
     return holder.getState().getLockLevel();
   }
 
@@ -881,39 +725,38 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
   }
 
   protected ServerLockContext remove(ClientID cid, ThreadID tid, EnumSet<Type> set) {
-    ServerLockContext temp = null;
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-    while (iter.hasNext()) {
-      temp = iter.next();
-      if (temp.getClientID().equals(cid) && temp.getThreadID().equals(tid) && set.contains(temp.getState().getType())) {
-        iter.remove();
-        return temp;
-      }
+    ServerLockContext key = new SingleServerLockContext(cid, tid);
+    for (Type type : set) {
+      ServerLockContext context = getContext(key, type);
+      if (context != null && set.contains(context.getState().getType())) { return removeContext(context); }
     }
     return null;
   }
 
   protected ServerLockContext get(ClientID cid, ThreadID tid) {
-    for (ServerLockContext temp : this) {
-      if (temp.getClientID().equals(cid) && temp.getThreadID().equals(tid)) { return temp; }
+    ServerLockContext key = new SingleServerLockContext(cid, tid);
+    ServerLockContext context = getContext(key, Type.HOLDER);
+    if (context == null) {
+      context = getContext(key, Type.PENDING);
     }
-    return null;
+    if (context == null) {
+      context = getContext(key, Type.WAITER);
+    }
+    return context;
   }
 
   private List<ServerLockContext> removeWaiters(NotifyAction action) {
     List<ServerLockContext> contexts = new ArrayList<>();
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
-      switch (context.getState().getType()) {
-        case WAITER:
-          iterator.remove();
-          contexts.add(context);
-          if (action == NotifyAction.ONE) { return contexts; }
-          break;
-        //$CASES-OMITTED$
-        default:
+    if (action == NotifyAction.ONE) {
+      ServerLockContext waiter = firstWaiter();
+      if (waiter != null) {
+        contexts.add(waiter);
       }
+    } else {
+      contexts.addAll(waiters());
+    }
+    for (ServerLockContext context : contexts) {
+      removeContext(context);
     }
     return contexts;
   }
@@ -924,7 +767,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     out.print(lockID).flush();
 
     out.print("Contexts [ ");
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
+    Iterator<ServerLockContext> iter = iterator();
     while (iter.hasNext()) {
       out.print(iter.next().toString());
       if (iter.hasNext()) {
@@ -944,7 +787,7 @@ public abstract class AbstractServerLock extends SinglyLinkedList<ServerLockCont
     builder.append(lockID);
     builder.append("\n");
     builder.append("Contexts [ ");
-    SinglyLinkedListIterator<ServerLockContext> iter = iterator();
+    Iterator<ServerLockContext> iter = iterator();
     while (iter.hasNext()) {
       builder.append(iter.next().toString());
       if (iter.hasNext()) {
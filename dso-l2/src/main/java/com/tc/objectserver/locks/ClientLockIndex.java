@@ -0,0 +1,65 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.net.ClientID;
+import com.tc.object.locks.LockID;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Secondary index from a client to the locks it holds, waits on or is pending for. Locks keep their entries up to date
+ * while they are checked out of the {@link LockStore}, so the locks a client touches can be found without scanning the
+ * whole store.
+ */
+public class ClientLockIndex {
+  private final ConcurrentMap<ClientID, Set<LockID>> locksByClient = new ConcurrentHashMap<>();
+
+  public void add(ClientID cid, LockID lid) {
+    Set<LockID> locks = locksByClient.get(cid);
+    if (locks == null) {
+      locks = locksByClient.computeIfAbsent(cid, c -> ConcurrentHashMap.newKeySet());
+    }
+    locks.add(lid);
+  }
+
+  public void remove(ClientID cid, LockID lid) {
+    // an empty set is left in place for the client's next lock, it goes when the client does
+    Set<LockID> locks = locksByClient.get(cid);
+    if (locks != null) {
+      locks.remove(lid);
+    }
+  }
+
+  public Set<LockID> getLocksFor(ClientID cid) {
+    Set<LockID> locks = locksByClient.get(cid);
+    return locks == null ? Collections.<LockID> emptySet() : Collections.unmodifiableSet(locks);
+  }
+
+  /**
+   * Drops the client from the index, returning the locks it was last known to be present in.
+   */
+  public Set<LockID> removeClient(ClientID cid) {
+    Set<LockID> locks = locksByClient.remove(cid);
+    return locks == null ? Collections.<LockID> emptySet() : locks;
+  }
+}
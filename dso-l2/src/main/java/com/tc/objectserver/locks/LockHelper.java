@@ -27,6 +27,7 @@ public class LockHelper {
   private final LockTimer                     lockTimer;
   private final Sink<LockResponseContext>                          lockSink;
   private final LockStore                     lockStore;
+  private final ClientLockIndex               clientLockIndex;
   private final ServerLockContextStateMachine contextStateMachine;
   private final TimerCallback                 timerCallback;
 
@@ -34,6 +35,7 @@ public class LockHelper {
     this.lockTimer = new LockTimer();
     this.lockSink = lockSink;
     this.lockStore = lockStore;
+    this.clientLockIndex = new ClientLockIndex();
     this.timerCallback = timerCallback;
     this.contextStateMachine = new ServerLockContextStateMachine();
   }
@@ -50,6 +52,10 @@ public class LockHelper {
     return lockStore;
   }
 
+  public ClientLockIndex getClientLockIndex() {
+    return clientLockIndex;
+  }
+
   public ServerLockContextStateMachine getContextStateMachine() {
     return contextStateMachine;
   }
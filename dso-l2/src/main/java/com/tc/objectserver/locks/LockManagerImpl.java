@@ -240,13 +240,15 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
 
   @Override
   public void clearAllLocksFor(ClientID cid) {
-    LockIterator iter = lockStore.iterator();
-    ServerLock lock = iter.getNextLock(null);
-    while (lock != null) {
-      if (lock.clearStateForNode(cid, lockHelper)) {
-        iter.remove();
+    for (LockID lid : lockHelper.getClientLockIndex().removeClient(cid)) {
+      ServerLock lock = lockStore.checkOut(lid);
+      try {
+        if (lock.clearStateForNode(cid, lockHelper)) {
+          lockStore.remove(lid);
+        }
+      } finally {
+        lockStore.checkIn(lock);
       }
-      lock = iter.getNextLock(lock);
     }
   }
 
@@ -384,6 +386,7 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
       lock = iter.getNextLock(lock);
     }
     out.indent().print("locks: " + size).println().flush();
+    out.indent().print("wait/try timeouts: " + lockHelper.getLockTimer().getTimingWheel()).println().flush();
     return out;
   }
 
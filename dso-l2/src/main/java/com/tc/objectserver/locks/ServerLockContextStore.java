@@ -0,0 +1,300 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.net.ClientID;
+import com.tc.object.locks.ServerLockContext;
+import com.tc.object.locks.ServerLockContext.Type;
+import com.tc.object.locks.ServerLockLevel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores the ServerLockContexts of a lock. Holders, pending requests (pending and try pending) and waiters are kept
+ * apart, each keyed by ClientID and ThreadID, so a thread's context is found or removed without walking the other
+ * contexts on the lock. Pending requests and waiters are kept in arrival order.
+ * <p>
+ * A lock with just one context, the common uncontended case, keeps it in a field and creates no maps. Maps are created
+ * when a second context is added and dropped again once they empty. As with SinglyLinkedList, locks extend this class
+ * instead of holding a reference to an instance of it, to save an object per lock.
+ * <p>
+ * Contexts must not change state or thread id while they are stored, as both decide where they are kept.
+ */
+abstract class ServerLockContextStore implements Iterable<ServerLockContext> {
+  private ServerLockContext                         single;
+  private Map<ServerLockContext, ServerLockContext> holders;
+  private Map<ServerLockContext, ServerLockContext> pending;
+  private Map<ServerLockContext, ServerLockContext> waiters;
+  private Map<ClientID, Integer>                    contextsPerClient;
+  private int                                       greedyHolderCount;
+  private int                                       pendingWriteCount;
+
+  protected boolean isEmpty() {
+    return single == null && holders == null && pending == null && waiters == null;
+  }
+
+  protected boolean hasHolders() {
+    return single != null ? single.isHolder() : holders != null;
+  }
+
+  protected boolean hasGreedyHolders() {
+    return greedyHolderCount > 0;
+  }
+
+  protected boolean hasPendingRequests() {
+    return single != null ? single.isPending() : pending != null;
+  }
+
+  protected boolean hasPendingWrites() {
+    return pendingWriteCount > 0;
+  }
+
+  protected boolean hasWaiters() {
+    return single != null ? single.isWaiter() : waiters != null;
+  }
+
+  protected int getNoOfPendingRequests() {
+    return pendingRequests().size();
+  }
+
+  protected boolean hasContextsFor(ClientID cid) {
+    if (single != null) { return single.getClientID().equals(cid); }
+    return contextsPerClient != null && contextsPerClient.containsKey(cid);
+  }
+
+  /**
+   * Returns the stored context that equals the given one (same ClientID and ThreadID) and is kept with contexts of the
+   * given type, or null.
+   */
+  protected ServerLockContext getContext(ServerLockContext key, Type type) {
+    if (single != null) { return sameSegment(single.getState().getType(), type) && single.equals(key) ? single : null; }
+    Map<ServerLockContext, ServerLockContext> segment = segment(type);
+    return segment == null ? null : segment.get(key);
+  }
+
+  protected boolean containsContext(ServerLockContext key) {
+    return getContext(key, Type.HOLDER) != null || getContext(key, Type.PENDING) != null
+           || getContext(key, Type.WAITER) != null;
+  }
+
+  protected ServerLockContext firstHolder() {
+    return first(holders());
+  }
+
+  protected ServerLockContext firstPendingRequest() {
+    return first(pendingRequests());
+  }
+
+  protected ServerLockContext firstWaiter() {
+    return first(waiters());
+  }
+
+  protected Collection<ServerLockContext> holders() {
+    return view(Type.HOLDER, holders);
+  }
+
+  protected Collection<ServerLockContext> pendingRequests() {
+    return view(Type.PENDING, pending);
+  }
+
+  protected Collection<ServerLockContext> waiters() {
+    return view(Type.WAITER, waiters);
+  }
+
+  /**
+   * Holders and pending requests are expected to be unique for a thread, waiters are appended after the existing ones
+   * and pending requests after the existing pending requests.
+   */
+  protected void storeContext(ServerLockContext context) {
+    if (isEmpty()) {
+      single = context;
+    } else {
+      if (single != null) {
+        ServerLockContext first = single;
+        single = null;
+        contextsPerClient = new HashMap<>();
+        put(first);
+      }
+      put(context);
+    }
+    count(context, 1);
+  }
+
+  /**
+   * Removes the stored context that equals the given one and is kept with contexts of its type.
+   */
+  protected ServerLockContext removeContext(ServerLockContext context) {
+    Type type = context.getState().getType();
+    ServerLockContext removed;
+    if (single != null) {
+      if (!sameSegment(single.getState().getType(), type) || !single.equals(context)) { return null; }
+      removed = single;
+      single = null;
+    } else {
+      Map<ServerLockContext, ServerLockContext> segment = segment(type);
+      removed = segment == null ? null : segment.remove(context);
+      if (removed == null) { return null; }
+      if (segment.isEmpty()) {
+        setSegment(type, null);
+      }
+      Integer count = contextsPerClient.get(removed.getClientID());
+      if (count == 1) {
+        contextsPerClient.remove(removed.getClientID());
+      } else {
+        contextsPerClient.put(removed.getClientID(), count - 1);
+      }
+      if (isEmpty()) {
+        contextsPerClient = null;
+      }
+    }
+    count(removed, -1);
+    return removed;
+  }
+
+  @Override
+  public Iterator<ServerLockContext> iterator() {
+    if (single != null) { return Collections.singleton(single).iterator(); }
+    return new ContextIterator();
+  }
+
+  private void put(ServerLockContext context) {
+    Type type = context.getState().getType();
+    Map<ServerLockContext, ServerLockContext> segment = segment(type);
+    if (segment == null) {
+      segment = new LinkedHashMap<>();
+      setSegment(type, segment);
+    }
+    segment.put(context, context);
+    Integer count = contextsPerClient.get(context.getClientID());
+    contextsPerClient.put(context.getClientID(), count == null ? 1 : count + 1);
+  }
+
+  private void count(ServerLockContext context, int delta) {
+    if (context.isGreedyHolder()) {
+      greedyHolderCount += delta;
+    } else if (context.isPending() && context.getState().getLockLevel() == ServerLockLevel.WRITE) {
+      pendingWriteCount += delta;
+    }
+  }
+
+  private Map<ServerLockContext, ServerLockContext> segment(Type type) {
+    switch (type) {
+      case GREEDY_HOLDER:
+      case HOLDER:
+        return holders;
+      case PENDING:
+      case TRY_PENDING:
+        return pending;
+      case WAITER:
+        return waiters;
+      default:
+        throw new AssertionError(type);
+    }
+  }
+
+  private void setSegment(Type type, Map<ServerLockContext, ServerLockContext> segment) {
+    switch (type) {
+      case GREEDY_HOLDER:
+      case HOLDER:
+        holders = segment;
+        break;
+      case PENDING:
+      case TRY_PENDING:
+        pending = segment;
+        break;
+      case WAITER:
+        waiters = segment;
+        break;
+      default:
+        throw new AssertionError(type);
+    }
+  }
+
+  private Collection<ServerLockContext> view(Type type, Map<ServerLockContext, ServerLockContext> segment) {
+    if (single != null) {
+      return sameSegment(single.getState().getType(), type) ? Collections.singleton(single) : Collections
+          .<ServerLockContext> emptySet();
+    }
+    return segment == null ? Collections.<ServerLockContext> emptySet() : Collections.unmodifiableCollection(segment
+        .values());
+  }
+
+  private static ServerLockContext first(Collection<ServerLockContext> view) {
+    Iterator<ServerLockContext> iter = view.iterator();
+    return iter.hasNext() ? iter.next() : null;
+  }
+
+  private static boolean sameSegment(Type a, Type b) {
+    return segmentIndex(a) == segmentIndex(b);
+  }
+
+  private static int segmentIndex(Type type) {
+    switch (type) {
+      case GREEDY_HOLDER:
+      case HOLDER:
+        return 0;
+      case PENDING:
+      case TRY_PENDING:
+        return 1;
+      case WAITER:
+        return 2;
+      default:
+        throw new AssertionError(type);
+    }
+  }
+
+  /**
+   * Iterates holders, then pending requests and then waiters. Contexts can not be removed through it.
+   */
+  private class ContextIterator implements Iterator<ServerLockContext> {
+    private int                         segmentIndex = 0;
+    private Iterator<ServerLockContext> current      = Collections.<ServerLockContext> emptySet().iterator();
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (segmentIndex == 3) { return false; }
+        Map<ServerLockContext, ServerLockContext> segment = segmentIndex == 0 ? holders : segmentIndex == 1 ? pending
+            : waiters;
+        segmentIndex++;
+        if (segment != null) {
+          current = segment.values().iterator();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public ServerLockContext next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      return current.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
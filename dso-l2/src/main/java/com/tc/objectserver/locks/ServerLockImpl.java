@@ -26,7 +26,6 @@ import com.tc.object.locks.ServerLockContext.State;
 import com.tc.object.locks.ServerLockContext.Type;
 import com.tc.object.locks.ServerLockLevel;
 import com.tc.object.locks.ThreadID;
-import com.tc.objectserver.locks.context.LinkedServerLockContext;
 import com.tc.objectserver.locks.context.SingleServerLockContext;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.Assert;
@@ -129,58 +128,10 @@ public final class ServerLockImpl extends AbstractServerLock {
     }
   }
 
-  @Override
-  protected void addHolder(ServerLockContext request, LockHelper helper) {
-    preStepsForAdd(helper);
-    Assert.assertFalse(checkDuplicate(request));
-
-    switch (request.getState().getType()) {
-      case GREEDY_HOLDER:
-        this.addFirst(request);
-        return;
-      case HOLDER:
-        SinglyLinkedListIterator<ServerLockContext> iter = iterator();
-        while (iter.hasNext()) {
-          switch (iter.next().getState().getType()) {
-            case GREEDY_HOLDER:
-              break;
-            //$CASES-OMITTED$
-            default:
-              iter.addPrevious(request);
-              return;
-          }
-        }
-
-        this.addLast(request);
-        break;
-      //$CASES-OMITTED$
-      default:
-        throw new IllegalStateException("Only holders context should be passed " + request.getState());
-    }
-  }
-
   private void awardAllReadsGreedily(LockHelper helper, ServerLockContext request) {
     // fetch all the read requests and check if has write pending requests as well
-    List<ServerLockContext> contexts = new ArrayList<>();
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    boolean hasPendingWrite = false;
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
-      if (context.isPending()) {
-        ServerLockLevel lockLevel = context.getState().getLockLevel();
-        switch (lockLevel) {
-          case READ:
-            iterator.remove();
-            contexts.add(context);
-            break;
-          case WRITE:
-            hasPendingWrite = true;
-            break;
-          default:
-            throw new AssertionError(lockLevel);
-        }
-      }
-    }
+    List<ServerLockContext> contexts = removeAllPendingReadRequests(helper);
+    boolean hasPendingWrite = hasPendingWrites();
 
     ArrayList<ClientID> listOfClients = new ArrayList<>();
     for (ServerLockContext context : contexts) {
@@ -229,7 +180,7 @@ public final class ServerLockImpl extends AbstractServerLock {
           // See ClientLockImpl for more details
           Assert.assertEquals(State.GREEDY_HOLDER_READ, cselc.getState());
           hasGreedyReadHolder = true;
-          LinkedServerLockContext request = new LinkedServerLockContext(cid, ThreadID.VM_ID);
+          SingleServerLockContext request = new SingleServerLockContext(cid, ThreadID.VM_ID);
           request.setState(helper.getContextStateMachine(), State.PENDING_READ);
           awardLockGreedily(helper, request, false);
           processPendingRequests(helper);
@@ -267,6 +218,7 @@ public final class ServerLockImpl extends AbstractServerLock {
           throw new AssertionError(type);
       }
     }
+    updateClientIndex(cid, helper);
 
     if (hasGreedyHolders() && !isRecalled && hasPendingRequests()) {
       if (hasPendingWrites()) {
@@ -355,72 +307,41 @@ public final class ServerLockImpl extends AbstractServerLock {
     return request;
   }
 
-  private boolean hasGreedyHolders() {
-    if (!isEmpty() && getFirst().isGreedyHolder()) return true;
-    return false;
-  }
-
   private List<ServerLockContext> getGreedyHolders() {
     List<ServerLockContext> contexts = new ArrayList<>();
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
-      switch (context.getState().getType()) {
-        case GREEDY_HOLDER:
-          contexts.add(context);
-          break;
-        //$CASES-OMITTED$
-        default:
-          return contexts;
+    if (!hasGreedyHolders()) { return contexts; }
+    for (ServerLockContext context : holders()) {
+      if (context.isGreedyHolder()) {
+        contexts.add(context);
       }
     }
     return contexts;
   }
 
   private ServerLockContext getGreedyHolder(ClientID cid) {
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    while (iterator.hasNext()) {
-      ServerLockContext context = iterator.next();
-      switch (context.getState().getType()) {
-        case GREEDY_HOLDER:
-          // can award greedily
-          if (context.getClientID().equals(cid)) { return context; }
-          break;
-        //$CASES-OMITTED$
-        default:
-          return null;
-      }
-    }
-    return null;
+    if (!hasGreedyHolders()) { return null; }
+    ServerLockContext context = getContext(new SingleServerLockContext(cid, ThreadID.VM_ID), Type.GREEDY_HOLDER);
+    return context != null && context.isGreedyHolder() ? context : null;
   }
 
   private void removeNonGreedyHoldersAndPendingOfSameClient(ServerLockContext context, LockHelper helper) {
     ClientID cid = context.getClientID();
-    SinglyLinkedListIterator<ServerLockContext> iterator = iterator();
-    while (iterator.hasNext()) {
-      ServerLockContext next = iterator.next();
-      Type type = next.getState().getType();
-      switch (type) {
-        case GREEDY_HOLDER:
-          break;
-        case TRY_PENDING:
-          if (cid.equals(next.getClientID())) {
-            cancelTryLockOrWaitTimer(next, helper);
-            iterator.remove();
-          }
-          break;
-        case PENDING:
-        case HOLDER:
-          if (cid.equals(next.getClientID())) {
-            iterator.remove();
-          }
-          break;
-        case WAITER:
-          return;
-        default:
-          throw new AssertionError(type);
+    if (!hasContextsFor(cid)) { return; }
+    List<ServerLockContext> contexts = new ArrayList<>();
+    for (ServerLockContext holder : holders()) {
+      if (!holder.isGreedyHolder() && cid.equals(holder.getClientID())) {
+        contexts.add(holder);
       }
     }
+    for (ServerLockContext pending : pendingRequests()) {
+      if (cid.equals(pending.getClientID())) {
+        contexts.add(pending);
+      }
+    }
+    for (ServerLockContext next : contexts) {
+      cancelTryLockOrWaitTimer(next, helper);
+      removeContext(next);
+    }
   }
 
   @Override
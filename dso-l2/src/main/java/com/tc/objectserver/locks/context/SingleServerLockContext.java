@@ -24,8 +24,8 @@ import com.tc.object.locks.ThreadID;
 import com.tc.util.Assert;
 
 /**
- * This class is present to ensure that we dont waste memory on saving "next" pointer. This will be useful only when a
- * single context is present in the context queue of the lock.
+ * This class is present to ensure that we dont waste memory on saving "next" pointer. Server locks keep their contexts
+ * in hashed storage rather than in a linked list, so none of them needs one.
  */
 public class SingleServerLockContext extends ServerLockContext {
 
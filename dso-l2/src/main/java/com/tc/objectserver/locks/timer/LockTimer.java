@@ -24,25 +24,42 @@ import com.tc.net.ClientID;
 import com.tc.object.locks.LockID;
 import com.tc.object.locks.ThreadID;
 import com.tc.objectserver.locks.LockHelper;
+import com.tc.util.concurrent.TimingWheel;
+import com.tc.util.concurrent.TimingWheel.Timeout;
 
 import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Schedules Object.wait() and tryLock() timeouts on a {@link TimingWheel}. Most of these are cancelled long before they
+ * expire, which is cheap on a wheel and does not pile up cancelled tasks the way a {@link java.util.Timer} queue does.
+ * Timeouts scheduled before {@link #start()} are held back and scheduled for what remains of their delay at start.
+ */
 public class LockTimer {
   private static final TCLogger logger    = TCLogging.getLogger(LockTimer.class);
 
-  private final Timer           timer     = new Timer("DSO Lock Object.wait() timer", true);
+  private final TimingWheel     wheel;
+  private final boolean         ownsWheel;
   private boolean               started   = false;
   private boolean               shutdown  = false;
   private LinkedList<TaskImpl>  taskQueue = new LinkedList<>();
 
   public LockTimer() {
-    super();
+    this(new TimingWheel("DSO Lock Object.wait() timer"), true);
+  }
+
+  public LockTimer(TimingWheel wheel) {
+    this(wheel, false);
+  }
+
+  private LockTimer(TimingWheel wheel, boolean ownsWheel) {
+    this.wheel = wheel;
+    this.ownsWheel = ownsWheel;
   }
 
-  public Timer getTimer() {
-    return timer;
+  public TimingWheel getTimingWheel() {
+    return wheel;
   }
 
   public synchronized void start() {
@@ -55,11 +72,17 @@ public class LockTimer {
     for (TaskImpl task : taskQueue) {
       long timeDelay = task.getScheduleDelay() - (System.currentTimeMillis() - task.scheduledAt());
       timeDelay = timeDelay < 0 ? 0 : timeDelay;
-      timer.schedule(task, timeDelay);
+      task.scheduleOn(wheel, timeDelay);
     }
   }
 
-  public TimerTask scheduleTimer(TimerCallback callback, long timeInMillis, LockTimerContext callbackObject) {
+  /**
+   * @throws IllegalArgumentException if the timeout runs past the end of time
+   */
+  public Timeout scheduleTimer(TimerCallback callback, long timeInMillis, LockTimerContext callbackObject) {
+    if (timeInMillis < 0 || timeInMillis > Long.MAX_VALUE - System.currentTimeMillis()) { throw new IllegalArgumentException(
+                                                                                                                            "Illegal timeout: "
+                                                                                                                                + timeInMillis); }
     final TaskImpl rv = new TaskImpl(callback, timeInMillis, callbackObject);
 
     synchronized (this) {
@@ -69,22 +92,30 @@ public class LockTimer {
       }
     }
 
-    timer.schedule(rv, timeInMillis);
+    rv.scheduleOn(wheel, timeInMillis);
     return rv;
   }
 
   public synchronized void shutdown() {
     if (shutdown) return;
     shutdown = true;
-    this.timer.cancel();
+    if (ownsWheel) {
+      this.wheel.stop();
+    }
+  }
+
+  private synchronized boolean isShutdown() {
+    return shutdown;
   }
 
-  private static class TaskImpl extends TimerTask {
+  private class TaskImpl implements Runnable, Timeout {
 
     private final TimerCallback    callback;
     private final LockTimerContext callbackObject;
     private final long             scheduleDelayInMillis;
     private final long             scheduledAt;
+    private final AtomicBoolean    cancelled = new AtomicBoolean();
+    private volatile Timeout       timeout;
 
     TaskImpl(TimerCallback callback, long timeInMillis, LockTimerContext callbackObject) {
       this.callback = callback;
@@ -101,8 +132,18 @@ public class LockTimer {
       return scheduledAt;
     }
 
+    void scheduleOn(TimingWheel timingWheel, long delayInMillis) {
+      if (cancelled.get()) return;
+      timeout = timingWheel.schedule(this, delayInMillis, TimeUnit.MILLISECONDS);
+      // a cancel that raced with scheduling may have missed the wheel timeout
+      if (cancelled.get()) {
+        timeout.cancel();
+      }
+    }
+
     @Override
     public void run() {
+      if (cancelled.get() || isShutdown()) return;
       try {
         callback.timerTimeout(callbackObject);
       } catch (Exception e) {
@@ -112,7 +153,20 @@ public class LockTimer {
 
     @Override
     public boolean cancel() {
-      return super.cancel();
+      if (!cancelled.compareAndSet(false, true)) return false;
+      Timeout current = timeout;
+      return current == null || current.cancel();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled.get();
+    }
+
+    @Override
+    public boolean isExpired() {
+      Timeout current = timeout;
+      return current != null && current.isExpired();
     }
   }
 
@@ -0,0 +1,356 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+
+/**
+ * A segmented, append-only record log with group commit.
+ * <p>
+ * Records are framed as {@code [int length][int crc32][payload]} and buffered in memory by {@link #append(byte[])}.
+ * {@link #sync(long)} makes everything up to a given record sequence durable:  the first thread to arrive becomes the
+ * leader, writes every record buffered so far and issues a single {@link FileChannel#force(boolean)}, while any
+ * thread arriving during that write simply waits for the next round.  This means that N concurrent writers pay for
+ * roughly one fsync between them, rather than N.
+ * <p>
+ * Segments are named {@code segment_<number>.log} and are rolled once they grow past the configured size.  The owner
+ * of the log is responsible for deciding when older segments are redundant (typically after a snapshot) and calling
+ * {@link #deleteSegmentsBefore(long)}.
+ */
+public class AppendLog {
+  private static final TCLogger logger = TCLogging.getLogger(AppendLog.class);
+  private static final String SEGMENT_PREFIX = "segment_";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int FRAME_HEADER_SIZE = 8;
+
+  private final File directory;
+  private final long segmentSize;
+
+  // All of the following state is guarded by "this".
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long appendedSequence;
+  private long durableSequence;
+  private boolean syncInProgress;
+  private IOException syncFailure;
+
+  // The current segment is only touched by the sync leader (or under "this" when no sync is in progress).
+  private FileChannel segmentChannel;
+  private long segmentNumber;
+  private long segmentBytes;
+  private long bytesSinceMark;
+
+  public AppendLog(File directory, long segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Opens a new, empty segment to receive appends.  Any existing segments are left untouched, so the caller must have
+   * already replayed them (see {@link #replay(long, RecordHandler)}).
+   *
+   * @param firstSegment the lowest segment number which may be used for the new segment
+   */
+  public synchronized void open(long firstSegment) throws IOException {
+    long next = firstSegment;
+    for (long existing : listSegments()) {
+      next = Math.max(next, existing + 1);
+    }
+    this.pending.reset();
+    this.appendedSequence = 0;
+    this.durableSequence = 0;
+    this.syncFailure = null;
+    this.bytesSinceMark = 0;
+    openSegment(next);
+  }
+
+  public synchronized void close() throws IOException {
+    waitForSyncToFinish();
+    if (null != this.segmentChannel) {
+      writeAndForce(drainPending());
+      this.durableSequence = this.appendedSequence;
+      this.segmentChannel.close();
+      this.segmentChannel = null;
+    }
+  }
+
+  /**
+   * Buffers a record for writing.  The record is not durable until {@link #sync(long)} has been called with the
+   * returned sequence (or a later one).
+   *
+   * @return the sequence of the appended record
+   */
+  public synchronized long append(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    header.putInt(payload.length);
+    header.putInt((int) crc.getValue());
+    this.pending.write(header.array(), 0, FRAME_HEADER_SIZE);
+    this.pending.write(payload, 0, payload.length);
+    this.bytesSinceMark += FRAME_HEADER_SIZE + payload.length;
+    this.appendedSequence += 1;
+    return this.appendedSequence;
+  }
+
+  /**
+   * @return the most recently appended sequence
+   */
+  public synchronized long getAppendedSequence() {
+    return this.appendedSequence;
+  }
+
+  /**
+   * @return the number of bytes appended since the last call to {@link #rollSegment()}
+   */
+  public synchronized long getBytesSinceMark() {
+    return this.bytesSinceMark;
+  }
+
+  /**
+   * Blocks until every record up to and including the given sequence has been written and forced to disk.
+   */
+  public void sync(long sequence) throws IOException {
+    boolean interrupted = false;
+    byte[] batch = null;
+    long target = 0;
+    synchronized (this) {
+      while (null == batch) {
+        if (null != this.syncFailure) {
+          throw this.syncFailure;
+        }
+        if (this.durableSequence >= sequence) {
+          break;
+        }
+        if (this.syncInProgress) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        } else {
+          // We are the leader for this round:  take everything buffered so far.
+          this.syncInProgress = true;
+          batch = drainPending();
+          target = this.appendedSequence;
+        }
+      }
+    }
+    if (null != batch) {
+      IOException failure = null;
+      try {
+        writeAndForce(batch);
+      } catch (IOException e) {
+        failure = e;
+      }
+      synchronized (this) {
+        this.syncInProgress = false;
+        if (null == failure) {
+          this.durableSequence = target;
+        } else {
+          this.syncFailure = failure;
+        }
+        notifyAll();
+      }
+      if (null != failure) {
+        throw failure;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Makes everything appended so far durable and starts a new segment.  Everything appended after this call lands in
+   * the returned segment or later ones.
+   *
+   * @return the number of the newly started segment
+   */
+  public synchronized long rollSegment() throws IOException {
+    waitForSyncToFinish();
+    writeAndForce(drainPending());
+    this.durableSequence = this.appendedSequence;
+    this.segmentChannel.close();
+    openSegment(this.segmentNumber + 1);
+    this.bytesSinceMark = 0;
+    return this.segmentNumber;
+  }
+
+  /**
+   * Deletes all segments with a number lower than the one given.
+   */
+  public void deleteSegmentsBefore(long segment) {
+    for (long existing : listSegments()) {
+      if (existing < segment) {
+        File file = segmentFile(existing);
+        if (!file.delete()) {
+          logger.warn("Unable to delete obsolete log segment " + file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads every valid record, in order, from all segments numbered at least {@code firstSegment}.  A torn or corrupt
+   * record at the tail of the last segment (left behind by a crash mid-write) is truncated away.  Earlier segments
+   * were complete when the log rolled past them, so a bad record there is real corruption and fails the replay rather
+   * than silently dropping everything after it.
+   */
+  public void replay(long firstSegment, RecordHandler handler) throws IOException {
+    List<Long> segments = listSegments();
+    for (int i = 0; i < segments.size(); ++i) {
+      long segment = segments.get(i);
+      if (segment >= firstSegment) {
+        replaySegment(segmentFile(segment), handler, i == segments.size() - 1);
+      }
+    }
+  }
+
+  private void replaySegment(File file, RecordHandler handler, boolean last) throws IOException {
+    long validLength = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        int length;
+        int expectedCrc;
+        try {
+          length = in.readInt();
+          expectedCrc = in.readInt();
+        } catch (EOFException eof) {
+          break;
+        }
+        if (length < 0 || length > file.length() - validLength - FRAME_HEADER_SIZE) {
+          break;
+        }
+        byte[] payload = new byte[length];
+        try {
+          in.readFully(payload);
+        } catch (EOFException eof) {
+          break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+          break;
+        }
+        handler.handle(payload);
+        validLength += FRAME_HEADER_SIZE + length;
+      }
+    }
+    if (validLength < file.length()) {
+      if (!last) {
+        logger.error("Corrupt record in log segment " + file + " at " + validLength + " of " + file.length() + " bytes");
+        throw new IOException("Corrupt record in log segment " + file + " at offset " + validLength);
+      }
+      logger.warn("Truncating torn tail of log segment " + file + " at " + validLength + " of " + file.length() + " bytes");
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(validLength);
+      }
+    }
+  }
+
+  private List<Long> listSegments() {
+    List<Long> segments = new ArrayList<>();
+    String[] names = this.directory.list();
+    if (null != names) {
+      for (String name : names) {
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException e) {
+            // Not one of ours.
+          }
+        }
+      }
+    }
+    Long[] sorted = segments.toArray(new Long[segments.size()]);
+    Arrays.sort(sorted);
+    return Arrays.asList(sorted);
+  }
+
+  private File segmentFile(long segment) {
+    return new File(this.directory, String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+  }
+
+  private void openSegment(long segment) throws IOException {
+    this.segmentNumber = segment;
+    this.segmentChannel = new RandomAccessFile(segmentFile(segment), "rw").getChannel();
+    this.segmentChannel.position(this.segmentChannel.size());
+    this.segmentBytes = this.segmentChannel.size();
+  }
+
+  private byte[] drainPending() {
+    byte[] batch = this.pending.toByteArray();
+    this.pending = new ByteArrayOutputStream(Math.max(32, batch.length));
+    return batch;
+  }
+
+  private void waitForSyncToFinish() throws IOException {
+    boolean interrupted = false;
+    while (this.syncInProgress) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (null != this.syncFailure) {
+      throw this.syncFailure;
+    }
+  }
+
+  private void writeAndForce(byte[] batch) throws IOException {
+    if (batch.length > 0) {
+      ByteBuffer buffer = ByteBuffer.wrap(batch);
+      while (buffer.hasRemaining()) {
+        this.segmentChannel.write(buffer);
+      }
+      this.segmentBytes += batch.length;
+      this.segmentChannel.force(false);
+      if (this.segmentBytes >= this.segmentSize) {
+        // Only the leader (or a holder of the monitor with no sync in flight) gets here so nobody else is writing.
+        this.segmentChannel.close();
+        openSegment(this.segmentNumber + 1);
+      }
+    }
+  }
+
+  public interface RecordHandler {
+    void handle(byte[] payload) throws IOException;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.terracotta.persistence.KeyValueStorage;
+
+
+/**
+ * The key-value storage handed out by {@link AppendLogPersistentStorage}.  Reads are served from memory while each
+ * modification is written through as a single delta record.
+ * <p>
+ * NOTE:  neither keys nor values may be null.
+ */
+public class AppendLogKeyValueStorage<K, V> implements KeyValueStorage<K, V> {
+  private final AppendLogPersistentStorage owner;
+  private final String name;
+  private final ConcurrentHashMap<K, V> storage = new ConcurrentHashMap<>();
+
+  AppendLogKeyValueStorage(AppendLogPersistentStorage owner, String name) {
+    this.owner = owner;
+    this.name = name;
+  }
+
+  @Override
+  public void clear() {
+    owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.CLEAR, name, null, null), ()->{ storage.clear(); return null; });
+  }
+
+  @Override
+  public boolean containsKey(K key) {
+    return storage.containsKey(key);
+  }
+
+  @Override
+  public V get(K key) {
+    return storage.get(key);
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return storage.keySet();
+  }
+
+  @Override
+  public void put(K key, V value) {
+    owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.PUT, name, key, value), ()->storage.put(key, value));
+  }
+
+  @Override
+  public void put(K arg0, V arg1, byte arg2) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean remove(K key) {
+    return owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.REMOVE, name, key, null), ()->(null != storage.remove(key)));
+  }
+
+  @Override
+  public void removeAll(Collection<K> keys) {
+    ArrayList<K> copy = new ArrayList<>(keys);
+    owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.REMOVE_ALL, name, copy, null), ()->{ copy.forEach(storage::remove); return null; });
+  }
+
+  @Override
+  public long size() {
+    return storage.size();
+  }
+
+  @Override
+  public Collection<V> values() {
+    return storage.values();
+  }
+
+  /*
+   * The following are only used by the owning storage, for recovery and snapshots, and don't write anything.
+   */
+  void load(K key, V value) {
+    storage.put(key, value);
+  }
+
+  void load(Map<K, V> contents) {
+    storage.putAll(contents);
+  }
+
+  void unload(K key) {
+    storage.remove(key);
+  }
+
+  void unloadAll() {
+    storage.clear();
+  }
+
+  Map<Object, Object> copy() {
+    return new HashMap<>(storage);
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.persistence.IPersistentStorage;
+import org.terracotta.persistence.KeyValueStorage;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * An alternative to {@link FlatFilePersistentStorage} which records each modification as a small delta record in an
+ * {@link AppendLog}, instead of re-serializing the entire data set on every change.
+ * <p>
+ * The on-disk state is a snapshot file plus the log segments written since that snapshot was taken.  Once enough has
+ * been appended since the last snapshot, the writer which crosses the threshold rolls the log, copies the in-memory
+ * state, writes it out as the new snapshot and deletes the segments it supersedes.
+ * <p>
+ * Each modification is durable when the call which made it returns, but concurrent writers share a single fsync through
+ * the log's group commit.  A thread which has an open {@link Transaction} (see {@link #begin()}) only waits for
+ * durability when it commits its outermost transaction.
+ */
+public class AppendLogPersistentStorage implements IPersistentStorage {
+  private static final TCLogger logger = TCLogging.getLogger(AppendLogPersistentStorage.class);
+  private static final String SNAPSHOT_NAME = "snapshot.dat";
+
+  static final byte PUT_PROPERTY = 0;
+  static final byte REMOVE_PROPERTY = 1;
+  static final byte CREATE_MAP = 2;
+  static final byte DESTROY_MAP = 3;
+  static final byte PUT = 4;
+  static final byte REMOVE = 5;
+  static final byte REMOVE_ALL = 6;
+  static final byte CLEAR = 7;
+
+  private final File directory;
+  private final File snapshot;
+  private final long compactionThreshold;
+  private final AppendLog log;
+  // Held while applying a change to the in-memory state and appending its record, so the two always agree on order.
+  private final Object mutationLock = new Object();
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private final ThreadLocal<int[]> transactionDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+  private AppendLogProperties properties;
+  private Map<String, AppendLogKeyValueStorage<?, ?>> maps;
+
+  public AppendLogPersistentStorage(File directory, long segmentSize, long compactionThreshold) {
+    this.directory = directory;
+    this.snapshot = new File(directory, SNAPSHOT_NAME);
+    this.compactionThreshold = compactionThreshold;
+    this.log = new AppendLog(directory, segmentSize);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void open() throws IOException {
+    // Note that we will fail out for FileNotFound and other IOExceptions since those are the checked kinds of failure to open.
+    if (!this.snapshot.exists()) {
+      throw new IOException("not found");
+    }
+    long firstSegment;
+    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(this.snapshot))) {
+      firstSegment = in.readLong();
+      this.properties = new AppendLogProperties(this);
+      this.properties.load((Map<String, String>) in.readObject());
+      this.maps = new ConcurrentHashMap<>();
+      for (Map.Entry<String, Map<Object, Object>> entry : ((Map<String, Map<Object, Object>>) in.readObject()).entrySet()) {
+        AppendLogKeyValueStorage<Object, Object> storage = new AppendLogKeyValueStorage<>(this, entry.getKey());
+        storage.load(entry.getValue());
+        this.maps.put(entry.getKey(), storage);
+      }
+    } catch (ClassNotFoundException e) {
+      // ClassNotFoundException is NOT expected so re-throw it as a runtime exception.
+      throw new RuntimeException(e);
+    }
+    this.log.replay(firstSegment, this::applyRecord);
+    this.log.open(firstSegment);
+  }
+
+  @Override
+  public void create() throws IOException {
+    if (this.directory.exists()) {
+      File[] existing = this.directory.listFiles();
+      if (null != existing) {
+        for (File file : existing) {
+          Files.delete(file.toPath());
+        }
+      }
+    } else if (!this.directory.mkdirs()) {
+      throw new IOException("unable to create " + this.directory);
+    }
+    this.properties = new AppendLogProperties(this);
+    this.maps = new ConcurrentHashMap<>();
+    this.log.open(0);
+    // Write the snapshot, for the first time, so that we can attempt to open it later, even if we don't write anything.
+    writeSnapshot(0, new HashMap<>(), new HashMap<>());
+  }
+
+  @Override
+  public void close() {
+    try {
+      this.log.close();
+    } catch (IOException e) {
+      Assert.failure("Failure closing AppendLogPersistentStorage", e);
+    }
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return this.properties;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> KeyValueStorage<K, V> getKeyValueStorage(String name, Class<K> keyClass, Class<V> valueClass) {
+    // It appears as though we often don't create these, ahead-of-time.
+    return (KeyValueStorage<K, V>) createIfAbsent(name);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> KeyValueStorage<K, V> createKeyValueStorage(String name, Class<K> keyClass, Class<V> valueClass) {
+    return (KeyValueStorage<K, V>) createIfAbsent(name);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> KeyValueStorage<K, V> destroyKeyValueStorage(String name) {
+    return write(encode(DESTROY_MAP, name, null, null), () -> (KeyValueStorage<K, V>) this.maps.remove(name));
+  }
+
+  /**
+   * Starts a transaction scoped to the calling thread:  until the matching commit, that thread's modifications are
+   * appended to the log but not synced.  Transactions nest and must be committed on the thread which began them.
+   */
+  @Override
+  public Transaction begin() {
+    int[] depth = this.transactionDepth.get();
+    depth[0] += 1;
+    return new Transaction() {
+
+      @Override
+      public void commit() {
+        depth[0] -= 1;
+        if (0 == depth[0]) {
+          sync(log.getAppendedSequence());
+        }
+      }
+
+      @Override
+      public void abort() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Applies the given change to the in-memory state, appends its record to the log and, unless the calling thread has
+   * an open transaction, waits until the record is durable.
+   */
+  <T> T write(byte[] record, Callable<T> change) {
+    T result = null;
+    long sequence = 0;
+    synchronized (this.mutationLock) {
+      try {
+        result = change.call();
+      } catch (Exception e) {
+        // The changes are all in-memory map operations so a failure here is a serious bug.
+        Assert.failure("Failure applying change to AppendLogPersistentStorage", e);
+      }
+      sequence = this.log.append(record);
+    }
+    if (0 == this.transactionDepth.get()[0]) {
+      sync(sequence);
+    }
+    return result;
+  }
+
+  static byte[] encode(byte operation, String map, Object key, Object value) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeByte(operation);
+      out.writeUTF(null != map ? map : "");
+      out.writeObject(key);
+      out.writeObject(value);
+      out.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Keys and values are required to be serializable so this is a usage error.
+      throw new RuntimeException(e);
+    }
+  }
+
+  private AppendLogKeyValueStorage<?, ?> createIfAbsent(String name) {
+    AppendLogKeyValueStorage<?, ?> storage = this.maps.get(name);
+    if (null == storage) {
+      storage = write(encode(CREATE_MAP, name, null, null), () -> this.maps.computeIfAbsent(name, n -> new AppendLogKeyValueStorage<>(this, n)));
+    }
+    return storage;
+  }
+
+  private void sync(long sequence) {
+    try {
+      this.log.sync(sequence);
+    } catch (IOException e) {
+      // If something happened here, that is a serious bug so we need to assert.
+      Assert.failure("Failure flushing AppendLogPersistentStorage", e);
+    }
+    if (this.log.getBytesSinceMark() >= this.compactionThreshold && this.compacting.compareAndSet(false, true)) {
+      try {
+        compact();
+      } catch (IOException e) {
+        // The old snapshot and segments are still intact so we can just try again, later.
+        logger.warn("Failure compacting AppendLogPersistentStorage in " + this.directory, e);
+      } finally {
+        this.compacting.set(false);
+      }
+    }
+  }
+
+  private void compact() throws IOException {
+    long firstSegment;
+    HashMap<String, String> propertiesCopy;
+    HashMap<String, Map<Object, Object>> mapsCopy = new HashMap<>();
+    synchronized (this.mutationLock) {
+      firstSegment = this.log.rollSegment();
+      propertiesCopy = new HashMap<>(this.properties);
+      for (Map.Entry<String, AppendLogKeyValueStorage<?, ?>> entry : this.maps.entrySet()) {
+        mapsCopy.put(entry.getKey(), entry.getValue().copy());
+      }
+    }
+    writeSnapshot(firstSegment, propertiesCopy, mapsCopy);
+    this.log.deleteSegmentsBefore(firstSegment);
+  }
+
+  private void writeSnapshot(long firstSegment, HashMap<String, String> propertiesCopy, HashMap<String, Map<Object, Object>> mapsCopy) throws IOException {
+    File temp = new File(this.directory, "temp_" + SNAPSHOT_NAME);
+    try (FileOutputStream file = new FileOutputStream(temp)) {
+      ObjectOutputStream out = new ObjectOutputStream(file);
+      out.writeLong(firstSegment);
+      out.writeObject(propertiesCopy);
+      out.writeObject(mapsCopy);
+      out.flush();
+      file.getFD().sync();
+    }
+    Files.move(temp.toPath(), this.snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void applyRecord(byte[] record) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record))) {
+      byte operation = in.readByte();
+      String name = in.readUTF();
+      Object key = in.readObject();
+      Object value = in.readObject();
+      switch (operation) {
+        case PUT_PROPERTY:
+          this.properties.load((String) key, (String) value);
+          break;
+        case REMOVE_PROPERTY:
+          this.properties.unload((String) key);
+          break;
+        case CREATE_MAP:
+          this.maps.computeIfAbsent(name, n -> new AppendLogKeyValueStorage<>(this, n));
+          break;
+        case DESTROY_MAP:
+          this.maps.remove(name);
+          break;
+        case PUT:
+        case REMOVE:
+        case REMOVE_ALL:
+        case CLEAR:
+          AppendLogKeyValueStorage<Object, Object> storage = (AppendLogKeyValueStorage<Object, Object>) this.maps.get(name);
+          Assert.assertNotNull(storage);
+          if (PUT == operation) {
+            storage.load(key, value);
+          } else if (REMOVE == operation) {
+            storage.unload(key);
+          } else if (REMOVE_ALL == operation) {
+            for (Object one : (Collection<Object>) key) {
+              storage.unload(one);
+            }
+          } else {
+            storage.unloadAll();
+          }
+          break;
+        default:
+          throw new IOException("unknown record type " + operation);
+      }
+    } catch (ClassNotFoundException e) {
+      // ClassNotFoundException is NOT expected so re-throw it as a runtime exception.
+      throw new RuntimeException(e);
+    }
+  }
+}
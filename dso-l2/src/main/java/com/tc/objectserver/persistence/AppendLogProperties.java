@@ -0,0 +1,64 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The properties map handed out by {@link AppendLogPersistentStorage}.  Like {@link FlatFileProperties}, only the
+ * modifications made through {@link #put(String, String)} and {@link #remove(Object)} are persisted.
+ */
+public class AppendLogProperties extends ConcurrentHashMap<String, String> {
+  private static final long serialVersionUID = 1L;
+
+  private final transient AppendLogPersistentStorage owner;
+
+  AppendLogProperties(AppendLogPersistentStorage owner) {
+    this.owner = owner;
+  }
+
+  @Override
+  public String put(String key, String value) {
+    return owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.PUT_PROPERTY, null, key, value), ()->AppendLogProperties.super.put(key, value));
+  }
+
+  @Override
+  public String remove(Object key) {
+    return owner.write(AppendLogPersistentStorage.encode(AppendLogPersistentStorage.REMOVE_PROPERTY, null, key, null), ()->AppendLogProperties.super.remove(key));
+  }
+
+  /*
+   * The following are only used by the owning storage, during recovery, and don't write anything.
+   */
+  void load(String key, String value) {
+    super.put(key, value);
+  }
+
+  void load(Map<String, String> contents) {
+    for (Map.Entry<String, String> entry : contents.entrySet()) {
+      super.put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  void unload(String key) {
+    super.remove(key);
+  }
+}
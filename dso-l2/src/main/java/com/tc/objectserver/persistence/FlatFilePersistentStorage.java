@@ -41,11 +41,17 @@ import java.util.concurrent.ConcurrentHashMap;
  * this (via a returned key-value storage object) will invoke a flush of all data back to the disk.
  * NOTE:  the current implementation is NOT thread-safe so all consumers must be ensure serialized access to this object as
  * well as any key-value storage objects or properties maps it returns.
+ * 
+ * Modifications made by a thread which has an open {@link Transaction} (see {@link #begin()}) are applied in memory but
+ * the flush is deferred until that thread commits its outermost transaction, so a group of changes costs one write.
  */
 public class FlatFilePersistentStorage implements IPersistentStorage {
   private final File store;
   private FlatFileProperties properties;
   private Map<String, FlatFileKeyValueStorage<?, ?>> maps;
+  private final ThreadLocal<int[]> transactionDepth = ThreadLocal.withInitial(() -> new int[1]);
+  // Guarded by store.
+  private boolean dirty;
   
   private final FlatFileWrite doFlush = new FlatFileWrite() {
     @Override
@@ -54,17 +60,11 @@ public class FlatFilePersistentStorage implements IPersistentStorage {
       try {
         synchronized (store) {
             result = r.call();
-            File temp = new File(store.getParentFile(), "temp_" + store.getName());
-            FileOutputStream file = new FileOutputStream(temp);
-            ObjectOutputStream out = new ObjectOutputStream(file);
-            out.writeObject(properties);
-            out.writeObject(maps);
-            out.flush();
-            out.close();
-            file.flush();
-            file.close();
-            Files.move(temp.toPath(), store.toPath(), 
-                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (transactionDepth.get()[0] > 0) {
+              dirty = true;
+            } else {
+              writeStore();
+            }
         }
       } catch (Exception e) {
         // If something happened here, that is a serious bug so we need to assert.
@@ -74,6 +74,21 @@ public class FlatFilePersistentStorage implements IPersistentStorage {
     }
   };
   
+  private void writeStore() throws IOException {
+    File temp = new File(store.getParentFile(), "temp_" + store.getName());
+    FileOutputStream file = new FileOutputStream(temp);
+    ObjectOutputStream out = new ObjectOutputStream(file);
+    out.writeObject(properties);
+    out.writeObject(maps);
+    out.flush();
+    out.close();
+    file.flush();
+    file.close();
+    Files.move(temp.toPath(), store.toPath(), 
+        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    dirty = false;
+  }
+  
   public FlatFilePersistentStorage(File file) {
     this.store = file;
   }
@@ -156,13 +171,26 @@ public class FlatFilePersistentStorage implements IPersistentStorage {
     }
   }  
 
+  /**
+   * Starts a transaction scoped to the calling thread:  until the matching commit, that thread's modifications are not
+   * flushed.  Transactions nest and must be committed on the thread which began them.
+   */
   @Override
   public Transaction begin() {
+    int[] depth = transactionDepth.get();
+    depth[0] += 1;
     return new Transaction() {
 
       @Override
       public void commit() {
-        doFlush.run(()->null);
+        depth[0] -= 1;
+        if (0 == depth[0]) {
+          synchronized (store) {
+            if (dirty) {
+              doFlush.run(()->null);
+            }
+          }
+        }
       }
 
       @Override
@@ -24,12 +24,32 @@ import org.terracotta.entity.ServiceProviderConfiguration;
 
 
 public class FlatFileStorageProviderConfiguration implements ServiceProviderConfiguration {
+  public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+  public static final long DEFAULT_COMPACTION_THRESHOLD = 64 * 1024 * 1024;
+
   private final File basedir;
   private final boolean shouldPersistAcrossRestarts;
+  private final boolean useAppendLog;
+  private final long segmentSize;
+  private final long compactionThreshold;
 
   public FlatFileStorageProviderConfiguration(File basedir, boolean shouldPersistAcrossRestarts) {
+    this(basedir, shouldPersistAcrossRestarts, false, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * @param useAppendLog true if storage should be provided by {@link AppendLogPersistentStorage}, instead of
+   *  {@link FlatFilePersistentStorage}
+   * @param segmentSize the size, in bytes, at which an append log segment is rolled
+   * @param compactionThreshold the number of bytes which can be appended to the log before it is compacted into a new
+   *  snapshot
+   */
+  public FlatFileStorageProviderConfiguration(File basedir, boolean shouldPersistAcrossRestarts, boolean useAppendLog, long segmentSize, long compactionThreshold) {
     this.basedir = basedir;
     this.shouldPersistAcrossRestarts = shouldPersistAcrossRestarts;
+    this.useAppendLog = useAppendLog;
+    this.segmentSize = segmentSize;
+    this.compactionThreshold = compactionThreshold;
   }
 
   public File getBasedir() {
@@ -40,6 +60,18 @@ public class FlatFileStorageProviderConfiguration implements ServiceProviderConf
     return this.shouldPersistAcrossRestarts;
   }
 
+  public boolean useAppendLog() {
+    return this.useAppendLog;
+  }
+
+  public long getSegmentSize() {
+    return this.segmentSize;
+  }
+
+  public long getCompactionThreshold() {
+    return this.compactionThreshold;
+  }
+
   @Override
   public Class<? extends ServiceProvider> getServiceProviderType() {
     return FlatFileStorageServiceProvider.class;
@@ -40,11 +40,17 @@ import org.terracotta.entity.ServiceProviderConfiguration;
  * a file in the working directory using Java serialization.
  * 
  * The initial use was to test/support platform restart without depending on CoreStorage.
+ * 
+ * If configured to use an append log, each consumer instead gets an {@link AppendLogPersistentStorage} in its own
+ * directory so that writes only cost as much as the change they make.
  */
 public class FlatFileStorageServiceProvider implements ServiceProvider {
   private static final TCLogger logger = TCLogging.getLogger(FlatFileStorageServiceProvider.class);
   private boolean shouldPersistAcrossRestarts;
   private Path directory;
+  private boolean useAppendLog;
+  private long segmentSize;
+  private long compactionThreshold;
 
   @Override
   public boolean initialize(ServiceProviderConfiguration configuration) {
@@ -53,18 +59,29 @@ public class FlatFileStorageServiceProvider implements ServiceProvider {
     Assert.assertTrue(configuration instanceof FlatFileStorageProviderConfiguration);
     FlatFileStorageProviderConfiguration flatFileConfiguration = (FlatFileStorageProviderConfiguration)configuration;
     this.shouldPersistAcrossRestarts = flatFileConfiguration.shouldPersistAcrossRestarts();
+    this.useAppendLog = flatFileConfiguration.useAppendLog();
+    this.segmentSize = flatFileConfiguration.getSegmentSize();
+    this.compactionThreshold = flatFileConfiguration.getCompactionThreshold();
     File targetDirectory = flatFileConfiguration.getBasedir();
     if (null != targetDirectory) {
       this.directory = targetDirectory.toPath();
     } else {
       this.directory = Paths.get(".").toAbsolutePath().normalize();
     }
-    logger.info("Initialized flat file storage to: " + this.directory);
+    logger.info("Initialized " + (this.useAppendLog ? "append log" : "flat file") + " storage to: " + this.directory);
     return true;
   }
 
   @Override
   public <T> T getService(long consumerID, ServiceConfiguration<T> configuration) {
+    if (this.useAppendLog) {
+      File logDirectory = this.directory.resolve("consumer_" + consumerID + "_log").toFile();
+      // As below, a non-restartable configuration must not see anything left behind by a previous run.
+      if (!this.shouldPersistAcrossRestarts) {
+        deleteDirectory(logDirectory);
+      }
+      return configuration.getServiceType().cast(new AppendLogPersistentStorage(logDirectory, this.segmentSize, this.compactionThreshold));
+    }
     String filename = "consumer_" + consumerID + ".dat";
     File file = this.directory.resolve(filename).toFile();
     // If this is being configured as non-restartable, we want to delete the file before anyone tries to use it.
@@ -84,5 +101,15 @@ public class FlatFileStorageServiceProvider implements ServiceProvider {
   public void close() {
     
   }
+
+  private static void deleteDirectory(File directory) {
+    File[] contents = directory.listFiles();
+    if (null != contents) {
+      for (File file : contents) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
   
 }
@@ -0,0 +1,136 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.persistence.IPersistentStorage;
+
+import com.tc.stats.counter.sampled.SampledCounter;
+import com.tc.stats.counter.sampled.derived.SampledRateCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coalesces the platform persistence writes made for several consecutive messages into one durable commit.
+ * <p>
+ * Each message's writes are run by {@link #execute(Runnable, Runnable)} inside a single {@link IPersistentStorage}
+ * transaction, which is kept open across messages, while the work which must wait for those writes to be durable is
+ * queued.  The transaction is committed, and the queued work released in order, once the batch is full, once the
+ * oldest queued message has waited for the maximum window, or as soon as the caller reports that no more work is
+ * immediately available (so a lightly-loaded server never waits for the window).
+ * <p>
+ * NOTE:  the storage transactions are thread-scoped so all calls must come from the same thread (in practice, the
+ * single voltron message stage thread).
+ */
+public class GroupCommitScheduler {
+  private final IPersistentStorage storage;
+  private final int maxBatchSize;
+  private final long maxWindowNanos;
+  private final SampledCounter commitCounter;
+  private final SampledRateCounter batchSizeCounter;
+  private final SampledRateCounter commitLatencyCounter;
+
+  private IPersistentStorage.Transaction transaction;
+  private final List<Runnable> waiting = new ArrayList<>();
+  private long batchStartNanos;
+
+  /**
+   * Creates a scheduler which commits every message on its own.  Used where there is no storage transaction to group
+   * (tests and non-restartable servers).
+   */
+  public GroupCommitScheduler() {
+    this(null, 1, 0, null, null, null);
+  }
+
+  /**
+   * @param storage the storage whose transactions are grouped (null if writes aren't transactional)
+   * @param maxBatchSize the maximum number of messages coalesced into one commit
+   * @param maxWindowMillis the maximum time a message waits for its commit while more work keeps arriving
+   * @param commitCounter counts commits (may be null)
+   * @param batchSizeCounter samples the number of messages per commit (may be null)
+   * @param commitLatencyCounter samples the time, in microseconds, each commit takes (may be null)
+   */
+  public GroupCommitScheduler(IPersistentStorage storage, int maxBatchSize, long maxWindowMillis, SampledCounter commitCounter, SampledRateCounter batchSizeCounter, SampledRateCounter commitLatencyCounter) {
+    this.storage = storage;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.maxWindowNanos = TimeUnit.MILLISECONDS.toNanos(maxWindowMillis);
+    this.commitCounter = commitCounter;
+    this.batchSizeCounter = batchSizeCounter;
+    this.commitLatencyCounter = commitLatencyCounter;
+  }
+
+  /**
+   * Runs the given persistence writes inside the current group and queues onDurable to be run once they are committed.
+   */
+  public synchronized void execute(Runnable writes, Runnable onDurable) {
+    if (this.waiting.isEmpty()) {
+      this.batchStartNanos = System.nanoTime();
+      if (null != this.storage) {
+        this.transaction = this.storage.begin();
+      }
+    }
+    writes.run();
+    this.waiting.add(onDurable);
+  }
+
+  /**
+   * Commits the current group if it is full, if it has been open for the maximum window, or if moreWorkPending is
+   * false.
+   */
+  public synchronized void commitIfDue(boolean moreWorkPending) {
+    if (!this.waiting.isEmpty()) {
+      if (!moreWorkPending
+          || (this.waiting.size() >= this.maxBatchSize)
+          || ((System.nanoTime() - this.batchStartNanos) >= this.maxWindowNanos)) {
+        commit();
+      }
+    }
+  }
+
+  /**
+   * Commits the current group, if there is one, and runs everything which was waiting on it, in the order it was queued.
+   */
+  public synchronized void commit() {
+    if (!this.waiting.isEmpty()) {
+      long start = System.nanoTime();
+      if (null != this.transaction) {
+        this.transaction.commit();
+        this.transaction = null;
+      }
+      long end = System.nanoTime();
+      int batchSize = this.waiting.size();
+      if (null != this.commitCounter) {
+        this.commitCounter.increment();
+      }
+      if (null != this.batchSizeCounter) {
+        this.batchSizeCounter.increment(batchSize, 1);
+      }
+      if (null != this.commitLatencyCounter) {
+        this.commitLatencyCounter.increment(TimeUnit.NANOSECONDS.toMicros(end - start), 1);
+      }
+      List<Runnable> released = new ArrayList<>(this.waiting);
+      this.waiting.clear();
+      for (Runnable runnable : released) {
+        runnable.run();
+      }
+    }
+  }
+}
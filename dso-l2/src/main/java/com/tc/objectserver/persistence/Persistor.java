@@ -102,6 +102,10 @@ public class Persistor implements PrettyPrintable {
     return this.transactionOrderPersistor;
   }
 
+  public IPersistentStorage getPersistentStorage() {
+    return this.persistentStorage;
+  }
+
   protected final void checkStarted() {
     if (!started) {
       throw new IllegalStateException("Persistor is not yet started.");
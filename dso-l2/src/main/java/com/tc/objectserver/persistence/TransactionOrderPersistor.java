@@ -24,47 +24,73 @@ import org.terracotta.persistence.KeyValueStorage;
 
 import com.tc.net.NodeID;
 import com.tc.object.tx.TransactionID;
-import com.tc.util.Assert;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 
 /**
  * Stores the information mapping the client-local TransactionIDs of in-flight transactions into a global order.
  * This is persisted because reconnect on restart needs to ensure that the transactions being replayed are done so in
  * the same order as their original order.
+ * 
+ * The global order is kept as a journal:  each transaction is assigned the next global sequence number when it arrives
+ * and is persisted as its own (NodeID, TransactionID) -> sequence entry, so appending, trimming and forgetting a client
+ * only write the entries they change.  In memory, the sequences are indexed by (NodeID, TransactionID) for constant-time
+ * replay lookup and also kept sorted so that the lowest live sequence is always at hand, while each client's
+ * transactions are queued in arrival order so trimming to the client's low-water mark only touches the transactions it
+ * removes.
  */
 public class TransactionOrderPersistor {
-  private static final String CLIENT_LOCAL_LISTS = "client_local_lists";
-  private static final String LIST_CONTAINER = "list_container";
-  private static final String LIST_KEY = "list_container:key";
+  private static final String JOURNAL = "transaction_order_journal";
   private static final String LOCAL_VARIABLES = "local_variables";
   private static final String RECEIVED_TRANSACTION_COUNT = "local_variables:received_transaction_count";
+  // Present once any content of the legacy format has been migrated into the journal.
+  private static final String JOURNAL_MIGRATED = "local_variables:journal_migrated";
+  // The storage used by the previous, list-based, format.  We only read these in order to migrate their content.
+  private static final String LEGACY_CLIENT_LOCAL_LISTS = "client_local_lists";
+  private static final String LEGACY_LIST_CONTAINER = "list_container";
+  private static final String LEGACY_LIST_KEY = "list_container:key";
 
-  private final KeyValueStorage<NodeID, List<ClientTransaction>> clientLocals;
-  private final KeyValueStorage<String, List<ClientTransaction>> listContainer;
+  private final KeyValueStorage<ClientTransaction, Long> journal;
   private final KeyValueStorage<String, Long> localVariables;
   
+  private final Map<ClientTransaction, Long> sequences = new HashMap<>();
+  // The same entries, in global order.  The first key is the origin of replay indices.
+  private final NavigableMap<Long, ClientTransaction> order = new TreeMap<>();
+  private final Map<NodeID, ArrayDeque<ClientTransaction>> clientLocals = new HashMap<>();
+  private long nextSequence;
 
   // Unchecked and raw warnings because we are trying to use Class<List<?>>, which the compiler doesn't like but has no runtime meaning.
   @SuppressWarnings({ "unchecked", "rawtypes" })
   public TransactionOrderPersistor(IPersistentStorage storageManager) {
-    // In the future, we probably want a different storage approach since storing the information, this way, doesn't
-    // work well with the type system (Lists inside KeyValueStorage) and will perform terribly.
-    this.clientLocals = storageManager.getKeyValueStorage(CLIENT_LOCAL_LISTS, NodeID.class, (Class)List.class);
-    this.listContainer = storageManager.getKeyValueStorage(LIST_CONTAINER, String.class, (Class)List.class);
-    if (!this.listContainer.containsKey(LIST_KEY)) {
-      this.listContainer.put(LIST_KEY, new Vector<>());
-    } else {
-      // TAB-6411 : Add additional checks to track down an intermittent bug.
-      Assert.assertTrue(this.listContainer.get(LIST_KEY) instanceof Vector);
-    }
+    this.journal = storageManager.getKeyValueStorage(JOURNAL, ClientTransaction.class, Long.class);
     this.localVariables = storageManager.getKeyValueStorage(LOCAL_VARIABLES, String.class, (Class)Long.class);
     if (!this.localVariables.containsKey(RECEIVED_TRANSACTION_COUNT)) {
       this.localVariables.put(RECEIVED_TRANSACTION_COUNT, 0L);
     }
+    
+    if (!this.localVariables.containsKey(JOURNAL_MIGRATED)) {
+      KeyValueStorage<String, List<ClientTransaction>> legacyList = storageManager.getKeyValueStorage(LEGACY_LIST_CONTAINER, String.class, (Class)List.class);
+      if (legacyList.containsKey(LEGACY_LIST_KEY)) {
+        long sequence = 0;
+        for (ClientTransaction transaction : legacyList.get(LEGACY_LIST_KEY)) {
+          this.journal.put(transaction, sequence);
+          sequence += 1;
+        }
+      }
+      storageManager.destroyKeyValueStorage(LEGACY_LIST_CONTAINER);
+      storageManager.destroyKeyValueStorage(LEGACY_CLIENT_LOCAL_LISTS);
+      this.localVariables.put(JOURNAL_MIGRATED, 1L);
+    }
+    
+    loadJournal();
   }
 
   /**
@@ -82,10 +108,10 @@ public class TransactionOrderPersistor {
     }
     
     // Get the local list for this client.
-    List<ClientTransaction> localList = clientLocals.get(source);
+    ArrayDeque<ClientTransaction> localList = this.clientLocals.get(source);
     if (null == localList) {
-      localList = new Vector<>();
-      clientLocals.put(source, localList);
+      localList = new ArrayDeque<>();
+      this.clientLocals.put(source, localList);
     }
     
     // Increment the number of received transactions.
@@ -97,45 +123,47 @@ public class TransactionOrderPersistor {
     transaction.id = transactionID;
     
     // Make sure that this transaction isn't already in this list.
-    if (localList.contains(transaction)) {
+    if (this.sequences.containsKey(transaction)) {
 //      throw new IllegalArgumentException("Transaction already exists for this client");
 // hitting this during replication.  is it possible for the same transaction to be added twice?  TODO: confirm
       return;
     }
     
-    List<ClientTransaction> globalList = this.listContainer.get(LIST_KEY);
-    // TAB-6411 : Add additional checks to track down an intermittent bug.
-    Assert.assertNotNull(globalList);
-    Assert.assertTrue(globalList instanceof Vector);
     // Remove anything the client no longer cares about.
-    while ((localList.size() > 0) && (-1 == localList.get(0).id.compareTo(oldestTransactionOnClient))) {
-      ClientTransaction removed = localList.remove(0);
-      globalList.remove(removed);
+    List<ClientTransaction> expired = null;
+    while ((localList.size() > 0) && (-1 == localList.peekFirst().id.compareTo(oldestTransactionOnClient))) {
+      ClientTransaction removed = localList.removeFirst();
+      this.order.remove(this.sequences.remove(removed));
+      if (null == expired) {
+        expired = new ArrayList<>();
+      }
+      expired.add(removed);
+    }
+    if (null != expired) {
+      this.journal.removeAll(expired);
     }
     
-    // Create this new pair and add it to the global list.
-    localList.add(transaction);
-    globalList.add(transaction);
-    // Save this back.
-    this.listContainer.put(LIST_KEY, globalList);
+    // Append this new pair to the journal.
+    long sequence = this.nextSequence;
+    this.nextSequence += 1;
+    localList.addLast(transaction);
+    this.sequences.put(transaction, sequence);
+    this.order.put(sequence, transaction);
+    this.journal.put(transaction, sequence);
   }
 
   /**
    * Called when we no longer need to track transaction ordering information from source (presumably due to a disconnect).
    */
-  public void removeTrackingForClient(NodeID source) {
-    // Remove the local list for this client.
-    clientLocals.remove(source);
-    
-    // Strip any references to this client from the global list.
-    List<ClientTransaction> newGlobalList = new Vector<>();
-    for (ClientTransaction transaction : this.listContainer.get(LIST_KEY)) {
-      if (!source.equals(transaction.client)) {
-        newGlobalList.add(transaction);
+  public synchronized void removeTrackingForClient(NodeID source) {
+    // Remove the local list for this client and strip all of its transactions from the journal.
+    ArrayDeque<ClientTransaction> localList = this.clientLocals.remove(source);
+    if (null != localList) {
+      for (ClientTransaction transaction : localList) {
+        this.order.remove(this.sequences.remove(transaction));
       }
+      this.journal.removeAll(localList);
     }
-    // Save this back.
-    this.listContainer.put(LIST_KEY, newGlobalList);
   }
 
   private static class ClientTransaction implements Serializable {
@@ -162,18 +190,18 @@ public class TransactionOrderPersistor {
   /**
    * Called to ask where a given client-local transaction exists in the global transaction list.
    * Returns the index or -1 if it isn't known.
+   * Note that the indices preserve the global order but there may be gaps between them, where transactions have been
+   * removed.
    */
-  public int getIndexToReplay(NodeID source, TransactionID transactionID) {
+  public synchronized int getIndexToReplay(NodeID source, TransactionID transactionID) {
     int index = -1;
     
-    List<ClientTransaction> globalList = this.listContainer.get(LIST_KEY);
-    int seek = 0;
-    for (ClientTransaction transaction : globalList) {
-      if (source.equals(transaction.client) && transactionID.equals(transaction.id)) {
-        index = seek;
-        break;
-      }
-      seek += 1;
+    ClientTransaction transaction = new ClientTransaction();
+    transaction.client = source;
+    transaction.id = transactionID;
+    Long sequence = this.sequences.get(transaction);
+    if (null != sequence) {
+      index = (int) (sequence - this.order.firstKey());
     }
     return index;
   }
@@ -181,10 +209,12 @@ public class TransactionOrderPersistor {
   /**
    * Clears all internal state.
    */
-  public void clearAllRecords() {
+  public synchronized void clearAllRecords() {
+    this.journal.clear();
+    this.sequences.clear();
+    this.order.clear();
     this.clientLocals.clear();
-    this.listContainer.clear();
-    this.listContainer.put(LIST_KEY, new Vector<>());
+    this.nextSequence = 0;
   }
 
   /**
@@ -193,4 +223,21 @@ public class TransactionOrderPersistor {
   public long getReceivedTransactionCount() {
     return this.localVariables.get(RECEIVED_TRANSACTION_COUNT);
   }
+
+  private void loadJournal() {
+    for (ClientTransaction transaction : this.journal.keySet()) {
+      Long sequence = this.journal.get(transaction);
+      this.sequences.put(transaction, sequence);
+      this.order.put(sequence, transaction);
+    }
+    for (ClientTransaction transaction : this.order.values()) {
+      ArrayDeque<ClientTransaction> localList = this.clientLocals.get(transaction.client);
+      if (null == localList) {
+        localList = new ArrayDeque<>();
+        this.clientLocals.put(transaction.client, localList);
+      }
+      localList.addLast(transaction);
+      this.nextSequence = this.sequences.get(transaction) + 1;
+    }
+  }
 }
@@ -462,6 +462,31 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     return getStats().getWriteOperationRate();
   }
 
+  @Override
+  public long getPersistenceCommitRate() {
+    return getStats().getPersistenceCommitRate();
+  }
+
+  @Override
+  public long getPersistenceCommitBatchSize() {
+    return getStats().getPersistenceCommitBatchSize();
+  }
+
+  @Override
+  public long getPersistenceCommitLatency() {
+    return getStats().getPersistenceCommitLatency();
+  }
+
+  @Override
+  public long getSpeculativeExecutionRate() {
+    return getStats().getSpeculativeExecutionRate();
+  }
+
+  @Override
+  public long getSpeculativeExecutionOverlap() {
+    return getStats().getSpeculativeExecutionOverlap();
+  }
+
   private class ChannelManagerListener implements DSOChannelManagerEventListener {
     @Override
     public void channelCreated(MessageChannel channel) {
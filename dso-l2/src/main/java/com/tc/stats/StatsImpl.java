@@ -118,4 +118,29 @@ public class StatsImpl implements Stats {
   public long getWriteOperationRate() {
     return serverStats.getOperationCounter().getMostRecentSample().getCounterValue();
   }
+
+  @Override
+  public long getPersistenceCommitRate() {
+    return serverStats.getPersistenceCommitCounter().getMostRecentSample().getCounterValue();
+  }
+
+  @Override
+  public long getPersistenceCommitBatchSize() {
+    return serverStats.getPersistenceCommitBatchSizeCounter().getMostRecentSample().getCounterValue();
+  }
+
+  @Override
+  public long getPersistenceCommitLatency() {
+    return serverStats.getPersistenceCommitLatencyCounter().getMostRecentSample().getCounterValue();
+  }
+
+  @Override
+  public long getSpeculativeExecutionRate() {
+    return serverStats.getSpeculativeExecutionCounter().getMostRecentSample().getCounterValue();
+  }
+
+  @Override
+  public long getSpeculativeExecutionOverlap() {
+    return serverStats.getSpeculativeExecutionOverlapCounter().getMostRecentSample().getCounterValue();
+  }
 }
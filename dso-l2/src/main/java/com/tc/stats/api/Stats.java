@@ -42,4 +42,14 @@ public interface Stats {
 
   long getWriteOperationRate();
 
+  long getPersistenceCommitRate();
+
+  long getPersistenceCommitBatchSize();
+
+  long getPersistenceCommitLatency();
+
+  long getSpeculativeExecutionRate();
+
+  long getSpeculativeExecutionOverlap();
+
 }
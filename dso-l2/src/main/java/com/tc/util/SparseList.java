@@ -19,63 +19,29 @@
 
 package com.tc.util;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.TreeMap;
 
 
 /**
  * Stores an ordered list, 0-indexed by int, with fixed indices within a sparse space.
  * That is, there can be gaps in the array and attempts to insert new elements will not change the relative order of other elements (instead, replacing any already present at that index).
- * The iterator for the list will walk the list, in order, skipping any holes. 
+ * The iterator for the list will walk the list, in order, skipping any holes.
+ * The elements are kept sorted by index so iteration costs only as much as the number of elements, no matter how large
+ * the holes between them are.
  */
 public class SparseList<T> implements Iterable<T> {
-  private final Map<Integer, T> map = new HashMap<>();
-  private int lastIndex = -1;
+  private final TreeMap<Integer, T> map = new TreeMap<>();
   
   /**
    * Inserts object at index, returning the object formerly at that index (returns null if the index was empty).
    */
   public T insert(int index, T object) {
-    if (index > this.lastIndex) {
-      this.lastIndex = index;
-    }
     return this.map.put(index, object);
   }
 
   @Override
   public Iterator<T> iterator() {
-    return new SparseListIterator<>(this.map, this.lastIndex);
-  }
-
-
-  /**
-   * The iterator for walking a sparse list.
-   */
-  private static class SparseListIterator<T> implements Iterator<T> {
-    private final Map<Integer, T> map;
-    private final int lastIndex;
-    private int nextIndex;
-
-    public SparseListIterator(Map<Integer, T> map, int lastIndex) {
-      this.map = map;
-      this.lastIndex = lastIndex;
-      this.nextIndex = 0;
-    }
-    @Override
-    public boolean hasNext() {
-      return (this.nextIndex <= this.lastIndex);
-    }
-    @Override
-    public T next() {
-      T next = null;
-      while (null == next) {
-        // This can only happen if next() was called when hasNext() is false and it would result in looping until overflow so assert, instead.
-        Assert.assertTrue(this.nextIndex <= this.lastIndex);
-        next = this.map.get(this.nextIndex);
-        this.nextIndex += 1;
-      }
-      return next;
-    }
+    return this.map.values().iterator();
   }
 }
@@ -0,0 +1,141 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tc.async.api.Sink;
+import com.tc.l2.msg.ReplicationEnvelope;
+import com.tc.l2.msg.ReplicationMessage;
+import com.tc.net.ClientID;
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.ManagedEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Future;
+
+
+public class ActiveToPassiveReplicationTest {
+  private NodeID passive;
+  private List<ReplicationEnvelope> envelopes;
+  private ActiveToPassiveReplication replication;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    this.passive = new ServerID("passive", new byte[] {1});
+    this.envelopes = Collections.synchronizedList(new ArrayList<>());
+    Sink<ReplicationEnvelope> sink = mock(Sink.class);
+    doAnswer(invocation -> envelopes.add((ReplicationEnvelope) invocation.getArguments()[0])).when(sink).addSingleThreaded(any(ReplicationEnvelope.class));
+    this.replication = new ActiveToPassiveReplication(Collections.singleton(this.passive), Collections.<ManagedEntity>emptyList(), sink);
+    this.replication.nodeJoined(this.passive);
+    this.replication.startPassiveSync(this.passive);
+  }
+
+  @Test
+  public void testAcknowledgeThroughReleasesAllEarlierMessages() throws Exception {
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int i = 1; i <= 3; ++i) {
+      ReplicationMessage msg = createInvoke(i);
+      futures.add(this.replication.replicateMessage(msg, Collections.singleton(this.passive)));
+      envelopeFor(msg).ordered(i);
+    }
+    this.replication.acknowledgeThrough(this.passive, 2);
+    assertTrue(futures.get(0).isDone());
+    assertTrue(futures.get(1).isDone());
+    assertFalse(futures.get(2).isDone());
+    this.replication.acknowledgeThrough(this.passive, 3);
+    assertTrue(futures.get(2).isDone());
+  }
+
+  @Test
+  public void testRemovedPassiveReleasesMessages() throws Exception {
+    ReplicationMessage msg = createInvoke(1);
+    Future<Void> future = this.replication.replicateMessage(msg, Collections.singleton(this.passive));
+    envelopeFor(msg).ordered(1);
+    this.replication.nodeLeft(this.passive);
+    assertTrue(future.isDone());
+    // A late acknowledgement from the departed passive is ignored.
+    this.replication.acknowledgeThrough(this.passive, 1);
+  }
+
+  @Test
+  public void testWaitsForEveryPassive() throws Exception {
+    NodeID other = new ServerID("other", new byte[] {2});
+    this.replication.nodeJoined(other);
+    this.replication.startPassiveSync(other);
+    ReplicationMessage msg = createInvoke(1);
+    Future<Void> future = this.replication.replicateMessage(msg, new HashSet<>(Arrays.asList(this.passive, other)));
+    envelopeFor(msg, this.passive).ordered(1);
+    envelopeFor(msg, other).ordered(1);
+    this.replication.acknowledgeThrough(this.passive, 1);
+    // A repeated acknowledgement from the same passive changes nothing.
+    this.replication.acknowledgeThrough(this.passive, 1);
+    assertFalse(future.isDone());
+    this.replication.acknowledgeThrough(other, 1);
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void testDroppedMessageIsReleased() throws Exception {
+    ReplicationMessage msg = createInvoke(1);
+    Future<Void> future = this.replication.replicateMessage(msg, Collections.singleton(this.passive));
+    // The replication sender releases a message it will not send, rather than ordering it.
+    envelopeFor(msg).release();
+    assertTrue(future.isDone());
+  }
+
+  // The passive sync started in setUp adds its own envelopes from another thread.
+  private ReplicationEnvelope envelopeFor(ReplicationMessage msg) {
+    return envelopeFor(msg, this.passive);
+  }
+
+  private ReplicationEnvelope envelopeFor(ReplicationMessage msg, NodeID node) {
+    synchronized (this.envelopes) {
+      for (ReplicationEnvelope envelope : this.envelopes) {
+        if (envelope.getMessage() == msg && envelope.getDestination().equals(node)) {
+          return envelope;
+        }
+      }
+    }
+    throw new AssertionError("not replicated " + msg);
+  }
+
+  private static ReplicationMessage createInvoke(long transaction) {
+    EntityDescriptor descriptor = new EntityDescriptor(new EntityID("TestEntity", "test"), new ClientInstanceID(1), 1);
+    return new ReplicationMessage(descriptor, new ClientID(1), new TransactionID(transaction), new TransactionID(1),
+        ReplicationMessage.ReplicationType.INVOKE_ACTION, new byte[0], 1);
+  }
+}
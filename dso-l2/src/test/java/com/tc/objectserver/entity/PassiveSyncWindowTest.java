@@ -0,0 +1,71 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tc.net.ServerID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+
+public class PassiveSyncWindowTest {
+
+  @Test
+  public void testKeysWaitForTheirTurn() throws Exception {
+    PassiveSyncWindow window = new PassiveSyncWindow(new ServerID("passive", new byte[] {1}), 2, 1);
+    window.startKey();
+    window.startKey();
+//  a third key is only scheduled once one of the first two is done
+    CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+      try {
+        window.startKey();
+      } catch (InterruptedException ie) {
+        throw new RuntimeException(ie);
+      }
+    });
+    Thread.sleep(100);
+    assertFalse(third.isDone());
+    window.keySynced();
+    third.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testSendWaitsForAcknowledgement() throws Exception {
+    PassiveSyncWindow window = new PassiveSyncWindow(new ServerID("passive", new byte[] {1}), 1, 1);
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    assertTrue(first == window.send(10, () -> first));
+    CompletableFuture<Void> second = new CompletableFuture<>();
+    CompletableFuture<CompletableFuture<Void>> sent = CompletableFuture.supplyAsync(() -> {
+      try {
+        return window.send(20, () -> second);
+      } catch (InterruptedException ie) {
+        throw new RuntimeException(ie);
+      }
+    });
+    Thread.sleep(100);
+    assertFalse(sent.isDone());
+    first.complete(null);
+    assertTrue(second == sent.get(10, TimeUnit.SECONDS));
+    assertEquals(30, window.getBytesSent());
+  }
+}
@@ -27,7 +27,12 @@ import com.tc.object.EntityID;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
+import com.tc.stats.counter.sampled.SampledCounter;
+import com.tc.stats.counter.sampled.derived.SampledRateCounter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.After;
@@ -36,7 +41,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Matchers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -187,6 +196,144 @@ public class RequestProcessorTest {
 //    verify(broker).replicateMessage(Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(),Matchers.any(), Matchers.any());
   }
   
+  @Test
+  public void testHoldUntilReplicated() {
+    EntityID testid = new EntityID("MockEntity", "foo");
+    EntityDescriptor descriptor = new EntityDescriptor(testid, ClientInstanceID.NULL_ID, 1);
+    ServerEntityRequest request = mock(ServerEntityRequest.class);
+    when(request.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(request.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+    when(request.getTransaction()).thenReturn(TransactionID.NULL_ID);
+    when(request.getNodeID()).thenReturn(mock(NodeID.class));
+    ServerEntityRequest local = mock(ServerEntityRequest.class);
+    when(local.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(local.requiresReplication()).thenReturn(Boolean.FALSE);
+
+    List<Runnable> dispatched = new ArrayList<>();
+    Sink<Runnable> dump = mock(Sink.class);
+    doAnswer(invocation -> dispatched.add((Runnable) invocation.getArguments()[0])).when(dump).addMultiThreaded(Matchers.any());
+
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    CompletableFuture<Void> unkeyed = new CompletableFuture<>();
+    PassiveReplicationBroker broker = mock(PassiveReplicationBroker.class);
+    when(broker.passives()).thenReturn(Collections.singleton(mock(NodeID.class)));
+    when(broker.replicateMessage(Matchers.any(), Matchers.any())).thenReturn(first, unkeyed, NoReplicationBroker.NOOP_FUTURE);
+    RequestProcessor instance = new RequestProcessor(dump, true);
+    instance.setReplication(broker);
+    instance.enterActiveState();
+
+    when(request.requiresReplication()).thenReturn(Boolean.TRUE);
+    instance.scheduleRequest(descriptor, request, new byte[0], ()->{}, 1);
+    instance.scheduleRequest(descriptor, request, new byte[0], ()->{}, ConcurrencyStrategy.UNIVERSAL_KEY);
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, 1);
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, 2);
+    instance.scheduleRequest(descriptor, request, new byte[0], ()->{}, ConcurrencyStrategy.MANAGEMENT_KEY);
+//  only the request on a key with nothing outstanding goes through
+    assertEquals(1, dispatched.size());
+    assertTrue(new MultiThreadedEventMatcher(testid, 2).matches(dispatched.get(0)));
+
+    first.complete(null);
+//  both requests on key 1 are released, in order, but the flush still waits on the unkeyed request ahead of it
+    assertEquals(3, dispatched.size());
+    assertTrue(new MultiThreadedEventMatcher(testid, 1).matches(dispatched.get(1)));
+    assertTrue(new MultiThreadedEventMatcher(testid, 1).matches(dispatched.get(2)));
+
+    unkeyed.complete(null);
+    assertEquals(5, dispatched.size());
+    assertTrue(new MultiThreadedEventMatcher(testid, ConcurrencyStrategy.UNIVERSAL_KEY).matches(dispatched.get(3)));
+    assertTrue(new MultiThreadedEventMatcher(testid, ConcurrencyStrategy.MANAGEMENT_KEY).matches(dispatched.get(4)));
+
+//  with nothing held, requests go straight through again
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, 1);
+    assertEquals(6, dispatched.size());
+  }
+  
+  @Test
+  public void testHeldFlushIsABarrier() {
+    EntityID testid = new EntityID("MockEntity", "foo");
+    EntityDescriptor descriptor = new EntityDescriptor(testid, ClientInstanceID.NULL_ID, 1);
+    ServerEntityRequest request = mock(ServerEntityRequest.class);
+    when(request.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(request.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+    when(request.getTransaction()).thenReturn(TransactionID.NULL_ID);
+    when(request.getNodeID()).thenReturn(mock(NodeID.class));
+    when(request.requiresReplication()).thenReturn(Boolean.TRUE);
+    ServerEntityRequest local = mock(ServerEntityRequest.class);
+    when(local.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(local.requiresReplication()).thenReturn(Boolean.FALSE);
+
+    List<Runnable> dispatched = new ArrayList<>();
+    Sink<Runnable> dump = mock(Sink.class);
+    doAnswer(invocation -> dispatched.add((Runnable) invocation.getArguments()[0])).when(dump).addMultiThreaded(Matchers.any());
+
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    CompletableFuture<Void> flush = new CompletableFuture<>();
+    PassiveReplicationBroker broker = mock(PassiveReplicationBroker.class);
+    when(broker.passives()).thenReturn(Collections.singleton(mock(NodeID.class)));
+    when(broker.replicateMessage(Matchers.any(), Matchers.any())).thenReturn(first, flush);
+    RequestProcessor instance = new RequestProcessor(dump, true);
+    instance.setReplication(broker);
+    instance.enterActiveState();
+
+    instance.scheduleRequest(descriptor, request, new byte[0], ()->{}, 1);
+    instance.scheduleRequest(descriptor, request, new byte[0], ()->{}, ConcurrencyStrategy.MANAGEMENT_KEY);
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, 2);
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, ConcurrencyStrategy.UNIVERSAL_KEY);
+//  nothing after the flush overtakes it, even on a key with nothing outstanding
+    assertEquals(0, dispatched.size());
+
+    flush.complete(null);
+//  the flush still waits on the request ahead of it, and everything behind the flush waits with it
+    assertEquals(0, dispatched.size());
+
+    first.complete(null);
+    assertEquals(4, dispatched.size());
+    assertTrue(new MultiThreadedEventMatcher(testid, 1).matches(dispatched.get(0)));
+    assertTrue(new MultiThreadedEventMatcher(testid, ConcurrencyStrategy.MANAGEMENT_KEY).matches(dispatched.get(1)));
+
+    instance.scheduleRequest(descriptor, local, new byte[0], ()->{}, 2);
+    assertEquals(5, dispatched.size());
+  }
+  
+  @Test
+  public void testSpeculativeExecution() {
+    EntityID testid = new EntityID("MockEntity", "foo");
+    EntityDescriptor descriptor = new EntityDescriptor(testid, ClientInstanceID.NULL_ID, 1);
+    ServerEntityRequest request = mock(ServerEntityRequest.class);
+    when(request.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(request.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+    when(request.getTransaction()).thenReturn(TransactionID.NULL_ID);
+    when(request.getNodeID()).thenReturn(mock(NodeID.class));
+    when(request.requiresReplication()).thenReturn(Boolean.TRUE);
+
+    List<Runnable> dispatched = new ArrayList<>();
+    Sink<Runnable> dump = mock(Sink.class);
+    doAnswer(invocation -> dispatched.add((Runnable) invocation.getArguments()[0])).when(dump).addMultiThreaded(Matchers.any());
+
+    CompletableFuture<Void> replicated = new CompletableFuture<>();
+    PassiveReplicationBroker broker = mock(PassiveReplicationBroker.class);
+    when(broker.passives()).thenReturn(Collections.singleton(mock(NodeID.class)));
+    when(broker.replicateMessage(Matchers.any(), Matchers.any())).thenReturn(replicated);
+    SampledCounter executions = mock(SampledCounter.class);
+    SampledRateCounter overlap = mock(SampledRateCounter.class);
+    RequestProcessor instance = new RequestProcessor(dump, true, true, executions, overlap);
+    instance.setReplication(broker);
+    instance.enterActiveState();
+
+    Runnable call = mock(Runnable.class);
+    instance.scheduleRequest(descriptor, request, new byte[0], call, 1);
+//  the invoke goes straight through even though the replication is outstanding, only its response waits
+    verify(request).deferResponse(replicated);
+    assertEquals(1, dispatched.size());
+    dispatched.get(0).run();
+    verify(call).run();
+    verify(executions, never()).increment();
+
+    replicated.complete(null);
+    verify(executions).increment();
+    verify(overlap).increment(Matchers.anyLong(), Matchers.eq(1L));
+  }
+  
   private static byte[] intToArray(int val) {
     byte[] four = new byte[4];
     for (int x=0;x<four.length;x++) {
@@ -35,6 +35,7 @@ import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -84,6 +85,21 @@ public class ServerEntityRequestImplTest {
     verify(responseMessage).send();
   }
 
+  @Test
+  public void testDeferredResponse() throws Exception {
+    ServerEntityRequest serverEntityRequest = buildInvoke();
+    CompletableFuture<Void> gate = new CompletableFuture<>();
+    serverEntityRequest.deferResponse(gate);
+
+    byte[] value = new byte[0];
+    serverEntityRequest.complete(value);
+
+    verify(responseMessage).setSuccess(transactionID, value);
+    verify(responseMessage, never()).send();
+    gate.complete(null);
+    verify(responseMessage).send();
+  }
+
   @Test
   public void testRequestedAcks() throws Exception {
     ServerEntityRequest serverEntityRequest = buildInvoke();
@@ -0,0 +1,99 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.l2.msg.PassiveSyncMessage;
+import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.state.StateManager;
+import com.tc.net.ClientID;
+import com.tc.net.ServerID;
+import com.tc.net.groups.GroupManager;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.EntityManager;
+import com.tc.objectserver.api.ManagedEntity;
+import com.tc.objectserver.entity.ServerEntityRequestImpl;
+import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class ReplicatedTransactionHandlerTest {
+  private final ServerID active = new ServerID("active", new byte[] { 1 });
+  private final EntityID entityID = new EntityID("MockEntity", "foo");
+  private final List<Long> acknowledged = new ArrayList<>();
+  private ReplicatedTransactionHandler handler;
+
+  @Before
+  public void setUp() throws Exception {
+    ManagedEntity entity = mock(ManagedEntity.class);
+    doAnswer(invocation -> {
+      ((ServerEntityRequestImpl) invocation.getArguments()[0]).complete();
+      return null;
+    }).when(entity).processSyncMessage(Matchers.any(), Matchers.any(), Matchers.anyInt());
+    EntityManager entityManager = mock(EntityManager.class);
+    when(entityManager.getEntity(Matchers.any(), Matchers.anyLong())).thenReturn(Optional.of(entity));
+    GroupManager groupManager = mock(GroupManager.class);
+    doAnswer(invocation -> acknowledged.add(((ReplicationMessage) invocation.getArguments()[1]).getSequenceID()))
+        .when(groupManager).sendTo(Matchers.any(), Matchers.any());
+    handler = new ReplicatedTransactionHandler(mock(StateManager.class), mock(TransactionOrderPersistor.class),
+        entityManager, mock(EntityPersistor.class), groupManager, 1, 0);
+  }
+
+  @Test
+  public void testDeferredMessageIsNotAcknowledgedUntilApplied() throws Exception {
+    receive(PassiveSyncMessage.createStartEntityKeyMessage(entityID, 1, 1), 1);
+    assertEquals(Arrays.asList(1L), acknowledged);
+
+//  the invoke on the key being synced is deferred, the one on another key is applied right away
+    receive(invoke(1), 2);
+    receive(invoke(2), 3);
+    assertEquals(Arrays.asList(1L), acknowledged);
+
+//  ending the sync of the key applies the deferred invoke, and only then is it acknowledged
+    receive(PassiveSyncMessage.createEndEntityKeyMessage(entityID, 1, 1), 4);
+    assertEquals(Arrays.asList(1L, 4L), acknowledged);
+
+    receive(invoke(2), 5);
+    assertEquals(Arrays.asList(1L, 4L, 5L), acknowledged);
+  }
+
+  private ReplicationMessage invoke(int concurrency) {
+    return new ReplicationMessage(new EntityDescriptor(entityID, ClientInstanceID.NULL_ID, 1), ClientID.NULL_ID,
+        new TransactionID(1), TransactionID.NULL_ID, ReplicationMessage.ReplicationType.INVOKE_ACTION, new byte[0], concurrency);
+  }
+
+  private void receive(ReplicationMessage message, long replicationID) throws Exception {
+    message.setReplicationID(replicationID);
+    message.setMessageOrginator(active);
+    handler.getEventHandler().handleEvent(message);
+  }
+}
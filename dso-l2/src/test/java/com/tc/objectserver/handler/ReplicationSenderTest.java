@@ -0,0 +1,215 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tc.async.api.ConfigurationContext;
+import com.tc.async.api.Sink;
+import com.tc.async.api.Stage;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.PassiveSyncMessage;
+import com.tc.l2.msg.ReplicationEnvelope;
+import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.msg.ReplicationMessageBatch;
+import com.tc.net.ClientID;
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+import com.tc.net.groups.GroupManager;
+import com.tc.net.groups.GroupMessage;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ReplicationSenderTest {
+  private GroupManager<GroupMessage> group;
+  private NodeID passive;
+  private List<GroupMessage> sent;
+  private Sink<ReplicationEnvelope> ownSink;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    this.group = mock(GroupManager.class);
+    this.passive = new ServerID("passive", new byte[] {1});
+    this.sent = new ArrayList<>();
+    doAnswer(invocation -> sent.add((GroupMessage) invocation.getArguments()[1])).when(this.group).sendTo(eq(this.passive), any(GroupMessage.class));
+    this.ownSink = mock(Sink.class);
+  }
+
+  @Test
+  public void testUnbatchedSendsEachMessage() throws Exception {
+    ReplicationSender sender = new ReplicationSender(this.group);
+    sender.handleEvent(new ReplicationMessage().target(this.passive));
+    sender.handleEvent(createInvoke(1).target(this.passive, () -> {}));
+    sender.handleEvent(createInvoke(2).target(this.passive, () -> {}));
+    assertEquals(3, this.sent.size());
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(i, ((ReplicationMessage) this.sent.get(i)).getSequenceID());
+    }
+  }
+
+  @Test
+  public void testBatchesWhileStageIsBusy() throws Exception {
+    ReplicationSender sender = createBatchingSender(64);
+    when(this.ownSink.size()).thenReturn(1);
+    sender.handleEvent(new ReplicationMessage().target(this.passive));
+    for (int i = 1; i < 4; ++i) {
+      sender.handleEvent(createInvoke(i).target(this.passive, () -> {}));
+    }
+    // Nothing goes out while more messages are queued behind the current one.
+    assertEquals(0, this.sent.size());
+    when(this.ownSink.size()).thenReturn(0);
+    sender.handleEvent(createInvoke(4).target(this.passive, () -> {}));
+    assertEquals(1, this.sent.size());
+    List<ReplicationMessage> batched = readBatch(this.sent.get(0));
+    assertEquals(5, batched.size());
+    for (int i = 0; i < 5; ++i) {
+      assertEquals(i, batched.get(i).getSequenceID());
+    }
+  }
+
+  @Test
+  public void testSendsFullBatch() throws Exception {
+    ReplicationSender sender = createBatchingSender(2);
+    when(this.ownSink.size()).thenReturn(1);
+    sender.handleEvent(new ReplicationMessage().target(this.passive));
+    for (int i = 1; i < 5; ++i) {
+      sender.handleEvent(createInvoke(i).target(this.passive, () -> {}));
+    }
+    assertEquals(2, this.sent.size());
+    assertEquals(2, ((ReplicationMessageBatch) this.sent.get(1)).getMessageCount());
+  }
+
+  @Test
+  public void testSharedMessagesKeepPerPassiveOrder() throws Exception {
+    NodeID other = new ServerID("other", new byte[] {2});
+    doAnswer(invocation -> sent.add((GroupMessage) invocation.getArguments()[1])).when(this.group).sendTo(eq(other), any(GroupMessage.class));
+    ReplicationSender sender = createBatchingSender(64);
+    when(this.ownSink.size()).thenReturn(1);
+    sender.handleEvent(new ReplicationMessage().target(this.passive));
+    sender.handleEvent(createInvoke(1).target(this.passive, () -> {}));
+    sender.handleEvent(new ReplicationMessage().target(other));
+    // The same message object is replicated to both passives, which have each seen a different number of messages.
+    ReplicationMessage shared = createInvoke(2);
+    sender.handleEvent(shared.target(this.passive, () -> {}));
+    when(this.ownSink.size()).thenReturn(0);
+    sender.handleEvent(shared.target(other, () -> {}));
+    assertEquals(2, this.sent.size());
+    for (GroupMessage batch : this.sent) {
+      List<ReplicationMessage> batched = readBatch(batch);
+      for (int i = 0; i < batched.size(); ++i) {
+        assertEquals(i, batched.get(i).getSequenceID());
+      }
+    }
+  }
+
+  @Test
+  public void testBatchRoundTrip() throws Exception {
+    ReplicationMessage first = createInvoke(1);
+    first.setReplicationID(7);
+    ReplicationMessage second = createInvoke(2);
+    second.setReplicationID(8);
+    ReplicationMessageBatch batch = new ReplicationMessageBatch();
+    batch.addMessage(first);
+    batch.addMessage(second);
+
+    List<ReplicationMessage> messages = readBatch(batch);
+    assertEquals(2, messages.size());
+    assertEquals(first.getMessageID(), messages.get(0).getMessageID());
+    assertEquals(8, messages.get(1).getSequenceID());
+    assertEquals(new TransactionID(2), messages.get(1).getTransactionID());
+    assertTrue(messages.get(1).messageFrom().equals(this.passive));
+  }
+
+  @Test
+  public void testFiltersInterleavedEntitySync() throws Exception {
+    ReplicationSender sender = new ReplicationSender(this.group);
+    EntityID first = new EntityID("TestEntity", "test");
+    EntityID second = new EntityID("TestEntity", "other");
+    sender.handleEvent(PassiveSyncMessage.createStartSyncMessage().target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createStartEntityMessage(first, 1, new byte[0]).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createStartEntityMessage(second, 1, new byte[0]).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createStartEntityKeyMessage(first, 1, 1).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createStartEntityKeyMessage(second, 1, 1).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createPayloadMessage(second, 1, 1, new byte[0]).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createPayloadMessage(first, 1, 1, new byte[0]).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createEndEntityKeyMessage(second, 1, 1).target(this.passive));
+    assertEquals(8, this.sent.size());
+    // An invoke on a key being synced is applied by the passive once that key is done.
+    sender.handleEvent(createInvoke(1).target(this.passive, () -> {}));
+    assertEquals(9, this.sent.size());
+    // An invoke on a key yet to be synced is captured by the sync instead.
+    sender.handleEvent(createInvoke(first, 2, 2).target(this.passive, () -> {}));
+    assertEquals(9, this.sent.size());
+    // The other entity is independent, so its synced key is replicated as usual.
+    sender.handleEvent(createInvoke(second, 3, 1).target(this.passive, () -> {}));
+    assertEquals(10, this.sent.size());
+    sender.handleEvent(PassiveSyncMessage.createEndEntityKeyMessage(first, 1, 1).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createEndEntityMessage(second, 1).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createEndEntityMessage(first, 1).target(this.passive));
+    sender.handleEvent(PassiveSyncMessage.createEndSyncMessage().target(this.passive));
+    assertEquals(14, this.sent.size());
+  }
+
+  private List<ReplicationMessage> readBatch(GroupMessage batch) throws Exception {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    ((ReplicationMessageBatch) batch).serializeTo(out);
+    ReplicationMessageBatch read = new ReplicationMessageBatch();
+    read.deserializeFrom(new TCByteBufferInputStream(out.toArray()));
+    return read.unpack(this.passive);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ReplicationSender createBatchingSender(int maxMessages) {
+    ReplicationSender sender = new ReplicationSender(this.group, maxMessages, 1024 * 1024, 60_000);
+    ConfigurationContext context = mock(ConfigurationContext.class);
+    Stage<ReplicationEnvelope> stage = mock(Stage.class);
+    when(stage.getSink()).thenReturn(this.ownSink);
+    when(context.getStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_STAGE, ReplicationEnvelope.class)).thenReturn(stage);
+    sender.initializeContext(context);
+    return sender;
+  }
+
+  private static ReplicationMessage createInvoke(long transaction) {
+    return createInvoke(new EntityID("TestEntity", "test"), transaction, 1);
+  }
+
+  private static ReplicationMessage createInvoke(EntityID entity, long transaction, int concurrency) {
+    EntityDescriptor descriptor = new EntityDescriptor(entity, new ClientInstanceID(1), 1);
+    return new ReplicationMessage(descriptor, new ClientID(1), new TransactionID(transaction), new TransactionID(1),
+        ReplicationMessage.ReplicationType.INVOKE_ACTION, new byte[] {1, 2, 3}, concurrency);
+  }
+}
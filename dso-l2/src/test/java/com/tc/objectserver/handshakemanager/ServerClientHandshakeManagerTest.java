@@ -33,11 +33,11 @@ import com.tc.object.net.DSOChannelManager;
 import com.tc.objectserver.api.EntityManager;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.locks.LockManager;
+import com.tc.util.concurrent.TimingWheel;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Timer;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -60,7 +60,7 @@ public class ServerClientHandshakeManagerTest {
     this.lockManager = mock(LockManager.class);
     EntityManager entityManager = mock(EntityManager.class);
     this.transactionHandler = mock(ProcessTransactionHandler.class);
-    Timer timer = mock(Timer.class);
+    TimingWheel timer = mock(TimingWheel.class);
     long reconnectTimeout = 1000;
     boolean persistent = true;
     TCLogger consoleLogger = mock(TCLogger.class);
@@ -0,0 +1,82 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.locks;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.tc.async.api.Sink;
+import com.tc.net.ClientID;
+import com.tc.net.NodeID;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.object.net.DSOChannelManager;
+import com.tc.objectserver.locks.factory.NonGreedyLockPolicyFactory;
+
+/**
+ * Takes and releases a read lock over and over while a growing number of other threads hold it, to show what a single
+ * read lock costs as the holder count rises.
+ * Not part of the unit tests, run it by hand.
+ */
+public class LockManagerImplBenchmark {
+
+  private static final int CLIENTS = 4;
+  private static final int CYCLES  = 10000;
+
+  public static void main(String[] args) throws Exception {
+    LockID lock = new StringLockID("A");
+    ClientID client = new ClientID(1);
+    for (int holders : new int[] { 1, 10, 100, 1000, 10000 }) {
+      LockManagerImpl lockManager = createLockManager();
+      for (int i = 0; i < holders; i++) {
+        lockManager.lock(lock, new ClientID(i % CLIENTS + 1), new ThreadID(i + 1), ServerLockLevel.READ);
+      }
+
+      ThreadID reader = new ThreadID(holders + 1);
+      // warm up before timing
+      cycle(lockManager, lock, client, reader);
+      long begin = System.nanoTime();
+      cycle(lockManager, lock, client, reader);
+      long nanos = System.nanoTime() - begin;
+      System.out.println("Read lock and unlock with " + holders + " holders: " + perSecond(CYCLES, nanos) + "/s");
+    }
+  }
+
+  private static void cycle(LockManagerImpl lockManager, LockID lock, ClientID client, ThreadID reader) {
+    for (int i = 0; i < CYCLES; i++) {
+      lockManager.lock(lock, client, reader, ServerLockLevel.READ);
+      lockManager.unlock(lock, client, reader);
+    }
+  }
+
+  private static LockManagerImpl createLockManager() {
+    DSOChannelManager channelManager = mock(DSOChannelManager.class);
+    when(channelManager.isActiveID(any(NodeID.class))).thenReturn(true);
+    LockManagerImpl lockManager = new LockManagerImpl(mock(Sink.class), channelManager, new NonGreedyLockPolicyFactory());
+    lockManager.start();
+    return lockManager;
+  }
+
+  private static long perSecond(int count, long nanos) {
+    return (count * 1000000000L) / Math.max(1, nanos);
+  }
+}
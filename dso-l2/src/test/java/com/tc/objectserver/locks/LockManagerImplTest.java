@@ -0,0 +1,145 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.locks;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.tc.async.api.Sink;
+import com.tc.net.ClientID;
+import com.tc.net.NodeID;
+import com.tc.object.locks.ClientServerExchangeLockContext;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.object.net.DSOChannelManager;
+import com.tc.objectserver.locks.factory.NonGreedyLockPolicyFactory;
+import com.tc.objectserver.locks.factory.ServerLockFactoryImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class LockManagerImplTest extends TestCase {
+  private static final int CLIENTS = 4;
+
+  private final ClientID clientID1 = new ClientID(1);
+  private final ClientID clientID2 = new ClientID(2);
+  private final ThreadID threadID1 = new ThreadID(1);
+  private final ThreadID threadID2 = new ThreadID(2);
+  private final LockID   lockA     = new StringLockID("A");
+  private final LockID   lockB     = new StringLockID("B");
+  private final LockID   lockC     = new StringLockID("C");
+
+  public void testClientIndexFollowsNonGreedyLocks() throws Exception {
+    LockManagerImpl lockManager = createLockManager(new NonGreedyLockPolicyFactory());
+
+    lockManager.lock(lockA, clientID1, threadID1, ServerLockLevel.WRITE);
+    lockManager.lock(lockB, clientID1, threadID1, ServerLockLevel.READ);
+    lockManager.lock(lockA, clientID2, threadID2, ServerLockLevel.WRITE);
+    lockManager.tryLock(lockC, clientID2, threadID2, ServerLockLevel.WRITE, 0);
+    assertEquals(locks(lockA, lockB), locksFor(lockManager, clientID1));
+    assertEquals(locks(lockA, lockC), locksFor(lockManager, clientID2));
+
+    lockManager.unlock(lockB, clientID1, threadID1);
+    assertEquals(locks(lockA), locksFor(lockManager, clientID1));
+
+    // the holder starts waiting, the pending client is awarded the lock and both stay indexed on it
+    lockManager.wait(lockA, clientID1, threadID1, 0);
+    assertEquals(locks(lockA), locksFor(lockManager, clientID1));
+    assertEquals(locks(lockA, lockC), locksFor(lockManager, clientID2));
+
+    lockManager.clearAllLocksFor(clientID2);
+    assertEquals(locks(), locksFor(lockManager, clientID2));
+    assertEquals(1, lockManager.getLockCount());
+
+    lockManager.clearAllLocksFor(clientID1);
+    assertEquals(locks(), locksFor(lockManager, clientID1));
+    assertEquals(0, lockManager.getLockCount());
+  }
+
+  public void testClientIndexFollowsGreedyRecall() throws Exception {
+    LockManagerImpl lockManager = createLockManager(new ServerLockFactoryImpl());
+
+    lockManager.lock(lockA, clientID1, threadID1, ServerLockLevel.WRITE);
+    lockManager.lock(lockA, clientID2, threadID2, ServerLockLevel.WRITE);
+    assertEquals(locks(lockA), locksFor(lockManager, clientID1));
+    assertEquals(locks(lockA), locksFor(lockManager, clientID2));
+
+    // giving up the greedy lock with nothing left on the client hands it over to the other client
+    lockManager.recallCommit(lockA, clientID1, Collections.<ClientServerExchangeLockContext> emptyList());
+    assertEquals(locks(), locksFor(lockManager, clientID1));
+    assertEquals(locks(lockA), locksFor(lockManager, clientID2));
+
+    lockManager.clearAllLocksFor(clientID2);
+    assertEquals(0, lockManager.getLockCount());
+  }
+
+  public void testClientIndexFollowsRefusedWait() throws Exception {
+    LockManagerImpl lockManager = createLockManager(new NonGreedyLockPolicyFactory());
+
+    lockManager.lock(lockA, clientID1, threadID1, ServerLockLevel.READ);
+    assertEquals(locks(lockA), locksFor(lockManager, clientID1));
+
+    try {
+      lockManager.wait(lockA, clientID1, threadID1, 0);
+      fail();
+    } catch (TCIllegalMonitorStateException e) {
+      // expected, waiting needs a write hold
+    }
+    assertEquals(locks(), locksFor(lockManager, clientID1));
+  }
+
+  public void testReadLockAmongManyHolders() throws Exception {
+    LockManagerImpl lockManager = createLockManager(new NonGreedyLockPolicyFactory());
+    for (int i = 0; i < 100; i++) {
+      lockManager.lock(lockA, new ClientID(i % CLIENTS + 2), new ThreadID(i + 1), ServerLockLevel.READ);
+    }
+
+    // another reader comes and goes without waiting behind, or disturbing, the existing holders
+    lockManager.lock(lockA, clientID1, threadID1, ServerLockLevel.READ);
+    assertFalse(lockManager.hasPending(lockA));
+    assertEquals(locks(lockA), locksFor(lockManager, clientID1));
+    lockManager.unlock(lockA, clientID1, threadID1);
+    assertEquals(locks(), locksFor(lockManager, clientID1));
+    assertEquals(locks(lockA), locksFor(lockManager, new ClientID(2)));
+    assertEquals(1, lockManager.getLockCount());
+  }
+
+  private static LockManagerImpl createLockManager(LockFactory factory) {
+    DSOChannelManager channelManager = mock(DSOChannelManager.class);
+    when(channelManager.isActiveID(any(NodeID.class))).thenReturn(true);
+    LockManagerImpl lockManager = new LockManagerImpl(mock(Sink.class), channelManager, factory);
+    lockManager.start();
+    return lockManager;
+  }
+
+  private static Set<LockID> locksFor(LockManagerImpl lockManager, ClientID cid) {
+    return new HashSet<>(lockManager.getHelper().getClientLockIndex().getLocksFor(cid));
+  }
+
+  private static Set<LockID> locks(LockID... lockIDs) {
+    return new HashSet<>(Arrays.asList(lockIDs));
+  }
+}
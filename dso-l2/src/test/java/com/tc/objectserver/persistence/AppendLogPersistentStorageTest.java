@@ -0,0 +1,143 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.terracotta.persistence.KeyValueStorage;
+
+
+public class AppendLogPersistentStorageTest extends TCTestCase {
+  private File directory;
+
+  @Override
+  public void setUp() throws Exception {
+    directory = new File(getTempDirectory(), "appendlog");
+  }
+
+  public void testReopen() throws IOException {
+    AppendLogPersistentStorage storage = new AppendLogPersistentStorage(directory, 1024, 1024 * 1024);
+    storage.create();
+    KeyValueStorage<Integer, String> numbers = storage.getKeyValueStorage("numbers", Integer.class, String.class);
+    numbers.put(1, "one");
+    numbers.put(2, "two");
+    numbers.put(3, "three");
+    numbers.remove(2);
+    storage.getProperties().put("key", "value");
+    storage.createKeyValueStorage("empty", Integer.class, String.class);
+    storage.close();
+
+    storage = new AppendLogPersistentStorage(directory, 1024, 1024 * 1024);
+    storage.open();
+    numbers = storage.getKeyValueStorage("numbers", Integer.class, String.class);
+    assertEquals(2, numbers.size());
+    assertEquals("one", numbers.get(1));
+    assertNull(numbers.get(2));
+    assertEquals("three", numbers.get(3));
+    assertEquals("value", storage.getProperties().get("key"));
+    assertEquals(0, storage.getKeyValueStorage("empty", Integer.class, String.class).size());
+  }
+
+  public void testCompaction() throws IOException {
+    // Use tiny segments and threshold so that we roll and compact many times.
+    AppendLogPersistentStorage storage = new AppendLogPersistentStorage(directory, 512, 2048);
+    storage.create();
+    KeyValueStorage<Integer, Integer> numbers = storage.getKeyValueStorage("numbers", Integer.class, Integer.class);
+    for (int i = 0; i < 1000; ++i) {
+      numbers.put(i % 10, i);
+    }
+    numbers.removeAll(Arrays.asList(0, 1));
+    storage.close();
+    // Compaction must have thrown away the old segments.
+    assertTrue(directory.list().length < 20);
+
+    storage = new AppendLogPersistentStorage(directory, 512, 2048);
+    storage.open();
+    numbers = storage.getKeyValueStorage("numbers", Integer.class, Integer.class);
+    assertEquals(8, numbers.size());
+    for (int i = 2; i < 10; ++i) {
+      assertEquals(Integer.valueOf(990 + i), numbers.get(i));
+    }
+  }
+
+  public void testTornTailIsDiscarded() throws IOException {
+    AppendLogPersistentStorage storage = new AppendLogPersistentStorage(directory, 1024 * 1024, 1024 * 1024);
+    storage.create();
+    KeyValueStorage<Integer, String> numbers = storage.getKeyValueStorage("numbers", Integer.class, String.class);
+    numbers.put(1, "one");
+    storage.close();
+
+    // Simulate a crash in the middle of writing a record.
+    for (File file : directory.listFiles()) {
+      if (file.getName().endsWith(".log") && file.length() > 0) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+          out.write(new byte[] { 0, 0, 1, 0, 1, 2, 3 });
+        }
+      }
+    }
+
+    storage = new AppendLogPersistentStorage(directory, 1024 * 1024, 1024 * 1024);
+    storage.open();
+    numbers = storage.getKeyValueStorage("numbers", Integer.class, String.class);
+    assertEquals("one", numbers.get(1));
+    numbers.put(2, "two");
+    storage.close();
+
+    storage = new AppendLogPersistentStorage(directory, 1024 * 1024, 1024 * 1024);
+    storage.open();
+    numbers = storage.getKeyValueStorage("numbers", Integer.class, String.class);
+    assertEquals("one", numbers.get(1));
+    assertEquals("two", numbers.get(2));
+  }
+
+  public void testCorruptionBeforeLastSegmentFailsReplay() throws IOException {
+    AppendLogPersistentStorage storage = new AppendLogPersistentStorage(directory, 512, 1024 * 1024);
+    storage.create();
+    KeyValueStorage<Integer, Integer> numbers = storage.getKeyValueStorage("numbers", Integer.class, Integer.class);
+    for (int i = 0; i < 100; ++i) {
+      numbers.put(i, i);
+    }
+    storage.close();
+
+    // Flip a payload byte in the first of several segments.
+    String[] names = directory.list((dir, name) -> name.endsWith(".log"));
+    Arrays.sort(names);
+    assertTrue(names.length > 1);
+    try (RandomAccessFile file = new RandomAccessFile(new File(directory, names[0]), "rw")) {
+      file.seek(file.length() / 2);
+      int b = file.read();
+      file.seek(file.length() / 2);
+      file.write(b ^ 0xff);
+    }
+
+    storage = new AppendLogPersistentStorage(directory, 512, 1024 * 1024);
+    try {
+      storage.open();
+      fail();
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+}
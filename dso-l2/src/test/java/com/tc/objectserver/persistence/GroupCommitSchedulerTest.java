@@ -0,0 +1,91 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terracotta.persistence.IPersistentStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class GroupCommitSchedulerTest {
+  private IPersistentStorage storage;
+  private IPersistentStorage.Transaction transaction;
+  private List<Integer> released;
+
+  @Before
+  public void setUp() {
+    this.storage = mock(IPersistentStorage.class);
+    this.transaction = mock(IPersistentStorage.Transaction.class);
+    when(this.storage.begin()).thenReturn(this.transaction);
+    this.released = new ArrayList<>();
+  }
+
+  @Test
+  public void testCommitsWhenNoMoreWork() {
+    GroupCommitScheduler scheduler = new GroupCommitScheduler(this.storage, 10, 60_000, null, null, null);
+    for (int i = 0; i < 3; ++i) {
+      final int index = i;
+      scheduler.execute(() -> {}, () -> released.add(index));
+      scheduler.commitIfDue(true);
+    }
+    // Nothing is released while more work is pending.
+    assertEquals(0, released.size());
+    verify(this.transaction, never()).commit();
+    scheduler.commitIfDue(false);
+    verify(this.storage, times(1)).begin();
+    verify(this.transaction, times(1)).commit();
+    assertEquals(3, released.size());
+    assertEquals(Integer.valueOf(0), released.get(0));
+    assertEquals(Integer.valueOf(2), released.get(2));
+  }
+
+  @Test
+  public void testCommitsFullBatch() {
+    GroupCommitScheduler scheduler = new GroupCommitScheduler(this.storage, 4, 60_000, null, null, null);
+    for (int i = 0; i < 10; ++i) {
+      final int index = i;
+      scheduler.execute(() -> {}, () -> released.add(index));
+      scheduler.commitIfDue(true);
+    }
+    // 2 full batches were committed and the last 2 are still waiting.
+    verify(this.transaction, times(2)).commit();
+    assertEquals(8, released.size());
+    scheduler.commit();
+    verify(this.transaction, times(3)).commit();
+    assertEquals(10, released.size());
+  }
+
+  @Test
+  public void testImmediateScheduler() {
+    GroupCommitScheduler scheduler = new GroupCommitScheduler();
+    scheduler.execute(() -> {}, () -> released.add(1));
+    scheduler.commitIfDue(true);
+    assertEquals(1, released.size());
+  }
+}
@@ -26,6 +26,8 @@ import com.tc.test.TCTestCase;
 
 import java.io.IOException;
 
+import org.terracotta.persistence.KeyValueStorage;
+
 
 public class TransactionOrderPersistorTest extends TCTestCase {
   private static final String TEMP_FILE = "temp_file";
@@ -246,6 +248,49 @@ public class TransactionOrderPersistorTest extends TCTestCase {
     assertEquals(0, this.orderPersistor.getIndexToReplay(this.client1, newTransaction));
   }
 
+  /**
+   * Test that trimming and disconnects leave the surviving transactions in their original relative order, across reload.
+   */
+  public void testTrimAndReloadPreservesOrder() throws IOException {
+    final String reloadable = "reloadable_file";
+    TransactionID oldest = new TransactionID(0);
+    
+    FlatFilePersistentStorage storage = new FlatFilePersistentStorage(getTempFile(reloadable));
+    storage.create();
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage);
+    for (int i = 1; i < 10; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      persistor.updateWithNewMessage(this.client1, transaction, oldest);
+      persistor.updateWithNewMessage(this.client2, transaction, oldest);
+    }
+    // Trim client1 up to transaction 5 and drop client2, entirely.
+    persistor.updateWithNewMessage(this.client1, new TransactionID(10), new TransactionID(5));
+    persistor.removeTrackingForClient(this.client2);
+    assertEquals(-1, persistor.getIndexToReplay(this.client1, new TransactionID(4)));
+    assertEquals(-1, persistor.getIndexToReplay(this.client2, new TransactionID(9)));
+    
+    storage = new FlatFilePersistentStorage(getTempFile(reloadable));
+    storage.open();
+    persistor = new TransactionOrderPersistor(storage);
+    int previous = -1;
+    for (int i = 5; i <= 10; ++i) {
+      int index = persistor.getIndexToReplay(this.client1, new TransactionID(i));
+      assertTrue(index > previous);
+      previous = index;
+    }
+    assertEquals(-1, persistor.getIndexToReplay(this.client1, new TransactionID(4)));
+  }
+
+  /**
+   * Test that the legacy storages are only cleaned up by the first start, not every start after it.
+   */
+  public void testLegacyStorageOnlyMigratedOnce() {
+    KeyValueStorage<String, Long> unrelated = this.persistentStorage.getKeyValueStorage("client_local_lists", String.class, Long.class);
+    unrelated.put("key", 1L);
+    new TransactionOrderPersistor(this.persistentStorage);
+    assertEquals(Long.valueOf(1L), this.persistentStorage.getKeyValueStorage("client_local_lists", String.class, Long.class).get("key"));
+  }
+
   public void testSaveReloadEmpty() throws IOException {
     final String reloadable = "reloadable_file";
     
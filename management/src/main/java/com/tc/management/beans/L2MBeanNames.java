@@ -36,6 +36,8 @@ public class L2MBeanNames {
   public static final ObjectName DUMPER;
   public static final ObjectName SERVER_DB_BACKUP;
   public static final ObjectName ENTERPRISE_TC_SERVER;
+  public static final ObjectName PASSIVE_SYNC;
+  public static final ObjectName COMM_THREADS;
 
   static {
     try {
@@ -46,6 +48,8 @@ public class L2MBeanNames {
       DUMPER = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "L2Dumper", TerracottaManagement.MBeanDomain.INTERNAL);
       SERVER_DB_BACKUP = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Terracotta Server Backup", TerracottaManagement.MBeanDomain.INTERNAL);
       ENTERPRISE_TC_SERVER = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Enterprise Terracotta Server", TerracottaManagement.MBeanDomain.INTERNAL);
+      PASSIVE_SYNC = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Passive Sync", TerracottaManagement.MBeanDomain.PUBLIC);
+      COMM_THREADS = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Comm Threads", TerracottaManagement.MBeanDomain.PUBLIC);
     } catch (MalformedObjectNameException mone) {
       throw new RuntimeException(mone);
     } catch (NullPointerException npe) {
@@ -0,0 +1,81 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+import com.tc.logging.TCLogger;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debug aid that remembers where every pooled buffer was checked out and reports buffers that were garbage collected
+ * without their last reference being recycled, as well as buffers recycled more often than they were retained.
+ */
+class BufferLeakDetector {
+
+  private final TCLogger                      logger;
+  private final ReferenceQueue<TCByteBuffer>  collected = new ReferenceQueue<TCByteBuffer>();
+  private final Set<Record>                   live      = ConcurrentHashMap.newKeySet();
+
+  BufferLeakDetector(TCLogger logger) {
+    this.logger = logger;
+  }
+
+  void track(TCByteBufferImpl buf) {
+    reportLeaks();
+    Record record = new Record(buf, collected);
+    live.add(record);
+    buf.leakRecord = record;
+  }
+
+  void released(TCByteBufferImpl buf) {
+    Record record = buf.leakRecord;
+    if (record != null) {
+      buf.leakRecord = null;
+      live.remove(record);
+      record.clear();
+    }
+  }
+
+  void overReleased(TCByteBuffer buf) {
+    logger.warn("Buffer " + buf + " was recycled more times than it was retained", new Throwable());
+  }
+
+  private void reportLeaks() {
+    Record record;
+    while ((record = (Record) collected.poll()) != null) {
+      if (live.remove(record)) {
+        logger.error("Buffer of capacity " + record.capacity + " was garbage collected without being recycled, checked out at:",
+                     record.checkout);
+      }
+    }
+  }
+
+  static class Record extends WeakReference<TCByteBuffer> {
+    private final int       capacity;
+    private final Throwable checkout = new Throwable();
+
+    Record(TCByteBuffer buf, ReferenceQueue<TCByteBuffer> queue) {
+      super(buf, queue);
+      this.capacity = buf.capacity();
+    }
+  }
+}
@@ -28,6 +28,13 @@ public interface TCByteBuffer extends Recyclable {
 
   public TCByteBuffer reInit();
 
+  /**
+   * Take another reference to the storage behind this buffer. Views (duplicates, slices) share the reference count of
+   * the buffer they were taken from, and every retain must be matched by a {@link #recycle()}. The storage goes back to
+   * its pool only when the last reference is recycled.
+   */
+  public TCByteBuffer retain();
+
   public int capacity();
 
   public int position();
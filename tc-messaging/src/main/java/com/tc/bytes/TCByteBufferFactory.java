@@ -28,18 +28,23 @@ import java.util.Collections;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 /**
  * TCByteBuffer source that hides JDK dependencies and that can pool instances. Instance pooling is likely to be a good
  * idea for fixed size buffers and definitely a good idea for java direct buffers (since their allocation/deallocation
  * is more expensive than regular java objects).
+ * <p>
+ * Pooled buffers come in power of two size classes from {@link #MIN_POOLED_BUFFER_SIZE} up to
+ * {@link #FIXED_BUFFER_SIZE}. Each class keeps a cache per thread for threads in registered groups which spills into a
+ * pool shared by all threads. Pooled buffers are reference counted (see {@link TCByteBuffer#retain()}) and go back to a
+ * pool once the last reference is recycled.
  * 
  * @author teck
  */
 public class TCByteBufferFactory {
 
   public static final int                  FIXED_BUFFER_SIZE       = 4 * 1024;                                                        // 4KiB
+  public static final int                  MIN_POOLED_BUFFER_SIZE  = 512;
   private static final int                 WARN_THRESHOLD          = 10 * 1024 * 1024;                                                // 10MiB
   private static final TCByteBuffer[]      EMPTY_BB_ARRAY          = new TCByteBuffer[0];
   private static final TCByteBuffer        ZERO_BYTE_BUFFER        = TCByteBufferImpl.wrap(new byte[0]);
@@ -49,48 +54,45 @@ public class TCByteBufferFactory {
   private static final boolean             disablePooling;
   private static final int                 poolMaxBufCount;
   private static final int                 commonPoolMaxBufCount;
+  private static final BufferLeakDetector  leakDetector;
   
   static {
     TCByteBufferFactoryConfig config = getConfig();
     disablePooling = config.isDisabled();
     poolMaxBufCount = config.getPoolMaxBufCount();
     commonPoolMaxBufCount = config.getCommonPoolMaxBufCount();
+    leakDetector = config.isLeakDetectionEnabled() && !disablePooling ? new BufferLeakDetector(logger) : null;
   }
   
+  private static final Set<ThreadGroup> handledGroups = Collections.newSetFromMap(new WeakHashMap<ThreadGroup, Boolean>());
 
-  // always use ThreadLocal variables for accessing the buffer pools.
-  private static final LinkedBlockingQueue<TCByteBuffer> directCommonFreePool    = new LinkedBlockingQueue<TCByteBuffer>(commonPoolMaxBufCount);
-  private static final LinkedBlockingQueue<TCByteBuffer> nonDirectCommonFreePool = new LinkedBlockingQueue<TCByteBuffer>(commonPoolMaxBufCount);
+  // indexed by size class, smallest first
+  private static final SizeClass[]      directClasses    = createSizeClasses(true);
+  private static final SizeClass[]      nonDirectClasses = createSizeClasses(false);
 
-  private static final Set<ThreadGroup> handledGroups = Collections.newSetFromMap(new WeakHashMap<ThreadGroup, Boolean>());
-  
-  private static final ThreadLocal<LinkedBlockingQueue<TCByteBuffer>> directFreePool = new VicariousThreadLocal<LinkedBlockingQueue<TCByteBuffer>>() {
-                                                                     @Override
-                                                                     protected LinkedBlockingQueue<TCByteBuffer> initialValue() {
-                                                                       if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
-                                                                         return new LinkedBlockingQueue<TCByteBuffer>(poolMaxBufCount);
-                                                                       } else {
-                                                                         logger.debug("Buf pool direct for " + Thread.currentThread().getName() + " - using Common Pool");
-                                                                         return directCommonFreePool;
-                                                                       }
-                                                                     }
-                                                                   };
-  private static final ThreadLocal<LinkedBlockingQueue<TCByteBuffer>> nonDirectFreePool = new VicariousThreadLocal<LinkedBlockingQueue<TCByteBuffer>>() {
-                                                                     @Override
-                                                                     protected LinkedBlockingQueue<TCByteBuffer> initialValue() {
-                                                                       if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
-                                                                         return new LinkedBlockingQueue<TCByteBuffer>(poolMaxBufCount);
-                                                                       } else {
-                                                                         logger.debug("Buf pool nonDirect for " + Thread.currentThread().getName() + " - using Common Pool");
-                                                                         return nonDirectCommonFreePool;
-                                                                       }
-                                                                     }
-                                                                   };
-
-  private static TCByteBuffer createNewInstance(boolean direct, int capacity, int index, int totalCount) {
+  private static SizeClass[] createSizeClasses(boolean direct) {
+    SizeClass[] classes = new SizeClass[Integer.numberOfTrailingZeros(FIXED_BUFFER_SIZE / MIN_POOLED_BUFFER_SIZE) + 1];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new SizeClass(direct, MIN_POOLED_BUFFER_SIZE << i);
+    }
+    return classes;
+  }
+
+  /**
+   * The size class a request for <code>size</code> bytes is served from, or null if such buffers are not pooled. Requests
+   * no larger than half the smallest class are cheaper to allocate than to pool.
+   */
+  private static SizeClass sizeClassFor(boolean direct, int size) {
+    if (size <= MIN_POOLED_BUFFER_SIZE / 2 || size > FIXED_BUFFER_SIZE) { return null; }
+    int index = size <= MIN_POOLED_BUFFER_SIZE ? 0 : 32 - Integer.numberOfLeadingZeros((size - 1) / MIN_POOLED_BUFFER_SIZE);
+    return direct ? directClasses[index] : nonDirectClasses[index];
+  }
+
+  private static TCByteBuffer createNewInstance(boolean direct, int capacity, int index, int totalCount,
+                                                LinkedBlockingQueue<TCByteBuffer> poolQueue,
+                                                LinkedBlockingQueue<TCByteBuffer> spillQueue) {
     try {
-      LinkedBlockingQueue<TCByteBuffer> poolQueue = direct ? directFreePool.get() : nonDirectFreePool.get();
-      TCByteBuffer rv = new TCByteBufferImpl(capacity, direct, poolQueue);
+      TCByteBuffer rv = new TCByteBufferImpl(capacity, direct, poolQueue, spillQueue);
       // Assert.assertEquals(0, rv.position());
       // Assert.assertEquals(capacity, rv.capacity());
       // Assert.assertEquals(capacity, rv.limit());
@@ -108,14 +110,14 @@ public class TCByteBufferFactory {
   }
 
   /**
-   * Get a single variable sized TCByteBuffer instance Note: These are not pooled (yet)
+   * Get a single variable sized TCByteBuffer instance. Requests that fit a size class are served from its pool and
+   * rounded up to the class size.
    * 
    * @param size The desired minimum capacity of the buffer. The actual capacity may be higher. The buffer's limit will
    *        be equal to it's capacity.
    * @param direct True to hint that the buffer should be a direct buffer (ie. not on the Java heap). A direct buffer
    *        will never be returned if this parameter is false. A direct buffer may or MAY NOT returned if the parameter
-   *        is true TODO :: Make this the only interface and make it return fixed size buffer also make sure only
-   *        fixedBufferSize gets to the pool back.
+   *        is true
    */
   public static TCByteBuffer getInstance(boolean direct, int size) {
 
@@ -125,29 +127,12 @@ public class TCByteBufferFactory {
     if (size < 0) { throw new IllegalArgumentException("Requested length cannot be less than zero"); }
     if (size == 0) { return ZERO_BYTE_BUFFER; }
 
-    // Don't give 4k ByteBuffer from pool for smaller size requests.
-    if (disablePooling || size < (FIXED_BUFFER_SIZE - 500) || size > FIXED_BUFFER_SIZE) {
-      return createNewInstance(direct, size);
+    SizeClass sizeClass = sizeClassFor(direct, size);
+    if (disablePooling || sizeClass == null) {
+      return createNewInstance(direct, size, 0, 1, null, null);
     } else {
-      return getFromPoolOrCreate(direct);
-    }
-  }
-
-  private static TCByteBuffer getFromPoolOrCreate(boolean direct) {
-    return getFromPoolOrCreate(direct, 0, 1);
-  }
-
-  private static TCByteBuffer getFromPoolOrCreate(boolean direct, int i, int numBuffers) {
-
-    TCByteBuffer buffer = getFromPool(direct);
-    if (null == buffer) {
-      buffer = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers);
+      return sizeClass.getFromPoolOrCreate(0, 1);
     }
-    return buffer;
-  }
-
-  private static TCByteBuffer createNewInstance(boolean direct, int bufferSize) {
-    return createNewInstance(direct, bufferSize, 0, 1);
   }
 
   public static void registerThreadGroup(ThreadGroup group) {
@@ -178,11 +163,12 @@ public class TCByteBufferFactory {
 
     if (disablePooling) {
       for (int i = 0; i < numBuffers; i++) {
-        rv[i] = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers);
+        rv[i] = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers, null, null);
       }
     } else { // do pooling logic
+      SizeClass sizeClass = sizeClassFor(direct, FIXED_BUFFER_SIZE);
       for (int i = 0; i < numBuffers; i++) {
-        rv[i] = getFromPoolOrCreate(direct, i, numBuffers);
+        rv[i] = sizeClass.getFromPoolOrCreate(i, numBuffers);
       }
     }
 
@@ -207,26 +193,6 @@ public class TCByteBufferFactory {
     return (getBufferCountNeededForMessageSize(length) * FIXED_BUFFER_SIZE);
   }
 
-  private static TCByteBuffer getFromPool(boolean direct) {
-    if (disablePooling) return null;
-    TCByteBuffer buf = null;
-
-    LinkedBlockingQueue<TCByteBuffer> poolQueue = direct ? directFreePool.get() : nonDirectFreePool.get();
-
-    Assert.assertNotNull(poolQueue);
-
-    try {
-      if ((buf = poolQueue.poll(0, TimeUnit.MILLISECONDS)) != null) {
-        buf.checkedOut();
-      }
-    } catch (InterruptedException e) {
-      logger.warn("interrupted while getting buffer from pool");
-      Thread.currentThread().interrupt();
-      return null;
-    }
-    return buf;
-  }
-
   public static void returnBuffers(TCByteBuffer buffers[]) {
     if (disablePooling) { return; }
 
@@ -238,7 +204,10 @@ public class TCByteBufferFactory {
   public static void returnBuffer(TCByteBuffer buf) {
     if (disablePooling) { return; }
 
-    if (buf.capacity() == FIXED_BUFFER_SIZE) {
+    if (isPooled(buf)) {
+      if (leakDetector != null) {
+        leakDetector.released((TCByteBufferImpl) buf);
+      }
       BufferPool bufferPool = buf.getBufferPool();
       buf.commit();
 
@@ -253,6 +222,17 @@ public class TCByteBufferFactory {
     }
   }
 
+  static void overReleased(TCByteBuffer buf) {
+    if (leakDetector != null) {
+      leakDetector.overReleased(buf);
+    }
+  }
+
+  private static boolean isPooled(TCByteBuffer buf) {
+    // only buffers built for a size class know their pool, other allocations are left to the GC
+    return buf instanceof TCByteBufferImpl && ((TCByteBufferImpl) buf).isPooled();
+  }
+
   public static TCByteBuffer wrap(byte[] buf) {
     return TCByteBufferImpl.wrap(buf);
   }
@@ -261,11 +241,54 @@ public class TCByteBufferFactory {
     TCByteBuffer rv = null;
     if (buf != null) {
       rv = getInstance(false, buf.length);
-      rv.put(buf).rewind();
+      rv.put(buf).flip();
     } else {
       rv = getInstance(false, 0);
     }
     return rv;
   }
 
+  private static final class SizeClass {
+    private final boolean                                       direct;
+    private final int                                           capacity;
+    private final LinkedBlockingQueue<TCByteBuffer>             commonPool;
+    // always use ThreadLocal variables for accessing the buffer pools.
+    private final ThreadLocal<LinkedBlockingQueue<TCByteBuffer>> localPool;
+
+    SizeClass(boolean direct, int capacity) {
+      this.direct = direct;
+      this.capacity = capacity;
+      this.commonPool = new LinkedBlockingQueue<TCByteBuffer>(commonPoolMaxBufCount);
+      this.localPool = new VicariousThreadLocal<LinkedBlockingQueue<TCByteBuffer>>() {
+        @Override
+        protected LinkedBlockingQueue<TCByteBuffer> initialValue() {
+          if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
+            return new LinkedBlockingQueue<TCByteBuffer>(poolMaxBufCount);
+          } else {
+            logger.debug("Buf pool " + (SizeClass.this.direct ? "direct " : "nonDirect ") + SizeClass.this.capacity
+                         + " for " + Thread.currentThread().getName() + " - using Common Pool");
+            return commonPool;
+          }
+        }
+      };
+    }
+
+    TCByteBuffer getFromPoolOrCreate(int index, int count) {
+      LinkedBlockingQueue<TCByteBuffer> local = localPool.get();
+      TCByteBuffer buf = local.poll();
+      if (buf == null && local != commonPool) {
+        buf = commonPool.poll();
+      }
+      if (buf != null) {
+        buf.checkedOut();
+      } else {
+        buf = createNewInstance(direct, capacity, index, count, local, commonPool);
+      }
+      if (leakDetector != null) {
+        leakDetector.track((TCByteBufferImpl) buf);
+      }
+      return buf;
+    }
+  }
+
 }
@@ -24,4 +24,6 @@ public interface TCByteBufferFactoryConfig {
   int getPoolMaxBufCount();
 
   int getCommonPoolMaxBufCount();
+
+  boolean isLeakDetectionEnabled();
 }
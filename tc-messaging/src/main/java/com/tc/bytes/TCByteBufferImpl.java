@@ -23,7 +23,7 @@ import com.tc.util.State;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * @author teck A thin wrapper to a real java.nio.ByteBuffer instance
@@ -37,30 +37,43 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
   private static final State        CHECKED_OUT = new State("CHECKED_OUT");
   private static final State        COMMITTED   = new State("COMMITTED");
 
+  private static final AtomicIntegerFieldUpdater<TCByteBufferImpl> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(TCByteBufferImpl.class, "references");
+
   private final ByteBuffer          buffer;
-  private final TCByteBuffer        root;
+  private final TCByteBufferImpl    root;
   private final LinkedBlockingQueue<TCByteBuffer> bufPool;
+  private final LinkedBlockingQueue<TCByteBuffer> spillPool;
   private State                     state       = INIT;
+  // only meaningful on a root, views go through their root
+  private volatile int              references  = 1;
+  BufferLeakDetector.Record         leakRecord;
 
   TCByteBufferImpl(int capacity, boolean direct, LinkedBlockingQueue<TCByteBuffer> poolQueue) {
+    this(capacity, direct, poolQueue, poolQueue);
+  }
+
+  TCByteBufferImpl(int capacity, boolean direct, LinkedBlockingQueue<TCByteBuffer> poolQueue, LinkedBlockingQueue<TCByteBuffer> spillQueue) {
     if (direct) {
       buffer = ByteBuffer.allocateDirect(capacity);
     } else {
       buffer = ByteBuffer.allocate(capacity);
     }
     bufPool = poolQueue;
+    spillPool = spillQueue;
     root = this;
   }
 
   private TCByteBufferImpl(ByteBuffer buf) {
     buffer = buf;
     bufPool = null;
+    spillPool = null;
     this.root = null;
   }
 
-  private TCByteBufferImpl(ByteBuffer buf, TCByteBuffer root) {
+  private TCByteBufferImpl(ByteBuffer buf, TCByteBufferImpl root) {
     buffer = buf;
     bufPool = null;
+    spillPool = null;
     this.root = root;
   }
 
@@ -386,11 +399,44 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
     return buffer.hasArray();
   }
 
-  // Can be called only once on any of the views and the root is gone
+  @Override
+  public TCByteBuffer retain() {
+    if (root != null) {
+      root.acquire();
+    }
+    return this;
+  }
+
+  // Releases one reference on the root; the last one hands the root back to the factory
   @Override
   public void recycle() {
     if (root != null) {
-      TCByteBufferFactory.returnBuffer(root.reInit());
+      root.release();
+    }
+  }
+
+  private void acquire() {
+    while (true) {
+      int current = references;
+      if (current == 0) { throw new IllegalStateException("buffer has already been recycled: " + this); }
+      if (REFERENCES.compareAndSet(this, current, current + 1)) { return; }
+    }
+  }
+
+  private void release() {
+    while (true) {
+      int current = references;
+      if (current == 0) {
+        // recycled more often than retained, the buffer is already back in the pool
+        TCByteBufferFactory.overReleased(this);
+        return;
+      }
+      if (REFERENCES.compareAndSet(this, current, current - 1)) {
+        if (current == 1) {
+          TCByteBufferFactory.returnBuffer(reInit());
+        }
+        return;
+      }
     }
   }
 
@@ -589,6 +635,11 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
   public void checkedOut() {
     if (state == CHECKED_OUT) { throw new AssertionError("Already checked out"); }
     state = CHECKED_OUT;
+    references = 1;
+  }
+
+  boolean isPooled() {
+    return bufPool != null;
   }
 
   @Override
@@ -598,7 +649,10 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
 
   @Override
   public void offer(TCByteBuffer buf) throws InterruptedException {
-    this.bufPool.offer(buf, 0, TimeUnit.MILLISECONDS);
+    // the pool of the thread that allocated the buffer comes first, once that is full spill into the shared pool
+    if (!this.bufPool.offer(buf) && this.spillPool != this.bufPool) {
+      this.spillPool.offer(buf);
+    }
   }
 
   /* This is the debug version. PLEASE DONT DELETE */
@@ -20,6 +20,7 @@
 package com.tc.entity;
 
 import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
@@ -37,6 +38,9 @@ import java.io.IOException;
 
 
 public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements NetworkVoltronEntityMessage {
+  // Payloads at least this large are appended to the message by reference instead of being copied into its buffers.
+  private static final int PAYLOAD_COPY_LIMIT = 4 * 1024;
+
   private ClientID clientID;
   private TransactionID transactionID;
   private EntityDescriptor entityDescriptor;
@@ -129,7 +133,11 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     outputStream.writeInt(type.ordinal());
     
     outputStream.writeInt(extendedData.length);
-    outputStream.write(extendedData);
+    if (extendedData.length < PAYLOAD_COPY_LIMIT) {
+      outputStream.write(extendedData);
+    } else {
+      outputStream.write(TCByteBufferFactory.wrap(extendedData));
+    }
     
     outputStream.writeBoolean(requiresReplication);
     
@@ -0,0 +1,41 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.net.protocol.tcm.TCMessage;
+
+import java.util.List;
+
+
+/**
+ * Carries several VoltronEntityMessages from a client to the server in a single network message, so that a client with
+ * many requests queued doesn't pay the per-message framing and send cost for each one.
+ * The contained messages are delivered to the server, in order, as though each had been sent on its own.
+ */
+public interface NetworkVoltronEntityMultiMessage extends TCMessage {
+  /**
+   * Adds the contents of the given message to the end of this one.  The given message is never sent on its own.
+   */
+  public void addMessage(VoltronEntityMessage message);
+
+  /**
+   * @return The contained messages, in the order they were added.
+   */
+  public List<VoltronEntityMessage> getMessages();
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.msg.DSOMessageBase;
+import com.tc.object.session.SessionID;
+import com.tc.util.Assert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+public class NetworkVoltronEntityMultiMessageImpl extends DSOMessageBase implements NetworkVoltronEntityMultiMessage {
+  private static final byte MESSAGE = 0;
+
+  private final List<VoltronEntityMessage> messages = new ArrayList<VoltronEntityMessage>();
+
+  public NetworkVoltronEntityMultiMessageImpl(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
+    super(sessionID, monitor, out, channel, type);
+  }
+
+  public NetworkVoltronEntityMultiMessageImpl(SessionID sessionID, MessageMonitor monitor, MessageChannel channel, TCMessageHeader header, TCByteBuffer[] data) {
+    super(sessionID, monitor, channel, header, data);
+  }
+
+  @Override
+  public void addMessage(VoltronEntityMessage message) {
+    Assert.assertNotNull(message);
+    this.messages.add(message);
+  }
+
+  @Override
+  public List<VoltronEntityMessage> getMessages() {
+    return Collections.unmodifiableList(this.messages);
+  }
+
+  @Override
+  protected void dehydrateValues() {
+    // Each message is written in the same form used for resends, since that already captures everything the server
+    //  needs to process it.
+    for (VoltronEntityMessage message : this.messages) {
+      putNVPair(MESSAGE, new ResendVoltronEntityMessage(message.getSource(), message.getTransactionID(), 
+          message.getEntityDescriptor(), message.getVoltronType(), message.doesRequireReplication(), message.getExtendedData(), 
+          message.getOldestTransactionOnClient()));
+    }
+  }
+
+  @Override
+  protected boolean hydrateValue(byte name) throws IOException {
+    switch (name) {
+      case MESSAGE:
+        this.messages.add(getObject(new ResendVoltronEntityMessage()));
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package com.tc.l2.msg;
 
 import com.tc.net.NodeID;
+import java.util.function.LongConsumer;
 
 /**
  *
@@ -28,11 +29,17 @@ public class ReplicationEnvelope {
   private final NodeID dest;
   private final ReplicationMessage msg;
   private final Runnable waitRelease;
+  private final LongConsumer ordered;
 
   public ReplicationEnvelope(NodeID dest, ReplicationMessage msg, Runnable waitRelease) {
+    this(dest, msg, waitRelease, null);
+  }
+
+  public ReplicationEnvelope(NodeID dest, ReplicationMessage msg, Runnable waitRelease, LongConsumer ordered) {
     this.dest = dest;
     this.msg = msg;
     this.waitRelease = waitRelease;
+    this.ordered = ordered;
   }
   
   public NodeID getDestination() {
@@ -43,6 +50,20 @@ public class ReplicationEnvelope {
     return msg;
   }
   
+  /**
+   * Called once the message has been given its replication ID for the destination, just before it is sent, so that a
+   * later acknowledgement of everything through that ID can be matched back to it.
+   */
+  public void ordered(long replicationID) {
+    if (ordered != null) {
+      ordered.accept(replicationID);
+    }
+  }
+  
+  public boolean isWaiting() {
+    return waitRelease != null;
+  }
+  
   public void release() {
     if (waitRelease != null) {
       waitRelease.run();
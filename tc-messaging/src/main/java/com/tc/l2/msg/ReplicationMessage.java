@@ -19,6 +19,8 @@
 package com.tc.l2.msg;
 
 import com.tc.async.api.OrderedEventContext;
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferInput;
 import com.tc.io.TCByteBufferOutput;
 import com.tc.net.ClientID;
@@ -32,6 +34,7 @@ import com.tc.object.EntityID;
 import com.tc.object.tx.TransactionID;
 import com.tc.util.Assert;
 import java.io.IOException;
+import java.util.function.LongConsumer;
 
 /**
  *
@@ -42,6 +45,10 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
   public static final int SYNC               = 1; // Sent to replicate a request on the passive
   public static final int RESPONSE                = 2; // response that the replicated action completed
   public static final int START                = 3; // response that the replicated action completed
+  public static final int RESPONSE_THROUGH                = 4; // response that every replicated action up to a replication ID completed
+
+  // payloads at least this large are appended by reference so fanning out to several passives never copies them
+  private static final int PAYLOAD_COPY_LIMIT = 4 * 1024;
 
   public enum ReplicationType {
     NOOP,
@@ -115,6 +122,10 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
     return new ReplicationEnvelope(node, this, waitRelease);
   }
   
+  public ReplicationEnvelope target(NodeID node, Runnable waitRelease, LongConsumer ordered) {
+    return new ReplicationEnvelope(node, this, waitRelease, ordered);
+  }
+  
   public void setReplicationID(long rid) {
     this.rid = rid;
   }
@@ -202,7 +213,11 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
       out.writeInt(this.action.ordinal());
       if (payload != null) {
         out.writeInt(payload.length);
-        out.write(payload);
+        if (payload.length < PAYLOAD_COPY_LIMIT) {
+          out.write(payload);
+        } else {
+          out.write(new TCByteBuffer[] {TCByteBufferFactory.wrap(payload)});
+        }
       } else {
         out.writeInt(0);
       }
@@ -38,14 +38,24 @@ public class ReplicationMessageAck extends ReplicationMessage {
   public ReplicationMessageAck(MessageID requestID) {
     super(requestID);
   }
+//  acknowledges every replicated message with a replication ID up to and including the one given
+  public static ReplicationMessageAck createAcknowledgeThrough(long replicationID) {
+    ReplicationMessageAck ack = new ReplicationMessageAck(RESPONSE_THROUGH);
+    ack.setReplicationID(replicationID);
+    return ack;
+  }
 
   @Override
   protected void basicDeserializeFrom(TCByteBufferInput in) throws IOException {
-
+    if (getType() == RESPONSE_THROUGH) {
+      this.rid = in.readLong();
+    }
   }
 
   @Override
   protected void basicSerializeTo(TCByteBufferOutput out) {
-
+    if (getType() == RESPONSE_THROUGH) {
+      out.writeLong(rid);
+    }
   }
 }
@@ -0,0 +1,109 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.l2.msg;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.NodeID;
+import com.tc.net.groups.AbstractGroupMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries a run of consecutive {@link ReplicationMessage}s bound for the same passive in a single group message.
+ * <p>
+ * Each contained message is framed with its own header, so it keeps the message ID the active is waiting to have
+ * acknowledged and the replication ID which the passive uses to order it.  Messages are serialized as they are added,
+ * since the same message object is shared by every passive and its replication ID is overwritten for each of them.
+ * Once received, the contained messages are unpacked (see {@link #unpack(NodeID)}) and handled exactly as if they had
+ * each been sent individually.
+ */
+public class ReplicationMessageBatch extends AbstractGroupMessage {
+  public static final int BATCH = 0;
+
+  // only used on the sending side
+  private TCByteBufferOutputStream encoded;
+  private int count;
+  // only used on the receiving side
+  private final List<ReplicationMessage> messages = new ArrayList<>();
+
+  public ReplicationMessageBatch() {
+    super(BATCH);
+  }
+
+  public void addMessage(ReplicationMessage msg) {
+    if (this.encoded == null) {
+      this.encoded = new TCByteBufferOutputStream();
+    }
+    msg.serializeTo(this.encoded);
+    this.count += 1;
+  }
+
+  public int getMessageCount() {
+    return this.count;
+  }
+
+  public boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  /**
+   * @return the serialized size of the messages added so far, in bytes
+   */
+  public int getSize() {
+    return this.encoded == null ? 0 : this.encoded.getBytesWritten();
+  }
+
+  /**
+   * Attributes each received message to the node which sent the batch, so that it can be acknowledged.
+   *
+   * @return the contained messages, in the order they were added
+   */
+  public List<ReplicationMessage> unpack(NodeID sender) {
+    for (ReplicationMessage msg : this.messages) {
+      msg.setMessageOrginator(sender);
+    }
+    return this.messages;
+  }
+
+  @Override
+  protected void basicDeserializeFrom(TCByteBufferInput in) throws IOException {
+    this.count = in.readInt();
+    for (int i = 0; i < this.count; ++i) {
+      ReplicationMessage msg = new ReplicationMessage();
+      msg.deserializeFrom(in);
+      this.messages.add(msg);
+    }
+  }
+
+  @Override
+  protected void basicSerializeTo(TCByteBufferOutput out) {
+    out.writeInt(this.count);
+    if (this.encoded != null) {
+      out.write(this.encoded.toArray());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ReplicationMessageBatch{count=" + this.count + ", size=" + getSize() + '}';
+  }
+}
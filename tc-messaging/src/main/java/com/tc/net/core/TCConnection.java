@@ -50,6 +50,16 @@ public interface TCConnection extends NetworkMessageSink {
    */
   public long getIdleReceiveTime();
 
+  /**
+   * Returns the number of messages queued on this connection that have not been picked up for writing yet.
+   */
+  public long getWriteQueueDepth();
+
+  /**
+   * Returns the average number of nanoseconds sending threads spent queuing a message on this connection.
+   */
+  public long getAverageEnqueueNanos();
+
   /**
    * Add the given connection event listener. Re-adding an existing listener will have no effect (ie. the listener will
    * not be in the list twice).
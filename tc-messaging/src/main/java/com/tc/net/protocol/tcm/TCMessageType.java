@@ -95,6 +95,7 @@ public final class TCMessageType {
   public static final int           TYPE_SERVER_ENTITY_RESPONSE_MESSAGE               = 89;
   public static final int           TYPE_VOLTRON_ENTITY_MESSAGE                       = 90;
   public static final int           TYPE_VOLTRON_ENTITY_APPLIED_RESPONSE              = 91;
+  public static final int           TYPE_VOLTRON_ENTITY_MULTI_MESSAGE                 = 92;
 
   public static final TCMessageType PING_MESSAGE                                      = new TCMessageType();
   public static final TCMessageType LOCK_REQUEST_MESSAGE                              = new TCMessageType();
@@ -119,6 +120,7 @@ public final class TCMessageType {
   public static final TCMessageType SERVER_ENTITY_RESPONSE_MESSAGE                    = new TCMessageType();
   public static final TCMessageType VOLTRON_ENTITY_MESSAGE                            = new TCMessageType();
   public static final TCMessageType VOLTRON_ENTITY_APPLIED_RESPONSE                   = new TCMessageType();
+  public static final TCMessageType VOLTRON_ENTITY_MULTI_MESSAGE                      = new TCMessageType();
 
   public static TCMessageType getInstance(int i) {
     return typeMap.get(i);
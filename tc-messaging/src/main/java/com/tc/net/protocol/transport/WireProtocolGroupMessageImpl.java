@@ -49,11 +49,14 @@ package com.tc.net.protocol.transport;
 
 import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
+import com.tc.io.TCByteBufferInputStream;
 import com.tc.net.core.TCConnection;
 import com.tc.net.protocol.AbstractTCNetworkMessage;
 import com.tc.net.protocol.TCNetworkHeader;
 import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.tcm.TCMessageHeader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -113,34 +116,25 @@ public class WireProtocolGroupMessageImpl extends AbstractTCNetworkMessage imple
   private ArrayList<TCNetworkMessage> getMessagesFromByteBuffers(TCByteBuffer[] messagePayloadByteBuffers) {
     ArrayList<TCNetworkMessage> messages = new ArrayList<TCNetworkMessage>();
 
-    // XXX: should do without copying stuffs around by passing views to upper layers.
-    // Recycle is little tricky though.
-    byte[] fullMsgsBytes;
+    // every message gets views of the received buffers, the views hold their own reference so the buffers stay out of
+    // the pool until the last message carved out of them is recycled
     TCByteBuffer[] msgs = messagePayloadByteBuffers;
-
-    if (msgs.length > 1) {
-      fullMsgsBytes = new byte[((WireProtocolHeader) getHeader()).getTotalPacketLength()
-                               - ((WireProtocolHeader) getHeader()).getHeaderByteLength()];
-      int copyPos = 0;
-      for (int i = 0; i < msgs.length; i++) {
-        System.arraycopy(msgs[i].array(), 0, fullMsgsBytes, copyPos, msgs[i].limit());
-        copyPos += msgs[i].limit();
-      }
-    } else {
-      fullMsgsBytes = msgs[0].array();
-    }
-
-    TCByteBuffer b = TCByteBufferFactory.wrap(fullMsgsBytes);
+    TCByteBufferInputStream in = new TCByteBufferInputStream(msgs);
     for (int i = 0; i < getTotalMessageCount(); i++) {
-      int msgLen = b.getInt();
-      short msgProto = b.getShort();
-
-      // XXX: we are giving out 4K BB for a smaller msgs too; Though it is recycled, can do some opti., here
-      TCByteBuffer[] bufs = TCByteBufferFactory.getFixedSizedInstancesForLength(false, msgLen);
-      for (TCByteBuffer buf : bufs) {
-        b.get(buf.array(), 0, buf.limit());
+      int msgLen;
+      short msgProto;
+      try {
+        msgLen = in.readInt();
+        msgProto = in.readShort();
+      } catch (IOException e) {
+        // the wire protocol header already told us how much data there is
+        throw new AssertionError(e);
       }
 
+      TCByteBuffer[] bufs = viewsOf(in.duplicateAndLimit(msgLen).toArray(),
+                                    Math.min(msgLen, TCMessageHeader.HEADER_LENGTH));
+      in.skip(msgLen);
+
       WireProtocolHeader hdr;
       hdr = (WireProtocolHeader) ((WireProtocolHeader) getHeader()).clone();
       hdr.setTotalPacketLength(hdr.getHeaderByteLength() + msgLen);
@@ -150,13 +144,48 @@ public class WireProtocolGroupMessageImpl extends AbstractTCNetworkMessage imple
       WireProtocolMessage msg = new WireProtocolMessageImpl(this.sourceConnection, hdr, bufs);
       messages.add(msg);
     }
-    fullMsgsBytes = null;
     for (TCByteBuffer buf : msgs) {
       buf.recycle();
     }
     return messages;
   }
 
+  /**
+   * The message parsers read the message header out of the first buffer alone, so when a message starts too close to
+   * the end of a receive buffer for its header to fit, the pieces holding the header are copied into one buffer.
+   */
+  private static TCByteBuffer[] viewsOf(TCByteBuffer[] data, int firstViewLength) {
+    ArrayList<TCByteBuffer> views = new ArrayList<TCByteBuffer>(data.length);
+    int next = 0;
+    int leadingLength = 0;
+    int leadingPieces = 0;
+    while (next < data.length && leadingLength < firstViewLength) {
+      if (data[next].hasRemaining()) {
+        leadingLength += data[next].remaining();
+        leadingPieces++;
+      }
+      next++;
+    }
+
+    if (leadingPieces > 1) {
+      TCByteBuffer first = TCByteBufferFactory.getInstance(false, leadingLength);
+      for (int i = 0; i < next; i++) {
+        first.put(data[i].duplicate());
+      }
+      first.flip();
+      views.add(first);
+    } else {
+      next = 0;
+    }
+
+    for (int i = next; i < data.length; i++) {
+      if (data[i].hasRemaining()) {
+        views.add(data[i].slice().retain());
+      }
+    }
+    return views.toArray(new TCByteBuffer[views.size()]);
+  }
+
   @Override
   public Iterator<TCNetworkMessage> getMessageIterator() {
     return this.messagePayloads.iterator();
@@ -0,0 +1,102 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.locks;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.io.TCSerializable;
+import com.tc.object.msg.LockRequestMessage;
+import com.tc.object.msg.LockRequestMessage.RequestType;
+
+import java.io.IOException;
+
+/**
+ * A single lock, unlock, try lock or query request carried in a batched {@link LockRequestMessage}.
+ */
+public class LockRequestBatchContext implements TCSerializable<LockRequestBatchContext> {
+  private static final RequestType[]     REQUEST_TYPE_VALUES      = RequestType.values();
+  private static final ServerLockLevel[] SERVER_LOCK_LEVEL_VALUES = ServerLockLevel.values();
+
+  private RequestType                    requestType;
+  private LockID                         lockID;
+  private ThreadID                       threadID;
+  private ServerLockLevel                lockLevel;
+  private long                           timeout                  = -1;
+
+  public LockRequestBatchContext() {
+    // To make TCSerializable happy
+  }
+
+  public LockRequestBatchContext(RequestType requestType, LockID lockID, ThreadID threadID, ServerLockLevel lockLevel,
+                                 long timeout) {
+    this.requestType = requestType;
+    this.lockID = lockID;
+    this.threadID = threadID;
+    this.lockLevel = lockLevel;
+    this.timeout = timeout;
+  }
+
+  @Override
+  public LockRequestBatchContext deserializeFrom(TCByteBufferInput in) throws IOException {
+    this.requestType = REQUEST_TYPE_VALUES[in.readByte()];
+    LockIDSerializer ls = new LockIDSerializer();
+    ls.deserializeFrom(in);
+    this.lockID = ls.getLockID();
+    this.threadID = new ThreadID(in.readLong());
+    byte level = in.readByte();
+    this.lockLevel = level < 0 ? null : SERVER_LOCK_LEVEL_VALUES[level];
+    this.timeout = in.readLong();
+    return this;
+  }
+
+  @Override
+  public void serializeTo(TCByteBufferOutput out) {
+    out.writeByte(requestType.ordinal());
+    LockIDSerializer ls = new LockIDSerializer(lockID);
+    ls.serializeTo(out);
+    out.writeLong(threadID.toLong());
+    out.writeByte(lockLevel == null ? -1 : lockLevel.ordinal());
+    out.writeLong(timeout);
+  }
+
+  public RequestType getRequestType() {
+    return requestType;
+  }
+
+  public LockID getLockID() {
+    return lockID;
+  }
+
+  public ThreadID getThreadID() {
+    return threadID;
+  }
+
+  public ServerLockLevel getLockLevel() {
+    return lockLevel;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  @Override
+  public String toString() {
+    return "LockRequestBatchContext [" + requestType + ", " + lockID + ", " + threadID + ", " + lockLevel + "]";
+  }
+}
@@ -27,6 +27,7 @@ import com.tc.net.protocol.tcm.TCMessageHeader;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.locks.ClientServerExchangeLockContext;
 import com.tc.object.locks.LockID;
+import com.tc.object.locks.LockResponseBatchContext;
 import com.tc.object.locks.ServerLockLevel;
 import com.tc.object.locks.ThreadID;
 import com.tc.object.session.SessionID;
@@ -46,12 +47,14 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
   private static final byte LOCK_LEVEL        = 4;
   private static final byte CONTEXT           = 5;
   private static final byte LOCK_LEASE_MILLIS = 6;
+  private static final byte BATCHED_RESPONSE  = 7;
 
   public static enum ResponseType {
-    AWARD, RECALL, RECALL_WITH_TIMEOUT, WAIT_TIMEOUT, INFO, REFUSE;
+    AWARD, RECALL, RECALL_WITH_TIMEOUT, WAIT_TIMEOUT, INFO, REFUSE, BATCHED;
   }
 
   private final Collection<ClientServerExchangeLockContext> contexts = new ArrayList<ClientServerExchangeLockContext>();
+  private final Collection<LockResponseBatchContext>        batchedResponses = new ArrayList<LockResponseBatchContext>();
 
   private ResponseType                                      responseType;
   private ThreadID                                          threadID;
@@ -97,6 +100,11 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
           putNVPair(CONTEXT, cselc);
         }
         break;
+      case BATCHED:
+        for (LockResponseBatchContext response : batchedResponses) {
+          putNVPair(BATCHED_RESPONSE, response);
+        }
+        break;
       default:
         throw new AssertionError(responseType);
     }
@@ -107,6 +115,9 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
     StringBuffer rv = new StringBuffer();
     rv.append("Type : ").append(responseType).append('\n');
     rv.append(lockID).append(' ').append(threadID).append(' ').append("Lock Type: ").append(lockLevel).append('\n');
+    if (batchedResponses.size() > 0) {
+      rv.append("Batched responses size = ").append(batchedResponses.size()).append('\n');
+    }
     return rv.toString();
   }
 
@@ -141,6 +152,9 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
       case LOCK_LEASE_MILLIS:
         leaseTimeInMs = getIntValue();
         return true;
+      case BATCHED_RESPONSE:
+        batchedResponses.add(getObject(new LockResponseBatchContext()));
+        return true;
       default:
         return false;
     }
@@ -174,6 +188,14 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
     return contexts;
   }
 
+  public void addBatchedResponse(LockResponseBatchContext response) {
+    batchedResponses.add(response);
+  }
+
+  public Collection<LockResponseBatchContext> getBatchedResponses() {
+    return batchedResponses;
+  }
+
   public void initializeAward(LockID lid, ThreadID sid, ServerLockLevel level) {
     initialize(ResponseType.AWARD, lid, sid, level, -1);
   }
@@ -198,6 +220,10 @@ public class LockResponseMessage extends DSOMessageBase implements MultiThreaded
     initialize(ResponseType.INFO, lid, sid, level, -1);
   }
 
+  public void initializeBatched() {
+    initialize(ResponseType.BATCHED, null, ThreadID.VM_ID, null, -1);
+  }
+
   private void initialize(ResponseType requestType, LockID lid, ThreadID sid, ServerLockLevel level,
                           int leaseTimeInMills) {
     this.responseType = requestType;
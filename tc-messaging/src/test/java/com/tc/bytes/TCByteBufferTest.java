@@ -21,6 +21,7 @@ package com.tc.bytes;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class TCByteBufferTest {
@@ -58,4 +59,35 @@ public class TCByteBufferTest {
     }
 
   }
+
+  @Test
+  public void testSizeClasses() {
+    assertEquals(100, TCByteBufferFactory.getInstance(false, 100).capacity());
+    assertEquals(512, TCByteBufferFactory.getInstance(false, 300).capacity());
+    assertEquals(1024, TCByteBufferFactory.getInstance(false, 600).capacity());
+    assertEquals(4096, TCByteBufferFactory.getInstance(false, 2049).capacity());
+    assertEquals(5000, TCByteBufferFactory.getInstance(false, 5000).capacity());
+
+    TCByteBuffer buf = TCByteBufferFactory.getInstance(false, 600);
+    assertEquals(buf.capacity(), buf.limit());
+    assertEquals(600, TCByteBufferFactory.copyAndWrap(new byte[600]).limit());
+  }
+
+  @Test
+  public void testRetainedViewKeepsBufferReferenced() {
+    TCByteBuffer buf = TCByteBufferFactory.getInstance(false, TCByteBufferFactory.FIXED_BUFFER_SIZE);
+    TCByteBuffer view = buf.slice().retain();
+
+    buf.recycle();
+    assertSame(buf, buf.retain());
+    buf.recycle();
+
+    view.recycle();
+    try {
+      buf.retain();
+      fail("retained a buffer that went back to the pool");
+    } catch (IllegalStateException ise) {
+      // expected
+    }
+  }
 }
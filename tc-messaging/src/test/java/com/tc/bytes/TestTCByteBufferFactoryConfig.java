@@ -45,5 +45,10 @@ public class TestTCByteBufferFactoryConfig implements TCByteBufferFactoryConfig
   public int getCommonPoolMaxBufCount() {
     return 3000;
   }
+
+  @Override
+  public boolean isLeakDetectionEnabled() {
+    return false;
+  }
   
 }
@@ -37,7 +37,9 @@ import com.tc.object.tx.TransactionID;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 
@@ -75,4 +77,28 @@ public class NetworkVoltronEntityMessageImplTest {
     assertEquals(messageType, decodingMessage.getVoltronType());
     assertEquals(oldestTransactionPending, decodingMessage.getOldestTransactionOnClient());
   }
+
+  @Test
+  public void testLargePayloadSerialization() throws UnknownNameException, IOException {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    NetworkVoltronEntityMessageImpl message = new NetworkVoltronEntityMessageImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MESSAGE);
+
+    byte[] extendedData = new byte[64 * 1024];
+    for (int i = 0; i < extendedData.length; i++) {
+      extendedData[i] = (byte) i;
+    }
+    TransactionID oldestTransactionPending = new TransactionID(1);
+    message.setContents(new ClientID(1), new TransactionID(2), new EntityDescriptor(EntityID.NULL_ID, ClientInstanceID.NULL_ID, 3), VoltronEntityMessage.Type.INVOKE_ACTION, true, extendedData, oldestTransactionPending);
+    message.dehydrate();
+
+    TCMessageHeader header = (TCMessageHeader) message.getHeader();
+    TCByteBuffer[] payload = message.getPayload();
+    outputStream.close();
+    NetworkVoltronEntityMessageImpl decodingMessage = new NetworkVoltronEntityMessageImpl(SessionID.NULL_ID, monitor, null, header, payload);
+    decodingMessage.hydrate();
+    assertArrayEquals(extendedData, decodingMessage.getExtendedData());
+    assertTrue(decodingMessage.doesRequireReplication());
+    assertEquals(oldestTransactionPending, decodingMessage.getOldestTransactionOnClient());
+  }
 }
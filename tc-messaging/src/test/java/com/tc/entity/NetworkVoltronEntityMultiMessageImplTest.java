@@ -0,0 +1,82 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.net.protocol.tcm.UnknownNameException;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+
+/**
+ * Ensures that the messages packed into a multi-message come out the other side intact and in order.
+ */
+public class NetworkVoltronEntityMultiMessageImplTest {
+  @Test
+  public void testSerialization() throws UnknownNameException, IOException {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    NetworkVoltronEntityMultiMessageImpl message = new NetworkVoltronEntityMultiMessageImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+    
+    ClientID clientID = new ClientID(1);
+    EntityDescriptor entityDescriptor = new EntityDescriptor(new EntityID("class", "name"), new ClientInstanceID(1), 3);
+    ResendVoltronEntityMessage first = new ResendVoltronEntityMessage(clientID, new TransactionID(2), entityDescriptor, VoltronEntityMessage.Type.FETCH_ENTITY, false, new byte[0], new TransactionID(1));
+    ResendVoltronEntityMessage second = new ResendVoltronEntityMessage(clientID, new TransactionID(3), entityDescriptor, VoltronEntityMessage.Type.INVOKE_ACTION, true, new byte[] { 1, 2, 3 }, new TransactionID(2));
+    message.addMessage(first);
+    message.addMessage(second);
+    message.dehydrate();
+    
+    TCMessageHeader header = (TCMessageHeader) message.getHeader();
+    TCByteBuffer[] payload = message.getPayload();
+    outputStream.close();
+    NetworkVoltronEntityMultiMessageImpl decodingMessage = new NetworkVoltronEntityMultiMessageImpl(SessionID.NULL_ID, monitor, null, header, payload);
+    decodingMessage.hydrate();
+    List<VoltronEntityMessage> decoded = decodingMessage.getMessages();
+    assertEquals(2, decoded.size());
+    assertSame(first, decoded.get(0));
+    assertSame(second, decoded.get(1));
+  }
+
+  private static void assertSame(VoltronEntityMessage expected, VoltronEntityMessage actual) {
+    assertEquals(expected.getSource(), actual.getSource());
+    assertEquals(expected.getTransactionID(), actual.getTransactionID());
+    assertEquals(expected.getEntityDescriptor(), actual.getEntityDescriptor());
+    assertEquals(expected.getVoltronType(), actual.getVoltronType());
+    assertEquals(expected.doesRequireReplication(), actual.doesRequireReplication());
+    assertArrayEquals(expected.getExtendedData(), actual.getExtendedData());
+    assertEquals(expected.getOldestTransactionOnClient(), actual.getOldestTransactionOnClient());
+  }
+}
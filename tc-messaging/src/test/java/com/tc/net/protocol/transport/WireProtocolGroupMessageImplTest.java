@@ -0,0 +1,118 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WireProtocolGroupMessageImplTest {
+  private static final int RECEIVE_BUFFER_SIZE = 4096;
+  // each grouped message is preceded by its int length and short protocol
+  private static final int MESSAGE_PREFIX      = 6;
+
+  @Test
+  public void testMessageHeaderStraddlingBufferBoundary() throws Exception {
+    // the second message starts 4 bytes before the end of the first receive buffer
+    byte[] first = pattern(RECEIVE_BUFFER_SIZE - 4 - 2 * MESSAGE_PREFIX, 1);
+    byte[] second = pattern(100, 2);
+    assertGroupSplitsInto(first, second);
+  }
+
+  @Test
+  public void testMessageHeaderStartingAtBufferBoundary() throws Exception {
+    byte[] first = pattern(RECEIVE_BUFFER_SIZE - 2 * MESSAGE_PREFIX, 3);
+    byte[] second = pattern(5000, 4);
+    assertGroupSplitsInto(first, second);
+  }
+
+  private static void assertGroupSplitsInto(byte[]... messages) throws Exception {
+    int streamLength = 0;
+    for (byte[] message : messages) {
+      streamLength += MESSAGE_PREFIX + message.length;
+    }
+    TCByteBuffer stream = TCByteBufferFactory.wrap(new byte[streamLength]);
+    for (byte[] message : messages) {
+      stream.putInt(message.length);
+      stream.putShort(WireProtocolHeader.PROTOCOL_TCM);
+      stream.put(message);
+    }
+    byte[] streamBytes = stream.array();
+
+    // cut the stream up the way the reader fills its receive buffers
+    int bufferCount = (streamLength + RECEIVE_BUFFER_SIZE - 1) / RECEIVE_BUFFER_SIZE;
+    TCByteBuffer[] received = new TCByteBuffer[bufferCount];
+    for (int i = 0; i < bufferCount; i++) {
+      int from = i * RECEIVE_BUFFER_SIZE;
+      received[i] = TCByteBufferFactory.wrap(Arrays.copyOfRange(streamBytes, from,
+                                                                Math.min(streamLength, from + RECEIVE_BUFFER_SIZE)));
+    }
+
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_MSGGROUP);
+    header.setMessageCount(messages.length);
+    header.setTotalPacketLength(header.getHeaderByteLength() + streamLength);
+    WireProtocolGroupMessageImpl group = new WireProtocolGroupMessageImpl(null, header, received);
+
+    Iterator<TCNetworkMessage> grouped = group.getMessageIterator();
+    for (byte[] message : messages) {
+      assertTrue(grouped.hasNext());
+      TCByteBuffer[] payload = grouped.next().getPayload();
+      assertTrue("first buffer cuts the message header: " + payload[0].limit(),
+                 payload[0].limit() >= TCMessageHeader.HEADER_LENGTH);
+      assertArrayEquals(message, concat(payload));
+    }
+    assertFalse(grouped.hasNext());
+  }
+
+  private static byte[] concat(TCByteBuffer[] buffers) {
+    int length = 0;
+    for (TCByteBuffer buffer : buffers) {
+      length += buffer.remaining();
+    }
+    byte[] bytes = new byte[length];
+    int pos = 0;
+    for (TCByteBuffer buffer : buffers) {
+      int remaining = buffer.remaining();
+      buffer.duplicate().get(bytes, pos, remaining);
+      pos += remaining;
+    }
+    assertEquals(length, pos);
+    return bytes;
+  }
+
+  private static byte[] pattern(int length, int seed) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (seed + i);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.msg;
+
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.locks.LockRequestBatchContext;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.object.msg.LockRequestMessage.RequestType;
+import com.tc.object.session.SessionID;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+
+
+public class LockRequestMessageTest {
+  @Test
+  public void testBatchedRequests() throws Exception {
+    LockRequestMessage msg = new LockRequestMessage(new SessionID(0), mock(MessageMonitor.class),
+                                                    new TCByteBufferOutputStream(4, 4096, false), null,
+                                                    TCMessageType.LOCK_REQUEST_MESSAGE);
+    msg.initializeBatchedRequest();
+    msg.addBatchedRequest(new LockRequestBatchContext(RequestType.LOCK, new StringLockID("A"), new ThreadID(1),
+                                                      ServerLockLevel.WRITE, -1));
+    msg.addBatchedRequest(new LockRequestBatchContext(RequestType.TRY_LOCK, new StringLockID("B"), new ThreadID(2),
+                                                      ServerLockLevel.READ, 500));
+    msg.addBatchedRequest(new LockRequestBatchContext(RequestType.QUERY, new StringLockID("C"), new ThreadID(3), null,
+                                                      -1));
+    msg.dehydrate();
+
+    LockRequestMessage msg2 = new LockRequestMessage(SessionID.NULL_ID, mock(MessageMonitor.class), null,
+                                                     (TCMessageHeader) msg.getHeader(), msg.getPayload());
+    msg2.hydrate();
+    Assert.assertEquals(RequestType.BATCHED_REQUEST, msg2.getRequestType());
+    List<LockRequestBatchContext> requests = new ArrayList<LockRequestBatchContext>(msg2.getBatchedRequests());
+    Assert.assertEquals(3, requests.size());
+
+    Assert.assertEquals(RequestType.LOCK, requests.get(0).getRequestType());
+    Assert.assertEquals(new StringLockID("A"), requests.get(0).getLockID());
+    Assert.assertEquals(new ThreadID(1), requests.get(0).getThreadID());
+    Assert.assertEquals(ServerLockLevel.WRITE, requests.get(0).getLockLevel());
+
+    Assert.assertEquals(RequestType.TRY_LOCK, requests.get(1).getRequestType());
+    Assert.assertEquals(ServerLockLevel.READ, requests.get(1).getLockLevel());
+    Assert.assertEquals(500, requests.get(1).getTimeout());
+
+    Assert.assertEquals(RequestType.QUERY, requests.get(2).getRequestType());
+    Assert.assertNull(requests.get(2).getLockLevel());
+  }
+}
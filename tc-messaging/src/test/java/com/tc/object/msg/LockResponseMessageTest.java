@@ -0,0 +1,68 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.msg;
+
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.locks.LockResponseBatchContext;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.object.msg.LockResponseMessage.ResponseType;
+import com.tc.object.session.SessionID;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+
+
+public class LockResponseMessageTest {
+  @Test
+  public void testBatchedResponses() throws Exception {
+    LockResponseMessage msg = new LockResponseMessage(new SessionID(0), mock(MessageMonitor.class),
+                                                      new TCByteBufferOutputStream(4, 4096, false), null,
+                                                      TCMessageType.LOCK_RESPONSE_MESSAGE);
+    msg.initializeBatched();
+    msg.addBatchedResponse(new LockResponseBatchContext(ResponseType.AWARD, new StringLockID("A"), new ThreadID(1),
+                                                        ServerLockLevel.WRITE));
+    msg.addBatchedResponse(new LockResponseBatchContext(ResponseType.REFUSE, new StringLockID("B"), new ThreadID(2),
+                                                        ServerLockLevel.READ));
+    msg.dehydrate();
+
+    LockResponseMessage msg2 = new LockResponseMessage(SessionID.NULL_ID, mock(MessageMonitor.class), null,
+                                                       (TCMessageHeader) msg.getHeader(), msg.getPayload());
+    msg2.hydrate();
+    Assert.assertEquals(ResponseType.BATCHED, msg2.getResponseType());
+    List<LockResponseBatchContext> responses = new ArrayList<LockResponseBatchContext>(msg2.getBatchedResponses());
+    Assert.assertEquals(2, responses.size());
+
+    Assert.assertEquals(ResponseType.AWARD, responses.get(0).getResponseType());
+    Assert.assertEquals(new StringLockID("A"), responses.get(0).getLockID());
+    Assert.assertEquals(new ThreadID(1), responses.get(0).getThreadID());
+    Assert.assertEquals(ServerLockLevel.WRITE, responses.get(0).getLockLevel());
+
+    Assert.assertEquals(ResponseType.REFUSE, responses.get(1).getResponseType());
+    Assert.assertEquals(new StringLockID("B"), responses.get(1).getLockID());
+    Assert.assertEquals(ServerLockLevel.READ, responses.get(1).getLockLevel());
+  }
+}